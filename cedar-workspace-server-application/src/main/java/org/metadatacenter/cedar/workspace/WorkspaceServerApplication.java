@@ -1,20 +1,76 @@
 package org.metadatacenter.cedar.workspace;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.lifecycle.ExecutorServiceManager;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
 import org.metadatacenter.bridge.CedarDataServices;
 import org.metadatacenter.cedar.util.dw.CedarMicroserviceApplication;
+import org.metadatacenter.cedar.workspace.backend.AdaptiveConcurrencyLimiter;
+import org.metadatacenter.cedar.workspace.backend.BackendSessions;
+import org.metadatacenter.cedar.workspace.backend.RequestEndpointFilter;
+import org.metadatacenter.cedar.workspace.backend.RequestSessionScope;
+import org.metadatacenter.cedar.workspace.backend.SessionScopeFilter;
+import org.metadatacenter.cedar.workspace.backend.SlowCallRecorder;
+import org.metadatacenter.cedar.workspace.backend.SlowCallServlet;
+import org.metadatacenter.cedar.workspace.changes.ChangeLog;
+import org.metadatacenter.cedar.workspace.codec.BinaryJacksonProvider;
+import org.metadatacenter.cedar.workspace.codec.BinaryMappers;
+import org.metadatacenter.cedar.workspace.codec.BinaryRequestBodyFilter;
+import org.metadatacenter.cedar.workspace.event.NodeEventBus;
+import org.metadatacenter.cedar.workspace.execution.VirtualThreadExecutor;
+import org.metadatacenter.cedar.workspace.execution.VirtualThreadExecutorProvider;
+import org.metadatacenter.cedar.workspace.execution.VirtualThreadResources;
+import org.metadatacenter.cedar.workspace.execution.VirtualThreads;
 import org.metadatacenter.cedar.workspace.health.FolderServerHealthCheck;
+import org.metadatacenter.cedar.workspace.health.SchemaIndexHealthCheck;
+import org.metadatacenter.cedar.workspace.health.WarmupHealthCheck;
+import org.metadatacenter.cedar.workspace.index.FolderStatisticsIndex;
+import org.metadatacenter.cedar.workspace.index.InstanceCountIndex;
+import org.metadatacenter.cedar.workspace.index.NodeNameIndex;
+import org.metadatacenter.cedar.workspace.index.ReadAccessIndex;
+import org.metadatacenter.cedar.workspace.invalidation.InvalidationBus;
+import org.metadatacenter.cedar.workspace.invalidation.InvalidationTransport;
+import org.metadatacenter.cedar.workspace.invalidation.InvalidationTransports;
+import org.metadatacenter.cedar.workspace.permissions.PermissionJobs;
+import org.metadatacenter.cedar.workspace.permissions.PermissionPropagation;
+import org.metadatacenter.cedar.workspace.push.FolderEventBroadcaster;
+import org.metadatacenter.cedar.workspace.ratelimit.RateLimitFilter;
+import org.metadatacenter.cedar.workspace.ratelimit.RateLimiter;
 import org.metadatacenter.cedar.workspace.resources.*;
+import org.metadatacenter.cedar.workspace.response.NodeListResponseWriter;
+import org.metadatacenter.cedar.workspace.schema.CreateSchemaIndexesCommand;
+import org.metadatacenter.cedar.workspace.schema.SchemaIndexManager;
+import org.metadatacenter.cedar.workspace.schema.SchemaIndexServlet;
+import org.metadatacenter.cedar.workspace.search.NodeTextIndex;
+import org.metadatacenter.cedar.workspace.search.RebuildTextIndexTask;
+import org.metadatacenter.cedar.workspace.snapshot.ExportSnapshotCommand;
+import org.metadatacenter.cedar.workspace.snapshot.ImportSnapshotCommand;
+import org.metadatacenter.cedar.workspace.util.GraphDriver;
+import org.metadatacenter.cedar.workspace.util.NodeScan;
+import org.metadatacenter.cedar.workspace.util.SingleFlight;
+import org.metadatacenter.cedar.workspace.warmup.WorkspaceWarmup;
 import org.metadatacenter.config.CedarConfig;
 import org.metadatacenter.model.ServerName;
 import org.metadatacenter.rest.context.CedarRequestContext;
 import org.metadatacenter.rest.context.CedarRequestContextFactory;
 import org.metadatacenter.server.AdminServiceSession;
 import org.metadatacenter.server.service.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.DispatcherType;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
 
 public class WorkspaceServerApplication extends CedarMicroserviceApplication<WorkspaceServerConfiguration> {
 
+  private static final Logger log = LoggerFactory.getLogger(WorkspaceServerApplication.class);
+
   public static void main(String[] args) throws Exception {
     new WorkspaceServerApplication().run(args);
   }
@@ -26,6 +82,9 @@ public class WorkspaceServerApplication extends CedarMicroserviceApplication<Wor
 
   @Override
   protected void initializeWithBootstrap(Bootstrap<WorkspaceServerConfiguration> bootstrap, CedarConfig cedarConfig) {
+    bootstrap.addCommand(new ExportSnapshotCommand());
+    bootstrap.addCommand(new ImportSnapshotCommand());
+    bootstrap.addCommand(new CreateSchemaIndexesCommand());
   }
 
   @Override
@@ -41,16 +100,199 @@ public class WorkspaceServerApplication extends CedarMicroserviceApplication<Wor
 
   @Override
   public void runApp(WorkspaceServerConfiguration configuration, Environment environment) {
+    // Managed first, so that it is closed after everything that uses it
+    GraphDriver graphDriver = new GraphDriver();
+    environment.lifecycle().manage(graphDriver);
+
+    SchemaIndexManager schemaIndexManager = new SchemaIndexManager(configuration.getSchemaIndexes(), graphDriver);
+    if (schemaIndexManager.isEnabled()) {
+      schemaIndexManager.ensureIndexes();
+      environment.admin().addServlet("schema-indexes", new SchemaIndexServlet(schemaIndexManager))
+          .addMapping("/schema-indexes");
+      environment.healthChecks().register("schemaIndexes", new SchemaIndexHealthCheck(schemaIndexManager));
+    }
+
+    BinaryMappers binaryMappers = new BinaryMappers();
+    environment.jersey().register(new BinaryJacksonProvider(binaryMappers));
+    environment.jersey().register(new NodeListResponseWriter(environment.getObjectMapper(), binaryMappers));
+    environment.servlets().addFilter("binary-request-body", new BinaryRequestBodyFilter(binaryMappers))
+        .addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), true, "/*");
+
+    if (configuration.getRateLimit().isEnabled()) {
+      environment.jersey().register(new RateLimitFilter(new RateLimiter(configuration.getRateLimit(),
+          environment.metrics()), configuration.getRateLimit().isExemptApiKeys()));
+    }
+
+    String instanceId = configuration.getInvalidation().getInstanceId() != null ?
+        configuration.getInvalidation().getInstanceId() : UUID.randomUUID().toString();
+
+    AdaptiveConcurrencyLimiter backendLimiter = null;
+    if (configuration.getBackendLimiter().isEnabled()) {
+      backendLimiter = new AdaptiveConcurrencyLimiter(configuration.getBackendLimiter());
+      environment.metrics().register(MetricRegistry.name(AdaptiveConcurrencyLimiter.class, "limit"),
+          (Gauge<Integer>) backendLimiter::getLimit);
+      environment.metrics().register(MetricRegistry.name(AdaptiveConcurrencyLimiter.class, "inFlight"),
+          (Gauge<Integer>) backendLimiter::getInFlight);
+      environment.metrics().register(MetricRegistry.name(AdaptiveConcurrencyLimiter.class, "queueDepth"),
+          (Gauge<Integer>) backendLimiter::getQueueDepth);
+      environment.metrics().register(MetricRegistry.name(AdaptiveConcurrencyLimiter.class, "rejected"),
+          (Gauge<Long>) backendLimiter::getRejectedCount);
+      environment.metrics().register(MetricRegistry.name(AdaptiveConcurrencyLimiter.class, "shortLatency"),
+          (Gauge<Long>) backendLimiter::getShortLatency);
+      environment.metrics().register(MetricRegistry.name(AdaptiveConcurrencyLimiter.class, "longLatency"),
+          (Gauge<Long>) backendLimiter::getLongLatency);
+    }
+    environment.servlets().addFilter("request-endpoint", new RequestEndpointFilter())
+        .addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), true, "/*");
+    SlowCallRecorder slowCallRecorder = null;
+    if (configuration.getSlowCalls().isEnabled()) {
+      slowCallRecorder = new SlowCallRecorder(configuration.getSlowCalls(), environment.metrics());
+      environment.admin().addServlet("slow-calls", new SlowCallServlet(slowCallRecorder)).addMapping("/slow-calls");
+    }
+    RequestSessionScope requestSessionScope = null;
+    if (configuration.getSessionScope().isEnabled()) {
+      requestSessionScope = new RequestSessionScope(configuration.getSessionScope(), environment.metrics());
+      environment.servlets().addFilter("session-scope", new SessionScopeFilter(requestSessionScope))
+          .addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), true, "/*");
+      environment.lifecycle().manage(requestSessionScope);
+      environment.metrics().register(MetricRegistry.name(RequestSessionScope.class, "active"),
+          (Gauge<Integer>) requestSessionScope::getActive);
+    }
+    BackendSessions.initialize(backendLimiter, slowCallRecorder, requestSessionScope);
+
+    if (configuration.getVirtualThreads().isEnabled()) {
+      ExecutorService virtualThreads = VirtualThreads.newExecutor("workspace-request-");
+      if (virtualThreads == null) {
+        log.warn("Virtual threads are enabled but not available in this JVM, requests run on the Jetty threads");
+      } else {
+        VirtualThreadExecutor virtualThreadExecutor = new VirtualThreadExecutor(virtualThreads,
+            configuration.getVirtualThreads().getMaxInFlight(), requestSessionScope);
+        environment.jersey().register(new VirtualThreadExecutorProvider(virtualThreadExecutor));
+        environment.jersey().register(new VirtualThreadResources());
+        environment.lifecycle().manage(new ExecutorServiceManager(virtualThreads, Duration.seconds(30),
+            "virtual-threads"));
+        environment.metrics().register(MetricRegistry.name(VirtualThreadExecutor.class, "inFlight"),
+            (Gauge<Integer>) virtualThreadExecutor::getInFlight);
+      }
+    }
+
+    NodeEventBus nodeEventBus = new NodeEventBus();
+    InstanceCountIndex instanceCountIndex = new InstanceCountIndex(cedarConfig, configuration.getInstanceCounts());
+    nodeEventBus.register(instanceCountIndex);
+    environment.lifecycle().manage(instanceCountIndex);
+    environment.metrics().register(MetricRegistry.name(InstanceCountIndex.class, "templates"),
+        (Gauge<Integer>) instanceCountIndex::getCachedCount);
+    FolderStatisticsIndex folderStatisticsIndex = new FolderStatisticsIndex(cedarConfig,
+        configuration.getFolderStatistics());
+    nodeEventBus.register(folderStatisticsIndex);
+    environment.lifecycle().manage(folderStatisticsIndex);
+    InvalidationTransport invalidationTransport = InvalidationTransports.forConfig(configuration.getInvalidation());
+    ReadAccessIndex readAccessIndex = new ReadAccessIndex(configuration.getReadAccess(),
+        invalidationTransport != null ? graphDriver : null, environment.metrics());
+    if (readAccessIndex.isEnabled()) {
+      nodeEventBus.register(readAccessIndex);
+      environment.lifecycle().manage(readAccessIndex);
+      environment.metrics().register(MetricRegistry.name(ReadAccessIndex.class, "nodes"),
+          (Gauge<Integer>) readAccessIndex.getIndex()::getNodeCount);
+      environment.metrics().register(MetricRegistry.name(ReadAccessIndex.class, "sizeInBytes"),
+          (Gauge<Long>) readAccessIndex.getIndex()::getSizeInBytes);
+    }
+    NodeScan nodeScan = new NodeScan(cedarConfig, configuration.getNodeScan());
+    nodeEventBus.register(nodeScan);
+    NodeTextIndex nodeTextIndex = null;
+    if (configuration.getTextSearch().isEnabled()) {
+      nodeTextIndex = new NodeTextIndex(cedarConfig, configuration.getTextSearch(), nodeScan);
+      nodeEventBus.register(nodeTextIndex);
+      environment.lifecycle().manage(nodeTextIndex);
+      environment.admin().addTask(new RebuildTextIndexTask(nodeTextIndex));
+    }
+    NodeNameIndex nodeNameIndex = null;
+    if (configuration.getAutocomplete().isEnabled()) {
+      nodeNameIndex = new NodeNameIndex(cedarConfig, configuration.getAutocomplete(), nodeScan);
+      nodeEventBus.register(nodeNameIndex);
+      environment.lifecycle().manage(nodeNameIndex);
+      environment.metrics().register(MetricRegistry.name(NodeNameIndex.class, "nodes"),
+          (Gauge<Integer>) nodeNameIndex.getIndex()::size);
+    }
+    // Started after the indexes, so the scans they ask for at startup are one
+    environment.lifecycle().manage(nodeScan);
+    ChangeLog changeLog = new ChangeLog(instanceId, configuration.getChangeLog().getCapacity(),
+        configuration.getChangeLog().getRetention().toMilliseconds(),
+        configuration.getChangeLog().getSettleWindow().toMilliseconds());
+    nodeEventBus.register(changeLog);
+    FolderEventBroadcaster folderEventBroadcaster = new FolderEventBroadcaster(cedarConfig,
+        configuration.getFolderEvents());
+    nodeEventBus.register(folderEventBroadcaster);
+    environment.lifecycle().manage(folderEventBroadcaster);
+    environment.metrics().register(MetricRegistry.name(FolderEventBroadcaster.class, "subscribers"),
+        (Gauge<Integer>) folderEventBroadcaster::getSubscriberCount);
+    if (invalidationTransport != null) {
+      InvalidationBus invalidationBus = new InvalidationBus(instanceId, invalidationTransport,
+          configuration.getInvalidation(), environment.metrics());
+      invalidationBus.register(instanceCountIndex);
+      invalidationBus.register(folderStatisticsIndex);
+      if (readAccessIndex.isEnabled()) {
+        invalidationBus.register(readAccessIndex);
+      }
+      if (nodeTextIndex != null) {
+        invalidationBus.register(nodeTextIndex);
+      }
+      if (nodeNameIndex != null) {
+        invalidationBus.register(nodeNameIndex);
+      }
+      invalidationBus.register(nodeScan);
+      invalidationBus.register(changeLog);
+      invalidationBus.register(folderEventBroadcaster);
+      nodeEventBus.register(invalidationBus);
+      environment.lifecycle().manage(invalidationBus);
+    }
+
+    SingleFlight singleFlight = new SingleFlight(environment.metrics());
+
+    PermissionJobs permissionJobs = new PermissionJobs(configuration.getPermissionJobs(), graphDriver);
+    environment.lifecycle().manage(permissionJobs);
+    PermissionPropagation permissionPropagation = new PermissionPropagation(cedarConfig,
+        configuration.getPermissionJobs(), permissionJobs, nodeEventBus);
+
     environment.jersey().register(new IndexResource());
-    environment.jersey().register(new CommandResource(cedarConfig));
-    environment.jersey().register(new FolderContentsResource(cedarConfig));
-    environment.jersey().register(new FoldersResource(cedarConfig));
-    environment.jersey().register(new NodesResource(cedarConfig));
-    environment.jersey().register(new ResourcesResource(cedarConfig));
-    environment.jersey().register(new SearchResource(cedarConfig));
+    if (nodeNameIndex != null) {
+      environment.jersey().register(new AutocompleteResource(cedarConfig, configuration.getAutocomplete(),
+          nodeNameIndex, readAccessIndex));
+    }
+    environment.jersey().register(new ChangesResource(cedarConfig, configuration.getChangeLog(), changeLog,
+        readAccessIndex));
+    environment.jersey().register(new CommandResource(cedarConfig, nodeEventBus));
+    ExecutorService folderContentsExecutor = environment.lifecycle().executorService("folder-contents-%d")
+        .minThreads(configuration.getFolderContentsBatch().getParallelism())
+        .maxThreads(configuration.getFolderContentsBatch().getParallelism())
+        .build();
+    environment.jersey().register(new FolderContentsResource(cedarConfig, configuration, singleFlight,
+        readAccessIndex, folderContentsExecutor));
+    environment.jersey().register(new FoldersResource(cedarConfig, nodeEventBus, permissionPropagation));
+    environment.jersey().register(new FolderStatisticsResource(cedarConfig, folderStatisticsIndex, readAccessIndex));
+    environment.jersey().register(new FolderEventsResource(cedarConfig, folderEventBroadcaster, readAccessIndex));
+    environment.jersey().register(new NodesResource(cedarConfig, configuration.getNodeLookup(), readAccessIndex));
+    environment.jersey().register(new InstanceCountsResource(cedarConfig, configuration.getInstanceCounts(),
+        instanceCountIndex, readAccessIndex));
+    environment.jersey().register(new PermissionJobsResource(cedarConfig, permissionPropagation));
+    environment.jersey().register(new ResourcesResource(cedarConfig, nodeEventBus, singleFlight));
+    environment.jersey().register(new SearchResource(cedarConfig, singleFlight, nodeTextIndex, readAccessIndex));
     environment.jersey().register(new UsersResource(cedarConfig));
 
     final FolderServerHealthCheck healthCheck = new FolderServerHealthCheck();
     environment.healthChecks().register("message", healthCheck);
+
+    WorkspaceWarmup warmup = new WorkspaceWarmup(cedarConfig, configuration.getWarmup(),
+        environment.getObjectMapper(), environment.getApplicationContext().getContextPath());
+    warmup.addTask("instanceCounts", client -> {
+      if (!configuration.getWarmup().getTemplateIds().isEmpty()) {
+        client.post("/instance-counts",
+            Collections.singletonMap("templateIds", configuration.getWarmup().getTemplateIds()),
+            warmup.getAccept());
+      }
+    });
+    environment.lifecycle().manage(warmup);
+    environment.lifecycle().addServerLifecycleListener(warmup);
+    environment.healthChecks().register("warmup", new WarmupHealthCheck(warmup));
   }
 }
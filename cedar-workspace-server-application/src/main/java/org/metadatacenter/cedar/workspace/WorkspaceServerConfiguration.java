@@ -1,6 +1,175 @@
 package org.metadatacenter.cedar.workspace;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import org.metadatacenter.cedar.util.dw.CedarMicroserviceConfiguration;
+import org.metadatacenter.cedar.workspace.config.AutocompleteConfig;
+import org.metadatacenter.cedar.workspace.config.BackendLimiterConfig;
+import org.metadatacenter.cedar.workspace.config.ChangeLogConfig;
+import org.metadatacenter.cedar.workspace.config.FolderContentsBatchConfig;
+import org.metadatacenter.cedar.workspace.config.FolderEventsConfig;
+import org.metadatacenter.cedar.workspace.config.FolderStatisticsConfig;
+import org.metadatacenter.cedar.workspace.config.FolderTreeConfig;
+import org.metadatacenter.cedar.workspace.config.InstanceCountConfig;
+import org.metadatacenter.cedar.workspace.config.InvalidationConfig;
+import org.metadatacenter.cedar.workspace.config.NodeLookupConfig;
+import org.metadatacenter.cedar.workspace.config.NodeScanConfig;
+import org.metadatacenter.cedar.workspace.config.PermissionJobsConfig;
+import org.metadatacenter.cedar.workspace.config.RateLimitConfig;
+import org.metadatacenter.cedar.workspace.config.ReadAccessConfig;
+import org.metadatacenter.cedar.workspace.config.SchemaIndexConfig;
+import org.metadatacenter.cedar.workspace.config.SessionScopeConfig;
+import org.metadatacenter.cedar.workspace.config.SlowCallConfig;
+import org.metadatacenter.cedar.workspace.config.SnapshotConfig;
+import org.metadatacenter.cedar.workspace.config.TextSearchConfig;
+import org.metadatacenter.cedar.workspace.config.VirtualThreadsConfig;
+import org.metadatacenter.cedar.workspace.config.WarmupConfig;
 
 public class WorkspaceServerConfiguration extends CedarMicroserviceConfiguration {
+
+  @JsonProperty
+  private WarmupConfig warmup = new WarmupConfig();
+
+  @JsonProperty
+  private FolderTreeConfig folderTree = new FolderTreeConfig();
+
+  @JsonProperty
+  private FolderContentsBatchConfig folderContentsBatch = new FolderContentsBatchConfig();
+
+  @JsonProperty
+  private NodeLookupConfig nodeLookup = new NodeLookupConfig();
+
+  @JsonProperty
+  private InstanceCountConfig instanceCounts = new InstanceCountConfig();
+
+  @JsonProperty
+  private FolderStatisticsConfig folderStatistics = new FolderStatisticsConfig();
+
+  @JsonProperty
+  private ReadAccessConfig readAccess = new ReadAccessConfig();
+
+  @JsonProperty
+  private ChangeLogConfig changeLog = new ChangeLogConfig();
+
+  @JsonProperty
+  private FolderEventsConfig folderEvents = new FolderEventsConfig();
+
+  @JsonProperty
+  private InvalidationConfig invalidation = new InvalidationConfig();
+
+  @JsonProperty
+  private RateLimitConfig rateLimit = new RateLimitConfig();
+
+  @JsonProperty
+  private BackendLimiterConfig backendLimiter = new BackendLimiterConfig();
+
+  @JsonProperty
+  private SlowCallConfig slowCalls = new SlowCallConfig();
+
+  @JsonProperty
+  private SchemaIndexConfig schemaIndexes = new SchemaIndexConfig();
+
+  @JsonProperty
+  private TextSearchConfig textSearch = new TextSearchConfig();
+
+  @JsonProperty
+  private AutocompleteConfig autocomplete = new AutocompleteConfig();
+
+  @JsonProperty
+  private NodeScanConfig nodeScan = new NodeScanConfig();
+
+  @JsonProperty
+  private SnapshotConfig snapshot = new SnapshotConfig();
+
+  @JsonProperty
+  private SessionScopeConfig sessionScope = new SessionScopeConfig();
+
+  @JsonProperty
+  private VirtualThreadsConfig virtualThreads = new VirtualThreadsConfig();
+
+  @JsonProperty
+  private PermissionJobsConfig permissionJobs = new PermissionJobsConfig();
+
+  public WarmupConfig getWarmup() {
+    return warmup;
+  }
+
+  public FolderTreeConfig getFolderTree() {
+    return folderTree;
+  }
+
+  public FolderContentsBatchConfig getFolderContentsBatch() {
+    return folderContentsBatch;
+  }
+
+  public NodeLookupConfig getNodeLookup() {
+    return nodeLookup;
+  }
+
+  public InstanceCountConfig getInstanceCounts() {
+    return instanceCounts;
+  }
+
+  public FolderStatisticsConfig getFolderStatistics() {
+    return folderStatistics;
+  }
+
+  public ReadAccessConfig getReadAccess() {
+    return readAccess;
+  }
+
+  public ChangeLogConfig getChangeLog() {
+    return changeLog;
+  }
+
+  public FolderEventsConfig getFolderEvents() {
+    return folderEvents;
+  }
+
+  public InvalidationConfig getInvalidation() {
+    return invalidation;
+  }
+
+  public RateLimitConfig getRateLimit() {
+    return rateLimit;
+  }
+
+  public BackendLimiterConfig getBackendLimiter() {
+    return backendLimiter;
+  }
+
+  public SlowCallConfig getSlowCalls() {
+    return slowCalls;
+  }
+
+  public SchemaIndexConfig getSchemaIndexes() {
+    return schemaIndexes;
+  }
+
+  public TextSearchConfig getTextSearch() {
+    return textSearch;
+  }
+
+  public AutocompleteConfig getAutocomplete() {
+    return autocomplete;
+  }
+
+  public NodeScanConfig getNodeScan() {
+    return nodeScan;
+  }
+
+  public SnapshotConfig getSnapshot() {
+    return snapshot;
+  }
+
+  public SessionScopeConfig getSessionScope() {
+    return sessionScope;
+  }
+
+  public VirtualThreadsConfig getVirtualThreads() {
+    return virtualThreads;
+  }
+
+  public PermissionJobsConfig getPermissionJobs() {
+    return permissionJobs;
+  }
 }
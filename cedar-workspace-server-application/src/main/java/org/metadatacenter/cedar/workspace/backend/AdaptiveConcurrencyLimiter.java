@@ -0,0 +1,183 @@
+package org.metadatacenter.cedar.workspace.backend;
+
+import org.metadatacenter.cedar.workspace.config.BackendLimiterConfig;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Gradient concurrency limit for the backend. The latency of the calls is tracked as two moving averages: a short
+ * one that follows the current load, and a long one that serves as the baseline. While the short average stays
+ * within the tolerance of the baseline, every call moves the limit towards its value plus its square root; beyond
+ * that, towards its value times the ratio of the two, but not below half of it. There is no fixed latency
+ * threshold, so slow kinds of calls (searches, full listings) only count for the share of the traffic they make, and
+ * a latency that lasts becomes the new baseline over about longWindow calls. A failed call lowers the limit by the
+ * backoff ratio. The limit only grows while at least half of it is in use.
+ * <p>
+ * Calls over the limit wait in a bounded queue for a bounded time, and are rejected when either is exceeded.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final double tolerance;
+  private final double smoothing;
+  private final double shortFactor;
+  private final double longFactor;
+  private final double backoffRatio;
+  private final int maxQueueDepth;
+  private final long maxQueueWaitNanos;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition released = lock.newCondition();
+  private double limit;
+  private double shortLatency;
+  private double longLatency;
+  private int inFlight;
+  private int queued;
+  private long rejected;
+
+  public AdaptiveConcurrencyLimiter(BackendLimiterConfig config) {
+    this.minLimit = config.getMinLimit();
+    this.maxLimit = config.getMaxLimit();
+    this.tolerance = config.getTolerance();
+    this.smoothing = config.getSmoothing();
+    this.shortFactor = 2.0 / (config.getShortWindow() + 1);
+    this.longFactor = 2.0 / (config.getLongWindow() + 1);
+    this.backoffRatio = config.getBackoffRatio();
+    this.maxQueueDepth = config.getMaxQueueDepth();
+    this.maxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(config.getMaxQueueWait().toMilliseconds());
+    this.limit = Math.max(minLimit, Math.min(maxLimit, config.getInitialLimit()));
+  }
+
+  /**
+   * Waits for a slot. Returns false if the call has to be rejected.
+   */
+  public boolean acquire() throws InterruptedException {
+    lock.lock();
+    try {
+      if (inFlight < (int) limit) {
+        inFlight++;
+        return true;
+      }
+      if (queued >= maxQueueDepth) {
+        rejected++;
+        return false;
+      }
+      queued++;
+      try {
+        long remaining = maxQueueWaitNanos;
+        while (inFlight >= (int) limit) {
+          if (remaining <= 0) {
+            rejected++;
+            return false;
+          }
+          remaining = released.awaitNanos(remaining);
+        }
+        inFlight++;
+        return true;
+      } finally {
+        queued--;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void release(long latencyNanos, boolean failed) {
+    lock.lock();
+    try {
+      boolean limitInUse = inFlight >= (int) limit / 2;
+      inFlight--;
+      if (failed) {
+        limit = Math.max(minLimit, limit * backoffRatio);
+      } else {
+        update(latencyNanos, limitInUse);
+      }
+      released.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void update(long latencyNanos, boolean limitInUse) {
+    if (longLatency == 0) {
+      shortLatency = latencyNanos;
+      longLatency = latencyNanos;
+      return;
+    }
+    shortLatency += (latencyNanos - shortLatency) * shortFactor;
+    longLatency += (latencyNanos - longLatency) * longFactor;
+    // After a long overload the baseline has drifted up; bring it back down faster than its window would
+    if (longLatency > shortLatency * 2) {
+      longLatency *= 0.95;
+    }
+    if (!limitInUse) {
+      return;
+    }
+    double gradient = Math.max(0.5, Math.min(1.0, tolerance * longLatency / shortLatency));
+    double newLimit = limit * gradient + Math.sqrt(limit);
+    limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - smoothing) + newLimit * smoothing));
+  }
+
+  /**
+   * The average latency of the recent calls, in nanoseconds.
+   */
+  public long getShortLatency() {
+    lock.lock();
+    try {
+      return (long) shortLatency;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * The baseline latency, in nanoseconds.
+   */
+  public long getLongLatency() {
+    lock.lock();
+    try {
+      return (long) longLatency;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int getLimit() {
+    lock.lock();
+    try {
+      return (int) limit;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int getInFlight() {
+    lock.lock();
+    try {
+      return inFlight;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int getQueueDepth() {
+    lock.lock();
+    try {
+      return queued;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long getRejectedCount() {
+    lock.lock();
+    try {
+      return rejected;
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package org.metadatacenter.cedar.workspace.backend;
+
+import org.neo4j.driver.v1.exceptions.DatabaseException;
+import org.neo4j.driver.v1.exceptions.SessionExpiredException;
+import org.neo4j.driver.v1.exceptions.TransientException;
+
+import javax.ws.rs.ServiceUnavailableException;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs every call of a backend session under the concurrency limiter, and hands its duration to the slow call
+ * recorder. Either may be absent. Only the failures of the backend itself (unreachable, timed out, overloaded or
+ * failing server) lower the limit; errors caused by the request, such as a missing node or a violated constraint,
+ * do not.
+ */
+class BackendSessionHandler implements InvocationHandler {
+
+  private static final long RETRY_AFTER_SECONDS = 1;
+
+  private final Object session;
+  private final String userId;
+  private final AdaptiveConcurrencyLimiter limiter;
+  private final SlowCallRecorder recorder;
+
+  BackendSessionHandler(Object session, String userId, AdaptiveConcurrencyLimiter limiter,
+                        SlowCallRecorder recorder) {
+    this.session = session;
+    this.userId = userId;
+    this.limiter = limiter;
+    this.recorder = recorder;
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    if (method.getDeclaringClass() == Object.class) {
+      return method.invoke(session, args);
+    }
+    if (limiter != null) {
+      boolean acquired;
+      try {
+        acquired = limiter.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ServiceUnavailableException(RETRY_AFTER_SECONDS);
+      }
+      if (!acquired) {
+        throw new ServiceUnavailableException(RETRY_AFTER_SECONDS);
+      }
+    }
+    long start = System.nanoTime();
+    boolean failed = true;
+    boolean backendFailed = false;
+    try {
+      Object result = method.invoke(session, args);
+      failed = false;
+      return result;
+    } catch (InvocationTargetException e) {
+      backendFailed = isBackendFailure(e.getCause());
+      throw e.getCause();
+    } finally {
+      long duration = System.nanoTime() - start;
+      if (limiter != null) {
+        limiter.release(duration, backendFailed);
+      }
+      if (recorder != null) {
+        recorder.record(userId, method, args, duration, failed);
+      }
+    }
+  }
+
+  static boolean isBackendFailure(Throwable error) {
+    // The sessions wrap the driver exceptions, so the whole chain of causes is looked at
+    for (Throwable t = error; t != null; t = t.getCause() == t ? null : t.getCause()) {
+      if (t instanceof org.neo4j.driver.v1.exceptions.ServiceUnavailableException ||
+          t instanceof SessionExpiredException || t instanceof TransientException ||
+          t instanceof DatabaseException || t instanceof IOException || t instanceof TimeoutException) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
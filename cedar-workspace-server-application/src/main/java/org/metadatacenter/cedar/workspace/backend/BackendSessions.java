@@ -0,0 +1,84 @@
+package org.metadatacenter.cedar.workspace.backend;
+
+import org.metadatacenter.bridge.CedarDataServices;
+import org.metadatacenter.rest.context.CedarRequestContext;
+import org.metadatacenter.server.FolderServiceSession;
+import org.metadatacenter.server.PermissionServiceSession;
+import org.metadatacenter.server.UserServiceSession;
+import org.metadatacenter.server.VersionServiceSession;
+
+import java.lang.reflect.Proxy;
+import java.util.function.Supplier;
+
+/**
+ * Hands out the {@link CedarDataServices} sessions wrapped so that all their calls go through the backend
+ * concurrency limiter and the slow call recorder. Until either is installed the sessions are returned as they are.
+ * Within a request, the sessions of the request context are opened once and shared through the
+ * {@link RequestSessionScope}.
+ */
+public final class BackendSessions {
+
+  private static volatile AdaptiveConcurrencyLimiter limiter;
+  private static volatile SlowCallRecorder recorder;
+  private static volatile RequestSessionScope scope;
+
+  private BackendSessions() {
+  }
+
+  public static void initialize(AdaptiveConcurrencyLimiter backendLimiter, SlowCallRecorder slowCallRecorder,
+                                RequestSessionScope requestSessionScope) {
+    limiter = backendLimiter;
+    recorder = slowCallRecorder;
+    scope = requestSessionScope;
+  }
+
+  public static FolderServiceSession getFolderServiceSession(CedarRequestContext c) {
+    return scoped(FolderServiceSession.class, c,
+        () -> wrapped(FolderServiceSession.class, CedarDataServices.getFolderServiceSession(c), c));
+  }
+
+  public static PermissionServiceSession getPermissionServiceSession(CedarRequestContext c) {
+    return scoped(PermissionServiceSession.class, c,
+        () -> wrapped(PermissionServiceSession.class, CedarDataServices.getPermissionServiceSession(c), c));
+  }
+
+  public static VersionServiceSession getVersionServiceSession(CedarRequestContext c) {
+    return scoped(VersionServiceSession.class, c,
+        () -> wrapped(VersionServiceSession.class, CedarDataServices.getVersionServiceSession(c), c));
+  }
+
+  public static UserServiceSession getUserServiceSession(CedarRequestContext c) {
+    return scoped(UserServiceSession.class, c,
+        () -> wrapped(UserServiceSession.class, CedarDataServices.getUserServiceSession(c), c));
+  }
+
+  /**
+   * Opens a folder session that is not shared with the rest of the request, for work that the request hands to
+   * other threads, or that runs outside of any request.
+   */
+  public static FolderServiceSession openFolderServiceSession(CedarRequestContext c) {
+    return wrapped(FolderServiceSession.class, CedarDataServices.getFolderServiceSession(c), c);
+  }
+
+  public static PermissionServiceSession openPermissionServiceSession(CedarRequestContext c) {
+    return wrapped(PermissionServiceSession.class, CedarDataServices.getPermissionServiceSession(c), c);
+  }
+
+  private static <T> T scoped(Class<T> sessionInterface, CedarRequestContext c, Supplier<T> opener) {
+    RequestSessionScope requestSessionScope = scope;
+    SessionBundle bundle = requestSessionScope != null ? requestSessionScope.bundleFor(c) : null;
+    return bundle != null ? bundle.get(sessionInterface, opener) : opener.get();
+  }
+
+  private static <T> T wrapped(Class<T> sessionInterface, T session, CedarRequestContext c) {
+    AdaptiveConcurrencyLimiter backendLimiter = limiter;
+    SlowCallRecorder slowCallRecorder = recorder;
+    if ((backendLimiter == null && slowCallRecorder == null) || session == null) {
+      return session;
+    }
+    String userId = c.getCedarUser() != null ? c.getCedarUser().getId() : null;
+    return sessionInterface.cast(Proxy.newProxyInstance(sessionInterface.getClassLoader(),
+        new Class<?>[]{sessionInterface},
+        new BackendSessionHandler(session, userId, backendLimiter, slowCallRecorder)));
+  }
+}
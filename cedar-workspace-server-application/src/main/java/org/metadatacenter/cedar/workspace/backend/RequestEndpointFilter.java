@@ -0,0 +1,57 @@
+package org.metadatacenter.cedar.workspace.backend;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+
+/**
+ * Remembers the endpoint of the request being served on the current thread, so backend calls can be traced back to
+ * it. The endpoint is set around the whole request, including the writing of streamed responses, and cleared however
+ * the request ends.
+ */
+public class RequestEndpointFilter implements Filter {
+
+  private static final ThreadLocal<String> ENDPOINT = new ThreadLocal<>();
+
+  public static String currentEndpoint() {
+    return ENDPOINT.get();
+  }
+
+  /**
+   * Runs the part of a request that was handed to another thread with the endpoint of the request.
+   */
+  public static void runWithEndpoint(String endpoint, Runnable task) {
+    ENDPOINT.set(endpoint);
+    try {
+      task.run();
+    } finally {
+      ENDPOINT.remove();
+    }
+  }
+
+  @Override
+  public void init(FilterConfig filterConfig) {
+  }
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+    HttpServletRequest httpRequest = (HttpServletRequest) request;
+    String query = httpRequest.getQueryString();
+    ENDPOINT.set(httpRequest.getMethod() + " " + httpRequest.getRequestURI() + (query != null ? "?" + query : ""));
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      ENDPOINT.remove();
+    }
+  }
+
+  @Override
+  public void destroy() {
+  }
+}
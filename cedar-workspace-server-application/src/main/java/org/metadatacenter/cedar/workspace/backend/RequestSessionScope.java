@@ -0,0 +1,137 @@
+package org.metadatacenter.cedar.workspace.backend;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.lifecycle.Managed;
+import org.metadatacenter.cedar.workspace.config.SessionScopeConfig;
+import org.metadatacenter.rest.context.CedarRequestContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scopes {@link SessionBundle}s to requests. A request that reaches the backend opens one bundle, the first time it
+ * asks for a session, and drops it when it ends, after its response is written, since streamed responses read from
+ * the backend while they are written. Bundles held for longer than leakThreshold are reported as leaked.
+ * <p>
+ * Bundles are not pooled or bounded. The sessions of a bundle belong to the user of its request, so there is nothing
+ * idle that another request could reuse, and the calls they make to the backend are bounded by the
+ * {@link AdaptiveConcurrencyLimiter}.
+ * <p>
+ * Only sessions of the request context that opened the bundle are shared. Sessions opened with another context, such
+ * as the admin context of the indexes, or outside of a request, are not bundled.
+ */
+public class RequestSessionScope implements Managed {
+
+  private static final Logger log = LoggerFactory.getLogger(RequestSessionScope.class);
+
+  private static class Request {
+    private SessionBundle bundle;
+  }
+
+  private static final ThreadLocal<Request> CURRENT = new ThreadLocal<>();
+
+  private final SessionScopeConfig config;
+  private final Set<SessionBundle> active = ConcurrentHashMap.newKeySet();
+  private final Meter opened;
+  private final Meter reused;
+  private final Counter leaked;
+  private ScheduledExecutorService executor;
+
+  public RequestSessionScope(SessionScopeConfig config, MetricRegistry metrics) {
+    this.config = config;
+    this.opened = metrics.meter(MetricRegistry.name(RequestSessionScope.class, "opened"));
+    this.reused = metrics.meter(MetricRegistry.name(RequestSessionScope.class, "reused"));
+    this.leaked = metrics.counter(MetricRegistry.name(RequestSessionScope.class, "leaked"));
+  }
+
+  @Override
+  public void start() {
+    executor = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "session-leak-detector");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long interval = config.getLeakCheckInterval().toMilliseconds();
+    executor.scheduleWithFixedDelay(this::detectLeaks, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void stop() {
+    executor.shutdownNow();
+  }
+
+  public int getActive() {
+    return active.size();
+  }
+
+  /**
+   * Starts the request scope of the current thread.
+   */
+  public void openScope() {
+    CURRENT.set(new Request());
+  }
+
+  /**
+   * Ends the request scope of the current thread, dropping its bundle if it opened one.
+   */
+  public void closeScope() {
+    Request request = CURRENT.get();
+    CURRENT.remove();
+    if (request != null && request.bundle != null) {
+      active.remove(request.bundle);
+      if (request.bundle.isLeaked()) {
+        log.info("Leaked backend sessions of " + request.bundle.getOwner() + " released after " +
+            TimeUnit.NANOSECONDS.toMillis(request.bundle.getHeldNanos()) + " ms");
+      }
+    }
+  }
+
+  /**
+   * Runs the part of a request that was handed to another thread in a scope of its own.
+   */
+  public void runInScope(Runnable task) {
+    openScope();
+    try {
+      task.run();
+    } finally {
+      closeScope();
+    }
+  }
+
+  /**
+   * Returns the bundle of the current request for the context, opening it if needed, or null if sessions of the
+   * context are not bundled.
+   */
+  SessionBundle bundleFor(CedarRequestContext c) {
+    Request request = CURRENT.get();
+    if (request == null) {
+      return null;
+    }
+    if (request.bundle == null) {
+      String endpoint = RequestEndpointFilter.currentEndpoint();
+      request.bundle = new SessionBundle(c, endpoint != null ? endpoint : Thread.currentThread().getName(), opened,
+          reused);
+      active.add(request.bundle);
+    }
+    return request.bundle.getContext() == c ? request.bundle : null;
+  }
+
+  void detectLeaks() {
+    long threshold = config.getLeakThreshold().toNanoseconds();
+    for (SessionBundle bundle : active) {
+      if (!bundle.isLeaked() && bundle.getHeldNanos() > threshold) {
+        bundle.markLeaked();
+        leaked.inc();
+        log.warn("Backend sessions of " + bundle.getOwner() + " held for " +
+            TimeUnit.NANOSECONDS.toMillis(bundle.getHeldNanos()) + " ms");
+      }
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package org.metadatacenter.cedar.workspace.backend;
+
+import com.codahale.metrics.Meter;
+import org.metadatacenter.rest.context.CedarRequestContext;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * The backend sessions of one request, each opened the first time the request asks for it. Only used by the thread
+ * serving the request.
+ */
+class SessionBundle {
+
+  private final CedarRequestContext context;
+  private final String owner;
+  private final long openedAt = System.nanoTime();
+  private final Map<Class<?>, Object> sessions = new HashMap<>();
+  private final Meter opened;
+  private final Meter reused;
+  private volatile boolean leaked;
+
+  SessionBundle(CedarRequestContext context, String owner, Meter opened, Meter reused) {
+    this.context = context;
+    this.owner = owner;
+    this.opened = opened;
+    this.reused = reused;
+  }
+
+  CedarRequestContext getContext() {
+    return context;
+  }
+
+  String getOwner() {
+    return owner;
+  }
+
+  long getHeldNanos() {
+    return System.nanoTime() - openedAt;
+  }
+
+  boolean isLeaked() {
+    return leaked;
+  }
+
+  void markLeaked() {
+    leaked = true;
+  }
+
+  <T> T get(Class<T> sessionInterface, Supplier<T> opener) {
+    Object session = sessions.get(sessionInterface);
+    if (session == null) {
+      session = opener.get();
+      sessions.put(sessionInterface, session);
+      opened.mark();
+    } else {
+      reused.mark();
+    }
+    return sessionInterface.cast(session);
+  }
+}
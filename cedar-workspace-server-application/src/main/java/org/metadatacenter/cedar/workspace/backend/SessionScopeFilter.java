@@ -0,0 +1,40 @@
+package org.metadatacenter.cedar.workspace.backend;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import java.io.IOException;
+
+/**
+ * Opens the {@link RequestSessionScope} of every request, and closes it whatever way the request ends.
+ */
+public class SessionScopeFilter implements Filter {
+
+  private final RequestSessionScope sessionScope;
+
+  public SessionScopeFilter(RequestSessionScope sessionScope) {
+    this.sessionScope = sessionScope;
+  }
+
+  @Override
+  public void init(FilterConfig filterConfig) {
+  }
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+    sessionScope.openScope();
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      sessionScope.closeScope();
+    }
+  }
+
+  @Override
+  public void destroy() {
+  }
+}
@@ -0,0 +1,71 @@
+package org.metadatacenter.cedar.workspace.backend;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SlowCall {
+
+  private final long timestamp;
+  private final String endpoint;
+  private final String userId;
+  private final String call;
+  private final List<String> parameters;
+  private final long durationMicros;
+  private final boolean sampled;
+  private final boolean failed;
+
+  SlowCall(long timestamp, String endpoint, String userId, String call, List<String> parameters,
+           long durationMicros, boolean sampled, boolean failed) {
+    this.timestamp = timestamp;
+    this.endpoint = endpoint;
+    this.userId = userId;
+    this.call = call;
+    this.parameters = parameters;
+    this.durationMicros = durationMicros;
+    this.sampled = sampled;
+    this.failed = failed;
+  }
+
+  @JsonProperty("timestamp")
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  @JsonProperty("endpoint")
+  public String getEndpoint() {
+    return endpoint;
+  }
+
+  @JsonProperty("userId")
+  public String getUserId() {
+    return userId;
+  }
+
+  @JsonProperty("call")
+  public String getCall() {
+    return call;
+  }
+
+  @JsonProperty("parameters")
+  public List<String> getParameters() {
+    return parameters;
+  }
+
+  @JsonProperty("durationMicros")
+  public long getDurationMicros() {
+    return durationMicros;
+  }
+
+  @JsonProperty("sampled")
+  public boolean isSampled() {
+    return sampled;
+  }
+
+  @JsonProperty("failed")
+  public boolean isFailed() {
+    return failed;
+  }
+}
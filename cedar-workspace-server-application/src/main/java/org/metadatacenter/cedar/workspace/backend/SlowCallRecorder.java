@@ -0,0 +1,103 @@
+package org.metadatacenter.cedar.workspace.backend;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.metadatacenter.cedar.workspace.config.SlowCallConfig;
+import org.metadatacenter.util.json.JsonMapper;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the most recent backend calls that took longer than the threshold, plus a random sample of the others, in
+ * a fixed-size ring buffer. Each record names the session method, its parameters, the endpoint and the user that
+ * caused it. Only the calls that are kept pay for rendering their parameters.
+ */
+public class SlowCallRecorder {
+
+  private final long thresholdNanos;
+  private final double sampleRate;
+  private final int maxParameterLength;
+  private final SlowCall[] buffer;
+  private final Meter slow;
+  private final Meter sampled;
+  private int next;
+  private int size;
+
+  public SlowCallRecorder(SlowCallConfig config, MetricRegistry metrics) {
+    this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(config.getThreshold().toMilliseconds());
+    this.sampleRate = config.getSampleRate();
+    this.maxParameterLength = config.getMaxParameterLength();
+    this.buffer = new SlowCall[Math.max(1, config.getCapacity())];
+    this.slow = metrics.meter(MetricRegistry.name(SlowCallRecorder.class, "slow"));
+    this.sampled = metrics.meter(MetricRegistry.name(SlowCallRecorder.class, "sampled"));
+  }
+
+  public void record(String userId, Method method, Object[] args, long durationNanos, boolean failed) {
+    boolean isSlow = durationNanos >= thresholdNanos;
+    if (!isSlow && (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+      return;
+    }
+    (isSlow ? slow : sampled).mark();
+    SlowCall call = new SlowCall(System.currentTimeMillis(), RequestEndpointFilter.currentEndpoint(), userId,
+        method.getDeclaringClass().getSimpleName() + "." + method.getName(), render(args),
+        TimeUnit.NANOSECONDS.toMicros(durationNanos), !isSlow, failed);
+    synchronized (buffer) {
+      buffer[next] = call;
+      next = (next + 1) % buffer.length;
+      size = Math.min(size + 1, buffer.length);
+    }
+  }
+
+  /**
+   * Returns the recorded calls, most recent first.
+   */
+  public List<SlowCall> getCalls() {
+    List<SlowCall> calls = new ArrayList<>();
+    synchronized (buffer) {
+      for (int i = 1; i <= size; i++) {
+        calls.add(buffer[(next - i + buffer.length) % buffer.length]);
+      }
+    }
+    return calls;
+  }
+
+  public void clear() {
+    synchronized (buffer) {
+      next = 0;
+      size = 0;
+      Arrays.fill(buffer, null);
+    }
+  }
+
+  private List<String> render(Object[] args) {
+    if (args == null) {
+      return Collections.emptyList();
+    }
+    List<String> parameters = new ArrayList<>(args.length);
+    for (Object arg : args) {
+      String value = render(arg);
+      parameters.add(value.length() > maxParameterLength ? value.substring(0, maxParameterLength) + "..." : value);
+    }
+    return parameters;
+  }
+
+  private static String render(Object arg) {
+    if (arg == null || arg instanceof CharSequence || arg instanceof Number || arg instanceof Boolean ||
+        arg instanceof Enum || arg instanceof Optional) {
+      return String.valueOf(arg);
+    }
+    try {
+      return JsonMapper.MAPPER.writeValueAsString(arg);
+    } catch (JsonProcessingException | RuntimeException e) {
+      return String.valueOf(arg);
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package org.metadatacenter.cedar.workspace.backend;
+
+import org.metadatacenter.util.json.JsonMapper;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lists the recorded slow and sampled backend calls on the admin connector. DELETE empties the buffer.
+ */
+public class SlowCallServlet extends HttpServlet {
+
+  private final SlowCallRecorder recorder;
+
+  public SlowCallServlet(SlowCallRecorder recorder) {
+    this.recorder = recorder;
+  }
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    List<SlowCall> calls = recorder.getCalls();
+    Map<String, Object> r = new LinkedHashMap<>();
+    r.put("count", calls.size());
+    r.put("calls", calls);
+    resp.setContentType("application/json");
+    resp.setCharacterEncoding("UTF-8");
+    resp.setHeader("Cache-Control", "must-revalidate,no-cache,no-store");
+    JsonMapper.MAPPER.writeValue(resp.getOutputStream(), r);
+  }
+
+  @Override
+  protected void doDelete(HttpServletRequest req, HttpServletResponse resp) {
+    recorder.clear();
+    resp.setStatus(HttpServletResponse.SC_NO_CONTENT);
+  }
+}
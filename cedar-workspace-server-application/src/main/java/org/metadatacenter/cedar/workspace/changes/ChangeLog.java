@@ -0,0 +1,229 @@
+package org.metadatacenter.cedar.workspace.changes;
+
+import org.metadatacenter.cedar.workspace.event.NodeEvent;
+import org.metadatacenter.cedar.workspace.event.NodeEventListener;
+import org.metadatacenter.cedar.workspace.invalidation.InvalidationListener;
+import org.metadatacenter.cedar.workspace.invalidation.RemoteChange;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded in-memory log of the node events of the cluster, read by cursor. The events of this server arrive as node
+ * events, those of the other servers through the invalidation bus. Entries are dropped when the log is full or when
+ * they are older than the retention period.
+ * <p>
+ * Entries are ordered by the timestamp of their event, then by the id of the server that made it and its sequence
+ * number on that server, and a cursor is that triple. Every server orders the same events the same way, so a cursor
+ * returned by one server can be continued on any other. Entries are only served once they are older than the settle
+ * window, which leaves time for the remote events to arrive (and absorbs the clock skew between the servers): an
+ * event that arrives later than that can be missed by the clients that already read past it.
+ * <p>
+ * A cursor pointing to entries that were already dropped, or to a time before this server started, can not be
+ * continued: the client has to resync fully and start over from the cursor returned with that answer.
+ */
+public class ChangeLog implements NodeEventListener, InvalidationListener {
+
+  private static final String CURSOR_SEPARATOR = ".";
+  private static final int CURSOR_RADIX = 36;
+
+  private final String instanceId;
+  private final int capacity;
+  private final long retentionMillis;
+  private final long settleMillis;
+  private final LongSupplier clock;
+  private final long startedAt;
+  private final TreeMap<Position, ChangeLogEntry> entries = new TreeMap<>();
+  // The newest entry that was dropped, the cursors before it may have missed changes
+  private Position dropped;
+
+  public ChangeLog(String instanceId, int capacity, long retentionMillis, long settleMillis) {
+    this(instanceId, capacity, retentionMillis, settleMillis, System::currentTimeMillis);
+  }
+
+  ChangeLog(String instanceId, int capacity, long retentionMillis, long settleMillis, LongSupplier clock) {
+    this.instanceId = instanceId;
+    this.capacity = capacity;
+    this.retentionMillis = retentionMillis;
+    this.settleMillis = settleMillis;
+    this.clock = clock;
+    this.startedAt = clock.getAsLong();
+  }
+
+  @Override
+  public void onNodeEvent(NodeEvent event) {
+    append(instanceId, RemoteChange.of(event));
+  }
+
+  @Override
+  public void onInvalidation(Collection<String> nodeIds) {
+  }
+
+  @Override
+  public void onRemoteChange(String originId, RemoteChange change) {
+    append(originId, change);
+  }
+
+  /**
+   * Remote changes were lost: the cursors up to now may have missed some of them.
+   */
+  @Override
+  public synchronized void onResync() {
+    dropped = Position.at(clock.getAsLong());
+  }
+
+  public synchronized ChangeLogEntry append(String originId, RemoteChange change) {
+    Position position = new Position(change.getTimestamp(), originId, change.getSequence());
+    if (dropped != null && position.compareTo(dropped) <= 0) {
+      return null;
+    }
+    ChangeLogEntry entry = new ChangeLogEntry(position.toCursor(), change);
+    entries.put(position, entry);
+    while (entries.size() > capacity) {
+      dropped = entries.pollFirstEntry().getKey();
+    }
+    return entry;
+  }
+
+  /**
+   * Returns the cursor a client that just made a full sync should start from.
+   */
+  public String getCurrentCursor() {
+    return startOf(clock.getAsLong()).toCursor();
+  }
+
+  public synchronized Changes read(String since, int limit) {
+    long now = clock.getAsLong();
+    expire(now);
+    Position settled = Position.at(now - settleMillis);
+    Position sincePosition = since == null ? startOf(now) : Position.parse(since);
+    if (sincePosition == null || sincePosition.timestamp < startedAt ||
+        (dropped != null && sincePosition.compareTo(dropped) < 0)) {
+      return new Changes(new ArrayList<>(), startOf(now).toCursor(), false, true);
+    }
+    List<ChangeLogEntry> changes = new ArrayList<>();
+    Position last = sincePosition;
+    boolean hasMore = false;
+    for (Map.Entry<Position, ChangeLogEntry> entry : entries.tailMap(sincePosition, false).entrySet()) {
+      if (entry.getKey().compareTo(settled) > 0) {
+        break;
+      }
+      if (changes.size() == limit) {
+        hasMore = true;
+        break;
+      }
+      changes.add(entry.getValue());
+      last = entry.getKey();
+    }
+    // Everything up to the settle window has been read, the cursor can move up to it
+    if (!hasMore && last.compareTo(settled) < 0) {
+      last = settled;
+    }
+    return new Changes(changes, last.toCursor(), hasMore, false);
+  }
+
+  // The log does not know the events from before it started, a new cursor can not point before that
+  private Position startOf(long now) {
+    return Position.at(Math.max(now - settleMillis, startedAt));
+  }
+
+  private void expire(long now) {
+    while (!entries.isEmpty() && now - entries.firstKey().timestamp > retentionMillis) {
+      dropped = entries.pollFirstEntry().getKey();
+    }
+  }
+
+  /**
+   * The place of an entry in the log. A position without origin stands for the end of its millisecond, after all
+   * the entries that have the same timestamp.
+   */
+  private static class Position implements Comparable<Position> {
+
+    private final long timestamp;
+    private final String originId;
+    private final long sequence;
+
+    private Position(long timestamp, String originId, long sequence) {
+      this.timestamp = timestamp;
+      this.originId = originId;
+      this.sequence = sequence;
+    }
+
+    static Position at(long timestamp) {
+      return new Position(timestamp, null, 0);
+    }
+
+    static Position parse(String cursor) {
+      try {
+        int first = cursor.indexOf(CURSOR_SEPARATOR);
+        if (first < 0) {
+          return at(Long.parseLong(cursor, CURSOR_RADIX));
+        }
+        int last = cursor.lastIndexOf(CURSOR_SEPARATOR);
+        if (last == first) {
+          return null;
+        }
+        return new Position(Long.parseLong(cursor.substring(0, first), CURSOR_RADIX),
+            cursor.substring(first + 1, last), Long.parseLong(cursor.substring(last + 1), CURSOR_RADIX));
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+
+    String toCursor() {
+      String time = Long.toString(timestamp, CURSOR_RADIX);
+      if (originId == null) {
+        return time;
+      }
+      return time + CURSOR_SEPARATOR + originId + CURSOR_SEPARATOR + Long.toString(sequence, CURSOR_RADIX);
+    }
+
+    @Override
+    public int compareTo(Position other) {
+      int result = Long.compare(timestamp, other.timestamp);
+      if (result != 0) {
+        return result;
+      }
+      if (originId == null || other.originId == null) {
+        return originId == null ? (other.originId == null ? 0 : 1) : -1;
+      }
+      result = originId.compareTo(other.originId);
+      return result != 0 ? result : Long.compare(sequence, other.sequence);
+    }
+  }
+
+  public static class Changes {
+
+    private final List<ChangeLogEntry> entries;
+    private final String nextCursor;
+    private final boolean hasMore;
+    private final boolean resyncRequired;
+
+    Changes(List<ChangeLogEntry> entries, String nextCursor, boolean hasMore, boolean resyncRequired) {
+      this.entries = entries;
+      this.nextCursor = nextCursor;
+      this.hasMore = hasMore;
+      this.resyncRequired = resyncRequired;
+    }
+
+    public List<ChangeLogEntry> getEntries() {
+      return entries;
+    }
+
+    public String getNextCursor() {
+      return nextCursor;
+    }
+
+    public boolean hasMore() {
+      return hasMore;
+    }
+
+    public boolean isResyncRequired() {
+      return resyncRequired;
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package org.metadatacenter.cedar.workspace.changes;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.metadatacenter.cedar.workspace.invalidation.RemoteChange;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChangeLogEntry {
+
+  private final String cursor;
+  private final String type;
+  private final String id;
+  private final String nodeType;
+  private final String parentId;
+  private final String previousParentId;
+  private final String userId;
+  private final long timestamp;
+
+  ChangeLogEntry(String cursor, RemoteChange change) {
+    this.cursor = cursor;
+    this.type = change.getType();
+    this.id = change.getId();
+    this.nodeType = change.getNodeType();
+    this.parentId = change.getParentId();
+    this.previousParentId = change.getPreviousParentId();
+    this.userId = change.getUserId();
+    this.timestamp = change.getTimestamp();
+  }
+
+  @JsonProperty("cursor")
+  public String getCursor() {
+    return cursor;
+  }
+
+  @JsonProperty("type")
+  public String getType() {
+    return type;
+  }
+
+  @JsonProperty("@id")
+  public String getId() {
+    return id;
+  }
+
+  @JsonProperty("nodeType")
+  public String getNodeType() {
+    return nodeType;
+  }
+
+  @JsonProperty("parentId")
+  public String getParentId() {
+    return parentId;
+  }
+
+  @JsonProperty("previousParentId")
+  public String getPreviousParentId() {
+    return previousParentId;
+  }
+
+  @JsonProperty("userId")
+  public String getUserId() {
+    return userId;
+  }
+
+  @JsonProperty("timestamp")
+  public long getTimestamp() {
+    return timestamp;
+  }
+}
@@ -0,0 +1,75 @@
+package org.metadatacenter.cedar.workspace.codec;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_CBOR;
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_SMILE;
+
+/**
+ * Reads and writes any entity as Smile or CBOR, using the mappers from {@link BinaryMappers}.
+ */
+@Provider
+@Produces({APPLICATION_SMILE, APPLICATION_CBOR})
+@Consumes({APPLICATION_SMILE, APPLICATION_CBOR})
+public class BinaryJacksonProvider implements MessageBodyReader<Object>, MessageBodyWriter<Object> {
+
+  private final BinaryMappers binaryMappers;
+
+  public BinaryJacksonProvider(BinaryMappers binaryMappers) {
+    this.binaryMappers = binaryMappers;
+  }
+
+  @Override
+  public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+    return binaryMappers.forMediaType(mediaType) != null && !InputStream.class.isAssignableFrom(type);
+  }
+
+  @Override
+  public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                         MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException,
+      WebApplicationException {
+    ObjectMapper mapper = binaryMappers.forMediaType(mediaType);
+    JavaType javaType = mapper.getTypeFactory().constructType(genericType != null ? genericType : type);
+    return mapper.readValue(entityStream, javaType);
+  }
+
+  @Override
+  public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+    return binaryMappers.forMediaType(mediaType) != null && !OutputStream.class.isAssignableFrom(type);
+  }
+
+  @Override
+  public long getSize(Object o, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+    return -1;
+  }
+
+  @Override
+  public void writeTo(Object o, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                      MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException,
+      WebApplicationException {
+    ObjectMapper mapper = binaryMappers.forMediaType(mediaType);
+    JsonGenerator generator = mapper.getFactory().createGenerator(entityStream);
+    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    try {
+      mapper.writeValue(generator, o);
+    } finally {
+      generator.close();
+    }
+  }
+}
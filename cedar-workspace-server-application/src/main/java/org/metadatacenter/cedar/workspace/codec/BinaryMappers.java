@@ -0,0 +1,66 @@
+package org.metadatacenter.cedar.workspace.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.dropwizard.jackson.Jackson;
+
+import javax.ws.rs.core.MediaType;
+
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_CBOR_TYPE;
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_SMILE_TYPE;
+
+/**
+ * Pre-configured object mappers for the binary Jackson formats. They are built the same way as the Dropwizard JSON
+ * mapper, so entities serialize to the same logical structure in every format.
+ */
+public class BinaryMappers {
+
+  private final ObjectMapper smileMapper;
+  private final ObjectMapper cborMapper;
+
+  public BinaryMappers() {
+    this.smileMapper = Jackson.newObjectMapper(new SmileFactory());
+    this.cborMapper = Jackson.newObjectMapper(new CBORFactory());
+  }
+
+  public ObjectMapper getSmileMapper() {
+    return smileMapper;
+  }
+
+  public ObjectMapper getCborMapper() {
+    return cborMapper;
+  }
+
+  /**
+   * Returns the mapper for the given media type, or <code>null</code> if it is not a binary format we support.
+   */
+  public ObjectMapper forMediaType(MediaType mediaType) {
+    if (mediaType == null) {
+      return null;
+    }
+    if (sameType(APPLICATION_SMILE_TYPE, mediaType)) {
+      return smileMapper;
+    }
+    if (sameType(APPLICATION_CBOR_TYPE, mediaType)) {
+      return cborMapper;
+    }
+    return null;
+  }
+
+  private static boolean sameType(MediaType expected, MediaType actual) {
+    return expected.getType().equalsIgnoreCase(actual.getType())
+        && expected.getSubtype().equalsIgnoreCase(actual.getSubtype());
+  }
+
+  public ObjectMapper forContentType(String contentType) {
+    if (contentType == null) {
+      return null;
+    }
+    try {
+      return forMediaType(MediaType.valueOf(contentType));
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+}
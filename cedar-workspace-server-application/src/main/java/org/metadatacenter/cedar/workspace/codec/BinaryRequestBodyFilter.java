@@ -0,0 +1,201 @@
+package org.metadatacenter.cedar.workspace.codec;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.metadatacenter.util.json.JsonMapper;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * Decodes Smile and CBOR request bodies once, into the JSON tree the resources work on, and keeps it as a request
+ * attribute (see {@link #decodedBody(ServletRequest)}). Resources that read the tree get it without any JSON text
+ * in between. The request is passed on as a JSON request for the endpoints that still read their parameters
+ * through the request context (the folder and resource create and update endpoints, and the copy command);
+ * the tree is only written out as JSON text if one of them reads the body stream.
+ */
+public class BinaryRequestBodyFilter implements Filter {
+
+  private static final String DECODED_BODY = BinaryRequestBodyFilter.class.getName() + ".decodedBody";
+
+  private final BinaryMappers binaryMappers;
+
+  public BinaryRequestBodyFilter(BinaryMappers binaryMappers) {
+    this.binaryMappers = binaryMappers;
+  }
+
+  /**
+   * Returns the decoded binary body of the request, or null if the request did not have one.
+   */
+  public static JsonNode decodedBody(ServletRequest request) {
+    Object body = request.getAttribute(DECODED_BODY);
+    return body instanceof JsonNode ? (JsonNode) body : null;
+  }
+
+  @Override
+  public void init(FilterConfig filterConfig) {
+  }
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException,
+      ServletException {
+    ObjectMapper mapper = binaryMappers.forContentType(request.getContentType());
+    if (mapper == null) {
+      chain.doFilter(request, response);
+      return;
+    }
+    JsonNode body;
+    try {
+      body = mapper.readTree(request.getInputStream());
+    } catch (IOException e) {
+      ((HttpServletResponse) response).sendError(HttpServletResponse.SC_BAD_REQUEST,
+          "The request body can not be decoded as " + request.getContentType());
+      return;
+    }
+    if (body != null) {
+      request.setAttribute(DECODED_BODY, body);
+    }
+    chain.doFilter(new JsonBodyRequest((HttpServletRequest) request, body), response);
+  }
+
+  @Override
+  public void destroy() {
+  }
+
+  static class JsonBodyRequest extends HttpServletRequestWrapper {
+
+    private final JsonNode body;
+    private byte[] json;
+
+    JsonBodyRequest(HttpServletRequest request, JsonNode body) {
+      super(request);
+      this.body = body;
+    }
+
+    private byte[] json() throws IOException {
+      if (json == null) {
+        json = body == null ? new byte[0] : JsonMapper.MAPPER.writeValueAsBytes(body);
+      }
+      return json;
+    }
+
+    @Override
+    public String getContentType() {
+      return MediaType.APPLICATION_JSON;
+    }
+
+    // The length of the JSON text is not known until it is written, which most requests never need
+    @Override
+    public int getContentLength() {
+      return -1;
+    }
+
+    @Override
+    public long getContentLengthLong() {
+      return -1;
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+      return StandardCharsets.UTF_8.name();
+    }
+
+    @Override
+    public String getHeader(String name) {
+      if (HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(name)) {
+        return getContentType();
+      }
+      if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+        return null;
+      }
+      return super.getHeader(name);
+    }
+
+    @Override
+    public Enumeration<String> getHeaders(String name) {
+      if (HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(name)) {
+        return Collections.enumeration(Collections.singletonList(getContentType()));
+      }
+      if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+        return Collections.emptyEnumeration();
+      }
+      return super.getHeaders(name);
+    }
+
+    @Override
+    public Enumeration<String> getHeaderNames() {
+      List<String> names = new ArrayList<>();
+      for (String name : Collections.list(super.getHeaderNames())) {
+        if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+          names.add(name);
+        }
+      }
+      return Collections.enumeration(names);
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+      return new ByteArrayServletInputStream(json());
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+      return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(json()), StandardCharsets.UTF_8));
+    }
+  }
+
+  static class ByteArrayServletInputStream extends ServletInputStream {
+
+    private final ByteArrayInputStream in;
+
+    ByteArrayServletInputStream(byte[] body) {
+      this.in = new ByteArrayInputStream(body);
+    }
+
+    @Override
+    public int read() {
+      return in.read();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      return in.read(b, off, len);
+    }
+
+    @Override
+    public boolean isFinished() {
+      return in.available() == 0;
+    }
+
+    @Override
+    public boolean isReady() {
+      return true;
+    }
+
+    /**
+     * The whole body is already in memory, so the listener is told at once that it can be read, and that it has
+     * been read once the listener returns.
+     */
+    @Override
+    public void setReadListener(ReadListener readListener) {
+      try {
+        if (!isFinished()) {
+          readListener.onDataAvailable();
+        }
+        readListener.onAllDataRead();
+      } catch (IOException e) {
+        readListener.onError(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package org.metadatacenter.cedar.workspace.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+public class AutocompleteConfig {
+
+  @JsonProperty
+  private boolean enabled = true;
+
+  @JsonProperty
+  private int defaultLimit = 10;
+
+  @JsonProperty
+  private int maxLimit = 50;
+
+  @JsonProperty
+  private int maxCandidates = 200;
+
+  @JsonProperty
+  private int maxChecked = 5000;
+
+  @JsonProperty
+  private int maxScanned = 20000;
+
+  @JsonProperty
+  private Duration loadRetryInterval = Duration.seconds(30);
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public int getDefaultLimit() {
+    return defaultLimit;
+  }
+
+  public int getMaxLimit() {
+    return maxLimit;
+  }
+
+  public int getMaxCandidates() {
+    return maxCandidates;
+  }
+
+  public int getMaxChecked() {
+    return maxChecked;
+  }
+
+  public int getMaxScanned() {
+    return maxScanned;
+  }
+
+  public Duration getLoadRetryInterval() {
+    return loadRetryInterval;
+  }
+}
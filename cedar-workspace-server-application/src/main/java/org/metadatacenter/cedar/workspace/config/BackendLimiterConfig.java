@@ -0,0 +1,84 @@
+package org.metadatacenter.cedar.workspace.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+public class BackendLimiterConfig {
+
+  @JsonProperty
+  private boolean enabled = true;
+
+  @JsonProperty
+  private int initialLimit = 20;
+
+  @JsonProperty
+  private int minLimit = 4;
+
+  @JsonProperty
+  private int maxLimit = 200;
+
+  @JsonProperty
+  private double tolerance = 2.0;
+
+  @JsonProperty
+  private double smoothing = 0.2;
+
+  @JsonProperty
+  private int shortWindow = 10;
+
+  @JsonProperty
+  private int longWindow = 600;
+
+  @JsonProperty
+  private double backoffRatio = 0.9;
+
+  @JsonProperty
+  private int maxQueueDepth = 200;
+
+  @JsonProperty
+  private Duration maxQueueWait = Duration.seconds(2);
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public int getInitialLimit() {
+    return initialLimit;
+  }
+
+  public int getMinLimit() {
+    return minLimit;
+  }
+
+  public int getMaxLimit() {
+    return maxLimit;
+  }
+
+  public double getTolerance() {
+    return tolerance;
+  }
+
+  public double getSmoothing() {
+    return smoothing;
+  }
+
+  public int getShortWindow() {
+    return shortWindow;
+  }
+
+  public int getLongWindow() {
+    return longWindow;
+  }
+
+  public double getBackoffRatio() {
+    return backoffRatio;
+  }
+
+  public int getMaxQueueDepth() {
+    return maxQueueDepth;
+  }
+
+  public Duration getMaxQueueWait() {
+    return maxQueueWait;
+  }
+}
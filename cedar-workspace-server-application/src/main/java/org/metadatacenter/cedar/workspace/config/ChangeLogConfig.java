@@ -0,0 +1,42 @@
+package org.metadatacenter.cedar.workspace.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+public class ChangeLogConfig {
+
+  @JsonProperty
+  private int capacity = 100000;
+
+  @JsonProperty
+  private Duration retention = Duration.hours(24);
+
+  @JsonProperty
+  private Duration settleWindow = Duration.seconds(2);
+
+  @JsonProperty
+  private int defaultLimit = 100;
+
+  @JsonProperty
+  private int maxLimit = 1000;
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public Duration getRetention() {
+    return retention;
+  }
+
+  public Duration getSettleWindow() {
+    return settleWindow;
+  }
+
+  public int getDefaultLimit() {
+    return defaultLimit;
+  }
+
+  public int getMaxLimit() {
+    return maxLimit;
+  }
+}
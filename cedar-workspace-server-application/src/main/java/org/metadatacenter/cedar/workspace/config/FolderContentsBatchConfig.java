@@ -0,0 +1,20 @@
+package org.metadatacenter.cedar.workspace.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class FolderContentsBatchConfig {
+
+  @JsonProperty
+  private int maxFolders = 50;
+
+  @JsonProperty
+  private int parallelism = 4;
+
+  public int getMaxFolders() {
+    return maxFolders;
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+}
@@ -0,0 +1,35 @@
+package org.metadatacenter.cedar.workspace.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+public class FolderEventsConfig {
+
+  @JsonProperty
+  private int dispatchThreads = 2;
+
+  @JsonProperty
+  private int maxSubscribers = 5000;
+
+  @JsonProperty
+  private int maxQueuedEventsPerSubscriber = 64;
+
+  @JsonProperty
+  private Duration heartbeatInterval = Duration.seconds(30);
+
+  public int getDispatchThreads() {
+    return dispatchThreads;
+  }
+
+  public int getMaxSubscribers() {
+    return maxSubscribers;
+  }
+
+  public int getMaxQueuedEventsPerSubscriber() {
+    return maxQueuedEventsPerSubscriber;
+  }
+
+  public Duration getHeartbeatInterval() {
+    return heartbeatInterval;
+  }
+}
@@ -0,0 +1,41 @@
+package org.metadatacenter.cedar.workspace.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class FolderStatisticsConfig {
+
+  @JsonProperty
+  private int maxCachedFolders = 200000;
+
+  @JsonProperty
+  private int maxWalkNodes = 50000;
+
+  @JsonProperty
+  private int walkPageSize = 100;
+
+  @JsonProperty
+  private int walkThreads = 1;
+
+  @JsonProperty
+  private int maxQueuedWalks = 100;
+
+  public int getMaxCachedFolders() {
+    return maxCachedFolders;
+  }
+
+  public int getMaxWalkNodes() {
+    return maxWalkNodes;
+  }
+
+  public int getWalkPageSize() {
+    return walkPageSize;
+  }
+
+  public int getWalkThreads() {
+    return walkThreads;
+  }
+
+  public int getMaxQueuedWalks() {
+    return maxQueuedWalks;
+  }
+}
@@ -0,0 +1,34 @@
+package org.metadatacenter.cedar.workspace.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class FolderTreeConfig {
+
+  @JsonProperty
+  private int defaultDepth = 2;
+
+  @JsonProperty
+  private int maxDepth = 6;
+
+  @JsonProperty
+  private int maxChildrenPerFolder = 100;
+
+  @JsonProperty
+  private int maxNodes = 2000;
+
+  public int getDefaultDepth() {
+    return defaultDepth;
+  }
+
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  public int getMaxChildrenPerFolder() {
+    return maxChildrenPerFolder;
+  }
+
+  public int getMaxNodes() {
+    return maxNodes;
+  }
+}
@@ -0,0 +1,34 @@
+package org.metadatacenter.cedar.workspace.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class InstanceCountConfig {
+
+  @JsonProperty
+  private int maxTemplateIds = 200;
+
+  @JsonProperty
+  private int maxCachedTemplates = 100000;
+
+  @JsonProperty
+  private int loaderThreads = 2;
+
+  @JsonProperty
+  private int maxQueuedLoads = 1000;
+
+  public int getMaxTemplateIds() {
+    return maxTemplateIds;
+  }
+
+  public int getMaxCachedTemplates() {
+    return maxCachedTemplates;
+  }
+
+  public int getLoaderThreads() {
+    return loaderThreads;
+  }
+
+  public int getMaxQueuedLoads() {
+    return maxQueuedLoads;
+  }
+}
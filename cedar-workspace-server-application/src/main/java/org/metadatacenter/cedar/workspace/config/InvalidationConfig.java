@@ -0,0 +1,70 @@
+package org.metadatacenter.cedar.workspace.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class InvalidationConfig {
+
+  public static final String TRANSPORT_NONE = "none";
+  public static final String TRANSPORT_LOOPBACK = "loopback";
+  public static final String TRANSPORT_UDP = "udp";
+
+  @JsonProperty
+  private String transport = TRANSPORT_NONE;
+
+  @JsonProperty
+  private String instanceId;
+
+  @JsonProperty
+  private int bindPort = 9145;
+
+  @JsonProperty
+  private List<String> peers = new ArrayList<>();
+
+  @JsonProperty
+  private Duration heartbeatInterval = Duration.seconds(5);
+
+  @JsonProperty
+  private String sharedSecret;
+
+  @JsonProperty
+  private int replayBufferSize = 1024;
+
+  @JsonProperty
+  private int maxReplayAttempts = 3;
+
+  public String getTransport() {
+    return transport;
+  }
+
+  public String getInstanceId() {
+    return instanceId;
+  }
+
+  public int getBindPort() {
+    return bindPort;
+  }
+
+  public List<String> getPeers() {
+    return peers;
+  }
+
+  public Duration getHeartbeatInterval() {
+    return heartbeatInterval;
+  }
+
+  public String getSharedSecret() {
+    return sharedSecret;
+  }
+
+  public int getReplayBufferSize() {
+    return replayBufferSize;
+  }
+
+  public int getMaxReplayAttempts() {
+    return maxReplayAttempts;
+  }
+}
@@ -0,0 +1,13 @@
+package org.metadatacenter.cedar.workspace.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class NodeLookupConfig {
+
+  @JsonProperty
+  private int maxIds = 200;
+
+  public int getMaxIds() {
+    return maxIds;
+  }
+}
@@ -0,0 +1,13 @@
+package org.metadatacenter.cedar.workspace.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class NodeScanConfig {
+
+  @JsonProperty
+  private int pageSize = 1000;
+
+  public int getPageSize() {
+    return pageSize;
+  }
+}
@@ -0,0 +1,49 @@
+package org.metadatacenter.cedar.workspace.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+public class PermissionJobsConfig {
+
+  @JsonProperty
+  private int batchSize = 100;
+
+  @JsonProperty
+  private int maxRunningJobs = 2;
+
+  @JsonProperty
+  private int maxQueuedJobs = 50;
+
+  @JsonProperty
+  private Duration retention = Duration.hours(1);
+
+  @JsonProperty
+  private Duration saveInterval = Duration.seconds(5);
+
+  @JsonProperty
+  private Duration staleAfter = Duration.minutes(1);
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public int getMaxRunningJobs() {
+    return maxRunningJobs;
+  }
+
+  public int getMaxQueuedJobs() {
+    return maxQueuedJobs;
+  }
+
+  public Duration getRetention() {
+    return retention;
+  }
+
+  public Duration getSaveInterval() {
+    return saveInterval;
+  }
+
+  public Duration getStaleAfter() {
+    return staleAfter;
+  }
+}
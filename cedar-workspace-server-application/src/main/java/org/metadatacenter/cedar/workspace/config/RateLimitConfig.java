@@ -0,0 +1,65 @@
+package org.metadatacenter.cedar.workspace.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class RateLimitConfig {
+
+  @JsonProperty
+  private boolean enabled = false;
+
+  @JsonProperty
+  private boolean exemptApiKeys = true;
+
+  @JsonProperty
+  private int maxTrackedUsers = 10000;
+
+  @JsonProperty
+  private Map<String, EndpointLimitConfig> endpoints = new HashMap<>();
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Whether requests authorized with an API key, as the other CEDAR servers and the warmup send them, are let through
+   * without limits. They would otherwise all share the bucket of the one key they use.
+   */
+  public boolean isExemptApiKeys() {
+    return exemptApiKeys;
+  }
+
+  public int getMaxTrackedUsers() {
+    return maxTrackedUsers;
+  }
+
+  public Map<String, EndpointLimitConfig> getEndpoints() {
+    return endpoints;
+  }
+
+  public static class EndpointLimitConfig {
+
+    @JsonProperty
+    private double permitsPerSecond = 20;
+
+    @JsonProperty
+    private int burst = 40;
+
+    @JsonProperty
+    private int maxInFlight = 8;
+
+    public double getPermitsPerSecond() {
+      return permitsPerSecond;
+    }
+
+    public int getBurst() {
+      return burst;
+    }
+
+    public int getMaxInFlight() {
+      return maxInFlight;
+    }
+  }
+}
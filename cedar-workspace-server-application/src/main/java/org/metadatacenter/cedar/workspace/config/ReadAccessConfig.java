@@ -0,0 +1,49 @@
+package org.metadatacenter.cedar.workspace.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+public class ReadAccessConfig {
+
+  @JsonProperty
+  private Duration ttl = Duration.minutes(10);
+
+  @JsonProperty
+  private Duration sweepInterval = Duration.seconds(30);
+
+  @JsonProperty
+  private Duration groupCacheTtl = Duration.minutes(1);
+
+  @JsonProperty
+  private int maxCachedUsers = 10000;
+
+  @JsonProperty
+  private int loadBatchSize = 500;
+
+  @JsonProperty
+  private int maxTrackedChanges = 10000;
+
+  public Duration getTtl() {
+    return ttl;
+  }
+
+  public Duration getSweepInterval() {
+    return sweepInterval;
+  }
+
+  public Duration getGroupCacheTtl() {
+    return groupCacheTtl;
+  }
+
+  public int getMaxCachedUsers() {
+    return maxCachedUsers;
+  }
+
+  public int getLoadBatchSize() {
+    return loadBatchSize;
+  }
+
+  public int getMaxTrackedChanges() {
+    return maxTrackedChanges;
+  }
+}
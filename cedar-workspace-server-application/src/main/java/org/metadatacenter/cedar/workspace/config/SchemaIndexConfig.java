@@ -0,0 +1,65 @@
+package org.metadatacenter.cedar.workspace.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SchemaIndexConfig {
+
+  public static final String MODE_OFF = "off";
+  public static final String MODE_VERIFY = "verify";
+  public static final String MODE_CREATE = "create";
+  public static final String MODE_STRICT = "strict";
+
+  @JsonProperty
+  private String mode = MODE_VERIFY;
+
+  @JsonProperty
+  private List<IndexDefinition> required = new ArrayList<>();
+
+  @JsonProperty
+  private Duration stateCacheTtl = Duration.seconds(30);
+
+  public String getMode() {
+    return mode;
+  }
+
+  public Duration getStateCacheTtl() {
+    return stateCacheTtl;
+  }
+
+  public List<IndexDefinition> getRequired() {
+    return required;
+  }
+
+  public static class IndexDefinition {
+
+    @JsonProperty
+    private String label;
+
+    @JsonProperty
+    private List<String> properties = new ArrayList<>();
+
+    @JsonProperty
+    private boolean unique;
+
+    public String getLabel() {
+      return label;
+    }
+
+    public List<String> getProperties() {
+      return properties;
+    }
+
+    public boolean isUnique() {
+      return unique;
+    }
+
+    @Override
+    public String toString() {
+      return ":" + label + properties + (unique ? " unique" : "");
+    }
+  }
+}
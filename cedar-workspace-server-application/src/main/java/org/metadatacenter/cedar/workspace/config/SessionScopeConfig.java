@@ -0,0 +1,28 @@
+package org.metadatacenter.cedar.workspace.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+public class SessionScopeConfig {
+
+  @JsonProperty
+  private boolean enabled = true;
+
+  @JsonProperty
+  private Duration leakThreshold = Duration.seconds(60);
+
+  @JsonProperty
+  private Duration leakCheckInterval = Duration.seconds(10);
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public Duration getLeakThreshold() {
+    return leakThreshold;
+  }
+
+  public Duration getLeakCheckInterval() {
+    return leakCheckInterval;
+  }
+}
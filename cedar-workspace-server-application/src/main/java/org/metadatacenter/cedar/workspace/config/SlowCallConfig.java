@@ -0,0 +1,42 @@
+package org.metadatacenter.cedar.workspace.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+public class SlowCallConfig {
+
+  @JsonProperty
+  private boolean enabled = true;
+
+  @JsonProperty
+  private Duration threshold = Duration.milliseconds(500);
+
+  @JsonProperty
+  private double sampleRate = 0.001;
+
+  @JsonProperty
+  private int capacity = 500;
+
+  @JsonProperty
+  private int maxParameterLength = 512;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public Duration getThreshold() {
+    return threshold;
+  }
+
+  public double getSampleRate() {
+    return sampleRate;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public int getMaxParameterLength() {
+    return maxParameterLength;
+  }
+}
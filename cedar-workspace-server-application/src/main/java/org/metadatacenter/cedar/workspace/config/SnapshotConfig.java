@@ -0,0 +1,20 @@
+package org.metadatacenter.cedar.workspace.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class SnapshotConfig {
+
+  @JsonProperty
+  private int batchSize = 5000;
+
+  @JsonProperty
+  private int blockSize = 10000;
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public int getBlockSize() {
+    return blockSize;
+  }
+}
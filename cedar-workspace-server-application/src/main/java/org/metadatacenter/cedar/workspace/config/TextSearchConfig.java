@@ -0,0 +1,42 @@
+package org.metadatacenter.cedar.workspace.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+public class TextSearchConfig {
+
+  @JsonProperty
+  private boolean enabled = true;
+
+  @JsonProperty
+  private String directory;
+
+  @JsonProperty
+  private boolean rebuildOnStartup = false;
+
+  @JsonProperty
+  private Duration refreshInterval = Duration.seconds(1);
+
+  @JsonProperty
+  private int maxHits = 10000;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public String getDirectory() {
+    return directory;
+  }
+
+  public boolean isRebuildOnStartup() {
+    return rebuildOnStartup;
+  }
+
+  public Duration getRefreshInterval() {
+    return refreshInterval;
+  }
+
+  public int getMaxHits() {
+    return maxHits;
+  }
+}
@@ -0,0 +1,27 @@
+package org.metadatacenter.cedar.workspace.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * maxInFlight bounds the requests held by virtual threads, not the calls made to the backend. Those stay bounded by
+ * the backendLimiter: its gradient limit, between minLimit and maxLimit, caps the calls running, and up to
+ * maxQueueDepth more wait for at most maxQueueWait before they are answered with 503. Any other request on a virtual
+ * thread is either served without the backend (the in-memory indexes, writing a response) or waiting in that
+ * queue, so raising maxInFlight above maxLimit plus maxQueueDepth only lets more of those requests in.
+ */
+public class VirtualThreadsConfig {
+
+  @JsonProperty
+  private boolean enabled = false;
+
+  @JsonProperty
+  private int maxInFlight = 10000;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public int getMaxInFlight() {
+    return maxInFlight;
+  }
+}
@@ -0,0 +1,52 @@
+package org.metadatacenter.cedar.workspace.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class WarmupConfig {
+
+  @JsonProperty
+  private boolean enabled = true;
+
+  @JsonProperty
+  private List<String> folderIds = new ArrayList<>();
+
+  @JsonProperty
+  private List<String> resourceIds = new ArrayList<>();
+
+  @JsonProperty
+  private List<String> templateIds = new ArrayList<>();
+
+  @JsonProperty
+  private int iterations = 20;
+
+  @JsonProperty
+  private Duration timeLimit = Duration.minutes(2);
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public List<String> getFolderIds() {
+    return folderIds;
+  }
+
+  public List<String> getResourceIds() {
+    return resourceIds;
+  }
+
+  public List<String> getTemplateIds() {
+    return templateIds;
+  }
+
+  public int getIterations() {
+    return iterations;
+  }
+
+  public Duration getTimeLimit() {
+    return timeLimit;
+  }
+}
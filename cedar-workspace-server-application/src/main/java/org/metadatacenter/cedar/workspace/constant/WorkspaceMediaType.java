@@ -0,0 +1,15 @@
+package org.metadatacenter.cedar.workspace.constant;
+
+import javax.ws.rs.core.MediaType;
+
+public final class WorkspaceMediaType {
+
+  public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+  public static final MediaType APPLICATION_SMILE_TYPE = MediaType.valueOf(APPLICATION_SMILE);
+
+  public static final String APPLICATION_CBOR = "application/cbor";
+  public static final MediaType APPLICATION_CBOR_TYPE = MediaType.valueOf(APPLICATION_CBOR);
+
+  private WorkspaceMediaType() {
+  }
+}
@@ -0,0 +1,13 @@
+package org.metadatacenter.cedar.workspace.constant;
+
+public final class WorkspaceQueryParameters {
+
+  public static final String QP_FIELDS = "fields";
+  public static final String QP_DEPTH = "depth";
+  public static final String QP_SINCE = "since";
+  public static final String QP_PREFIX = "prefix";
+  public static final String QP_RECURSIVE = "recursive";
+
+  private WorkspaceQueryParameters() {
+  }
+}
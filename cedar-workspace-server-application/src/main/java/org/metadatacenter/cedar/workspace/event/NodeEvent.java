@@ -0,0 +1,147 @@
+package org.metadatacenter.cedar.workspace.event;
+
+import org.metadatacenter.exception.CedarException;
+import org.metadatacenter.model.CedarNodeType;
+import org.metadatacenter.model.folderserver.basic.FolderServerNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A change made to a node through this server. Besides the node id and type, the event carries whatever the
+ * handler had at hand: the parent folder (and the previous one for moves), the template of an instance and the node
+ * itself. When the handler does not know the parent folder, it can pass a resolver that looks it up the first time a
+ * listener asks for it, so that the lookup is only made when some listener needs it.
+ */
+public class NodeEvent {
+
+  /**
+   * Looks up the parent folder of the node of the event.
+   */
+  public interface ParentIdResolver {
+    String resolve() throws CedarException;
+  }
+
+  private static final Logger log = LoggerFactory.getLogger(NodeEvent.class);
+
+  private static final AtomicLong SEQUENCE = new AtomicLong();
+
+  private final NodeEventType type;
+  private final String id;
+  private final CedarNodeType nodeType;
+  private final long timestamp;
+  private final long sequence;
+  private String parentId;
+  private ParentIdResolver parentIdResolver;
+  private String previousParentId;
+  private String isBasedOn;
+  private FolderServerNode node;
+  private String userId;
+
+  private NodeEvent(NodeEventType type, String id, CedarNodeType nodeType) {
+    this.type = type;
+    this.id = id;
+    this.nodeType = nodeType;
+    this.timestamp = System.currentTimeMillis();
+    this.sequence = SEQUENCE.incrementAndGet();
+  }
+
+  public static NodeEvent of(NodeEventType type, String id, CedarNodeType nodeType) {
+    return new NodeEvent(type, id, nodeType);
+  }
+
+  public NodeEvent parentId(String parentId) {
+    this.parentId = parentId;
+    return this;
+  }
+
+  public NodeEvent parentIdResolver(ParentIdResolver parentIdResolver) {
+    this.parentIdResolver = parentIdResolver;
+    return this;
+  }
+
+  public NodeEvent previousParentId(String previousParentId) {
+    this.previousParentId = previousParentId;
+    return this;
+  }
+
+  public NodeEvent isBasedOn(String isBasedOn) {
+    this.isBasedOn = isBasedOn;
+    return this;
+  }
+
+  public NodeEvent node(FolderServerNode node) {
+    this.node = node;
+    return this;
+  }
+
+  public NodeEvent userId(String userId) {
+    this.userId = userId;
+    return this;
+  }
+
+  public NodeEventType getType() {
+    return type;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public CedarNodeType getNodeType() {
+    return nodeType;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  /**
+   * Returns the number of the event among the events of this server, which tells apart the events that have the same
+   * timestamp.
+   */
+  public long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * Returns the parent folder of the node, looking it up with the resolver of the event if needed. Listeners are
+   * called on the thread of the request that published the event, which is where the resolver can run.
+   */
+  public String getParentId() {
+    if (parentId == null && parentIdResolver != null) {
+      ParentIdResolver resolver = parentIdResolver;
+      parentIdResolver = null;
+      try {
+        parentId = resolver.resolve();
+      } catch (CedarException | RuntimeException e) {
+        log.warn("Error while looking up the parent of " + id, e);
+      }
+    }
+    return parentId;
+  }
+
+  /**
+   * Returns the parent folder of the node if the handler passed it, without looking it up.
+   */
+  public String getKnownParentId() {
+    return parentId;
+  }
+
+  public String getPreviousParentId() {
+    return previousParentId;
+  }
+
+  public String getIsBasedOn() {
+    return isBasedOn;
+  }
+
+  public FolderServerNode getNode() {
+    return node;
+  }
+
+  public String getUserId() {
+    return userId;
+  }
+}
@@ -0,0 +1,33 @@
+package org.metadatacenter.cedar.workspace.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Delivers the node events published by the write handlers to the registered listeners, synchronously and in
+ * registration order. A failing listener is logged and does not affect the request or the other listeners.
+ */
+public class NodeEventBus {
+
+  private static final Logger log = LoggerFactory.getLogger(NodeEventBus.class);
+
+  private final List<NodeEventListener> listeners = new CopyOnWriteArrayList<>();
+
+  public void register(NodeEventListener listener) {
+    listeners.add(listener);
+  }
+
+  public void publish(NodeEvent event) {
+    for (NodeEventListener listener : listeners) {
+      try {
+        listener.onNodeEvent(event);
+      } catch (RuntimeException e) {
+        log.error("Error while delivering " + event.getType().getValue() + " event of " + event.getId() + " to "
+            + listener.getClass().getSimpleName(), e);
+      }
+    }
+  }
+}
@@ -0,0 +1,7 @@
+package org.metadatacenter.cedar.workspace.event;
+
+public interface NodeEventListener {
+
+  void onNodeEvent(NodeEvent event);
+
+}
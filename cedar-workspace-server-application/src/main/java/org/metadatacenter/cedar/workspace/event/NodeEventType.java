@@ -0,0 +1,32 @@
+package org.metadatacenter.cedar.workspace.event;
+
+public enum NodeEventType {
+
+  CREATED("created"),
+  UPDATED("updated"),
+  MOVED("moved"),
+  DELETED("deleted"),
+  PUBLISHED("published"),
+  OPENED("opened"),
+  CLOSED("closed"),
+  PERMISSIONS_CHANGED("permissionsChanged");
+
+  private final String value;
+
+  NodeEventType(String value) {
+    this.value = value;
+  }
+
+  public String getValue() {
+    return value;
+  }
+
+  public static NodeEventType forValue(String value) {
+    for (NodeEventType type : values()) {
+      if (type.value.equals(value)) {
+        return type;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,83 @@
+package org.metadatacenter.cedar.workspace.execution;
+
+import org.metadatacenter.cedar.workspace.backend.RequestEndpointFilter;
+import org.metadatacenter.cedar.workspace.backend.RequestSessionScope;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the suspended resource methods handed over by Jersey on virtual threads. The endpoint of the request goes with
+ * the task, and the task gets its own session scope, which stays open while the response is written, since Jersey
+ * writes it on the thread that resumes the request. A task submitted while maxInFlight tasks are already running on
+ * virtual threads, or once the virtual threads are shut down, runs on the calling Jetty thread instead.
+ */
+public class VirtualThreadExecutor extends AbstractExecutorService {
+
+  private final ExecutorService virtualThreads;
+  private final int maxInFlight;
+  private final RequestSessionScope sessionScope;
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  public VirtualThreadExecutor(ExecutorService virtualThreads, int maxInFlight, RequestSessionScope sessionScope) {
+    this.virtualThreads = virtualThreads;
+    this.maxInFlight = maxInFlight;
+    this.sessionScope = sessionScope;
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  @Override
+  public void execute(Runnable task) {
+    if (inFlight.incrementAndGet() > maxInFlight) {
+      inFlight.decrementAndGet();
+      task.run();
+      return;
+    }
+    String endpoint = RequestEndpointFilter.currentEndpoint();
+    Runnable scoped = sessionScope != null ? () -> sessionScope.runInScope(task) : task;
+    try {
+      virtualThreads.execute(() -> {
+        try {
+          RequestEndpointFilter.runWithEndpoint(endpoint, scoped);
+        } finally {
+          inFlight.decrementAndGet();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      inFlight.decrementAndGet();
+      task.run();
+    }
+  }
+
+  @Override
+  public void shutdown() {
+    virtualThreads.shutdown();
+  }
+
+  @Override
+  public List<Runnable> shutdownNow() {
+    return virtualThreads.shutdownNow();
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return virtualThreads.isShutdown();
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return virtualThreads.isTerminated();
+  }
+
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return virtualThreads.awaitTermination(timeout, unit);
+  }
+}
@@ -0,0 +1,29 @@
+package org.metadatacenter.cedar.workspace.execution;
+
+import org.glassfish.jersey.server.ManagedAsyncExecutor;
+import org.glassfish.jersey.spi.ExecutorServiceProvider;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Gives Jersey the {@link VirtualThreadExecutor} for the resource methods marked managed async. The executor is shut
+ * down with the application, not by Jersey.
+ */
+@ManagedAsyncExecutor
+public class VirtualThreadExecutorProvider implements ExecutorServiceProvider {
+
+  private final VirtualThreadExecutor executor;
+
+  public VirtualThreadExecutorProvider(VirtualThreadExecutor executor) {
+    this.executor = executor;
+  }
+
+  @Override
+  public ExecutorService getExecutorService() {
+    return executor;
+  }
+
+  @Override
+  public void dispose(ExecutorService executorService) {
+  }
+}
@@ -0,0 +1,52 @@
+package org.metadatacenter.cedar.workspace.execution;
+
+import org.glassfish.jersey.media.sse.SseFeature;
+import org.glassfish.jersey.server.model.ModelProcessor;
+import org.glassfish.jersey.server.model.Resource;
+import org.glassfish.jersey.server.model.ResourceMethod;
+import org.glassfish.jersey.server.model.ResourceModel;
+
+import javax.ws.rs.core.Configuration;
+
+/**
+ * Marks the resource methods managed async, so that Jersey suspends their requests, which puts the servlet request in
+ * async mode and gives the Jetty thread back, and invokes them on the {@link VirtualThreadExecutorProvider} executor.
+ * The response is written by the virtual thread when it resumes the request, and Jersey completes the async context.
+ * Nothing runs the servlet filter chain outside of the container.
+ * <p>
+ * Event streams and methods that suspend their requests themselves keep their own async handling.
+ */
+public class VirtualThreadResources implements ModelProcessor {
+
+  @Override
+  public ResourceModel processResourceModel(ResourceModel resourceModel, Configuration configuration) {
+    ResourceModel.Builder builder = new ResourceModel.Builder(false);
+    for (Resource resource : resourceModel.getResources()) {
+      builder.addResource(managedAsync(resource));
+    }
+    return builder.build();
+  }
+
+  @Override
+  public ResourceModel processSubResource(ResourceModel subResourceModel, Configuration configuration) {
+    return subResourceModel;
+  }
+
+  static Resource managedAsync(Resource resource) {
+    Resource.Builder builder = Resource.builder(resource);
+    for (ResourceMethod method : resource.getResourceMethods()) {
+      if (!method.isManagedAsyncDeclared() && !method.isSuspendDeclared() && !isEventStream(method)) {
+        builder.updateMethod(method).managedAsync().build();
+      }
+    }
+    for (Resource child : resource.getChildResources()) {
+      builder.replaceChildResource(child, managedAsync(child));
+    }
+    return builder.build();
+  }
+
+  private static boolean isEventStream(ResourceMethod method) {
+    return method.getProducedTypes().stream().anyMatch(type -> !type.isWildcardType() && !type.isWildcardSubtype() &&
+        SseFeature.SERVER_SENT_EVENTS_TYPE.isCompatible(type));
+  }
+}
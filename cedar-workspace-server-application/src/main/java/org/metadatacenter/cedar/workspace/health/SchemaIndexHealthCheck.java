@@ -0,0 +1,44 @@
+package org.metadatacenter.cedar.workspace.health;
+
+import com.codahale.metrics.health.HealthCheck;
+import org.metadatacenter.cedar.workspace.schema.SchemaIndexManager;
+import org.metadatacenter.cedar.workspace.schema.SchemaIndexState;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Unhealthy when a required index is not online, unless the indexes are only verified, in which case the problem is
+ * reported in the message of a healthy result.
+ */
+public class SchemaIndexHealthCheck extends HealthCheck {
+
+  private final SchemaIndexManager manager;
+
+  public SchemaIndexHealthCheck(SchemaIndexManager manager) {
+    this.manager = manager;
+  }
+
+  @Override
+  protected Result check() throws Exception {
+    List<String> notOnline;
+    try {
+      notOnline = manager.getStates().stream()
+          .filter(s -> !s.isOnline())
+          .map(s -> ":" + s.getLabel() + s.getProperties() + " " + s.getState())
+          .collect(Collectors.toList());
+    } catch (RuntimeException e) {
+      if (manager.isVerifyOnly()) {
+        return Result.healthy("Unable to read the indexes of the graph: " + e.getMessage());
+      }
+      throw e;
+    }
+    if (notOnline.isEmpty()) {
+      return Result.healthy();
+    }
+    if (manager.isVerifyOnly()) {
+      return Result.healthy("Indexes not online: " + notOnline);
+    }
+    return Result.unhealthy("Indexes not online: " + notOnline);
+  }
+}
@@ -0,0 +1,24 @@
+package org.metadatacenter.cedar.workspace.health;
+
+import com.codahale.metrics.health.HealthCheck;
+import org.metadatacenter.cedar.workspace.warmup.WorkspaceWarmup;
+
+public class WarmupHealthCheck extends HealthCheck {
+
+  private final WorkspaceWarmup warmup;
+
+  public WarmupHealthCheck(WorkspaceWarmup warmup) {
+    this.warmup = warmup;
+  }
+
+  @Override
+  protected Result check() throws Exception {
+    if (warmup.isFinished()) {
+      return Result.healthy();
+    }
+    if (warmup.isTimeLimitExpired()) {
+      return Result.healthy("Warmup time limit expired before the warmup finished");
+    }
+    return Result.unhealthy("Not ready, warmup in progress");
+  }
+}
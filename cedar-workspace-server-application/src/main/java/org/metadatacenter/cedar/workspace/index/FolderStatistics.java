@@ -0,0 +1,104 @@
+package org.metadatacenter.cedar.workspace.index;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.metadatacenter.model.CedarNodeType;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Aggregate counters of everything below a folder. Instances are immutable, every change produces a new one.
+ */
+public final class FolderStatistics {
+
+  public static final FolderStatistics EMPTY = new FolderStatistics(0, new EnumMap<>(CedarNodeType.class), null);
+
+  private final long descendantFolderCount;
+  private final Map<CedarNodeType, Long> descendantResourceCounts;
+  private final Long lastUpdatedOnTS;
+
+  private FolderStatistics(long descendantFolderCount, Map<CedarNodeType, Long> descendantResourceCounts,
+                           Long lastUpdatedOnTS) {
+    this.descendantFolderCount = descendantFolderCount;
+    this.descendantResourceCounts = descendantResourceCounts;
+    this.lastUpdatedOnTS = lastUpdatedOnTS;
+  }
+
+  @JsonProperty("descendantFolderCount")
+  public long getDescendantFolderCount() {
+    return descendantFolderCount;
+  }
+
+  @JsonProperty("descendantResourceCount")
+  public long getDescendantResourceCount() {
+    long total = 0;
+    for (Long count : descendantResourceCounts.values()) {
+      total += count;
+    }
+    return total;
+  }
+
+  @JsonProperty("descendantResourceCounts")
+  public Map<String, Long> getDescendantResourceCountsByValue() {
+    Map<String, Long> byValue = new LinkedHashMap<>();
+    for (Map.Entry<CedarNodeType, Long> entry : descendantResourceCounts.entrySet()) {
+      byValue.put(entry.getKey().getValue(), entry.getValue());
+    }
+    return byValue;
+  }
+
+  public Map<CedarNodeType, Long> getDescendantResourceCounts() {
+    return Collections.unmodifiableMap(descendantResourceCounts);
+  }
+
+  @JsonProperty("lastUpdatedOnTS")
+  public Long getLastUpdatedOnTS() {
+    return lastUpdatedOnTS;
+  }
+
+  public FolderStatistics plusFolders(long delta) {
+    return new FolderStatistics(Math.max(0, descendantFolderCount + delta), descendantResourceCounts,
+        lastUpdatedOnTS);
+  }
+
+  public FolderStatistics plusResources(CedarNodeType nodeType, long delta) {
+    Map<CedarNodeType, Long> counts = copyCounts();
+    long count = Math.max(0, counts.getOrDefault(nodeType, 0L) + delta);
+    if (count == 0) {
+      counts.remove(nodeType);
+    } else {
+      counts.put(nodeType, count);
+    }
+    return new FolderStatistics(descendantFolderCount, counts, lastUpdatedOnTS);
+  }
+
+  public FolderStatistics plus(FolderStatistics other, long sign) {
+    Map<CedarNodeType, Long> counts = copyCounts();
+    for (Map.Entry<CedarNodeType, Long> entry : other.descendantResourceCounts.entrySet()) {
+      long count = Math.max(0, counts.getOrDefault(entry.getKey(), 0L) + sign * entry.getValue());
+      if (count == 0) {
+        counts.remove(entry.getKey());
+      } else {
+        counts.put(entry.getKey(), count);
+      }
+    }
+    FolderStatistics sum = new FolderStatistics(Math.max(0, descendantFolderCount + sign *
+        other.descendantFolderCount), counts, lastUpdatedOnTS);
+    return sign > 0 ? sum.touchedAt(other.lastUpdatedOnTS) : sum;
+  }
+
+  public FolderStatistics touchedAt(Long timestampTS) {
+    if (timestampTS == null || (lastUpdatedOnTS != null && lastUpdatedOnTS >= timestampTS)) {
+      return this;
+    }
+    return new FolderStatistics(descendantFolderCount, descendantResourceCounts, timestampTS);
+  }
+
+  private Map<CedarNodeType, Long> copyCounts() {
+    Map<CedarNodeType, Long> counts = new EnumMap<>(CedarNodeType.class);
+    counts.putAll(descendantResourceCounts);
+    return counts;
+  }
+}
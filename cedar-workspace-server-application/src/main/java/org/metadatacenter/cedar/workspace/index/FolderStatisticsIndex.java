@@ -0,0 +1,458 @@
+package org.metadatacenter.cedar.workspace.index;
+
+import io.dropwizard.lifecycle.Managed;
+import org.metadatacenter.bridge.CedarDataServices;
+import org.metadatacenter.cedar.workspace.backend.BackendSessions;
+import org.metadatacenter.cedar.workspace.config.FolderStatisticsConfig;
+import org.metadatacenter.cedar.workspace.event.NodeEvent;
+import org.metadatacenter.cedar.workspace.event.NodeEventListener;
+import org.metadatacenter.cedar.workspace.event.NodeEventType;
+import org.metadatacenter.cedar.workspace.invalidation.InvalidationListener;
+import org.metadatacenter.cedar.workspace.invalidation.RemoteChange;
+import org.metadatacenter.config.CedarConfig;
+import org.metadatacenter.exception.CedarException;
+import org.metadatacenter.model.CedarNodeType;
+import org.metadatacenter.model.folderserver.extract.FolderServerNodeExtract;
+import org.metadatacenter.rest.context.CedarRequestContext;
+import org.metadatacenter.rest.context.CedarRequestContextFactory;
+import org.metadatacenter.server.FolderServiceSession;
+import org.metadatacenter.util.http.PagedSortedTypedQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+/**
+ * Per-folder descendant statistics. The statistics of a folder are computed by walking its subtree on a background
+ * pool the first time they are asked for, and are reported as pending until then; the walk caches the statistics of
+ * every folder below it, along with their parents, and adds up the cached statistics of the subfolders instead of
+ * walking them again. A walk stops after <code>maxWalkNodes</code> nodes, keeping the folders whose subtree it fully
+ * walked, and the next pass goes on from them; a folder is reported as too large only when a pass caches nothing new.
+ * From then on the node events of this server, and those of other instances, are applied to the cached folder and all
+ * of its cached ancestors, so reads are a single map lookup. A remote change that does not tell where it happened
+ * drops the statistics of the touched folders and their ancestors. A change made during a walk drops the walked
+ * statistics of the touched folders and their ancestors only. Statistics cover all descendants, regardless of who
+ * can read them.
+ */
+public class FolderStatisticsIndex implements NodeEventListener, InvalidationListener, Managed {
+
+  /**
+   * A child of a folder, as far as the statistics are concerned.
+   */
+  public static final class Child {
+
+    private final String id;
+    private final CedarNodeType type;
+    private final Long lastUpdatedOnTS;
+
+    public Child(String id, CedarNodeType type, Long lastUpdatedOnTS) {
+      this.id = id;
+      this.type = type;
+      this.lastUpdatedOnTS = lastUpdatedOnTS;
+    }
+  }
+
+  /**
+   * Reads a page of the children of a folder from the backend, every version and publication status included.
+   */
+  public interface ContentsSource {
+    List<Child> page(String folderId, int limit, int offset) throws CedarException;
+  }
+
+  private static final Logger log = LoggerFactory.getLogger(FolderStatisticsIndex.class);
+
+  private final FolderStatisticsConfig config;
+  private final ContentsSource source;
+  private final Map<String, FolderStatistics> statistics = new ConcurrentHashMap<>();
+  private final Map<String, String> parents = new ConcurrentHashMap<>();
+  private final Set<String> tooLarge = ConcurrentHashMap.newKeySet();
+  private final Set<String> walking = ConcurrentHashMap.newKeySet();
+  // The folders touched by the changes made while a walk runs, per running walk
+  private final List<Set<String>> touchedDuringWalks = new ArrayList<>();
+  private final Object lock = new Object();
+  private ThreadPoolExecutor executor;
+
+  public FolderStatisticsIndex(CedarConfig cedarConfig, FolderStatisticsConfig config) {
+    this(config, new BackendContentsSource(cedarConfig));
+  }
+
+  FolderStatisticsIndex(FolderStatisticsConfig config, ContentsSource source) {
+    this.config = config;
+    this.source = source;
+  }
+
+  @Override
+  public void start() {
+    AtomicInteger threadCount = new AtomicInteger();
+    executor = new ThreadPoolExecutor(config.getWalkThreads(), config.getWalkThreads(), 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(config.getMaxQueuedWalks()), r -> {
+      Thread thread = new Thread(r, "folder-statistics-walk-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @Override
+  public void stop() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Returns the cached statistics of the folder, or null if they are not known. In that case a walk of the folder is
+   * queued, unless the folder was found to be too large.
+   */
+  public FolderStatistics getStatistics(String folderId) {
+    FolderStatistics cached = statistics.get(folderId);
+    if (cached != null || tooLarge.contains(folderId)) {
+      return cached;
+    }
+    if (walking.add(folderId)) {
+      try {
+        executor.execute(() -> walk(folderId));
+      } catch (RejectedExecutionException e) {
+        walking.remove(folderId);
+      }
+    }
+    return null;
+  }
+
+  public boolean isTooLarge(String folderId) {
+    return tooLarge.contains(folderId);
+  }
+
+  public void invalidateAll() {
+    synchronized (lock) {
+      statistics.clear();
+      parents.clear();
+      tooLarge.clear();
+      // Nothing a running walk read can be trusted any more
+      for (Set<String> touched : touchedDuringWalks) {
+        touched.add(null);
+      }
+    }
+  }
+
+  @Override
+  public void onInvalidation(Collection<String> nodeIds) {
+    synchronized (lock) {
+      for (String nodeId : nodeIds) {
+        touched(nodeId);
+        invalidateChain(nodeId);
+        parents.remove(nodeId);
+        tooLarge.remove(nodeId);
+      }
+    }
+  }
+
+  @Override
+  public boolean appliesRemoteChanges() {
+    return true;
+  }
+
+  @Override
+  public void onRemoteChange(String originId, RemoteChange change) {
+    NodeEventType type = NodeEventType.forValue(change.getType());
+    CedarNodeType nodeType = change.getNodeType() != null ? CedarNodeType.forValue(change.getNodeType()) : null;
+    String parentId = change.getParentId();
+    boolean isFolder = nodeType == CedarNodeType.FOLDER;
+    if (parentId == null && isFolder) {
+      parentId = parents.get(change.getId());
+    }
+    // Without the parent, a count can not be moved along the right chain
+    if (type == null || nodeType == null || parentId == null && (type == NodeEventType.CREATED ||
+        !isFolder && (type == NodeEventType.DELETED || type == NodeEventType.MOVED))) {
+      List<String> nodeIds = new ArrayList<>();
+      nodeIds.add(change.getId());
+      if (parentId != null) {
+        nodeIds.add(parentId);
+      }
+      if (change.getPreviousParentId() != null) {
+        nodeIds.add(change.getPreviousParentId());
+      }
+      onInvalidation(nodeIds);
+      return;
+    }
+    apply(type, change.getId(), nodeType, parentId, change.getPreviousParentId(), change.getTimestamp());
+  }
+
+  @Override
+  public void onResync() {
+    invalidateAll();
+  }
+
+  @Override
+  public void onNodeEvent(NodeEvent event) {
+    boolean isFolder = event.getNodeType() == CedarNodeType.FOLDER;
+    String parentId;
+    switch (event.getType()) {
+      case CREATED:
+      case DELETED:
+      case MOVED:
+        parentId = event.getParentId();
+        break;
+      case UPDATED:
+      case PUBLISHED:
+        // Updates only change the last update time; their parent is not worth looking up if nothing would use it,
+        // and is looked up outside of the lock
+        parentId = null;
+        if (!statistics.isEmpty() || !walking.isEmpty()) {
+          parentId = isFolder && parents.containsKey(event.getId()) ? parents.get(event.getId()) :
+              event.getParentId();
+        }
+        break;
+      default:
+        return;
+    }
+    apply(event.getType(), event.getId(), event.getNodeType(), parentId, event.getPreviousParentId(),
+        event.getTimestamp());
+  }
+
+  private void apply(NodeEventType type, String id, CedarNodeType nodeType, String parentId, String previousParentId,
+                     long timestamp) {
+    Long timestampTS = timestamp / 1000;
+    boolean isFolder = nodeType == CedarNodeType.FOLDER;
+    synchronized (lock) {
+      if (isFolder) {
+        touched(id);
+      }
+      switch (type) {
+        case CREATED:
+          touched(parentId);
+          if (isFolder && parentId != null) {
+            parents.put(id, parentId);
+            if (statistics.containsKey(parentId)) {
+              statistics.put(id, FolderStatistics.EMPTY.touchedAt(timestampTS));
+            }
+            updateChain(parentId, s -> s.plusFolders(1).touchedAt(timestampTS));
+          } else if (!isFolder) {
+            updateChain(parentId, s -> s.plusResources(nodeType, 1).touchedAt(timestampTS));
+          }
+          break;
+        case DELETED:
+          if (isFolder) {
+            FolderStatistics removed = statistics.remove(id);
+            String deletedFrom = parentId != null ? parentId : parents.get(id);
+            touched(deletedFrom);
+            parents.remove(id);
+            FolderStatistics subtree = removed != null ? removed : FolderStatistics.EMPTY;
+            updateChain(deletedFrom, s -> s.plus(subtree, -1).plusFolders(-1).touchedAt(timestampTS));
+          } else {
+            touched(parentId);
+            updateChain(parentId, s -> s.plusResources(nodeType, -1).touchedAt(timestampTS));
+          }
+          break;
+        case MOVED:
+          touched(parentId);
+          touched(previousParentId);
+          if (isFolder && parentId == null) {
+            invalidateChain(previousParentId);
+          } else if (isFolder) {
+            FolderStatistics moved = statistics.get(id);
+            if (moved == null) {
+              // The moved subtree was never walked: the counters along both chains can not be corrected
+              invalidateChain(previousParentId);
+              invalidateChain(parentId);
+              parents.put(id, parentId);
+            } else {
+              updateChain(previousParentId, s -> s.plus(moved, -1).plusFolders(-1).touchedAt(timestampTS));
+              parents.put(id, parentId);
+              updateChain(parentId, s -> s.plus(moved, 1).plusFolders(1).touchedAt(timestampTS));
+            }
+          } else {
+            updateChain(previousParentId, s -> s.plusResources(nodeType, -1).touchedAt(timestampTS));
+            updateChain(parentId, s -> s.plusResources(nodeType, 1).touchedAt(timestampTS));
+          }
+          break;
+        case UPDATED:
+        case PUBLISHED:
+          touched(parentId);
+          updateChain(parentId, s -> s.touchedAt(timestampTS));
+          break;
+        default:
+          break;
+      }
+    }
+  }
+
+  // A walk may have added up the cached statistics of a subfolder: the cached ancestors of a touched folder are
+  // touched too
+  private void touched(String folderId) {
+    if (folderId != null && !touchedDuringWalks.isEmpty()) {
+      List<String> chain = chainOf(folderId, parents);
+      for (Set<String> touched : touchedDuringWalks) {
+        touched.addAll(chain);
+      }
+    }
+  }
+
+  private void updateChain(String folderId, UnaryOperator<FolderStatistics> update) {
+    for (String id : chainOf(folderId, parents)) {
+      FolderStatistics current = statistics.get(id);
+      if (current != null) {
+        statistics.put(id, update.apply(current));
+      }
+    }
+  }
+
+  private void invalidateChain(String folderId) {
+    for (String id : chainOf(folderId, parents)) {
+      statistics.remove(id);
+    }
+  }
+
+  private static List<String> chainOf(String folderId, Map<String, String> parents) {
+    List<String> chain = new ArrayList<>();
+    String id = folderId;
+    while (id != null && !chain.contains(id)) {
+      chain.add(id);
+      id = parents.get(id);
+    }
+    return chain;
+  }
+
+  private void walk(String folderId) {
+    Set<String> touched = new HashSet<>();
+    synchronized (lock) {
+      touchedDuringWalks.add(touched);
+    }
+    Map<String, FolderStatistics> walkedStatistics = new HashMap<>();
+    Map<String, String> walkedParents = new HashMap<>();
+    boolean limitReached = false;
+    boolean nextPass = false;
+    try {
+      limitReached = walk(folderId, walkedStatistics, walkedParents, new AtomicInteger()) == null &&
+          !Thread.currentThread().isInterrupted();
+    } catch (Exception e) {
+      log.warn("Error while walking folder " + folderId, e);
+    } finally {
+      synchronized (lock) {
+        touchedDuringWalks.remove(touched);
+        boolean progressed = !walkedStatistics.isEmpty();
+        if (touched.contains(null)) {
+          walkedStatistics.clear();
+        }
+        // Anything written during the walk may or may not be included in it: the touched folders and their walked
+        // ancestors are not cached
+        for (String touchedId : touched) {
+          for (String id : chainOf(touchedId, walkedParents)) {
+            walkedStatistics.remove(id);
+          }
+        }
+        boolean room = statistics.size() + walkedStatistics.size() <= config.getMaxCachedFolders();
+        if (room) {
+          walkedStatistics.forEach(statistics::putIfAbsent);
+          walkedParents.forEach(parents::putIfAbsent);
+        }
+        if (limitReached && progressed && room) {
+          nextPass = true;
+        } else {
+          if (limitReached) {
+            tooLarge.add(folderId);
+          }
+          walking.remove(folderId);
+        }
+      }
+    }
+    if (nextPass) {
+      // The next pass adds up what this one cached, and walks the rest
+      try {
+        executor.execute(() -> walk(folderId));
+      } catch (RejectedExecutionException e) {
+        walking.remove(folderId);
+      }
+    }
+  }
+
+  /**
+   * Walks the subtree of the folder, or returns null if the walk reached the node limit before the end of the
+   * subtree. The statistics of every fully walked folder are collected either way; a subfolder that has cached
+   * statistics is not walked again.
+   */
+  private FolderStatistics walk(String folderId, Map<String, FolderStatistics> walkedStatistics,
+                                Map<String, String> walkedParents, AtomicInteger visited) throws CedarException {
+    int limit = config.getWalkPageSize();
+
+    FolderStatistics folderStatistics = FolderStatistics.EMPTY;
+    int offset = 0;
+    List<Child> page;
+    do {
+      if (Thread.currentThread().isInterrupted()) {
+        return null;
+      }
+      page = source.page(folderId, limit, offset);
+      for (Child child : page) {
+        if (visited.incrementAndGet() > config.getMaxWalkNodes()) {
+          return null;
+        }
+        folderStatistics = folderStatistics.touchedAt(child.lastUpdatedOnTS);
+        if (child.type == CedarNodeType.FOLDER) {
+          walkedParents.put(child.id, folderId);
+          FolderStatistics cachedStatistics = statistics.get(child.id);
+          FolderStatistics childStatistics = cachedStatistics != null ? cachedStatistics :
+              walk(child.id, walkedStatistics, walkedParents, visited);
+          if (childStatistics == null) {
+            return null;
+          }
+          folderStatistics = folderStatistics.plus(childStatistics, 1).plusFolders(1);
+        } else {
+          folderStatistics = folderStatistics.plusResources(child.type, 1);
+        }
+      }
+      offset += limit;
+    } while (page.size() >= limit);
+
+    walkedStatistics.put(folderId, folderStatistics);
+    return folderStatistics;
+  }
+
+  private static class BackendContentsSource implements ContentsSource {
+
+    private final CedarConfig cedarConfig;
+    private volatile CedarRequestContext adminContext;
+
+    BackendContentsSource(CedarConfig cedarConfig) {
+      this.cedarConfig = cedarConfig;
+    }
+
+    @Override
+    public List<Child> page(String folderId, int limit, int offset) throws CedarException {
+      // Every version and publication status is counted
+      PagedSortedTypedQuery query = new PagedSortedTypedQuery(cedarConfig.getFolderRESTAPI().getPagination())
+          .resourceTypes(Optional.empty())
+          .version(Optional.of("all"))
+          .publicationStatus(Optional.of("all"))
+          .sort(Optional.empty())
+          .limit(Optional.empty())
+          .offset(Optional.empty());
+      query.validate();
+      List<Child> children = new ArrayList<>();
+      for (FolderServerNodeExtract extract : getFolderSession().findFolderContentsExtract(folderId,
+          query.getNodeTypeList(), query.getVersion(), query.getPublicationStatus(), limit, offset,
+          query.getSortList())) {
+        children.add(new Child(extract.getId(), extract.getType(), extract.getLastUpdatedOnTS()));
+      }
+      return children;
+    }
+
+    private FolderServiceSession getFolderSession() {
+      if (adminContext == null) {
+        adminContext = CedarRequestContextFactory.fromAdminUser(cedarConfig, CedarDataServices.getUserService());
+      }
+      return BackendSessions.openFolderServiceSession(adminContext);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package org.metadatacenter.cedar.workspace.index;
+
+import org.metadatacenter.cedar.workspace.util.GraphDriver;
+import org.metadatacenter.cedar.workspace.util.Neo4jDrivers;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.driver.v1.StatementResult;
+import org.neo4j.driver.v1.Value;
+import org.neo4j.driver.v1.Values;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the CEDAR permission model with Cypher: folders contain their children, users own, read or write nodes,
+ * groups read or write nodes, and users are members of groups. This is the only place that knows how the model is
+ * stored in the graph; it has to follow the CEDAR permission service when that changes.
+ */
+class GraphAccessLoader implements ReadAccessIndex.AccessLoader {
+
+  private static final String ID = Neo4jDrivers.quote("@id");
+  private static final String NODE = "FSNode";
+  private static final String USER = "User";
+  private static final String GROUP = "Group";
+  private static final String CONTAINS = "CONTAINS";
+  private static final String OWNS = "OWNS";
+  private static final String CAN_READ = "CANREAD";
+  private static final String CAN_WRITE = "CANWRITE";
+  private static final String MEMBER_OF = "MEMBEROF";
+
+  private static final String PATHS = "UNWIND $ids AS id MATCH (n:" + NODE + " {" + ID + ": id}) " +
+      "MATCH p = (root:" + NODE + ")-[:" + CONTAINS + "*0..]->(n) WHERE NOT ()-[:" + CONTAINS + "]->(root) " +
+      "RETURN id, [x IN nodes(p) | x." + ID + "] AS path";
+
+  private static final String GRANTS = "UNWIND $ids AS id MATCH (n:" + NODE + " {" + ID + ": id}) " +
+      "OPTIONAL MATCH (u:" + USER + ")-[:" + OWNS + "|" + CAN_READ + "|" + CAN_WRITE + "]->(n) " +
+      "WITH id, n, collect(DISTINCT u." + ID + ") AS users " +
+      "OPTIONAL MATCH (g:" + GROUP + ")-[:" + CAN_READ + "|" + CAN_WRITE + "]->(n) " +
+      "RETURN id, users, collect(DISTINCT g." + ID + ") AS groups";
+
+  private static final String GROUPS = "MATCH (:" + USER + " {" + ID + ": $userId})-[:" + MEMBER_OF + "]->(g:" +
+      GROUP + ") RETURN g." + ID + " AS id";
+
+  private final GraphDriver graphDriver;
+
+  GraphAccessLoader(GraphDriver graphDriver) {
+    this.graphDriver = graphDriver;
+  }
+
+  @Override
+  public Map<String, List<String>> loadPaths(Collection<String> nodeIds) {
+    Map<String, List<String>> paths = new HashMap<>();
+    try (Session session = graphDriver.session()) {
+      StatementResult result = session.run(PATHS, Values.parameters("ids", nodeIds));
+      while (result.hasNext()) {
+        Record record = result.next();
+        paths.put(record.get("id").asString(), record.get("path").asList(Value::asString));
+      }
+    }
+    return paths;
+  }
+
+  @Override
+  public Map<String, ReadAccessIndex.Grants> loadGrants(Collection<String> nodeIds) {
+    Map<String, ReadAccessIndex.Grants> grants = new HashMap<>();
+    try (Session session = graphDriver.session()) {
+      StatementResult result = session.run(GRANTS, Values.parameters("ids", nodeIds));
+      while (result.hasNext()) {
+        Record record = result.next();
+        grants.put(record.get("id").asString(), new ReadAccessIndex.Grants(
+            record.get("users").asList(Value::asString), record.get("groups").asList(Value::asString)));
+      }
+    }
+    return grants;
+  }
+
+  @Override
+  public List<String> loadGroups(String userId) {
+    try (Session session = graphDriver.session()) {
+      return session.run(GROUPS, Values.parameters("userId", userId)).list(r -> r.get("id").asString());
+    }
+  }
+}
@@ -0,0 +1,218 @@
+package org.metadatacenter.cedar.workspace.index;
+
+import io.dropwizard.lifecycle.Managed;
+import org.metadatacenter.bridge.CedarDataServices;
+import org.metadatacenter.cedar.workspace.backend.BackendSessions;
+import org.metadatacenter.cedar.workspace.config.InstanceCountConfig;
+import org.metadatacenter.cedar.workspace.event.NodeEvent;
+import org.metadatacenter.cedar.workspace.event.NodeEventListener;
+import org.metadatacenter.cedar.workspace.event.NodeEventType;
+import org.metadatacenter.cedar.workspace.invalidation.InvalidationListener;
+import org.metadatacenter.config.CedarConfig;
+import org.metadatacenter.exception.CedarException;
+import org.metadatacenter.model.CedarNodeType;
+import org.metadatacenter.rest.context.CedarRequestContext;
+import org.metadatacenter.rest.context.CedarRequestContextFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reverse <code>isBasedOn</code> index holding the number of instances of each template. Counts that are not cached
+ * yet are loaded from the backend on a small background pool, and are reported as missing until they are; they are
+ * then kept up to date from the instance create, copy and delete events. Instances created or deleted on other
+ * instances drop the count of their template. A load that overlaps with a change of its template is not cached.
+ * Once maxCachedTemplates counts are cached, the least recently used one makes room for each new count. Counts cover
+ * all instances, regardless of who can read them.
+ */
+public class InstanceCountIndex implements NodeEventListener, InvalidationListener, Managed {
+
+  /**
+   * Reads the number of instances of a template from the backend.
+   */
+  public interface CountLoader {
+    long load(String templateId) throws CedarException;
+  }
+
+  private static final Logger log = LoggerFactory.getLogger(InstanceCountIndex.class);
+
+  private static final List<CedarNodeType> INSTANCE_TYPE = Collections.singletonList(CedarNodeType.INSTANCE);
+
+  private final InstanceCountConfig config;
+  private final CountLoader loader;
+  // Least recently used first
+  private final Map<String, AtomicLong> counts;
+  // The templates being loaded, each with a flag that is raised when the template changes during the load
+  private final Map<String, AtomicBoolean> loading = new ConcurrentHashMap<>();
+  private ThreadPoolExecutor executor;
+
+  public InstanceCountIndex(CedarConfig cedarConfig, InstanceCountConfig config) {
+    this(config, new BackendCountLoader(cedarConfig));
+  }
+
+  InstanceCountIndex(InstanceCountConfig config, CountLoader loader) {
+    this.config = config;
+    this.loader = loader;
+    this.counts = new LinkedHashMap<String, AtomicLong>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, AtomicLong> eldest) {
+        return size() > config.getMaxCachedTemplates();
+      }
+    };
+  }
+
+  @Override
+  public void start() {
+    AtomicInteger threadCount = new AtomicInteger();
+    executor = new ThreadPoolExecutor(config.getLoaderThreads(), config.getLoaderThreads(), 0,
+        TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(config.getMaxQueuedLoads()), r -> {
+      Thread thread = new Thread(r, "instance-count-loader-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @Override
+  public void stop() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Returns the cached counts of the templates. The templates that have no cached count are left out of the result
+   * and queued for loading.
+   */
+  public Map<String, Long> getCounts(Collection<String> templateIds) {
+    Map<String, Long> result = new LinkedHashMap<>();
+    for (String templateId : templateIds) {
+      AtomicLong count;
+      synchronized (counts) {
+        count = counts.get(templateId);
+      }
+      if (count != null) {
+        result.put(templateId, count.get());
+      } else {
+        scheduleLoad(templateId);
+      }
+    }
+    return result;
+  }
+
+  public void invalidate(String templateId) {
+    markChanged(templateId);
+    synchronized (counts) {
+      counts.remove(templateId);
+    }
+  }
+
+  public void invalidateAll() {
+    loading.values().forEach(changed -> changed.set(true));
+    synchronized (counts) {
+      counts.clear();
+    }
+  }
+
+  public int getCachedCount() {
+    synchronized (counts) {
+      return counts.size();
+    }
+  }
+
+  @Override
+  public void onInvalidation(Collection<String> nodeIds) {
+    for (String nodeId : nodeIds) {
+      invalidate(nodeId);
+    }
+  }
+
+  @Override
+  public void onResync() {
+    invalidateAll();
+  }
+
+  @Override
+  public void onNodeEvent(NodeEvent event) {
+    if (event.getNodeType() != CedarNodeType.INSTANCE || event.getIsBasedOn() == null) {
+      return;
+    }
+    markChanged(event.getIsBasedOn());
+    AtomicLong count;
+    synchronized (counts) {
+      count = counts.get(event.getIsBasedOn());
+    }
+    if (count == null) {
+      return;
+    }
+    if (event.getType() == NodeEventType.CREATED) {
+      count.incrementAndGet();
+    } else if (event.getType() == NodeEventType.DELETED) {
+      count.updateAndGet(c -> c > 0 ? c - 1 : 0);
+    }
+  }
+
+  private void markChanged(String templateId) {
+    AtomicBoolean changed = loading.get(templateId);
+    if (changed != null) {
+      changed.set(true);
+    }
+  }
+
+  private void scheduleLoad(String templateId) {
+    AtomicBoolean changed = new AtomicBoolean();
+    if (loading.putIfAbsent(templateId, changed) != null) {
+      return;
+    }
+    try {
+      executor.execute(() -> load(templateId, changed));
+    } catch (RejectedExecutionException e) {
+      loading.remove(templateId, changed);
+    }
+  }
+
+  private void load(String templateId, AtomicBoolean changed) {
+    try {
+      long loaded = loader.load(templateId);
+      // An instance event that arrived while we were loading may not be reflected in the loaded value
+      if (!changed.get()) {
+        synchronized (counts) {
+          counts.putIfAbsent(templateId, new AtomicLong(loaded));
+        }
+      }
+    } catch (Exception e) {
+      log.warn("Error while loading the instance count of " + templateId, e);
+    } finally {
+      loading.remove(templateId, changed);
+    }
+  }
+
+  private static class BackendCountLoader implements CountLoader {
+
+    private final CedarConfig cedarConfig;
+    private volatile CedarRequestContext adminContext;
+
+    BackendCountLoader(CedarConfig cedarConfig) {
+      this.cedarConfig = cedarConfig;
+    }
+
+    @Override
+    public long load(String templateId) throws CedarException {
+      if (adminContext == null) {
+        adminContext = CedarRequestContextFactory.fromAdminUser(cedarConfig, CedarDataServices.getUserService());
+      }
+      return BackendSessions.openFolderServiceSession(adminContext).searchIsBasedOnCount(INSTANCE_TYPE,
+          templateId);
+    }
+  }
+}
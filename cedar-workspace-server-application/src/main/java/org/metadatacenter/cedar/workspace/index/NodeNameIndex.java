@@ -0,0 +1,266 @@
+package org.metadatacenter.cedar.workspace.index;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.dropwizard.lifecycle.Managed;
+import org.metadatacenter.bridge.CedarDataServices;
+import org.metadatacenter.cedar.workspace.backend.BackendSessions;
+import org.metadatacenter.cedar.workspace.config.AutocompleteConfig;
+import org.metadatacenter.cedar.workspace.core.autocomplete.NamePrefixIndex;
+import org.metadatacenter.cedar.workspace.event.NodeEvent;
+import org.metadatacenter.cedar.workspace.event.NodeEventListener;
+import org.metadatacenter.cedar.workspace.invalidation.InvalidationListener;
+import org.metadatacenter.cedar.workspace.util.NodeByIdResolver;
+import org.metadatacenter.cedar.workspace.util.NodeLookup;
+import org.metadatacenter.cedar.workspace.util.NodeScan;
+import org.metadatacenter.config.CedarConfig;
+import org.metadatacenter.exception.CedarException;
+import org.metadatacenter.model.CedarNodeType;
+import org.metadatacenter.model.folderserver.basic.FolderServerNode;
+import org.metadatacenter.model.folderserver.basic.FolderServerResource;
+import org.metadatacenter.rest.context.CedarRequestContext;
+import org.metadatacenter.rest.context.CedarRequestContextFactory;
+import org.metadatacenter.server.FolderServiceSession;
+import org.metadatacenter.util.json.JsonMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Names of the nodes for the autocomplete endpoint, held in a {@link NamePrefixIndex}. The index is filled in the
+ * background when the server starts, from the {@link NodeScan} it shares with the text index, and kept current from the node events of this server; the nodes
+ * touched on other instances are read again. Only the latest version of a resource is indexed. A load that fails is
+ * tried again after the configured interval.
+ */
+public class NodeNameIndex implements NodeEventListener, InvalidationListener, Managed {
+
+  /**
+   * Reads again the nodes touched on other instances.
+   */
+  interface NodeSource {
+
+    FolderServerNode findNodeById(String id) throws CedarException;
+  }
+
+  private static final Logger log = LoggerFactory.getLogger(NodeNameIndex.class);
+
+  private final AutocompleteConfig config;
+  private final NodeScan nodeScan;
+  private final NodeSource nodeSource;
+  private final NamePrefixIndex index = new NamePrefixIndex();
+  private final Set<String> touchedDuringLoad = ConcurrentHashMap.newKeySet();
+  private ScheduledExecutorService executor;
+  private volatile boolean ready;
+  private volatile boolean loading;
+
+  public NodeNameIndex(CedarConfig cedarConfig, AutocompleteConfig config, NodeScan nodeScan) {
+    this(config, nodeScan, new BackendNodeSource(cedarConfig));
+  }
+
+  NodeNameIndex(AutocompleteConfig config, NodeScan nodeScan, NodeSource nodeSource) {
+    this.config = config;
+    this.nodeScan = nodeScan;
+    this.nodeSource = nodeSource;
+  }
+
+  @Override
+  public void start() {
+    executor = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "name-index");
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.execute(this::load);
+  }
+
+  @Override
+  public void stop() {
+    executor.shutdownNow();
+  }
+
+  public boolean isReady() {
+    return ready;
+  }
+
+  public NamePrefixIndex getIndex() {
+    return index;
+  }
+
+  /**
+   * Returns up to limit readable nodes matching the prefix, most recently updated first. The candidates are checked
+   * in growing batches, starting with maxCandidates, until enough of them are readable or maxChecked were checked.
+   */
+  public List<NamePrefixIndex.Entry> find(String prefix, int limit, NodeLookup.AccessCheck accessCheck)
+      throws CedarException {
+    List<NamePrefixIndex.Entry> nodes = new ArrayList<>();
+    Set<String> checked = new HashSet<>();
+    int count = Math.min(config.getMaxCandidates(), config.getMaxChecked());
+    while (true) {
+      List<NamePrefixIndex.Entry> candidates = index.find(prefix, count, config.getMaxScanned());
+      List<NamePrefixIndex.Entry> unchecked = new ArrayList<>();
+      List<String> uncheckedIds = new ArrayList<>();
+      for (NamePrefixIndex.Entry candidate : candidates) {
+        if (checked.add(candidate.getId())) {
+          unchecked.add(candidate);
+          uncheckedIds.add(candidate.getId());
+        }
+      }
+      if (!uncheckedIds.isEmpty()) {
+        Map<String, Boolean> readable = accessCheck.canRead(uncheckedIds);
+        for (NamePrefixIndex.Entry candidate : unchecked) {
+          if (nodes.size() < limit && Boolean.TRUE.equals(readable.get(candidate.getId()))) {
+            nodes.add(candidate);
+          }
+        }
+      }
+      if (nodes.size() >= limit || candidates.size() < count || count >= config.getMaxChecked()) {
+        return nodes;
+      }
+      count = Math.min(count * 4, config.getMaxChecked());
+    }
+  }
+
+  @Override
+  public void onNodeEvent(NodeEvent event) {
+    if (loading) {
+      touchedDuringLoad.add(event.getId());
+    }
+    try {
+      switch (event.getType()) {
+        case CREATED:
+        case UPDATED:
+        case PUBLISHED:
+          FolderServerNode node = event.getNode();
+          if (node == null) {
+            reload(Collections.singletonList(event.getId()));
+          } else {
+            put(node);
+          }
+          // A new version replaces the previous one as the latest
+          if (node instanceof FolderServerResource && ((FolderServerResource) node).getPreviousVersion() != null) {
+            index.remove(((FolderServerResource) node).getPreviousVersion().getValue());
+          }
+          break;
+        case DELETED:
+          index.remove(event.getId());
+          break;
+        default:
+          break;
+      }
+    } catch (CedarException | RuntimeException e) {
+      log.error("Error while updating the name index for " + event.getId(), e);
+    }
+  }
+
+  @Override
+  public void onInvalidation(Collection<String> nodeIds) {
+    Set<String> ids = new LinkedHashSet<>(nodeIds);
+    if (loading) {
+      touchedDuringLoad.addAll(ids);
+    }
+    executor.execute(() -> {
+      try {
+        reload(ids);
+      } catch (CedarException | RuntimeException e) {
+        log.error("Error while updating the name index for " + ids, e);
+      }
+    });
+  }
+
+  @Override
+  public void onResync() {
+    if (!loading) {
+      executor.execute(this::load);
+    }
+  }
+
+  private void load() {
+    loading = true;
+    touchedDuringLoad.clear();
+    try {
+      long start = System.currentTimeMillis();
+      Set<String> loadedIds = new HashSet<>();
+      nodeScan.scan(page -> {
+        for (FolderServerNode node : page) {
+          put(node);
+          loadedIds.add(node.getId());
+        }
+      });
+      // When reloading, the nodes deleted since the last load are still in the index
+      for (String id : index.getIds()) {
+        if (!loadedIds.contains(id) && !touchedDuringLoad.contains(id)) {
+          index.remove(id);
+        }
+      }
+      reload(touchedDuringLoad);
+      ready = true;
+      log.info("Name index loaded with " + index.size() + " nodes in " + (System.currentTimeMillis() - start) +
+          " ms");
+    } catch (CedarException | IOException | RuntimeException e) {
+      log.error("Error while loading the name index, trying again in " + config.getLoadRetryInterval(), e);
+      try {
+        executor.schedule(this::load, config.getLoadRetryInterval().toMilliseconds(), TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException stopped) {
+        // The server is stopping
+      }
+    } finally {
+      loading = false;
+    }
+  }
+
+  private void reload(Collection<String> nodeIds) throws CedarException {
+    for (String id : new ArrayList<>(nodeIds)) {
+      FolderServerNode node = nodeSource.findNodeById(id);
+      if (node == null) {
+        index.remove(id);
+      } else {
+        put(node);
+      }
+    }
+  }
+
+  private void put(FolderServerNode node) {
+    JsonNode json = JsonMapper.MAPPER.valueToTree(node);
+    if (node.getType() != CedarNodeType.FOLDER && !json.path("isLatestVersion").asBoolean()) {
+      index.remove(node.getId());
+      return;
+    }
+    index.put(node.getId(), json.path("schema:name").asText(""), node.getType().getValue(),
+        json.path("pav:lastUpdatedOnTS").asLong());
+  }
+
+  private static class BackendNodeSource implements NodeSource {
+
+    private final CedarConfig cedarConfig;
+    private volatile CedarRequestContext adminContext;
+
+    BackendNodeSource(CedarConfig cedarConfig) {
+      this.cedarConfig = cedarConfig;
+    }
+
+    @Override
+    public FolderServerNode findNodeById(String id) throws CedarException {
+      return NodeByIdResolver.findNodeById(getFolderSession(), id);
+    }
+
+    private FolderServiceSession getFolderSession() {
+      if (adminContext == null) {
+        adminContext = CedarRequestContextFactory.fromAdminUser(cedarConfig, CedarDataServices.getUserService());
+      }
+      return BackendSessions.openFolderServiceSession(adminContext);
+    }
+  }
+}
@@ -0,0 +1,433 @@
+package org.metadatacenter.cedar.workspace.index;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.lifecycle.Managed;
+import org.metadatacenter.cedar.workspace.backend.BackendSessions;
+import org.metadatacenter.cedar.workspace.config.ReadAccessConfig;
+import org.metadatacenter.cedar.workspace.core.visibility.VisibilityIndex;
+import org.metadatacenter.cedar.workspace.event.NodeEvent;
+import org.metadatacenter.cedar.workspace.event.NodeEventListener;
+import org.metadatacenter.cedar.workspace.invalidation.InvalidationListener;
+import org.metadatacenter.cedar.workspace.util.GraphDriver;
+import org.metadatacenter.exception.CedarException;
+import org.metadatacenter.rest.context.CedarRequestContext;
+import org.metadatacenter.server.PermissionServiceSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Answers read access checks from a {@link VisibilityIndex} instead of traversing the permission edges of the graph.
+ * The grants and the paths of the nodes that are not known yet are loaded together, in a few queries per batch, the
+ * first time they are checked. They are then kept up to date from the node events of this server; changes made on
+ * other instances drop the touched nodes when they come through the invalidation bus, and every loaded grant expires
+ * after the configured TTL, so that changes missed by the bus are eventually picked up.
+ * <p>
+ * The groups of a user are read from the graph and cached for a short while. When they can not be read, a check
+ * that a group grant could decide is answered by the graph.
+ * <p>
+ * The index is only kept when the instances tell each other about their writes through an invalidation transport.
+ * Without one, an instance would go on granting access that was revoked on another one until the TTL, so every check
+ * is answered by the permission service session instead.
+ */
+public class ReadAccessIndex implements NodeEventListener, InvalidationListener, Managed {
+
+  /**
+   * Reads the paths, grants and group memberships the index is built from.
+   */
+  interface AccessLoader {
+
+    /**
+     * Returns the path of each node that exists, from the root folder to the node itself.
+     */
+    Map<String, List<String>> loadPaths(Collection<String> nodeIds);
+
+    /**
+     * Returns the users (the owner included) and the groups that were granted access to each node.
+     */
+    Map<String, Grants> loadGrants(Collection<String> nodeIds);
+
+    List<String> loadGroups(String userId);
+  }
+
+  /**
+   * Answers the checks the index can not decide.
+   */
+  interface GraphCheck {
+    boolean userHasReadAccessToNode(String nodeId) throws CedarException;
+  }
+
+  static class Grants {
+
+    private final List<String> userIds;
+    private final List<String> groupIds;
+
+    Grants(List<String> userIds, List<String> groupIds) {
+      this.userIds = userIds;
+      this.groupIds = groupIds;
+    }
+  }
+
+  private static final Logger log = LoggerFactory.getLogger(ReadAccessIndex.class);
+
+  private final ReadAccessConfig config;
+  private final AccessLoader loader;
+  private final LongSupplier clock;
+  private final VisibilityIndex index = new VisibilityIndex();
+  private final Lock lock = new ReentrantLock();
+  private final Meter answered;
+  private final Meter loaded;
+  private final Meter delegated;
+  // The nodes whose grants were loaded, oldest first, with the time they were loaded at
+  private final LinkedHashMap<String, Long> loadedAt = new LinkedHashMap<>();
+  // The last change of the recently changed nodes, oldest first. A load that started before the oldest one that was
+  // evicted can not tell whether its nodes changed during the load
+  private final LinkedHashMap<String, Long> recentChanges;
+  private long changeCount;
+  private long forgottenChanges;
+  private final Map<String, UserGroups> groups;
+  private ScheduledExecutorService sweepExecutor;
+
+  /**
+   * Creates the index, or with a null graph driver, a pass-through to the permission service session.
+   */
+  public ReadAccessIndex(ReadAccessConfig config, GraphDriver graphDriver, MetricRegistry metrics) {
+    this(config, graphDriver != null ? new GraphAccessLoader(graphDriver) : null, System::currentTimeMillis,
+        metrics);
+  }
+
+  ReadAccessIndex(ReadAccessConfig config, AccessLoader loader, LongSupplier clock, MetricRegistry metrics) {
+    this.config = config;
+    this.loader = loader;
+    this.clock = clock;
+    this.answered = metrics.meter(MetricRegistry.name(ReadAccessIndex.class, "answered"));
+    this.loaded = metrics.meter(MetricRegistry.name(ReadAccessIndex.class, "loaded"));
+    this.delegated = metrics.meter(MetricRegistry.name(ReadAccessIndex.class, "delegated"));
+    this.recentChanges = new LinkedHashMap<String, Long>() {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+        if (size() > config.getMaxTrackedChanges()) {
+          forgottenChanges = eldest.getValue();
+          return true;
+        }
+        return false;
+      }
+    };
+    this.groups = new LinkedHashMap<String, UserGroups>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, UserGroups> eldest) {
+        return size() > config.getMaxCachedUsers();
+      }
+    };
+  }
+
+  @Override
+  public void start() {
+    if (!isEnabled()) {
+      return;
+    }
+    long interval = config.getSweepInterval().toMilliseconds();
+    sweepExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "read-access-sweeper");
+      thread.setDaemon(true);
+      return thread;
+    });
+    sweepExecutor.scheduleWithFixedDelay(this::sweep, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void stop() {
+    if (sweepExecutor != null) {
+      sweepExecutor.shutdownNow();
+    }
+  }
+
+  public boolean isEnabled() {
+    return loader != null;
+  }
+
+  public VisibilityIndex getIndex() {
+    return index;
+  }
+
+  public boolean userHasReadAccessToNode(CedarRequestContext c, String nodeId) throws CedarException {
+    return userHasReadAccessToNodes(c, Collections.singletonList(nodeId)).get(nodeId);
+  }
+
+  /**
+   * Checks the read access of the current user to each of the nodes.
+   */
+  public Map<String, Boolean> userHasReadAccessToNodes(CedarRequestContext c, Collection<String> nodeIds)
+      throws CedarException {
+    PermissionServiceSession[] permissionSession = new PermissionServiceSession[1];
+    return check(c.getCedarUser().getId(), nodeIds, nodeId -> {
+      if (permissionSession[0] == null) {
+        permissionSession[0] = BackendSessions.getPermissionServiceSession(c);
+      }
+      return permissionSession[0].userHasReadAccessToNode(nodeId);
+    });
+  }
+
+  Map<String, Boolean> check(String userId, Collection<String> nodeIds, GraphCheck graph) throws CedarException {
+    if (!isEnabled()) {
+      Map<String, Boolean> result = new LinkedHashMap<>();
+      for (String nodeId : nodeIds) {
+        delegated.mark();
+        result.put(nodeId, graph.userHasReadAccessToNode(nodeId));
+      }
+      return result;
+    }
+    List<String> groupIds = groupsOf(userId);
+    boolean groupsComplete = groupIds != null;
+    if (!groupsComplete) {
+      groupIds = Collections.emptyList();
+    }
+    Map<String, VisibilityIndex.Access> access = index.canRead(userId, groupIds, groupsComplete, nodeIds);
+
+    List<String> notLoaded = new ArrayList<>();
+    access.forEach((id, a) -> {
+      if (a == VisibilityIndex.Access.NOT_LOADED) {
+        notLoaded.add(id);
+      }
+    });
+    if (!notLoaded.isEmpty()) {
+      for (int from = 0; from < notLoaded.size(); from += config.getLoadBatchSize()) {
+        List<String> batch = notLoaded.subList(from, Math.min(from + config.getLoadBatchSize(), notLoaded.size()));
+        try {
+          load(batch);
+        } catch (RuntimeException e) {
+          log.warn("Error while loading the grants of " + batch.size() + " nodes", e);
+        }
+      }
+      access.putAll(index.canRead(userId, groupIds, groupsComplete, notLoaded));
+    }
+
+    Map<String, Boolean> result = new LinkedHashMap<>();
+    for (Map.Entry<String, VisibilityIndex.Access> entry : access.entrySet()) {
+      switch (entry.getValue()) {
+        case READABLE:
+          answered.mark();
+          result.put(entry.getKey(), true);
+          break;
+        case NOT_READABLE:
+          answered.mark();
+          result.put(entry.getKey(), false);
+          break;
+        default:
+          delegated.mark();
+          result.put(entry.getKey(), graph.userHasReadAccessToNode(entry.getKey()));
+          break;
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public void onInvalidation(Collection<String> nodeIds) {
+    lock.lock();
+    try {
+      for (String nodeId : nodeIds) {
+        forget(nodeId);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void onResync() {
+    lock.lock();
+    try {
+      changeCount++;
+      forgottenChanges = changeCount;
+      recentChanges.clear();
+      loadedAt.clear();
+      index.clear();
+    } finally {
+      lock.unlock();
+    }
+    synchronized (groups) {
+      groups.clear();
+    }
+  }
+
+  @Override
+  public void onNodeEvent(NodeEvent event) {
+    lock.lock();
+    try {
+      switch (event.getType()) {
+        case CREATED:
+          if (event.getParentId() != null && event.getUserId() != null) {
+            changed(event.getId());
+            index.setParent(event.getId(), event.getParentId());
+            index.setGrants(event.getId(), Collections.singletonList(event.getUserId()), Collections.emptyList());
+            loadedAt.remove(event.getId());
+            loadedAt.put(event.getId(), clock.getAsLong());
+          } else {
+            forget(event.getId());
+          }
+          break;
+        case MOVED:
+          if (event.getParentId() != null) {
+            changed(event.getId());
+            index.setParent(event.getId(), event.getParentId());
+          } else {
+            forget(event.getId());
+          }
+          break;
+        case DELETED:
+        case PERMISSIONS_CHANGED:
+          forget(event.getId());
+          break;
+        default:
+          break;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Drops the grants that were loaded longer than the TTL ago.
+   */
+  void sweep() {
+    long expired = clock.getAsLong() - config.getTtl().toMilliseconds();
+    lock.lock();
+    try {
+      List<String> nodeIds = new ArrayList<>();
+      for (Map.Entry<String, Long> entry : loadedAt.entrySet()) {
+        if (entry.getValue() > expired) {
+          break;
+        }
+        nodeIds.add(entry.getKey());
+      }
+      nodeIds.forEach(this::forget);
+    } finally {
+      lock.unlock();
+    }
+    synchronized (groups) {
+      groups.values().removeIf(g -> g.loadedAt <= clock.getAsLong() - config.getGroupCacheTtl().toMilliseconds());
+    }
+  }
+
+  private void forget(String nodeId) {
+    changed(nodeId);
+    loadedAt.remove(nodeId);
+    index.forget(nodeId);
+  }
+
+  private void changed(String nodeId) {
+    changeCount++;
+    recentChanges.remove(nodeId);
+    recentChanges.put(nodeId, changeCount);
+  }
+
+  private boolean changedSince(List<String> nodeIds, long since) {
+    if (forgottenChanges > since) {
+      return true;
+    }
+    for (String nodeId : nodeIds) {
+      Long change = recentChanges.get(nodeId);
+      if (change != null && change > since) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void load(List<String> nodeIds) {
+    long changesBefore;
+    lock.lock();
+    try {
+      changesBefore = changeCount;
+    } finally {
+      lock.unlock();
+    }
+    Map<String, List<String>> paths = loader.loadPaths(nodeIds);
+    Set<String> notLoaded = new LinkedHashSet<>();
+    for (List<String> path : paths.values()) {
+      for (String elementId : path) {
+        if (!index.isLoaded(elementId)) {
+          notLoaded.add(elementId);
+        }
+      }
+    }
+    Map<String, Grants> grants = notLoaded.isEmpty() ? Collections.emptyMap() : loader.loadGrants(notLoaded);
+    loaded.mark(paths.size());
+
+    // A path that changed during the load may or may not be reflected in it, so it is not kept. Paths that did not
+    // change are kept, whatever happened elsewhere in the tree
+    lock.lock();
+    try {
+      long now = clock.getAsLong();
+      for (List<String> path : paths.values()) {
+        if (path.isEmpty() || changedSince(path, changesBefore)) {
+          continue;
+        }
+        String parentId = null;
+        for (String elementId : path) {
+          index.setParent(elementId, parentId);
+          Grants elementGrants = grants.get(elementId);
+          if (elementGrants != null) {
+            index.setGrants(elementId, elementGrants.userIds, elementGrants.groupIds);
+            loadedAt.remove(elementId);
+            loadedAt.put(elementId, now);
+          }
+          parentId = elementId;
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the groups of a user, or null if they can not be read.
+   */
+  private List<String> groupsOf(String userId) {
+    long now = clock.getAsLong();
+    synchronized (groups) {
+      UserGroups cached = groups.get(userId);
+      if (cached != null && now - cached.loadedAt < config.getGroupCacheTtl().toMilliseconds()) {
+        return cached.groupIds;
+      }
+    }
+    List<String> groupIds;
+    try {
+      groupIds = loader.loadGroups(userId);
+    } catch (RuntimeException e) {
+      log.warn("Error while loading the groups of " + userId, e);
+      return null;
+    }
+    synchronized (groups) {
+      groups.put(userId, new UserGroups(groupIds, now));
+    }
+    return groupIds;
+  }
+
+  private static class UserGroups {
+
+    private final List<String> groupIds;
+    private final long loadedAt;
+
+    UserGroups(List<String> groupIds, long loadedAt) {
+      this.groupIds = groupIds;
+      this.loadedAt = loadedAt;
+    }
+  }
+}
@@ -0,0 +1,334 @@
+package org.metadatacenter.cedar.workspace.invalidation;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.lifecycle.Managed;
+import org.metadatacenter.cedar.workspace.config.InvalidationConfig;
+import org.metadatacenter.cedar.workspace.event.NodeEvent;
+import org.metadatacenter.cedar.workspace.event.NodeEventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Broadcasts the ids touched by the writes of this instance to the other instances, and hands the ids received
+ * from them to the local caches. Local writes reach the local caches as node events; only remote writes arrive
+ * here, along with the node event of the write for the listeners that track the changes themselves. The delivery
+ * lag (receive time minus send time, so it includes clock skew between hosts) is recorded in a histogram.
+ * <p>
+ * The messages of each instance are numbered, and every instance sends a heartbeat with the number of its last
+ * message at a fixed interval. A gap in the numbers means that a message was lost or is late: the receiver asks its
+ * origin to replay it, at once and again with each of its own heartbeats. Every instance keeps its recent messages
+ * for that, so a lost message costs a datagram and the targeted invalidation it carried. The listeners are only
+ * asked to resync when the message can no longer be replayed, when too many were lost at once, or when the replay
+ * did not arrive after a few heartbeats.
+ */
+public class InvalidationBus implements NodeEventListener, Managed {
+
+  private static final Logger log = LoggerFactory.getLogger(InvalidationBus.class);
+
+  // Replaying more messages than this from one instance costs more than resyncing
+  static final int MAX_MISSING = 256;
+
+  private final String instanceId;
+  private final long startedAt = System.currentTimeMillis();
+  private final InvalidationTransport transport;
+  private final long heartbeatMillis;
+  private final int maxReplayAttempts;
+  private final List<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+  private final AtomicLong sequence = new AtomicLong();
+  // The recent messages of this instance, by number modulo the size
+  private final AtomicReferenceArray<InvalidationMessage> recentMessages;
+  private final Map<String, Origin> origins = new HashMap<>();
+  private final Counter sent;
+  private final Counter sendFailures;
+  private final Counter received;
+  private final Counter gaps;
+  private final Counter replayed;
+  private final Counter resyncs;
+  private final Histogram lag;
+  private ScheduledExecutorService heartbeatExecutor;
+
+  public InvalidationBus(String instanceId, InvalidationTransport transport, InvalidationConfig config,
+                         MetricRegistry metrics) {
+    this(instanceId, transport, config.getHeartbeatInterval().toMilliseconds(), config.getReplayBufferSize(),
+        config.getMaxReplayAttempts(), metrics);
+  }
+
+  public InvalidationBus(String instanceId, InvalidationTransport transport, long heartbeatMillis,
+                         int replayBufferSize, int maxReplayAttempts, MetricRegistry metrics) {
+    this.instanceId = instanceId;
+    this.transport = transport;
+    this.heartbeatMillis = heartbeatMillis;
+    this.maxReplayAttempts = maxReplayAttempts;
+    this.recentMessages = new AtomicReferenceArray<>(Math.max(1, replayBufferSize));
+    this.sent = metrics.counter(MetricRegistry.name(InvalidationBus.class, "sent"));
+    this.sendFailures = metrics.counter(MetricRegistry.name(InvalidationBus.class, "sendFailures"));
+    this.received = metrics.counter(MetricRegistry.name(InvalidationBus.class, "received"));
+    this.gaps = metrics.counter(MetricRegistry.name(InvalidationBus.class, "gaps"));
+    this.replayed = metrics.counter(MetricRegistry.name(InvalidationBus.class, "replayed"));
+    this.resyncs = metrics.counter(MetricRegistry.name(InvalidationBus.class, "resyncs"));
+    this.lag = metrics.histogram(MetricRegistry.name(InvalidationBus.class, "lag"));
+  }
+
+  public void register(InvalidationListener listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void start() throws IOException {
+    transport.start(this::receive);
+    if (heartbeatMillis > 0) {
+      heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "invalidation-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+      });
+      heartbeatExecutor.scheduleWithFixedDelay(this::heartbeat, heartbeatMillis, heartbeatMillis,
+          TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Override
+  public void stop() {
+    if (heartbeatExecutor != null) {
+      heartbeatExecutor.shutdownNow();
+    }
+    transport.stop();
+  }
+
+  @Override
+  public void onNodeEvent(NodeEvent event) {
+    Set<String> nodeIds = new LinkedHashSet<>();
+    nodeIds.add(event.getId());
+    nodeIds.add(event.getKnownParentId());
+    nodeIds.add(event.getPreviousParentId());
+    nodeIds.add(event.getIsBasedOn());
+    nodeIds.remove(null);
+    publish(new ArrayList<>(nodeIds), RemoteChange.of(event));
+  }
+
+  public void publish(List<String> nodeIds) {
+    publish(nodeIds, null);
+  }
+
+  // Concurrent writes may send their messages out of order; a receiver then asks for a replay that it ignores
+  private void publish(List<String> nodeIds, RemoteChange change) {
+    long number = sequence.incrementAndGet();
+    InvalidationMessage message = new InvalidationMessage(instanceId, startedAt, number, nodeIds,
+        System.currentTimeMillis(), change, replayableFrom(number), null);
+    recentMessages.set(slot(number), message);
+    try {
+      transport.send(message);
+      sent.inc();
+    } catch (IOException | RuntimeException e) {
+      sendFailures.inc();
+      log.error("Error while sending invalidation of " + nodeIds, e);
+    }
+  }
+
+  void heartbeat() {
+    sendHeartbeat(null);
+    List<ReplayRequest> requests = new ArrayList<>();
+    List<String> resynced = new ArrayList<>();
+    synchronized (origins) {
+      for (Map.Entry<String, Origin> entry : origins.entrySet()) {
+        Origin origin = entry.getValue();
+        if (origin.missing.isEmpty()) {
+          continue;
+        }
+        if (++origin.attempts > maxReplayAttempts) {
+          origin.clearMissing();
+          resynced.add(entry.getKey());
+        } else {
+          requests.add(new ReplayRequest(entry.getKey(), new ArrayList<>(origin.missing)));
+        }
+      }
+    }
+    for (ReplayRequest request : requests) {
+      sendHeartbeat(request);
+    }
+    for (String originId : resynced) {
+      resync(originId, "were not replayed");
+    }
+  }
+
+  void receive(InvalidationMessage message) {
+    if (instanceId.equals(message.getOriginId())) {
+      return;
+    }
+    if (message.getReplay() != null && instanceId.equals(message.getReplay().getOriginId())) {
+      replay(message.getReplay().getSequences());
+    }
+    Tracking tracking = track(message);
+    if (tracking.deliver) {
+      received.inc();
+      lag.update(Math.max(0, System.currentTimeMillis() - message.getSentAt()));
+      for (InvalidationListener listener : listeners) {
+        try {
+          if (message.getChange() == null || !listener.appliesRemoteChanges()) {
+            listener.onInvalidation(message.getNodeIds());
+          }
+          if (message.getChange() != null) {
+            listener.onRemoteChange(message.getOriginId(), message.getChange());
+          }
+        } catch (RuntimeException e) {
+          log.error("Error while delivering invalidation to " + listener.getClass().getSimpleName(), e);
+        }
+      }
+    }
+    if (tracking.missing != null) {
+      gaps.inc(tracking.missing.size());
+      sendHeartbeat(new ReplayRequest(message.getOriginId(), tracking.missing));
+    }
+    if (tracking.resync) {
+      resync(message.getOriginId(), "can not be replayed");
+    }
+  }
+
+  private void sendHeartbeat(ReplayRequest replay) {
+    long number = sequence.get();
+    try {
+      transport.send(new InvalidationMessage(instanceId, startedAt, number, Collections.emptyList(),
+          System.currentTimeMillis(), null, replayableFrom(number), replay));
+    } catch (IOException | RuntimeException e) {
+      log.warn("Error while sending invalidation heartbeat", e);
+    }
+  }
+
+  private void replay(List<Long> sequences) {
+    for (Long number : sequences) {
+      InvalidationMessage message = number != null && number > 0 ? recentMessages.get(slot(number)) : null;
+      // Messages that are no longer kept are left to the replayableFrom of the next heartbeat
+      if (message != null && message.getSequence() == number) {
+        try {
+          transport.send(message);
+          replayed.inc();
+        } catch (IOException | RuntimeException e) {
+          sendFailures.inc();
+          log.error("Error while replaying invalidation of " + message.getNodeIds(), e);
+        }
+      }
+    }
+  }
+
+  private void resync(String originId, String reason) {
+    resyncs.inc();
+    log.warn("Invalidation messages from " + originId + " " + reason + ", resyncing the caches");
+    for (InvalidationListener listener : listeners) {
+      try {
+        listener.onResync();
+      } catch (RuntimeException e) {
+        log.error("Error while resyncing " + listener.getClass().getSimpleName(), e);
+      }
+    }
+  }
+
+  private long replayableFrom(long number) {
+    return Math.max(1, number - recentMessages.length() + 1);
+  }
+
+  private int slot(long number) {
+    return (int) (number % recentMessages.length());
+  }
+
+  /**
+   * Records the number of the message, and tells whether to deliver it, which messages of its origin went missing
+   * before it and whether those can no longer be replayed. Nothing is known of an instance before its first message;
+   * a restarted instance starts numbering over. A message that arrives twice, late or replayed, is delivered once.
+   */
+  private Tracking track(InvalidationMessage message) {
+    synchronized (origins) {
+      Origin origin = origins.get(message.getOriginId());
+      long number = message.getSequence();
+      if (origin == null) {
+        origins.put(message.getOriginId(), new Origin(message.getOriginStartedAt(), number));
+        return new Tracking(!message.isHeartbeat(), null, false);
+      }
+      if (origin.startedAt != message.getOriginStartedAt()) {
+        origin.startedAt = message.getOriginStartedAt();
+        origin.last = 0;
+        origin.clearMissing();
+      }
+      boolean deliver;
+      long lastMissing = message.isHeartbeat() ? number : number - 1;
+      List<Long> missing = null;
+      boolean resync = false;
+      if (lastMissing - origin.last + origin.missing.size() > MAX_MISSING) {
+        origin.clearMissing();
+        resync = true;
+      } else if (lastMissing > origin.last) {
+        missing = new ArrayList<>();
+        for (long n = origin.last + 1; n <= lastMissing; n++) {
+          missing.add(n);
+        }
+        origin.missing.addAll(missing);
+      }
+      if (message.isHeartbeat()) {
+        deliver = false;
+        origin.last = Math.max(origin.last, number);
+      } else if (number > origin.last) {
+        deliver = true;
+        origin.last = number;
+      } else {
+        deliver = origin.missing.remove(number);
+      }
+      if (!origin.missing.isEmpty() && origin.missing.first() < message.getReplayableFrom()) {
+        origin.clearMissing();
+        missing = null;
+        resync = true;
+      }
+      if (origin.missing.isEmpty()) {
+        origin.attempts = 0;
+      }
+      return new Tracking(deliver, missing, resync);
+    }
+  }
+
+  private static class Origin {
+
+    private long startedAt;
+    private long last;
+    private final TreeSet<Long> missing = new TreeSet<>();
+    private int attempts;
+
+    Origin(long startedAt, long last) {
+      this.startedAt = startedAt;
+      this.last = last;
+    }
+
+    void clearMissing() {
+      missing.clear();
+      attempts = 0;
+    }
+  }
+
+  private static class Tracking {
+
+    private final boolean deliver;
+    private final List<Long> missing;
+    private final boolean resync;
+
+    Tracking(boolean deliver, List<Long> missing, boolean resync) {
+      this.deliver = deliver;
+      this.missing = missing;
+      this.resync = resync;
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package org.metadatacenter.cedar.workspace.invalidation;
+
+import java.util.Collection;
+
+public interface InvalidationListener {
+
+  void onInvalidation(Collection<String> nodeIds);
+
+  /**
+   * Called after {@link #onInvalidation(Collection)} when the remote write was published as a node event, or in place
+   * of it for the listeners that {@link #appliesRemoteChanges() apply the changes}.
+   */
+  default void onRemoteChange(String originId, RemoteChange change) {
+  }
+
+  /**
+   * Whether the listener applies the remote changes to what it cached instead of dropping the touched entries.
+   */
+  default boolean appliesRemoteChanges() {
+    return false;
+  }
+
+  /**
+   * Called when a message of another instance was lost and could not be replayed. Whatever was cached may be stale
+   * and has to be dropped or reloaded.
+   */
+  default void onResync() {
+  }
+
+}
@@ -0,0 +1,88 @@
+package org.metadatacenter.cedar.workspace.invalidation;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * The ids of the nodes changed by one write on one instance, along with the change itself when the write was
+ * published as a node event. The messages of an instance are numbered from its start, so that the receivers can tell
+ * when one was lost; a heartbeat has no node ids and repeats the number of the last message. Every message also
+ * carries the oldest number its origin can still replay, and a heartbeat may carry a request to replay the messages
+ * of another instance. Property names are kept short, the messages travel in single datagrams.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class InvalidationMessage {
+
+  private final String originId;
+  private final long originStartedAt;
+  private final long sequence;
+  private final List<String> nodeIds;
+  private final long sentAt;
+  private final RemoteChange change;
+  private final long replayableFrom;
+  private final ReplayRequest replay;
+
+  @JsonCreator
+  public InvalidationMessage(@JsonProperty("o") String originId, @JsonProperty("e") long originStartedAt,
+                             @JsonProperty("s") long sequence, @JsonProperty("n") List<String> nodeIds,
+                             @JsonProperty("t") long sentAt, @JsonProperty("c") RemoteChange change,
+                             @JsonProperty("a") long replayableFrom, @JsonProperty("r") ReplayRequest replay) {
+    this.originId = originId;
+    this.originStartedAt = originStartedAt;
+    this.sequence = sequence;
+    this.nodeIds = nodeIds;
+    this.sentAt = sentAt;
+    this.change = change;
+    this.replayableFrom = replayableFrom;
+    this.replay = replay;
+  }
+
+  @JsonProperty("o")
+  public String getOriginId() {
+    return originId;
+  }
+
+  @JsonProperty("e")
+  public long getOriginStartedAt() {
+    return originStartedAt;
+  }
+
+  @JsonProperty("s")
+  public long getSequence() {
+    return sequence;
+  }
+
+  @JsonProperty("n")
+  public List<String> getNodeIds() {
+    return nodeIds;
+  }
+
+  @JsonProperty("t")
+  public long getSentAt() {
+    return sentAt;
+  }
+
+  @JsonProperty("c")
+  public RemoteChange getChange() {
+    return change;
+  }
+
+  @JsonProperty("a")
+  public long getReplayableFrom() {
+    return replayableFrom;
+  }
+
+  @JsonProperty("r")
+  public ReplayRequest getReplay() {
+    return replay;
+  }
+
+  @JsonIgnore
+  public boolean isHeartbeat() {
+    return nodeIds == null || nodeIds.isEmpty();
+  }
+}
@@ -0,0 +1,14 @@
+package org.metadatacenter.cedar.workspace.invalidation;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+public interface InvalidationTransport {
+
+  void start(Consumer<InvalidationMessage> receiver) throws IOException;
+
+  void send(InvalidationMessage message) throws IOException;
+
+  void stop();
+
+}
@@ -0,0 +1,27 @@
+package org.metadatacenter.cedar.workspace.invalidation;
+
+import org.metadatacenter.cedar.workspace.config.InvalidationConfig;
+
+public final class InvalidationTransports {
+
+  private InvalidationTransports() {
+  }
+
+  /**
+   * Returns the transport selected in the configuration, or null if invalidation is turned off.
+   */
+  public static InvalidationTransport forConfig(InvalidationConfig config) {
+    String transport = config.getTransport();
+    if (transport == null || InvalidationConfig.TRANSPORT_NONE.equals(transport)) {
+      return null;
+    } else if (InvalidationConfig.TRANSPORT_LOOPBACK.equals(transport)) {
+      return new LoopbackInvalidationTransport();
+    } else if (InvalidationConfig.TRANSPORT_UDP.equals(transport)) {
+      if (config.getSharedSecret() == null || config.getSharedSecret().isEmpty()) {
+        throw new IllegalArgumentException("The udp invalidation transport needs a sharedSecret");
+      }
+      return new UdpInvalidationTransport(config.getBindPort(), config.getPeers(), config.getSharedSecret());
+    }
+    throw new IllegalArgumentException("Unknown invalidation transport:'" + transport + "'");
+  }
+}
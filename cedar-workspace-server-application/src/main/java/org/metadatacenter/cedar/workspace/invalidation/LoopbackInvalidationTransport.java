@@ -0,0 +1,32 @@
+package org.metadatacenter.cedar.workspace.invalidation;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Delivers every message synchronously to all the buses started on this transport, the sender included. Sharing
+ * one instance between several buses simulates a cluster in a single process; stopping it stops delivery to all of
+ * them.
+ */
+public class LoopbackInvalidationTransport implements InvalidationTransport {
+
+  private final List<Consumer<InvalidationMessage>> receivers = new CopyOnWriteArrayList<>();
+
+  @Override
+  public void start(Consumer<InvalidationMessage> receiver) {
+    receivers.add(receiver);
+  }
+
+  @Override
+  public void send(InvalidationMessage message) {
+    for (Consumer<InvalidationMessage> receiver : receivers) {
+      receiver.accept(message);
+    }
+  }
+
+  @Override
+  public void stop() {
+    receivers.clear();
+  }
+}
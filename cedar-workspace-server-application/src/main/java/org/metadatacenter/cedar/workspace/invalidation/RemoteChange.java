@@ -0,0 +1,84 @@
+package org.metadatacenter.cedar.workspace.invalidation;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.metadatacenter.cedar.workspace.event.NodeEvent;
+
+/**
+ * The node event behind an invalidation message, for the listeners that keep track of the changes themselves rather
+ * than dropping cached entries. Property names are kept short, like those of the message.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RemoteChange {
+
+  private final String type;
+  private final String id;
+  private final String nodeType;
+  private final String parentId;
+  private final String previousParentId;
+  private final String userId;
+  private final long timestamp;
+  private final long sequence;
+
+  @JsonCreator
+  public RemoteChange(@JsonProperty("y") String type, @JsonProperty("i") String id,
+                      @JsonProperty("k") String nodeType, @JsonProperty("p") String parentId,
+                      @JsonProperty("q") String previousParentId, @JsonProperty("u") String userId,
+                      @JsonProperty("t") long timestamp, @JsonProperty("s") long sequence) {
+    this.type = type;
+    this.id = id;
+    this.nodeType = nodeType;
+    this.parentId = parentId;
+    this.previousParentId = previousParentId;
+    this.userId = userId;
+    this.timestamp = timestamp;
+    this.sequence = sequence;
+  }
+
+  public static RemoteChange of(NodeEvent event) {
+    return new RemoteChange(event.getType().getValue(), event.getId(),
+        event.getNodeType() != null ? event.getNodeType().getValue() : null, event.getKnownParentId(),
+        event.getPreviousParentId(), event.getUserId(), event.getTimestamp(), event.getSequence());
+  }
+
+  @JsonProperty("y")
+  public String getType() {
+    return type;
+  }
+
+  @JsonProperty("i")
+  public String getId() {
+    return id;
+  }
+
+  @JsonProperty("k")
+  public String getNodeType() {
+    return nodeType;
+  }
+
+  @JsonProperty("p")
+  public String getParentId() {
+    return parentId;
+  }
+
+  @JsonProperty("q")
+  public String getPreviousParentId() {
+    return previousParentId;
+  }
+
+  @JsonProperty("u")
+  public String getUserId() {
+    return userId;
+  }
+
+  @JsonProperty("t")
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  @JsonProperty("s")
+  public long getSequence() {
+    return sequence;
+  }
+}
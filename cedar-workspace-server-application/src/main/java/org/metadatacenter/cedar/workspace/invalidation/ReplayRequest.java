@@ -0,0 +1,32 @@
+package org.metadatacenter.cedar.workspace.invalidation;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Asks an instance to send the listed messages again, because they never arrived. Property names are kept short, like
+ * those of the message that carries the request.
+ */
+public class ReplayRequest {
+
+  private final String originId;
+  private final List<Long> sequences;
+
+  @JsonCreator
+  public ReplayRequest(@JsonProperty("o") String originId, @JsonProperty("s") List<Long> sequences) {
+    this.originId = originId;
+    this.sequences = sequences;
+  }
+
+  @JsonProperty("o")
+  public String getOriginId() {
+    return originId;
+  }
+
+  @JsonProperty("s")
+  public List<Long> getSequences() {
+    return sequences;
+  }
+}
@@ -0,0 +1,139 @@
+package org.metadatacenter.cedar.workspace.invalidation;
+
+import org.metadatacenter.util.json.JsonMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Sends every message as one datagram to each configured peer, and receives the messages of the peers on the bind
+ * port. A datagram is the HMAC-SHA256 of the JSON message, keyed with the shared secret of the instances, followed by
+ * the message. Datagrams from other hosts than the peers, with a wrong signature or that can not be read are logged
+ * and skipped. Delivery is best effort: the bus notices lost datagrams and has them replayed.
+ */
+public class UdpInvalidationTransport implements InvalidationTransport {
+
+  private static final Logger log = LoggerFactory.getLogger(UdpInvalidationTransport.class);
+
+  private static final int MAX_DATAGRAM_SIZE = 65507;
+  private static final String SIGNATURE_ALGORITHM = "HmacSHA256";
+  private static final int SIGNATURE_LENGTH = 32;
+
+  private final int bindPort;
+  private final List<InetSocketAddress> peers = new ArrayList<>();
+  private final Set<InetAddress> peerAddresses = new HashSet<>();
+  private final SecretKeySpec key;
+  private DatagramSocket socket;
+  private Thread receiverThread;
+
+  public UdpInvalidationTransport(int bindPort, List<String> peers, String sharedSecret) {
+    this.bindPort = bindPort;
+    for (String peer : peers) {
+      int separator = peer.lastIndexOf(':');
+      InetSocketAddress address;
+      if (separator < 0) {
+        address = new InetSocketAddress(peer, bindPort);
+      } else {
+        address = new InetSocketAddress(peer.substring(0, separator),
+            Integer.parseInt(peer.substring(separator + 1)));
+      }
+      if (address.isUnresolved()) {
+        throw new IllegalArgumentException("Unknown invalidation peer:'" + peer + "'");
+      }
+      this.peers.add(address);
+      // The peers send from their bind port, but only their host is checked
+      this.peerAddresses.add(address.getAddress());
+    }
+    this.key = new SecretKeySpec(sharedSecret.getBytes(StandardCharsets.UTF_8), SIGNATURE_ALGORITHM);
+  }
+
+  @Override
+  public void start(Consumer<InvalidationMessage> receiver) throws IOException {
+    socket = new DatagramSocket(bindPort);
+    receiverThread = new Thread(() -> receive(receiver), "invalidation-receiver");
+    receiverThread.setDaemon(true);
+    receiverThread.start();
+  }
+
+  int getLocalPort() {
+    return socket.getLocalPort();
+  }
+
+  @Override
+  public void send(InvalidationMessage message) throws IOException {
+    byte[] json = JsonMapper.MAPPER.writeValueAsBytes(message);
+    if (json.length + SIGNATURE_LENGTH > MAX_DATAGRAM_SIZE) {
+      throw new IOException("Invalidation message of " + json.length + " bytes does not fit in a datagram");
+    }
+    byte[] bytes = new byte[SIGNATURE_LENGTH + json.length];
+    System.arraycopy(sign(json, 0, json.length), 0, bytes, 0, SIGNATURE_LENGTH);
+    System.arraycopy(json, 0, bytes, SIGNATURE_LENGTH, json.length);
+    for (InetSocketAddress peer : peers) {
+      socket.send(new DatagramPacket(bytes, bytes.length, peer));
+    }
+  }
+
+  @Override
+  public void stop() {
+    if (socket != null) {
+      socket.close();
+    }
+  }
+
+  private void receive(Consumer<InvalidationMessage> receiver) {
+    byte[] buffer = new byte[MAX_DATAGRAM_SIZE];
+    while (!socket.isClosed()) {
+      DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+      try {
+        socket.receive(packet);
+        if (!peerAddresses.contains(packet.getAddress())) {
+          log.warn("Skipped invalidation datagram from " + packet.getSocketAddress() + ", which is not a peer");
+          continue;
+        }
+        int offset = packet.getOffset() + SIGNATURE_LENGTH;
+        int length = packet.getLength() - SIGNATURE_LENGTH;
+        if (length <= 0 || !MessageDigest.isEqual(sign(packet.getData(), offset, length),
+            Arrays.copyOfRange(packet.getData(), packet.getOffset(), offset))) {
+          log.warn("Skipped invalidation datagram from " + packet.getSocketAddress() + " with a wrong signature");
+          continue;
+        }
+        InvalidationMessage message = JsonMapper.MAPPER.readValue(packet.getData(), offset, length,
+            InvalidationMessage.class);
+        receiver.accept(message);
+      } catch (SocketException e) {
+        // the socket was closed by stop()
+      } catch (IOException | RuntimeException e) {
+        log.warn("Error while receiving invalidation message from " + packet.getSocketAddress(), e);
+      }
+    }
+  }
+
+  // A Mac is not thread safe, and messages are sent from the writing threads
+  private byte[] sign(byte[] data, int offset, int length) throws IOException {
+    try {
+      Mac mac = Mac.getInstance(SIGNATURE_ALGORITHM);
+      mac.init(key);
+      mac.update(data, offset, length);
+      return mac.doFinal();
+    } catch (GeneralSecurityException e) {
+      throw new IOException("Error while signing invalidation message", e);
+    }
+  }
+}
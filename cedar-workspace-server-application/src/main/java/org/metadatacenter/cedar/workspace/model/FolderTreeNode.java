@@ -0,0 +1,56 @@
+package org.metadatacenter.cedar.workspace.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.metadatacenter.model.folderserver.extract.FolderServerNodeExtract;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FolderTreeNode {
+
+  private final FolderServerNodeExtract node;
+  private List<FolderTreeNode> children;
+  private Long totalChildCount;
+  private boolean truncated;
+
+  public FolderTreeNode(FolderServerNodeExtract node) {
+    this.node = node;
+  }
+
+  @JsonProperty("node")
+  public FolderServerNodeExtract getNode() {
+    return node;
+  }
+
+  @JsonProperty("children")
+  public List<FolderTreeNode> getChildren() {
+    return children;
+  }
+
+  public void addChild(FolderTreeNode child) {
+    if (children == null) {
+      children = new ArrayList<>();
+    }
+    children.add(child);
+  }
+
+  @JsonProperty("totalChildCount")
+  public Long getTotalChildCount() {
+    return totalChildCount;
+  }
+
+  public void setTotalChildCount(Long totalChildCount) {
+    this.totalChildCount = totalChildCount;
+  }
+
+  @JsonProperty("truncated")
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+  public void setTruncated(boolean truncated) {
+    this.truncated = truncated;
+  }
+}
@@ -0,0 +1,71 @@
+package org.metadatacenter.cedar.workspace.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.metadatacenter.model.folderserver.extract.FolderServerNodeExtract;
+import org.metadatacenter.model.request.NodeListRequest;
+
+import java.util.List;
+
+public class FolderTreeResponse {
+
+  private NodeListRequest request;
+  private int depth;
+  private long nodeCount;
+  private boolean truncated;
+  private List<FolderServerNodeExtract> pathInfo;
+  private FolderTreeNode root;
+
+  @JsonProperty("request")
+  public NodeListRequest getRequest() {
+    return request;
+  }
+
+  public void setRequest(NodeListRequest request) {
+    this.request = request;
+  }
+
+  @JsonProperty("depth")
+  public int getDepth() {
+    return depth;
+  }
+
+  public void setDepth(int depth) {
+    this.depth = depth;
+  }
+
+  @JsonProperty("nodeCount")
+  public long getNodeCount() {
+    return nodeCount;
+  }
+
+  public void setNodeCount(long nodeCount) {
+    this.nodeCount = nodeCount;
+  }
+
+  @JsonProperty("truncated")
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+  public void setTruncated(boolean truncated) {
+    this.truncated = truncated;
+  }
+
+  @JsonProperty("pathInfo")
+  public List<FolderServerNodeExtract> getPathInfo() {
+    return pathInfo;
+  }
+
+  public void setPathInfo(List<FolderServerNodeExtract> pathInfo) {
+    this.pathInfo = pathInfo;
+  }
+
+  @JsonProperty("root")
+  public FolderTreeNode getRoot() {
+    return root;
+  }
+
+  public void setRoot(FolderTreeNode root) {
+    this.root = root;
+  }
+}
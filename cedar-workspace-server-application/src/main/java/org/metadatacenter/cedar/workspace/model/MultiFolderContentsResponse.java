@@ -0,0 +1,42 @@
+package org.metadatacenter.cedar.workspace.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.metadatacenter.model.request.NodeListRequest;
+import org.metadatacenter.model.response.FolderServerNodeListResponse;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MultiFolderContentsResponse {
+
+  private NodeListRequest request;
+  private final Map<String, FolderServerNodeListResponse> results = new LinkedHashMap<>();
+  private final List<String> notFound = new ArrayList<>();
+  private final List<String> forbidden = new ArrayList<>();
+
+  @JsonProperty("request")
+  public NodeListRequest getRequest() {
+    return request;
+  }
+
+  public void setRequest(NodeListRequest request) {
+    this.request = request;
+  }
+
+  @JsonProperty("results")
+  public Map<String, FolderServerNodeListResponse> getResults() {
+    return results;
+  }
+
+  @JsonProperty("notFound")
+  public List<String> getNotFound() {
+    return notFound;
+  }
+
+  @JsonProperty("forbidden")
+  public List<String> getForbidden() {
+    return forbidden;
+  }
+}
@@ -0,0 +1,32 @@
+package org.metadatacenter.cedar.workspace.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.metadatacenter.model.folderserver.extract.FolderServerNodeExtract;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class NodeLookupEntry {
+
+  private final String id;
+  private final FolderServerNodeExtract node;
+
+  public NodeLookupEntry(String id, FolderServerNodeExtract node) {
+    this.id = id;
+    this.node = node;
+  }
+
+  @JsonProperty("id")
+  public String getId() {
+    return id;
+  }
+
+  @JsonProperty("found")
+  public boolean isFound() {
+    return node != null;
+  }
+
+  @JsonProperty("node")
+  public FolderServerNodeExtract getNode() {
+    return node;
+  }
+}
@@ -0,0 +1,34 @@
+package org.metadatacenter.cedar.workspace.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class NodeLookupResponse {
+
+  private final List<NodeLookupEntry> nodes = new ArrayList<>();
+  private int foundCount;
+
+  public void add(NodeLookupEntry entry) {
+    nodes.add(entry);
+    if (entry.isFound()) {
+      foundCount++;
+    }
+  }
+
+  @JsonProperty("nodes")
+  public List<NodeLookupEntry> getNodes() {
+    return nodes;
+  }
+
+  @JsonProperty("foundCount")
+  public int getFoundCount() {
+    return foundCount;
+  }
+
+  @JsonProperty("missingCount")
+  public int getMissingCount() {
+    return nodes.size() - foundCount;
+  }
+}
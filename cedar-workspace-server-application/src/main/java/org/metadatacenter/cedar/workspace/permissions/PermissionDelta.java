@@ -0,0 +1,120 @@
+package org.metadatacenter.cedar.workspace.permissions;
+
+import org.metadatacenter.server.security.model.auth.CedarNodePermissionsRequest;
+import org.metadatacenter.server.security.model.auth.NodePermissionGroupPermissionPair;
+import org.metadatacenter.server.security.model.auth.NodePermissionUserPermissionPair;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The grants a permission change made on a folder: the users and groups that were given a permission (or a
+ * different one), and those whose permission was taken away. Applying it to a descendant changes only these users
+ * and groups, and leaves its owner and its other grants as they are.
+ */
+public class PermissionDelta {
+
+  private final Map<String, NodePermissionUserPermissionPair> grantedUsers;
+  private final Set<String> revokedUsers;
+  private final Map<String, NodePermissionGroupPermissionPair> grantedGroups;
+  private final Set<String> revokedGroups;
+
+  private PermissionDelta(Map<String, NodePermissionUserPermissionPair> grantedUsers, Set<String> revokedUsers,
+                          Map<String, NodePermissionGroupPermissionPair> grantedGroups, Set<String> revokedGroups) {
+    this.grantedUsers = grantedUsers;
+    this.revokedUsers = revokedUsers;
+    this.grantedGroups = grantedGroups;
+    this.revokedGroups = revokedGroups;
+  }
+
+  /**
+   * Returns the grants that differ between the permissions of a folder before and after a change. A change of owner
+   * is not part of it.
+   */
+  public static PermissionDelta between(CedarNodePermissionsRequest before, CedarNodePermissionsRequest after) {
+    Map<String, NodePermissionUserPermissionPair> usersBefore = users(before);
+    Map<String, NodePermissionUserPermissionPair> usersAfter = users(after);
+    Map<String, NodePermissionGroupPermissionPair> groupsBefore = groups(before);
+    Map<String, NodePermissionGroupPermissionPair> groupsAfter = groups(after);
+
+    Map<String, NodePermissionUserPermissionPair> grantedUsers = new LinkedHashMap<>();
+    for (Map.Entry<String, NodePermissionUserPermissionPair> entry : usersAfter.entrySet()) {
+      NodePermissionUserPermissionPair previous = usersBefore.get(entry.getKey());
+      if (previous == null || previous.getPermission() != entry.getValue().getPermission()) {
+        grantedUsers.put(entry.getKey(), entry.getValue());
+      }
+    }
+    Set<String> revokedUsers = new HashSet<>(usersBefore.keySet());
+    revokedUsers.removeAll(usersAfter.keySet());
+
+    Map<String, NodePermissionGroupPermissionPair> grantedGroups = new LinkedHashMap<>();
+    for (Map.Entry<String, NodePermissionGroupPermissionPair> entry : groupsAfter.entrySet()) {
+      NodePermissionGroupPermissionPair previous = groupsBefore.get(entry.getKey());
+      if (previous == null || previous.getPermission() != entry.getValue().getPermission()) {
+        grantedGroups.put(entry.getKey(), entry.getValue());
+      }
+    }
+    Set<String> revokedGroups = new HashSet<>(groupsBefore.keySet());
+    revokedGroups.removeAll(groupsAfter.keySet());
+
+    return new PermissionDelta(grantedUsers, revokedUsers, grantedGroups, revokedGroups);
+  }
+
+  public boolean isEmpty() {
+    return grantedUsers.isEmpty() && revokedUsers.isEmpty() && grantedGroups.isEmpty() && revokedGroups.isEmpty();
+  }
+
+  /**
+   * Applies the delta to the permissions of a node. Returns false, and leaves the request alone, if they already
+   * have it.
+   */
+  public boolean applyTo(CedarNodePermissionsRequest permissions) {
+    Map<String, NodePermissionUserPermissionPair> users = users(permissions);
+    Map<String, NodePermissionGroupPermissionPair> groups = groups(permissions);
+    boolean changed = false;
+    for (String userId : revokedUsers) {
+      changed |= users.remove(userId) != null;
+    }
+    for (Map.Entry<String, NodePermissionUserPermissionPair> entry : grantedUsers.entrySet()) {
+      NodePermissionUserPermissionPair previous = users.put(entry.getKey(), entry.getValue());
+      changed |= previous == null || previous.getPermission() != entry.getValue().getPermission();
+    }
+    for (String groupId : revokedGroups) {
+      changed |= groups.remove(groupId) != null;
+    }
+    for (Map.Entry<String, NodePermissionGroupPermissionPair> entry : grantedGroups.entrySet()) {
+      NodePermissionGroupPermissionPair previous = groups.put(entry.getKey(), entry.getValue());
+      changed |= previous == null || previous.getPermission() != entry.getValue().getPermission();
+    }
+    if (changed) {
+      permissions.setUserPermissions(new ArrayList<>(users.values()));
+      permissions.setGroupPermissions(new ArrayList<>(groups.values()));
+    }
+    return changed;
+  }
+
+  private static Map<String, NodePermissionUserPermissionPair> users(CedarNodePermissionsRequest permissions) {
+    Map<String, NodePermissionUserPermissionPair> users = new LinkedHashMap<>();
+    for (NodePermissionUserPermissionPair pair : orEmpty(permissions.getUserPermissions())) {
+      users.put(pair.getUser().getId(), pair);
+    }
+    return users;
+  }
+
+  private static Map<String, NodePermissionGroupPermissionPair> groups(CedarNodePermissionsRequest permissions) {
+    Map<String, NodePermissionGroupPermissionPair> groups = new LinkedHashMap<>();
+    for (NodePermissionGroupPermissionPair pair : orEmpty(permissions.getGroupPermissions())) {
+      groups.put(pair.getGroup().getId(), pair);
+    }
+    return groups;
+  }
+
+  private static <T> List<T> orEmpty(List<T> list) {
+    return list != null ? list : Collections.emptyList();
+  }
+}
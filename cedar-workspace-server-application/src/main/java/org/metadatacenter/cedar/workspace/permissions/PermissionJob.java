@@ -0,0 +1,187 @@
+package org.metadatacenter.cedar.workspace.permissions;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of a background permission change. The counters only grow while the job runs, so they can be read at
+ * any time without locking. The job is stored as a map of properties, so that any server can report it.
+ */
+public class PermissionJob {
+
+  public enum State {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+  }
+
+  private final String id;
+  private final String folderId;
+  private final String userId;
+  private final long createdOn;
+  private final AtomicLong batches = new AtomicLong();
+  private final AtomicLong updated = new AtomicLong();
+  private final AtomicLong skipped = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private volatile State state = State.QUEUED;
+  private volatile Long startedOn;
+  private volatile Long finishedOn;
+  private volatile long savedOn;
+  private volatile String errorMessage;
+
+  PermissionJob(String id, String folderId, String userId, long createdOn) {
+    this.id = id;
+    this.folderId = folderId;
+    this.userId = userId;
+    this.createdOn = createdOn;
+  }
+
+  @JsonProperty("id")
+  public String getId() {
+    return id;
+  }
+
+  @JsonProperty("folderId")
+  public String getFolderId() {
+    return folderId;
+  }
+
+  @JsonIgnore
+  public String getUserId() {
+    return userId;
+  }
+
+  @JsonProperty("state")
+  public State getState() {
+    return state;
+  }
+
+  @JsonProperty("batches")
+  public long getBatches() {
+    return batches.get();
+  }
+
+  @JsonProperty("updatedNodes")
+  public long getUpdated() {
+    return updated.get();
+  }
+
+  @JsonProperty("skippedNodes")
+  public long getSkipped() {
+    return skipped.get();
+  }
+
+  @JsonProperty("failedNodes")
+  public long getFailed() {
+    return failed.get();
+  }
+
+  @JsonProperty("createdOnTS")
+  public long getCreatedOnTS() {
+    return createdOn / 1000;
+  }
+
+  @JsonProperty("startedOnTS")
+  public Long getStartedOnTS() {
+    Long started = startedOn;
+    return started != null ? started / 1000 : null;
+  }
+
+  @JsonProperty("finishedOnTS")
+  public Long getFinishedOnTS() {
+    Long finished = finishedOn;
+    return finished != null ? finished / 1000 : null;
+  }
+
+  @JsonIgnore
+  public Long getFinishedOn() {
+    return finishedOn;
+  }
+
+  /**
+   * Returns when the job was last stored by the server running it.
+   */
+  @JsonIgnore
+  public long getSavedOn() {
+    return savedOn;
+  }
+
+  @JsonProperty("errorMessage")
+  public String getErrorMessage() {
+    return errorMessage;
+  }
+
+  @JsonIgnore
+  public boolean isFinished() {
+    return state == State.COMPLETED || state == State.FAILED;
+  }
+
+  public void batchDone(int updatedNodes, int skippedNodes, int failedNodes) {
+    updated.addAndGet(updatedNodes);
+    skipped.addAndGet(skippedNodes);
+    failed.addAndGet(failedNodes);
+    batches.incrementAndGet();
+  }
+
+  void started(long now) {
+    startedOn = now;
+    state = State.RUNNING;
+  }
+
+  void completed(long now) {
+    finishedOn = now;
+    state = State.COMPLETED;
+  }
+
+  void failed(long now, String message) {
+    finishedOn = now;
+    errorMessage = message;
+    state = State.FAILED;
+  }
+
+  void saved(long now) {
+    savedOn = now;
+  }
+
+  Map<String, Object> toProperties() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("id", id);
+    properties.put("folderId", folderId);
+    properties.put("userId", userId);
+    properties.put("state", state.name());
+    properties.put("batches", batches.get());
+    properties.put("updatedNodes", updated.get());
+    properties.put("skippedNodes", skipped.get());
+    properties.put("failedNodes", failed.get());
+    properties.put("createdOn", createdOn);
+    properties.put("startedOn", startedOn);
+    properties.put("finishedOn", finishedOn);
+    properties.put("savedOn", savedOn);
+    properties.put("errorMessage", errorMessage);
+    return properties;
+  }
+
+  static PermissionJob fromProperties(Map<String, Object> properties) {
+    PermissionJob job = new PermissionJob((String) properties.get("id"), (String) properties.get("folderId"),
+        (String) properties.get("userId"), toLong(properties.get("createdOn")));
+    job.state = State.valueOf((String) properties.get("state"));
+    job.batches.set(toLong(properties.get("batches")));
+    job.updated.set(toLong(properties.get("updatedNodes")));
+    job.skipped.set(toLong(properties.get("skippedNodes")));
+    job.failed.set(toLong(properties.get("failedNodes")));
+    job.startedOn = properties.get("startedOn") != null ? toLong(properties.get("startedOn")) : null;
+    job.finishedOn = properties.get("finishedOn") != null ? toLong(properties.get("finishedOn")) : null;
+    job.savedOn = toLong(properties.get("savedOn"));
+    job.errorMessage = (String) properties.get("errorMessage");
+    return job;
+  }
+
+  private static long toLong(Object value) {
+    return value != null ? ((Number) value).longValue() : 0;
+  }
+}
@@ -0,0 +1,283 @@
+package org.metadatacenter.cedar.workspace.permissions;
+
+import io.dropwizard.lifecycle.Managed;
+import org.metadatacenter.cedar.workspace.config.PermissionJobsConfig;
+import org.metadatacenter.cedar.workspace.util.GraphDriver;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.driver.v1.StatementResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs permission jobs on a small bounded pool. A place in the pool or its queue can be reserved before the job is
+ * submitted, so that a caller can find out that the queue is full before it changes anything. The jobs are also
+ * stored in the graph, when they start and finish and every save interval while they run, so that every server can
+ * report them, including after the server that ran them restarted. A stored job that is not finished and was not saved for longer than staleAfter lost its server,
+ * and is reported as failed. Stored jobs are deleted at the end of the retention period.
+ */
+public class PermissionJobs implements Managed {
+
+  public interface Task {
+    void run(PermissionJob job) throws Exception;
+  }
+
+  /**
+   * Stores the jobs where every server can read them.
+   */
+  interface JobStore {
+
+    void save(PermissionJob job);
+
+    /**
+     * Returns the stored job, or null if there is none.
+     */
+    PermissionJob load(String jobId);
+
+    void deleteSavedBefore(long time);
+  }
+
+  private static final Logger log = LoggerFactory.getLogger(PermissionJobs.class);
+
+  private final PermissionJobsConfig config;
+  private final JobStore store;
+  private final LongSupplier clock;
+  private final Map<String, PermissionJob> jobs = new ConcurrentHashMap<>();
+  // The places of the running and queued jobs
+  private final Semaphore places;
+  private ThreadPoolExecutor executor;
+  private ScheduledExecutorService saver;
+
+  public PermissionJobs(PermissionJobsConfig config, GraphDriver graphDriver) {
+    this(config, new GraphJobStore(graphDriver), System::currentTimeMillis);
+  }
+
+  PermissionJobs(PermissionJobsConfig config, JobStore store, LongSupplier clock) {
+    this.config = config;
+    this.store = store;
+    this.clock = clock;
+    this.places = new Semaphore(config.getMaxRunningJobs() + config.getMaxQueuedJobs());
+  }
+
+  @Override
+  public void start() {
+    AtomicInteger threadCount = new AtomicInteger();
+    executor = new ThreadPoolExecutor(config.getMaxRunningJobs(), config.getMaxRunningJobs(), 0,
+        TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+      Thread thread = new Thread(r, "permission-job-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    saver = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "permission-job-saver");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long interval = config.getSaveInterval().toMilliseconds();
+    saver.scheduleWithFixedDelay(this::saveRunning, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void stop() {
+    saver.shutdownNow();
+    executor.shutdownNow();
+    // The jobs of this server will not go on, tell the clients right away instead of after staleAfter
+    for (PermissionJob job : jobs.values()) {
+      if (!job.isFinished()) {
+        job.failed(clock.getAsLong(), "The server running the job stopped");
+        save(job);
+      }
+    }
+  }
+
+  /**
+   * Reserves a place for a job, or returns null if too many jobs are already waiting. The place is given back when
+   * the job submitted with it finishes, or when the reservation is cancelled.
+   */
+  public Reservation reserve() {
+    return places.tryAcquire() ? new Reservation() : null;
+  }
+
+  /**
+   * Queues a job, or returns null if too many jobs are already waiting.
+   */
+  public PermissionJob submit(String folderId, String userId, Task task) {
+    Reservation reservation = reserve();
+    return reservation != null ? submit(reservation, folderId, userId, task) : null;
+  }
+
+  /**
+   * Queues a job in a reserved place. Returns null only if the server is stopping.
+   */
+  public PermissionJob submit(Reservation reservation, String folderId, String userId, Task task) {
+    if (!reservation.use()) {
+      throw new IllegalStateException("The reservation was already used or cancelled");
+    }
+    purge();
+    PermissionJob job = new PermissionJob(UUID.randomUUID().toString(), folderId, userId, clock.getAsLong());
+    jobs.put(job.getId(), job);
+    // Stored before it can run, so that only this thread creates its node
+    save(job);
+    try {
+      executor.execute(() -> {
+        try {
+          run(job, task);
+        } finally {
+          places.release();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      places.release();
+      jobs.remove(job.getId());
+      job.failed(clock.getAsLong(), "The server stopped before the job started");
+      save(job);
+      return null;
+    }
+    return job;
+  }
+
+  /**
+   * Returns a job of this server, or a job of any server from the store.
+   */
+  public PermissionJob get(String jobId) {
+    purge();
+    PermissionJob job = jobs.get(jobId);
+    if (job != null) {
+      return job;
+    }
+    job = store.load(jobId);
+    long now = clock.getAsLong();
+    if (job == null || job.getSavedOn() < now - config.getRetention().toMilliseconds()) {
+      return null;
+    }
+    if (!job.isFinished() && job.getSavedOn() < now - config.getStaleAfter().toMilliseconds()) {
+      job.failed(now, "The server running the job stopped before it finished");
+      save(job);
+    }
+    return job;
+  }
+
+  void saveRunning() {
+    for (PermissionJob job : jobs.values()) {
+      if (!job.isFinished()) {
+        save(job);
+      }
+    }
+    try {
+      store.deleteSavedBefore(clock.getAsLong() - config.getRetention().toMilliseconds());
+    } catch (RuntimeException e) {
+      log.error("Error while deleting the expired permission jobs", e);
+    }
+  }
+
+  private void run(PermissionJob job, Task task) {
+    job.started(clock.getAsLong());
+    save(job);
+    try {
+      task.run(job);
+      job.completed(clock.getAsLong());
+    } catch (Exception e) {
+      log.error("Permission job " + job.getId() + " on folder " + job.getFolderId() + " failed", e);
+      job.failed(clock.getAsLong(), e.getMessage());
+    }
+    save(job);
+  }
+
+  private void save(PermissionJob job) {
+    job.saved(clock.getAsLong());
+    try {
+      store.save(job);
+    } catch (RuntimeException e) {
+      // The server running the job can still report it
+      log.error("Error while saving permission job " + job.getId(), e);
+    }
+  }
+
+  private void purge() {
+    long expiredBefore = clock.getAsLong() - config.getRetention().toMilliseconds();
+    jobs.values().removeIf(job -> job.getFinishedOn() != null && job.getFinishedOn() < expiredBefore);
+  }
+
+  /**
+   * A place for a job in the pool or its queue.
+   */
+  public final class Reservation {
+
+    private final AtomicBoolean used = new AtomicBoolean();
+
+    private Reservation() {
+    }
+
+    /**
+     * Gives the place back, unless a job was submitted with it. Does nothing the second time.
+     */
+    public void cancel() {
+      if (use()) {
+        places.release();
+      }
+    }
+
+    private boolean use() {
+      return used.compareAndSet(false, true);
+    }
+  }
+
+  /**
+   * Keeps the jobs in the graph, apart from the CEDAR model: under a label of this server, without an @id and
+   * without relationships. The snapshot export only copies the nodes that have an @id, and the CEDAR tools match the
+   * labels of their model, so neither sees the jobs. There are only ever a few of them, so they are not indexed.
+   */
+  private static class GraphJobStore implements JobStore {
+
+    private static final String LABEL = "_WorkspaceServer_PermissionJob";
+
+    private final GraphDriver graphDriver;
+
+    GraphJobStore(GraphDriver graphDriver) {
+      this.graphDriver = graphDriver;
+    }
+
+    @Override
+    public void save(PermissionJob job) {
+      Map<String, Object> parameters = new HashMap<>();
+      parameters.put("id", job.getId());
+      parameters.put("properties", job.toProperties());
+      try (Session session = graphDriver.session()) {
+        session.run("MERGE (j:" + LABEL + " {id: $id}) SET j = $properties", parameters).consume();
+      }
+    }
+
+    @Override
+    public PermissionJob load(String jobId) {
+      Map<String, Object> parameters = new HashMap<>();
+      parameters.put("id", jobId);
+      try (Session session = graphDriver.session()) {
+        StatementResult result = session.run("MATCH (j:" + LABEL + " {id: $id}) RETURN j", parameters);
+        return result.hasNext() ? PermissionJob.fromProperties(result.next().get("j").asMap()) : null;
+      }
+    }
+
+    @Override
+    public void deleteSavedBefore(long time) {
+      Map<String, Object> parameters = new HashMap<>();
+      parameters.put("time", time);
+      try (Session session = graphDriver.session()) {
+        session.run("MATCH (j:" + LABEL + ") WHERE j.savedOn < $time DELETE j", parameters).consume();
+      }
+    }
+  }
+}
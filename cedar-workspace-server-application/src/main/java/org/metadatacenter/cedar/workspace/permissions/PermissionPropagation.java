@@ -0,0 +1,225 @@
+package org.metadatacenter.cedar.workspace.permissions;
+
+import org.metadatacenter.bridge.CedarDataServices;
+import org.metadatacenter.cedar.workspace.backend.BackendSessions;
+import org.metadatacenter.cedar.workspace.config.PermissionJobsConfig;
+import org.metadatacenter.cedar.workspace.event.NodeEvent;
+import org.metadatacenter.cedar.workspace.event.NodeEventBus;
+import org.metadatacenter.cedar.workspace.event.NodeEventType;
+import org.metadatacenter.config.CedarConfig;
+import org.metadatacenter.exception.CedarException;
+import org.metadatacenter.model.CedarNodeType;
+import org.metadatacenter.model.FolderOrResource;
+import org.metadatacenter.model.folderserver.basic.FolderServerFolder;
+import org.metadatacenter.model.folderserver.extract.FolderServerNodeExtract;
+import org.metadatacenter.rest.context.CedarRequestContext;
+import org.metadatacenter.rest.context.CedarRequestContextFactory;
+import org.metadatacenter.server.FolderServiceSession;
+import org.metadatacenter.server.result.BackendCallResult;
+import org.metadatacenter.server.security.model.auth.CedarNodePermissionsRequest;
+import org.metadatacenter.server.security.model.user.CedarUser;
+import org.metadatacenter.util.http.PagedSortedTypedQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Applies the grants a permission change made on a folder to everything below it, as a {@link PermissionJob}. Only
+ * the {@link PermissionDelta} of the change is applied, so the descendants keep their owners and their other grants.
+ * The subtree is walked breadth first, one page of folder contents at a time, and every page is a batch. Every
+ * backend call opens sessions of its own, so a job never holds more than a page of nodes, nor sessions between two
+ * calls. The job outlives the request that started it, so it builds a request context of its own for the user.
+ * <p>
+ * User home folders, and everything in them, are skipped, as are the nodes that already have the change. A node
+ * that the user may not change, or whose backend call fails, is counted as failed and the job goes on; a folder
+ * whose contents can not be listed counts as one failed node.
+ */
+public class PermissionPropagation {
+
+  /**
+   * The backend calls of a job, made on behalf of the user who started it.
+   */
+  interface Backend {
+
+    List<FolderServerNodeExtract> findFolderContents(String folderId, int limit, int offset) throws CedarException;
+
+    boolean isUserHome(String folderId) throws CedarException;
+
+    CedarNodePermissionsRequest getNodePermissions(String nodeId) throws CedarException;
+
+    /**
+     * Returns false if the permissions could not be changed.
+     */
+    boolean updateNodePermissions(String nodeId, CedarNodePermissionsRequest permissions, FolderOrResource type)
+        throws CedarException;
+  }
+
+  private enum Outcome {
+    UPDATED,
+    SKIPPED,
+    FAILED
+  }
+
+  private static final Logger log = LoggerFactory.getLogger(PermissionPropagation.class);
+
+  private final CedarConfig cedarConfig;
+  private final PermissionJobsConfig config;
+  private final PermissionJobs permissionJobs;
+  private final NodeEventBus nodeEventBus;
+
+  public PermissionPropagation(CedarConfig cedarConfig, PermissionJobsConfig config, PermissionJobs permissionJobs,
+                               NodeEventBus nodeEventBus) {
+    this.cedarConfig = cedarConfig;
+    this.config = config;
+    this.permissionJobs = permissionJobs;
+    this.nodeEventBus = nodeEventBus;
+  }
+
+  /**
+   * Reserves a place for a job, or returns null if the job queue is full.
+   */
+  public PermissionJobs.Reservation reserve() {
+    return permissionJobs.reserve();
+  }
+
+  /**
+   * Starts a job in a reserved place, that applies the delta to all the descendants of the folder on behalf of the
+   * user. The folder itself is not changed. Returns null only if the server is stopping.
+   */
+  public PermissionJob submit(PermissionJobs.Reservation reservation, String userId, String folderId,
+                              PermissionDelta delta) throws CedarException {
+    // Every version and publication status has its own permissions
+    PagedSortedTypedQuery query = new PagedSortedTypedQuery(cedarConfig.getFolderRESTAPI().getPagination())
+        .resourceTypes(Optional.empty())
+        .version(Optional.of("all"))
+        .publicationStatus(Optional.of("all"))
+        .sort(Optional.empty())
+        .limit(Optional.of(config.getBatchSize()))
+        .offset(Optional.empty());
+    query.validate();
+    return permissionJobs.submit(reservation, folderId, userId,
+        job -> propagate(new SessionBackend(contextOf(userId), query), query.getLimit(), userId, folderId, delta,
+            job));
+  }
+
+  public PermissionJob getJob(String jobId) {
+    return permissionJobs.get(jobId);
+  }
+
+  void propagate(Backend backend, int limit, String userId, String folderId, PermissionDelta delta,
+                 PermissionJob job) {
+    Deque<String> folders = new ArrayDeque<>();
+    folders.add(folderId);
+    while (!folders.isEmpty()) {
+      String parentId = folders.poll();
+      int offset = 0;
+      List<FolderServerNodeExtract> page;
+      do {
+        try {
+          page = backend.findFolderContents(parentId, limit, offset);
+        } catch (CedarException | RuntimeException e) {
+          log.warn("Permission job " + job.getId() + " could not list the contents of folder " + parentId, e);
+          job.batchDone(0, 0, 1);
+          break;
+        }
+        int updated = 0;
+        int skipped = 0;
+        int failed = 0;
+        for (FolderServerNodeExtract child : page) {
+          switch (update(backend, userId, parentId, child, delta, folders, job)) {
+            case UPDATED:
+              updated++;
+              break;
+            case SKIPPED:
+              skipped++;
+              break;
+            default:
+              failed++;
+          }
+        }
+        job.batchDone(updated, skipped, failed);
+        offset += limit;
+      } while (page.size() >= limit);
+    }
+  }
+
+  private static CedarRequestContext contextOf(String userId) throws Exception {
+    CedarUser user = CedarDataServices.getUserService().findUser(userId);
+    if (user == null) {
+      throw new IllegalStateException("The user " + userId + " who started the job can not be found");
+    }
+    return CedarRequestContextFactory.fromUser(user);
+  }
+
+  private Outcome update(Backend backend, String userId, String parentId, FolderServerNodeExtract child,
+                         PermissionDelta delta, Deque<String> folders, PermissionJob job) {
+    boolean isFolder = child.getType() == CedarNodeType.FOLDER;
+    try {
+      if (isFolder) {
+        // The permissions of a home folder belong to its user
+        if (backend.isUserHome(child.getId())) {
+          return Outcome.SKIPPED;
+        }
+        folders.add(child.getId());
+      }
+      CedarNodePermissionsRequest permissions = backend.getNodePermissions(child.getId());
+      if (!delta.applyTo(permissions)) {
+        return Outcome.SKIPPED;
+      }
+      if (!backend.updateNodePermissions(child.getId(), permissions,
+          isFolder ? FolderOrResource.FOLDER : FolderOrResource.RESOURCE)) {
+        log.debug("Permission job " + job.getId() + " could not update node " + child.getId());
+        return Outcome.FAILED;
+      }
+    } catch (CedarException | RuntimeException e) {
+      log.warn("Permission job " + job.getId() + " could not update node " + child.getId(), e);
+      return Outcome.FAILED;
+    }
+    nodeEventBus.publish(NodeEvent.of(NodeEventType.PERMISSIONS_CHANGED, child.getId(), child.getType())
+        .parentId(parentId)
+        .userId(userId));
+    return Outcome.UPDATED;
+  }
+
+  private static class SessionBackend implements Backend {
+
+    private final CedarRequestContext c;
+    private final PagedSortedTypedQuery query;
+
+    SessionBackend(CedarRequestContext c, PagedSortedTypedQuery query) {
+      this.c = c;
+      this.query = query;
+    }
+
+    @Override
+    public List<FolderServerNodeExtract> findFolderContents(String folderId, int limit, int offset)
+        throws CedarException {
+      FolderServiceSession folderSession = BackendSessions.openFolderServiceSession(c);
+      return folderSession.findFolderContentsExtract(folderId, query.getNodeTypeList(), query.getVersion(),
+          query.getPublicationStatus(), limit, offset, query.getSortList());
+    }
+
+    @Override
+    public boolean isUserHome(String folderId) throws CedarException {
+      FolderServerFolder folder = BackendSessions.openFolderServiceSession(c).findFolderById(folderId);
+      return folder != null && folder.isUserHome();
+    }
+
+    @Override
+    public CedarNodePermissionsRequest getNodePermissions(String nodeId) throws CedarException {
+      return BackendSessions.openPermissionServiceSession(c).getNodePermissions(nodeId).toRequest();
+    }
+
+    @Override
+    public boolean updateNodePermissions(String nodeId, CedarNodePermissionsRequest permissions,
+                                         FolderOrResource type) throws CedarException {
+      BackendCallResult result = BackendSessions.openPermissionServiceSession(c).updateNodePermissions(nodeId,
+          permissions, type);
+      return !result.isError();
+    }
+  }
+}
@@ -0,0 +1,358 @@
+package org.metadatacenter.cedar.workspace.push;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.dropwizard.lifecycle.Managed;
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.OutboundEvent;
+import org.metadatacenter.bridge.CedarDataServices;
+import org.metadatacenter.cedar.workspace.backend.BackendSessions;
+import org.metadatacenter.cedar.workspace.config.FolderEventsConfig;
+import org.metadatacenter.cedar.workspace.event.NodeEvent;
+import org.metadatacenter.cedar.workspace.event.NodeEventListener;
+import org.metadatacenter.cedar.workspace.event.NodeEventType;
+import org.metadatacenter.cedar.workspace.invalidation.InvalidationListener;
+import org.metadatacenter.cedar.workspace.invalidation.RemoteChange;
+import org.metadatacenter.config.CedarConfig;
+import org.metadatacenter.exception.CedarException;
+import org.metadatacenter.model.CedarNodeType;
+import org.metadatacenter.model.folderserver.basic.FolderServerNode;
+import org.metadatacenter.model.folderserver.extract.FolderServerNodeExtract;
+import org.metadatacenter.rest.context.CedarRequestContext;
+import org.metadatacenter.rest.context.CedarRequestContextFactory;
+import org.metadatacenter.server.FolderServiceSession;
+import org.metadatacenter.util.json.JsonMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.core.MediaType;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes compact notifications about the contents of folders to the open event streams of those folders. Node
+ * events are queued per subscriber and written by a small pool of dispatch threads, so neither the request threads
+ * nor the publishing handlers ever block on a slow client. The changes made on the other instances arrive through
+ * the invalidation bus; when their parent folder was not sent along, it is looked up on a dispatch thread, and only
+ * if some stream is open.
+ * <p>
+ * Read access to a folder is checked when its stream opens. When the permissions of the folder, or of a folder above
+ * it, change here or on another instance, its streams are closed, so the clients have to reconnect and their access
+ * is checked again.
+ */
+public class FolderEventBroadcaster implements NodeEventListener, InvalidationListener, Managed {
+
+  /**
+   * Looks up the parent folder of a node changed on another instance.
+   */
+  public interface ParentLookup {
+    String findParentId(String id, CedarNodeType nodeType) throws CedarException;
+  }
+
+  private static final Logger log = LoggerFactory.getLogger(FolderEventBroadcaster.class);
+
+  private final FolderEventsConfig config;
+  private final ParentLookup parentLookup;
+  private final Map<String, Set<FolderEventSubscriber>> subscribers = new ConcurrentHashMap<>();
+  private final AtomicInteger subscriberCount = new AtomicInteger();
+  private ExecutorService dispatchExecutor;
+  private ScheduledExecutorService heartbeatExecutor;
+
+  public FolderEventBroadcaster(CedarConfig cedarConfig, FolderEventsConfig config) {
+    this(config, new BackendParentLookup(cedarConfig));
+  }
+
+  FolderEventBroadcaster(FolderEventsConfig config, ParentLookup parentLookup) {
+    this.config = config;
+    this.parentLookup = parentLookup;
+  }
+
+  @Override
+  public void start() {
+    dispatchExecutor = Executors.newFixedThreadPool(config.getDispatchThreads(), daemonThreads("folder-events"));
+    heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(daemonThreads("folder-events-heartbeat"));
+    long interval = config.getHeartbeatInterval().toMilliseconds();
+    heartbeatExecutor.scheduleWithFixedDelay(this::heartbeat, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void stop() {
+    heartbeatExecutor.shutdownNow();
+    dispatchExecutor.shutdownNow();
+    for (Set<FolderEventSubscriber> folderSubscribers : subscribers.values()) {
+      for (FolderEventSubscriber subscriber : folderSubscribers) {
+        subscriber.close();
+      }
+    }
+    subscribers.clear();
+  }
+
+  /**
+   * Opens a new event stream for the folder, or returns null if the subscriber limit has been reached. The ancestors
+   * are the folders above the folder.
+   */
+  public EventOutput subscribe(String folderId, Collection<String> ancestorIds) {
+    EventOutput output = new EventOutput();
+    return subscribe(folderId, ancestorIds, FolderEventSubscriber.Sink.of(output)) ? output : null;
+  }
+
+  boolean subscribe(String folderId, Collection<String> ancestorIds, FolderEventSubscriber.Sink sink) {
+    if (subscriberCount.incrementAndGet() > config.getMaxSubscribers()) {
+      subscriberCount.decrementAndGet();
+      return false;
+    }
+    FolderEventSubscriber subscriber = new FolderEventSubscriber(folderId, ancestorIds, sink,
+        config.getMaxQueuedEventsPerSubscriber());
+    subscribers.computeIfAbsent(folderId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+    return true;
+  }
+
+  public int getSubscriberCount() {
+    return subscriberCount.get();
+  }
+
+  @Override
+  public void onNodeEvent(NodeEvent event) {
+    if (event.getType() == NodeEventType.PERMISSIONS_CHANGED) {
+      permissionsChanged(event.getId(), event.getNodeType());
+      return;
+    }
+    if (!isPushed(event.getType()) || subscribers.isEmpty()) {
+      // Nobody listens, so the parent of the node does not need to be looked up
+      return;
+    }
+    broadcast(event.getType().getValue(), event.getId(), event.getNodeType(), event.getParentId(),
+        event.getPreviousParentId(), event.getTimestamp());
+  }
+
+  @Override
+  public void onInvalidation(Collection<String> nodeIds) {
+  }
+
+  @Override
+  public void onRemoteChange(String originId, RemoteChange change) {
+    CedarNodeType nodeType = change.getNodeType() != null ? CedarNodeType.forValue(change.getNodeType()) : null;
+    if (NodeEventType.PERMISSIONS_CHANGED.getValue().equals(change.getType())) {
+      permissionsChanged(change.getId(), nodeType);
+      return;
+    }
+    if (subscribers.isEmpty() || !isPushed(change.getType())) {
+      return;
+    }
+    if (change.getParentId() != null || NodeEventType.DELETED.getValue().equals(change.getType())) {
+      broadcast(change.getType(), change.getId(), nodeType, change.getParentId(), change.getPreviousParentId(),
+          change.getTimestamp());
+      return;
+    }
+    try {
+      dispatchExecutor.execute(() -> {
+        String parentId = null;
+        try {
+          parentId = parentLookup.findParentId(change.getId(), nodeType);
+        } catch (CedarException | RuntimeException e) {
+          log.warn("Error while looking up the parent of " + change.getId(), e);
+        }
+        broadcast(change.getType(), change.getId(), nodeType, parentId, change.getPreviousParentId(),
+            change.getTimestamp());
+      });
+    } catch (RejectedExecutionException e) {
+      // stopping
+    }
+  }
+
+  /**
+   * Remote changes were lost: every open stream is told to resync.
+   */
+  @Override
+  public void onResync() {
+    for (Set<FolderEventSubscriber> folderSubscribers : subscribers.values()) {
+      for (FolderEventSubscriber subscriber : folderSubscribers) {
+        subscriber.requestResync();
+        schedule(subscriber);
+      }
+    }
+  }
+
+  /**
+   * Closes the streams of the folder and of the folders below it, whose read access may have changed with it.
+   */
+  private void permissionsChanged(String id, CedarNodeType nodeType) {
+    if (nodeType != CedarNodeType.FOLDER || subscribers.isEmpty()) {
+      return;
+    }
+    for (Set<FolderEventSubscriber> folderSubscribers : subscribers.values()) {
+      for (FolderEventSubscriber subscriber : folderSubscribers) {
+        if (subscriber.isAtOrBelow(id)) {
+          subscriber.close();
+          unsubscribe(subscriber);
+        }
+      }
+    }
+  }
+
+  private static boolean isPushed(NodeEventType type) {
+    switch (type) {
+      case CREATED:
+      case UPDATED:
+      case MOVED:
+      case DELETED:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static boolean isPushed(String type) {
+    for (NodeEventType eventType : NodeEventType.values()) {
+      if (eventType.getValue().equals(type)) {
+        return isPushed(eventType);
+      }
+    }
+    return false;
+  }
+
+  private void broadcast(String type, String id, CedarNodeType nodeType, String parentId, String previousParentId,
+                         long timestamp) {
+    Set<String> folderIds = new LinkedHashSet<>();
+    folderIds.add(parentId);
+    folderIds.add(previousParentId);
+    if (nodeType == CedarNodeType.FOLDER) {
+      folderIds.add(id);
+    }
+    for (String folderId : folderIds) {
+      Set<FolderEventSubscriber> folderSubscribers = folderId == null ? null : subscribers.get(folderId);
+      if (folderSubscribers == null || folderSubscribers.isEmpty()) {
+        continue;
+      }
+      Map<String, Object> notification = new LinkedHashMap<>();
+      notification.put("folderId", folderId);
+      notification.put("@id", id);
+      notification.put("nodeType", nodeType != null ? nodeType.getValue() : null);
+      notification.put("parentId", parentId);
+      if (previousParentId != null) {
+        notification.put("previousParentId", previousParentId);
+      }
+      notification.put("timestamp", timestamp);
+      OutboundEvent outboundEvent = buildEvent(type, notification);
+      for (FolderEventSubscriber subscriber : folderSubscribers) {
+        subscriber.offer(outboundEvent);
+        schedule(subscriber);
+      }
+    }
+  }
+
+  private void schedule(FolderEventSubscriber subscriber) {
+    if (!subscriber.tryClaim()) {
+      return;
+    }
+    try {
+      dispatchExecutor.execute(() -> dispatch(subscriber));
+    } catch (RejectedExecutionException e) {
+      subscriber.release();
+    }
+  }
+
+  private void dispatch(FolderEventSubscriber subscriber) {
+    boolean open;
+    try {
+      Map<String, Object> resync = new LinkedHashMap<>();
+      resync.put("folderId", subscriber.getFolderId());
+      open = subscriber.drain(buildEvent("resync", resync));
+    } finally {
+      subscriber.release();
+    }
+    if (!open) {
+      unsubscribe(subscriber);
+    } else if (subscriber.hasPending()) {
+      schedule(subscriber);
+    }
+  }
+
+  private void heartbeat() {
+    OutboundEvent heartbeat = new OutboundEvent.Builder().comment("heartbeat").build();
+    for (Set<FolderEventSubscriber> folderSubscribers : subscribers.values()) {
+      for (FolderEventSubscriber subscriber : folderSubscribers) {
+        if (subscriber.isClosed()) {
+          unsubscribe(subscriber);
+        } else {
+          subscriber.offer(heartbeat);
+          schedule(subscriber);
+        }
+      }
+    }
+  }
+
+  private void unsubscribe(FolderEventSubscriber subscriber) {
+    Set<FolderEventSubscriber> folderSubscribers = subscribers.get(subscriber.getFolderId());
+    if (folderSubscribers != null && folderSubscribers.remove(subscriber)) {
+      subscriberCount.decrementAndGet();
+      if (folderSubscribers.isEmpty()) {
+        subscribers.remove(subscriber.getFolderId(), folderSubscribers);
+      }
+    }
+  }
+
+  private static OutboundEvent buildEvent(String name, Map<String, Object> data) {
+    String json;
+    try {
+      json = JsonMapper.MAPPER.writeValueAsString(data);
+    } catch (JsonProcessingException e) {
+      log.error("Error while serializing folder event", e);
+      json = "{}";
+    }
+    return new OutboundEvent.Builder()
+        .name(name)
+        .mediaType(MediaType.APPLICATION_JSON_TYPE)
+        .data(String.class, json)
+        .build();
+  }
+
+  private static ThreadFactory daemonThreads(String name) {
+    AtomicInteger counter = new AtomicInteger();
+    return r -> {
+      Thread thread = new Thread(r, name + "-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private static class BackendParentLookup implements ParentLookup {
+
+    private final CedarConfig cedarConfig;
+    private volatile CedarRequestContext adminContext;
+
+    BackendParentLookup(CedarConfig cedarConfig) {
+      this.cedarConfig = cedarConfig;
+    }
+
+    @Override
+    public String findParentId(String id, CedarNodeType nodeType) throws CedarException {
+      if (adminContext == null) {
+        adminContext = CedarRequestContextFactory.fromAdminUser(cedarConfig, CedarDataServices.getUserService());
+      }
+      FolderServiceSession folderSession = BackendSessions.openFolderServiceSession(adminContext);
+      FolderServerNode node = nodeType == CedarNodeType.FOLDER ? folderSession.findFolderById(id) :
+          folderSession.findResourceById(id);
+      if (node == null) {
+        return null;
+      }
+      // The path ends with the node itself
+      List<FolderServerNodeExtract> pathInfo = folderSession.findNodePathExtract(node);
+      if (pathInfo == null || pathInfo.size() < 2) {
+        return null;
+      }
+      return pathInfo.get(pathInfo.size() - 2).getId();
+    }
+  }
+}
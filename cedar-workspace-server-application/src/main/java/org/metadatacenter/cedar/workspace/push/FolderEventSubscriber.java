@@ -0,0 +1,136 @@
+package org.metadatacenter.cedar.workspace.push;
+
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.OutboundEvent;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One open event stream. Events are queued and written by the dispatch threads; when the client does not keep up
+ * and the queue fills, the queued events are dropped and replaced by a single resync event. The stream knows the
+ * folders above its folder, so it can be closed when the permissions of any of them change.
+ */
+class FolderEventSubscriber {
+
+  /**
+   * The stream the events are written to.
+   */
+  interface Sink {
+
+    void write(OutboundEvent event) throws IOException;
+
+    boolean isClosed();
+
+    void close() throws IOException;
+
+    static Sink of(EventOutput output) {
+      return new Sink() {
+        @Override
+        public void write(OutboundEvent event) throws IOException {
+          output.write(event);
+        }
+
+        @Override
+        public boolean isClosed() {
+          return output.isClosed();
+        }
+
+        @Override
+        public void close() throws IOException {
+          output.close();
+        }
+      };
+    }
+  }
+
+  private final String folderId;
+  private final Set<String> ancestorIds;
+  private final Sink output;
+  private final BlockingQueue<OutboundEvent> queue;
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private volatile boolean overflowed;
+
+  FolderEventSubscriber(String folderId, Collection<String> ancestorIds, Sink output, int maxQueuedEvents) {
+    this.folderId = folderId;
+    this.ancestorIds = new HashSet<>(ancestorIds);
+    this.output = output;
+    this.queue = new ArrayBlockingQueue<>(maxQueuedEvents);
+  }
+
+  String getFolderId() {
+    return folderId;
+  }
+
+  /**
+   * Returns true if the folder of the stream is the given folder or lies below it.
+   */
+  boolean isAtOrBelow(String id) {
+    return folderId.equals(id) || ancestorIds.contains(id);
+  }
+
+  boolean isClosed() {
+    return output.isClosed();
+  }
+
+  boolean hasPending() {
+    return overflowed || !queue.isEmpty();
+  }
+
+  void offer(OutboundEvent event) {
+    if (!queue.offer(event)) {
+      overflowed = true;
+      queue.clear();
+    }
+  }
+
+  void requestResync() {
+    overflowed = true;
+    queue.clear();
+  }
+
+  boolean tryClaim() {
+    return scheduled.compareAndSet(false, true);
+  }
+
+  void release() {
+    scheduled.set(false);
+  }
+
+  /**
+   * Writes the queued events. Returns false if the stream is gone.
+   */
+  boolean drain(OutboundEvent resyncEvent) {
+    try {
+      while (true) {
+        // The queue may overflow while an event is being written, the events queued until then are lost
+        if (overflowed) {
+          overflowed = false;
+          queue.clear();
+          output.write(resyncEvent);
+        }
+        OutboundEvent event = queue.poll();
+        if (event == null) {
+          return true;
+        }
+        output.write(event);
+      }
+    } catch (IOException | RuntimeException e) {
+      close();
+      return false;
+    }
+  }
+
+  void close() {
+    try {
+      output.close();
+    } catch (IOException e) {
+      // the client is gone already
+    }
+  }
+}
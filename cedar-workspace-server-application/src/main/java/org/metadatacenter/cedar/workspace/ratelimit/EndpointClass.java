@@ -0,0 +1,41 @@
+package org.metadatacenter.cedar.workspace.ratelimit;
+
+import javax.ws.rs.HttpMethod;
+import java.lang.reflect.Method;
+
+public enum EndpointClass {
+
+  SEARCH("search"),
+  READ("read"),
+  WRITE("write");
+
+  private final String value;
+
+  EndpointClass(String value) {
+    this.value = value;
+  }
+
+  public String getValue() {
+    return value;
+  }
+
+  /**
+   * Classifies a request by the resource method it matched: the class given with {@link RateLimitClass} if any,
+   * otherwise a read for GET, HEAD and the {@link ReadOnly} methods, and a write for the rest.
+   */
+  public static EndpointClass of(String httpMethod, Method resourceMethod) {
+    if (resourceMethod != null) {
+      RateLimitClass rateLimitClass = resourceMethod.getAnnotation(RateLimitClass.class);
+      if (rateLimitClass != null) {
+        return rateLimitClass.value();
+      }
+      if (resourceMethod.isAnnotationPresent(ReadOnly.class)) {
+        return READ;
+      }
+    }
+    if (HttpMethod.GET.equals(httpMethod) || HttpMethod.HEAD.equals(httpMethod)) {
+      return READ;
+    }
+    return WRITE;
+  }
+}
@@ -0,0 +1,18 @@
+package org.metadatacenter.cedar.workspace.ratelimit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Puts a resource method in another endpoint class than the one of its HTTP method, such as a search that would
+ * otherwise be limited as an ordinary read.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface RateLimitClass {
+
+  EndpointClass value();
+
+}
@@ -0,0 +1,122 @@
+package org.metadatacenter.cedar.workspace.ratelimit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Priority;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Applies the rate limiter before the request reaches the resource, so a rejected request costs no backend call.
+ * The endpoint class is taken from the matched resource method.
+ * Users are told apart by their credentials; only a digest of the Authorization header is kept. Requests with an API
+ * key can be let through without limits.
+ * <p>
+ * The permit of an admitted request is released once its response body is written, since streamed listings read
+ * from the backend while they are written, or by the response filter if there is no body to write.
+ */
+@Priority(Priorities.AUTHENTICATION)
+public class RateLimitFilter implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+
+  private static final Logger log = LoggerFactory.getLogger(RateLimitFilter.class);
+
+  private static final String ADMISSION_PROPERTY = RateLimitFilter.class.getName() + ".admission";
+  private static final String ANONYMOUS = "anonymous";
+  private static final String API_KEY_PREFIX = "apiKey ";
+  private static final int TOO_MANY_REQUESTS = 429;
+
+  private final RateLimiter rateLimiter;
+  private final boolean exemptApiKeys;
+
+  @Context
+  private ResourceInfo resourceInfo;
+
+  public RateLimitFilter(RateLimiter rateLimiter, boolean exemptApiKeys) {
+    this.rateLimiter = rateLimiter;
+    this.exemptApiKeys = exemptApiKeys;
+  }
+
+  @Override
+  public void filter(ContainerRequestContext requestContext) {
+    String authorization = requestContext.getHeaderString(HttpHeaders.AUTHORIZATION);
+    if (exemptApiKeys && authorization != null &&
+        authorization.regionMatches(true, 0, API_KEY_PREFIX, 0, API_KEY_PREFIX.length())) {
+      return;
+    }
+    EndpointClass endpointClass = EndpointClass.of(requestContext.getMethod(),
+        resourceInfo != null ? resourceInfo.getResourceMethod() : null);
+    RateLimiter.Admission admission = rateLimiter.acquire(userKey(authorization), endpointClass);
+    if (admission == null) {
+      return;
+    }
+    if (admission.isAdmitted()) {
+      requestContext.setProperty(ADMISSION_PROPERTY, admission);
+    } else {
+      Map<String, Object> r = new HashMap<>();
+      r.put("errorMessage", "Too many requests, retry later");
+      r.put("endpointClass", endpointClass.getValue());
+      r.put("retryAfter", admission.getRetryAfterSeconds());
+      requestContext.abortWith(Response.status(TOO_MANY_REQUESTS)
+          .header(HttpHeaders.RETRY_AFTER, admission.getRetryAfterSeconds())
+          .type(MediaType.APPLICATION_JSON_TYPE)
+          .entity(r)
+          .build());
+    }
+  }
+
+  @Override
+  public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+    if (!responseContext.hasEntity() || HttpMethod.HEAD.equals(requestContext.getMethod())) {
+      release(requestContext.getProperty(ADMISSION_PROPERTY));
+      requestContext.removeProperty(ADMISSION_PROPERTY);
+    }
+  }
+
+  @Override
+  public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+    try {
+      context.proceed();
+    } finally {
+      release(context.getProperty(ADMISSION_PROPERTY));
+      context.removeProperty(ADMISSION_PROPERTY);
+    }
+  }
+
+  private void release(Object admission) {
+    if (admission != null) {
+      rateLimiter.release((RateLimiter.Admission) admission);
+    }
+  }
+
+  private static String userKey(String authorization) {
+    if (authorization == null || authorization.isEmpty()) {
+      return ANONYMOUS;
+    }
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return Base64.getEncoder().encodeToString(digest.digest(authorization.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      log.error("SHA-256 is not available", e);
+      return authorization;
+    }
+  }
+}
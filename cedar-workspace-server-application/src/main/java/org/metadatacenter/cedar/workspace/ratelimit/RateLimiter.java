@@ -0,0 +1,177 @@
+package org.metadatacenter.cedar.workspace.ratelimit;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import org.metadatacenter.cedar.workspace.config.RateLimitConfig;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control per user and endpoint class: a token bucket bounds the request rate, and a counter bounds the
+ * requests being processed at the same time. Endpoint classes without configured limits are not limited.
+ * <p>
+ * About maxTrackedUsers user and endpoint class pairs are tracked. Once there are more, the least recently seen
+ * pairs without requests in flight are forgotten, a tenth of the bound at a time, by the thread that went over it.
+ * A forgotten pair starts over with a full bucket if it comes back. Pairs with requests in flight are never
+ * forgotten, so their in-flight count stays right.
+ */
+public class RateLimiter {
+
+  private final Map<EndpointClass, RateLimitConfig.EndpointLimitConfig> limits = new EnumMap<>(EndpointClass.class);
+  private final Map<EndpointClass, Meter> rateLimited = new EnumMap<>(EndpointClass.class);
+  private final Map<EndpointClass, Meter> inFlightLimited = new EnumMap<>(EndpointClass.class);
+  private final Map<String, UserLimits> users = new ConcurrentHashMap<>();
+  private final AtomicLong accesses = new AtomicLong();
+  private final AtomicBoolean forgetting = new AtomicBoolean();
+  private final int maxTrackedUsers;
+
+  public RateLimiter(RateLimitConfig config, MetricRegistry metrics) {
+    this.maxTrackedUsers = config.getMaxTrackedUsers();
+    for (EndpointClass endpointClass : EndpointClass.values()) {
+      RateLimitConfig.EndpointLimitConfig limit = config.getEndpoints().get(endpointClass.getValue());
+      if (limit != null) {
+        limits.put(endpointClass, limit);
+      }
+      rateLimited.put(endpointClass,
+          metrics.meter(MetricRegistry.name(RateLimiter.class, endpointClass.getValue(), "rateLimited")));
+      inFlightLimited.put(endpointClass,
+          metrics.meter(MetricRegistry.name(RateLimiter.class, endpointClass.getValue(), "inFlightLimited")));
+    }
+  }
+
+  /**
+   * Returns null if the request is admitted without limits, a permit to release when it is admitted, or a
+   * rejection.
+   */
+  public Admission acquire(String userKey, EndpointClass endpointClass) {
+    return acquire(userKey, endpointClass, System.nanoTime());
+  }
+
+  Admission acquire(String userKey, EndpointClass endpointClass, long nowNanos) {
+    RateLimitConfig.EndpointLimitConfig limit = limits.get(endpointClass);
+    if (limit == null) {
+      return null;
+    }
+    String key = userKey + "|" + endpointClass.getValue();
+    UserLimits userLimits = users.get(key);
+    boolean added = false;
+    if (userLimits == null) {
+      userLimits = users.computeIfAbsent(key,
+          k -> new UserLimits(new TokenBucket(limit.getPermitsPerSecond(), limit.getBurst(), nowNanos)));
+      added = true;
+    }
+    userLimits.lastSeen = accesses.incrementAndGet();
+    if (added && users.size() > maxTrackedUsers) {
+      forgetLeastRecentlySeen();
+    }
+
+    long waitNanos = userLimits.bucket.tryAcquire(nowNanos);
+    if (waitNanos > 0) {
+      rateLimited.get(endpointClass).mark();
+      return Admission.rejected(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L)));
+    }
+    if (userLimits.inFlight.incrementAndGet() > limit.getMaxInFlight()) {
+      userLimits.inFlight.decrementAndGet();
+      inFlightLimited.get(endpointClass).mark();
+      return Admission.rejected(1);
+    }
+    return Admission.admitted(userLimits);
+  }
+
+  public void release(Admission admission) {
+    if (admission != null && admission.userLimits != null) {
+      admission.userLimits.inFlight.decrementAndGet();
+    }
+  }
+
+  int getTrackedUsers() {
+    return users.size();
+  }
+
+  private void forgetLeastRecentlySeen() {
+    if (!forgetting.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      int target = maxTrackedUsers - maxTrackedUsers / 10;
+      // lastSeen keeps changing, so the candidates are sorted by a copy of it
+      List<IdleUser> idle = new ArrayList<>();
+      for (Map.Entry<String, UserLimits> entry : users.entrySet()) {
+        if (entry.getValue().inFlight.get() == 0) {
+          idle.add(new IdleUser(entry.getKey(), entry.getValue()));
+        }
+      }
+      idle.sort(Comparator.comparingLong(user -> user.lastSeen));
+      for (IdleUser user : idle) {
+        if (users.size() <= target) {
+          break;
+        }
+        if (user.limits.inFlight.get() == 0) {
+          users.remove(user.key, user.limits);
+        }
+      }
+    } finally {
+      forgetting.set(false);
+    }
+  }
+
+  static class UserLimits {
+
+    private final TokenBucket bucket;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile long lastSeen;
+
+    UserLimits(TokenBucket bucket) {
+      this.bucket = bucket;
+    }
+  }
+
+  private static class IdleUser {
+
+    private final String key;
+    private final UserLimits limits;
+    private final long lastSeen;
+
+    IdleUser(String key, UserLimits limits) {
+      this.key = key;
+      this.limits = limits;
+      this.lastSeen = limits.lastSeen;
+    }
+  }
+
+  public static class Admission {
+
+    private final UserLimits userLimits;
+    private final long retryAfterSeconds;
+
+    private Admission(UserLimits userLimits, long retryAfterSeconds) {
+      this.userLimits = userLimits;
+      this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    static Admission admitted(UserLimits userLimits) {
+      return new Admission(userLimits, 0);
+    }
+
+    static Admission rejected(long retryAfterSeconds) {
+      return new Admission(null, retryAfterSeconds);
+    }
+
+    public boolean isAdmitted() {
+      return userLimits != null;
+    }
+
+    public long getRetryAfterSeconds() {
+      return retryAfterSeconds;
+    }
+  }
+}
@@ -0,0 +1,15 @@
+package org.metadatacenter.cedar.workspace.ratelimit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a resource method that only reads although it is not a GET, such as a lookup with the ids in the body, so
+ * that it is limited as a read.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ReadOnly {
+}
@@ -0,0 +1,40 @@
+package org.metadatacenter.cedar.workspace.ratelimit;
+
+/**
+ * Classic token bucket: refilled continuously at a fixed rate, up to a burst size.
+ */
+public class TokenBucket {
+
+  private final double permitsPerNano;
+  private final double burst;
+  private double tokens;
+  private long lastRefillNanos;
+
+  public TokenBucket(double permitsPerSecond, int burst, long nowNanos) {
+    this.permitsPerNano = permitsPerSecond / 1_000_000_000d;
+    this.burst = burst;
+    this.tokens = burst;
+    this.lastRefillNanos = nowNanos;
+  }
+
+  /**
+   * Takes a token if there is one. Returns 0 on success, otherwise the number of nanoseconds until a token will be
+   * available.
+   */
+  public synchronized long tryAcquire(long nowNanos) {
+    refill(nowNanos);
+    if (tokens >= 1) {
+      tokens -= 1;
+      return 0;
+    }
+    return (long) Math.ceil((1 - tokens) / permitsPerNano);
+  }
+
+  private void refill(long nowNanos) {
+    long elapsed = nowNanos - lastRefillNanos;
+    if (elapsed > 0) {
+      tokens = Math.min(burst, tokens + elapsed * permitsPerNano);
+      lastRefillNanos = nowNanos;
+    }
+  }
+}
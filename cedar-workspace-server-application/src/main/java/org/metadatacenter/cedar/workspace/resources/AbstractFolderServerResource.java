@@ -1,37 +1,97 @@
 package org.metadatacenter.cedar.workspace.resources;
 
-import org.metadatacenter.bridge.CedarDataServices;
+import com.fasterxml.jackson.databind.JsonNode;
 import org.metadatacenter.cedar.util.dw.CedarMicroserviceResource;
+import org.metadatacenter.cedar.workspace.backend.BackendSessions;
+import org.metadatacenter.cedar.workspace.codec.BinaryRequestBodyFilter;
 import org.metadatacenter.config.CedarConfig;
+import org.metadatacenter.error.CedarErrorKey;
+import org.metadatacenter.exception.CedarException;
+import org.metadatacenter.model.folderserver.basic.FolderServerNode;
+import org.metadatacenter.model.folderserver.extract.FolderServerNodeExtract;
 import org.metadatacenter.permission.currentuserpermission.CurrentUserPermissionUpdater;
 import org.metadatacenter.rest.context.CedarRequestContext;
+import org.metadatacenter.server.FolderServiceSession;
 import org.metadatacenter.server.PermissionServiceSession;
 import org.metadatacenter.server.VersionServiceSession;
 import org.metadatacenter.server.permissions.CurrentUserPermissionUpdaterForWorkspaceFolder;
 import org.metadatacenter.server.permissions.CurrentUserPermissionUpdaterForWorkspaceResource;
 import org.metadatacenter.server.security.model.auth.FolderWithCurrentUserPermissions;
 import org.metadatacenter.server.security.model.auth.ResourceWithCurrentUserPermissions;
+import org.metadatacenter.util.http.CedarResponse;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+import java.util.List;
+
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceQueryParameters.QP_FIELDS;
+import static org.metadatacenter.rest.assertion.GenericAssertions.NonEmpty;
 
 public class AbstractFolderServerResource extends CedarMicroserviceResource {
 
+  @Context
+  private HttpServletRequest httpServletRequest;
+
   protected AbstractFolderServerResource(CedarConfig cedarConfig) {
     super(cedarConfig);
   }
 
   protected void decorateFolderWithCurrentUserPermissions(CedarRequestContext c,
                                                           FolderWithCurrentUserPermissions folder) {
-    PermissionServiceSession permissionSession = CedarDataServices.getPermissionServiceSession(c);
+    PermissionServiceSession permissionSession = BackendSessions.getPermissionServiceSession(c);
     CurrentUserPermissionUpdater cupu = CurrentUserPermissionUpdaterForWorkspaceFolder.get(permissionSession, folder);
     cupu.update(folder.getCurrentUserPermissions());
   }
 
   protected void decorateResourceWithCurrentUserPermissions(CedarRequestContext c,
                                                             ResourceWithCurrentUserPermissions resource) {
-    PermissionServiceSession permissionSession = CedarDataServices.getPermissionServiceSession(c);
-    VersionServiceSession versionSession = CedarDataServices.getVersionServiceSession(c);
+    PermissionServiceSession permissionSession = BackendSessions.getPermissionServiceSession(c);
+    VersionServiceSession versionSession = BackendSessions.getVersionServiceSession(c);
     CurrentUserPermissionUpdater cupu = CurrentUserPermissionUpdaterForWorkspaceResource.get(permissionSession,
         versionSession, cedarConfig, resource);
     cupu.update(resource.getCurrentUserPermissions());
 
   }
+
+  /**
+   * Returns the request body as a JSON tree. Smile and CBOR bodies were already decoded by the
+   * {@link BinaryRequestBodyFilter}, and are taken from there without going through JSON text. The folder and
+   * resource create and update endpoints, and the copy command, validate their fields as request context
+   * parameters instead: binary bodies sent to them are written out as JSON text once and parsed again.
+   */
+  protected JsonNode requestBodyAsJson(CedarRequestContext c) throws CedarException {
+    JsonNode decoded = httpServletRequest != null ? BinaryRequestBodyFilter.decodedBody(httpServletRequest) : null;
+    if (decoded != null) {
+      return decoded;
+    }
+    c.must(c.request().getRequestBody()).be(NonEmpty);
+    return c.request().getRequestBody().asJson();
+  }
+
+  /**
+   * Returns a field of a request body as text, or null if it is missing or null.
+   */
+  protected static String textField(JsonNode body, String name) {
+    JsonNode field = body.get(name);
+    return field == null || field.isNull() ? null : field.asText();
+  }
+
+  protected static String findParentId(FolderServiceSession folderSession, FolderServerNode node)
+      throws CedarException {
+    // The path ends with the node itself
+    List<FolderServerNodeExtract> pathInfo = folderSession.findNodePathExtract(node);
+    if (pathInfo == null || pathInfo.size() < 2) {
+      return null;
+    }
+    return pathInfo.get(pathInfo.size() - 2).getId();
+  }
+
+  protected static Response unknownFieldsResponse(List<String> unknownFields) {
+    return CedarResponse.badRequest()
+        .errorKey(CedarErrorKey.INVALID_DATA)
+        .errorMessage("Unknown node fields requested")
+        .parameter(QP_FIELDS, String.join(",", unknownFields))
+        .build();
+  }
 }
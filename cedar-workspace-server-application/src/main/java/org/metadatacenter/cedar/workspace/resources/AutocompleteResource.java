@@ -0,0 +1,82 @@
+package org.metadatacenter.cedar.workspace.resources;
+
+import com.codahale.metrics.annotation.Timed;
+import org.metadatacenter.cedar.workspace.config.AutocompleteConfig;
+import org.metadatacenter.cedar.workspace.core.autocomplete.NamePrefixIndex;
+import org.metadatacenter.cedar.workspace.index.NodeNameIndex;
+import org.metadatacenter.cedar.workspace.index.ReadAccessIndex;
+import org.metadatacenter.config.CedarConfig;
+import org.metadatacenter.error.CedarErrorKey;
+import org.metadatacenter.exception.CedarException;
+import org.metadatacenter.rest.context.CedarRequestContext;
+import org.metadatacenter.util.http.CedarResponse;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_CBOR;
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_SMILE;
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceQueryParameters.QP_PREFIX;
+import static org.metadatacenter.constant.CedarQueryParameters.QP_LIMIT;
+import static org.metadatacenter.rest.assertion.GenericAssertions.LoggedIn;
+
+@Path("/autocomplete")
+@Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE, APPLICATION_CBOR})
+public class AutocompleteResource extends AbstractFolderServerResource {
+
+  private final AutocompleteConfig autocompleteConfig;
+  private final NodeNameIndex nodeNameIndex;
+  private final ReadAccessIndex readAccessIndex;
+
+  public AutocompleteResource(CedarConfig cedarConfig, AutocompleteConfig autocompleteConfig,
+                              NodeNameIndex nodeNameIndex, ReadAccessIndex readAccessIndex) {
+    super(cedarConfig);
+    this.autocompleteConfig = autocompleteConfig;
+    this.nodeNameIndex = nodeNameIndex;
+    this.readAccessIndex = readAccessIndex;
+  }
+
+  @GET
+  @Timed
+  public Response autocomplete(@QueryParam(QP_PREFIX) Optional<String> prefix,
+                               @QueryParam(QP_LIMIT) Optional<Integer> limitParam) throws CedarException {
+    CedarRequestContext c = buildRequestContext();
+    c.must(c.user()).be(LoggedIn);
+
+    if (!prefix.isPresent() || prefix.get().trim().isEmpty()) {
+      return CedarResponse.badRequest()
+          .errorKey(CedarErrorKey.MISSING_DATA)
+          .errorMessage("The prefix must be given")
+          .parameter(QP_PREFIX, prefix.orElse(null))
+          .build();
+    }
+    int limit = limitParam.orElse(autocompleteConfig.getDefaultLimit());
+    if (limit < 1 || limit > autocompleteConfig.getMaxLimit()) {
+      return CedarResponse.badRequest()
+          .errorKey(CedarErrorKey.INVALID_DATA)
+          .errorMessage("The limit must be between 1 and " + autocompleteConfig.getMaxLimit())
+          .parameter(QP_LIMIT, limit)
+          .build();
+    }
+    if (!nodeNameIndex.isReady()) {
+      return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+    }
+
+    List<NamePrefixIndex.Entry> nodes = nodeNameIndex.find(prefix.get(), limit,
+        ids -> readAccessIndex.userHasReadAccessToNodes(c, ids));
+
+    Map<String, Object> r = new HashMap<>();
+    r.put("prefix", prefix.get());
+    r.put("nodes", nodes);
+
+    return Response.ok().entity(r).build();
+  }
+}
@@ -0,0 +1,97 @@
+package org.metadatacenter.cedar.workspace.resources;
+
+import com.codahale.metrics.annotation.Timed;
+import org.metadatacenter.cedar.workspace.changes.ChangeLog;
+import org.metadatacenter.cedar.workspace.changes.ChangeLogEntry;
+import org.metadatacenter.cedar.workspace.config.ChangeLogConfig;
+import org.metadatacenter.cedar.workspace.event.NodeEventType;
+import org.metadatacenter.cedar.workspace.index.ReadAccessIndex;
+import org.metadatacenter.config.CedarConfig;
+import org.metadatacenter.error.CedarErrorKey;
+import org.metadatacenter.exception.CedarException;
+import org.metadatacenter.rest.context.CedarRequestContext;
+import org.metadatacenter.util.http.CedarResponse;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_CBOR;
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_SMILE;
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceQueryParameters.QP_SINCE;
+import static org.metadatacenter.constant.CedarQueryParameters.QP_LIMIT;
+import static org.metadatacenter.rest.assertion.GenericAssertions.LoggedIn;
+
+@Path("/changes")
+@Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE, APPLICATION_CBOR})
+public class ChangesResource extends AbstractFolderServerResource {
+
+  private final ChangeLogConfig changeLogConfig;
+  private final ChangeLog changeLog;
+  private final ReadAccessIndex readAccessIndex;
+
+  public ChangesResource(CedarConfig cedarConfig, ChangeLogConfig changeLogConfig, ChangeLog changeLog,
+                         ReadAccessIndex readAccessIndex) {
+    super(cedarConfig);
+    this.changeLogConfig = changeLogConfig;
+    this.changeLog = changeLog;
+    this.readAccessIndex = readAccessIndex;
+  }
+
+  @GET
+  @Timed
+  public Response findChanges(@QueryParam(QP_SINCE) Optional<String> since,
+                              @QueryParam(QP_LIMIT) Optional<Integer> limitParam) throws CedarException {
+    CedarRequestContext c = buildRequestContext();
+    c.must(c.user()).be(LoggedIn);
+
+    int limit = limitParam.orElse(changeLogConfig.getDefaultLimit());
+    if (limit < 1 || limit > changeLogConfig.getMaxLimit()) {
+      return CedarResponse.badRequest()
+          .errorKey(CedarErrorKey.INVALID_DATA)
+          .errorMessage("The limit must be between 1 and " + changeLogConfig.getMaxLimit())
+          .parameter(QP_LIMIT, limit)
+          .build();
+    }
+
+    ChangeLog.Changes changes = changeLog.read(since.orElse(null), limit);
+
+    // Only the changes of readable nodes are returned. Deleted nodes can not be checked anymore, their deletion is
+    // visible to those who can read the folder they were deleted from
+    Set<String> checkedIds = new LinkedHashSet<>();
+    for (ChangeLogEntry entry : changes.getEntries()) {
+      checkedIds.add(checkedId(entry));
+    }
+    checkedIds.remove(null);
+    Map<String, Boolean> readAccess = readAccessIndex.userHasReadAccessToNodes(c, checkedIds);
+    List<ChangeLogEntry> visibleChanges = new ArrayList<>();
+    for (ChangeLogEntry entry : changes.getEntries()) {
+      String checkedId = checkedId(entry);
+      if (checkedId != null && readAccess.get(checkedId)) {
+        visibleChanges.add(entry);
+      }
+    }
+
+    Map<String, Object> r = new HashMap<>();
+    r.put("changes", visibleChanges);
+    r.put("nextCursor", changes.getNextCursor());
+    r.put("hasMore", changes.hasMore());
+    r.put("resyncRequired", changes.isResyncRequired());
+
+    return Response.ok().entity(r).build();
+  }
+
+  private static String checkedId(ChangeLogEntry entry) {
+    return NodeEventType.DELETED.getValue().equals(entry.getType()) ? entry.getParentId() : entry.getId();
+  }
+}
@@ -1,7 +1,11 @@
 package org.metadatacenter.cedar.workspace.resources;
 
 import com.codahale.metrics.annotation.Timed;
-import org.metadatacenter.bridge.CedarDataServices;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.metadatacenter.cedar.workspace.backend.BackendSessions;
+import org.metadatacenter.cedar.workspace.event.NodeEvent;
+import org.metadatacenter.cedar.workspace.event.NodeEventBus;
+import org.metadatacenter.cedar.workspace.event.NodeEventType;
 import org.metadatacenter.config.CedarConfig;
 import org.metadatacenter.error.CedarErrorKey;
 import org.metadatacenter.error.CedarErrorType;
@@ -10,9 +14,9 @@ import org.metadatacenter.exception.CedarException;
 import org.metadatacenter.model.*;
 import org.metadatacenter.model.folderserver.basic.FolderServerFolder;
 import org.metadatacenter.model.folderserver.basic.FolderServerInstance;
+import org.metadatacenter.model.folderserver.basic.FolderServerNode;
 import org.metadatacenter.model.folderserver.basic.FolderServerResource;
 import org.metadatacenter.rest.assertion.noun.CedarParameter;
-import org.metadatacenter.rest.assertion.noun.CedarRequestBody;
 import org.metadatacenter.rest.context.CedarRequestContext;
 import org.metadatacenter.server.FolderServiceSession;
 import org.metadatacenter.server.PermissionServiceSession;
@@ -35,15 +39,20 @@ import java.net.URI;
 import java.util.HashMap;
 import java.util.Map;
 
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_CBOR;
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_SMILE;
 import static org.metadatacenter.rest.assertion.GenericAssertions.LoggedIn;
 import static org.metadatacenter.rest.assertion.GenericAssertions.NonEmpty;
 
 @Path("/command")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE, APPLICATION_CBOR})
 public class CommandResource extends AbstractFolderServerResource {
 
-  public CommandResource(CedarConfig cedarConfig) {
+  private final NodeEventBus nodeEventBus;
+
+  public CommandResource(CedarConfig cedarConfig, NodeEventBus nodeEventBus) {
     super(cedarConfig);
+    this.nodeEventBus = nodeEventBus;
   }
 
   @POST
@@ -54,22 +63,28 @@ public class CommandResource extends AbstractFolderServerResource {
 
     c.must(c.user()).be(LoggedIn);
 
-    CedarRequestBody requestBody = c.request().getRequestBody();
-    String sourceId = requestBody.get("sourceId").stringValue();
-    String nodeTypeString = requestBody.get("nodeType").stringValue();
-    String folderId = requestBody.get("folderId").stringValue();
+    JsonNode requestBody = requestBodyAsJson(c);
+    String sourceId = textField(requestBody, "sourceId");
+    String nodeTypeString = textField(requestBody, "nodeType");
+    String folderId = textField(requestBody, "folderId");
 
     CedarNodeType nodeType = CedarNodeType.forValue(nodeTypeString);
 
-    FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(c);
+    FolderServiceSession folderSession = BackendSessions.getFolderServiceSession(c);
 
     boolean moved;
+    FolderServerNode sourceNode;
+    String previousParentId;
     FolderServerFolder targetFolder = folderSession.findFolderById(folderId);
     if (nodeType == CedarNodeType.FOLDER) {
       FolderServerFolder sourceFolder = folderSession.findFolderById(sourceId);
+      sourceNode = sourceFolder;
+      previousParentId = findParentId(folderSession, sourceFolder);
       moved = folderSession.moveFolder(sourceFolder, targetFolder);
     } else {
       FolderServerResource sourceResource = folderSession.findResourceById(sourceId);
+      sourceNode = sourceResource;
+      previousParentId = findParentId(folderSession, sourceResource);
       moved = folderSession.moveResource(sourceResource, targetFolder);
     }
     if (!moved) {
@@ -80,6 +95,12 @@ public class CommandResource extends AbstractFolderServerResource {
       throw new CedarBackendException(backendCallResult);
     }
 
+    nodeEventBus.publish(NodeEvent.of(NodeEventType.MOVED, sourceId, nodeType)
+        .parentId(folderId)
+        .previousParentId(previousParentId)
+        .node(sourceNode)
+        .userId(c.getCedarUser().getId()));
+
     // TODO: maybe this should not be CREATED.
     // TODO: if yes, what should be the returned location?
     UriBuilder builder = uriInfo.getAbsolutePathBuilder();
@@ -97,18 +118,18 @@ public class CommandResource extends AbstractFolderServerResource {
     c.must(c.user()).be(LoggedIn);
 
 
-    CedarRequestBody requestBody = c.request().getRequestBody();
-    String oldId = requestBody.get("oldId").stringValue();
-    String newId = requestBody.get("newId").stringValue();
-    String folderId = requestBody.get("folderId").stringValue();
-    String nodeTypeString = requestBody.get("nodeType").stringValue();
-    String versionString = requestBody.get("version").stringValue();
-    String publicationStatusString = requestBody.get("publicationStatus").stringValue();
-    String propagateSharingString = requestBody.get("propagateSharing").stringValue();
+    JsonNode requestBody = requestBodyAsJson(c);
+    String oldId = textField(requestBody, "oldId");
+    String newId = textField(requestBody, "newId");
+    String folderId = textField(requestBody, "folderId");
+    String nodeTypeString = textField(requestBody, "nodeType");
+    String versionString = textField(requestBody, "version");
+    String publicationStatusString = textField(requestBody, "publicationStatus");
+    String propagateSharingString = textField(requestBody, "propagateSharing");
 
     CedarNodeType nodeType = CedarNodeType.forValue(nodeTypeString);
 
-    FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(c);
+    FolderServiceSession folderSession = BackendSessions.getFolderServiceSession(c);
 
     FolderServerFolder targetFolder = folderSession.findFolderById(folderId);
     //TODO: Must have write access
@@ -134,10 +155,16 @@ public class CommandResource extends AbstractFolderServerResource {
           .message("There was an error while creating the draft version of the resource");
       throw new CedarBackendException(backendCallResult);
     } else {
+      nodeEventBus.publish(NodeEvent.of(NodeEventType.CREATED, newId, nodeType)
+          .parentId(folderId)
+          .isBasedOn(isBasedOnOf(sourceResource))
+          .node(newResource)
+          .userId(c.getCedarUser().getId()));
+
       boolean propagateSharing = Boolean.parseBoolean(propagateSharingString);
 
       if (propagateSharing) {
-        PermissionServiceSession permissionSession = CedarDataServices.getPermissionServiceSession(c);
+        PermissionServiceSession permissionSession = BackendSessions.getPermissionServiceSession(c);
         CedarNodePermissions permissions = permissionSession.getNodePermissions(oldId);
         CedarNodePermissionsRequest permissionsRequest = permissions.toRequest();
         NodePermissionUser newOwner = new NodePermissionUser();
@@ -148,7 +175,10 @@ public class CommandResource extends AbstractFolderServerResource {
         if (backendCallResult.isError()) {
           throw new CedarBackendException(backendCallResult);
         }
-
+        nodeEventBus.publish(NodeEvent.of(NodeEventType.PERMISSIONS_CHANGED, newId, nodeType)
+            .parentId(folderId)
+            .node(newResource)
+            .userId(c.getCedarUser().getId()));
       }
     }
 
@@ -169,14 +199,14 @@ public class CommandResource extends AbstractFolderServerResource {
     c.must(c.user()).be(LoggedIn);
 
 
-    CedarRequestBody requestBody = c.request().getRequestBody();
-    String id = requestBody.get("id").stringValue();
-    String nodeTypeString = requestBody.get("nodeType").stringValue();
-    String versionString = requestBody.get("version").stringValue();
+    JsonNode requestBody = requestBodyAsJson(c);
+    String id = textField(requestBody, "id");
+    String nodeTypeString = textField(requestBody, "nodeType");
+    String versionString = textField(requestBody, "version");
 
     CedarNodeType nodeType = CedarNodeType.forValue(nodeTypeString);
 
-    FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(c);
+    FolderServiceSession folderSession = BackendSessions.getFolderServiceSession(c);
 
     FolderServerResource sourceResource = folderSession.findResourceById(id);
 
@@ -200,6 +230,11 @@ public class CommandResource extends AbstractFolderServerResource {
 
     FolderServerResource updatedResource = folderSession.findResourceById(id);
 
+    nodeEventBus.publish(NodeEvent.of(NodeEventType.PUBLISHED, id, nodeType)
+        .parentIdResolver(() -> findParentId(folderSession, updatedResource))
+        .node(updatedResource)
+        .userId(c.getCedarUser().getId()));
+
     // TODO: this should not be CREATED.
     // TODO: if yes, what should be the returned location?
     UriBuilder builder = uriInfo.getAbsolutePathBuilder();
@@ -218,7 +253,7 @@ public class CommandResource extends AbstractFolderServerResource {
 
     c.must(c.request().getRequestBody()).be(NonEmpty);
 
-    FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(c);
+    FolderServiceSession folderSession = BackendSessions.getFolderServiceSession(c);
 
     CedarParameter parentIdP = c.request().getRequestBody().get("parentId");
     c.must(parentIdP).be(NonEmpty);
@@ -299,6 +334,12 @@ public class CommandResource extends AbstractFolderServerResource {
     if (newResource != null) {
       folderSession.setDerivedFrom(id, oldId);
 
+      nodeEventBus.publish(NodeEvent.of(NodeEventType.CREATED, id, nodeType)
+          .parentId(parentId)
+          .isBasedOn(isBasedOnOf(newResource))
+          .node(newResource)
+          .userId(c.getCedarUser().getId()));
+
       UriBuilder builder = uriInfo.getAbsolutePathBuilder();
       URI uri = builder.path(CedarUrlUtil.urlEncode(id)).build();
       return Response.created(uri).entity(newResource).build();
@@ -321,13 +362,13 @@ public class CommandResource extends AbstractFolderServerResource {
 
     c.must(c.user()).be(LoggedIn);
 
-    CedarRequestBody requestBody = c.request().getRequestBody();
-    String id = requestBody.get("id").stringValue();
-    String nodeTypeString = requestBody.get("nodeType").stringValue();
+    JsonNode requestBody = requestBodyAsJson(c);
+    String id = textField(requestBody, "id");
+    String nodeTypeString = textField(requestBody, "nodeType");
 
     CedarNodeType nodeType = CedarNodeType.forValue(nodeTypeString);
 
-    FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(c);
+    FolderServiceSession folderSession = BackendSessions.getFolderServiceSession(c);
 
     FolderServerResource sourceResource = folderSession.findResourceById(id);
 
@@ -337,6 +378,11 @@ public class CommandResource extends AbstractFolderServerResource {
 
       FolderServerResource updatedResource = folderSession.findResourceById(id);
 
+      nodeEventBus.publish(NodeEvent.of(NodeEventType.OPENED, id, sourceResource.getType())
+          .parentIdResolver(() -> findParentId(folderSession, sourceResource))
+          .node(updatedResource)
+          .userId(c.getCedarUser().getId()));
+
       return Response.ok().entity(updatedResource).build();
     } else {
       return CedarResponse.notFound().build();
@@ -351,13 +397,13 @@ public class CommandResource extends AbstractFolderServerResource {
 
     c.must(c.user()).be(LoggedIn);
 
-    CedarRequestBody requestBody = c.request().getRequestBody();
-    String id = requestBody.get("id").stringValue();
-    String nodeTypeString = requestBody.get("nodeType").stringValue();
+    JsonNode requestBody = requestBodyAsJson(c);
+    String id = textField(requestBody, "id");
+    String nodeTypeString = textField(requestBody, "nodeType");
 
     CedarNodeType nodeType = CedarNodeType.forValue(nodeTypeString);
 
-    FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(c);
+    FolderServiceSession folderSession = BackendSessions.getFolderServiceSession(c);
 
     FolderServerResource sourceResource = folderSession.findResourceById(id);
 
@@ -367,10 +413,22 @@ public class CommandResource extends AbstractFolderServerResource {
 
       FolderServerResource updatedResource = folderSession.findResourceById(id);
 
+      nodeEventBus.publish(NodeEvent.of(NodeEventType.CLOSED, id, sourceResource.getType())
+          .parentIdResolver(() -> findParentId(folderSession, sourceResource))
+          .node(updatedResource)
+          .userId(c.getCedarUser().getId()));
+
       return Response.ok().entity(updatedResource).build();
     } else {
       return CedarResponse.notFound().build();
     }
   }
 
+  private static String isBasedOnOf(FolderServerResource resource) {
+    if (resource instanceof FolderServerInstance && ((FolderServerInstance) resource).getIsBasedOn() != null) {
+      return ((FolderServerInstance) resource).getIsBasedOn().getValue();
+    }
+    return null;
+  }
+
 }
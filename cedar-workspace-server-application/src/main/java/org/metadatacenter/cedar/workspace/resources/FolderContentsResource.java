@@ -1,7 +1,20 @@
 package org.metadatacenter.cedar.workspace.resources;
 
 import com.codahale.metrics.annotation.Timed;
-import org.metadatacenter.bridge.CedarDataServices;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.metadatacenter.cedar.workspace.WorkspaceServerConfiguration;
+import org.metadatacenter.cedar.workspace.backend.BackendSessions;
+import org.metadatacenter.cedar.workspace.config.FolderContentsBatchConfig;
+import org.metadatacenter.cedar.workspace.config.FolderTreeConfig;
+import org.metadatacenter.cedar.workspace.index.ReadAccessIndex;
+import org.metadatacenter.cedar.workspace.model.FolderTreeResponse;
+import org.metadatacenter.cedar.workspace.model.MultiFolderContentsResponse;
+import org.metadatacenter.cedar.workspace.ratelimit.ReadOnly;
+import org.metadatacenter.cedar.workspace.response.NodeFieldSelection;
+import org.metadatacenter.cedar.workspace.response.ProjectedNodeListResponse;
+import org.metadatacenter.cedar.workspace.util.FolderTreeBuilder;
+import org.metadatacenter.cedar.workspace.util.ParallelSlices;
+import org.metadatacenter.cedar.workspace.util.SingleFlight;
 import org.metadatacenter.config.CedarConfig;
 import org.metadatacenter.error.CedarErrorKey;
 import org.metadatacenter.exception.CedarException;
@@ -14,10 +27,10 @@ import org.metadatacenter.model.request.NodeListRequest;
 import org.metadatacenter.model.response.FolderServerNodeListResponse;
 import org.metadatacenter.rest.context.CedarRequestContext;
 import org.metadatacenter.server.FolderServiceSession;
-import org.metadatacenter.server.PermissionServiceSession;
 import org.metadatacenter.server.security.model.user.ResourcePublicationStatusFilter;
 import org.metadatacenter.server.security.model.user.ResourceVersionFilter;
 import org.metadatacenter.util.http.CedarResponse;
+import org.metadatacenter.util.http.CedarUrlUtil;
 import org.metadatacenter.util.http.LinkHeaderUtil;
 import org.metadatacenter.util.http.PagedSortedTypedQuery;
 
@@ -26,20 +39,40 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import java.net.URI;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_CBOR;
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_SMILE;
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceQueryParameters.QP_DEPTH;
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceQueryParameters.QP_FIELDS;
 import static org.metadatacenter.constant.CedarPathParameters.PP_ID;
 import static org.metadatacenter.constant.CedarQueryParameters.*;
 import static org.metadatacenter.rest.assertion.GenericAssertions.LoggedIn;
 
 
 @Path("/folders")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE, APPLICATION_CBOR})
 public class FolderContentsResource extends AbstractFolderServerResource {
 
-  public FolderContentsResource(CedarConfig cedarConfig) {
+  private final FolderTreeConfig folderTreeConfig;
+  private final FolderTreeBuilder folderTreeBuilder;
+  private final FolderContentsBatchConfig folderContentsBatchConfig;
+  private final SingleFlight singleFlight;
+  private final ReadAccessIndex readAccessIndex;
+  private final ExecutorService batchExecutor;
+
+  public FolderContentsResource(CedarConfig cedarConfig, WorkspaceServerConfiguration configuration,
+                                SingleFlight singleFlight, ReadAccessIndex readAccessIndex,
+                                ExecutorService batchExecutor) {
     super(cedarConfig);
+    this.folderTreeConfig = configuration.getFolderTree();
+    this.folderTreeBuilder = new FolderTreeBuilder(folderTreeConfig);
+    this.folderContentsBatchConfig = configuration.getFolderContentsBatch();
+    this.singleFlight = singleFlight;
+    this.readAccessIndex = readAccessIndex;
+    this.batchExecutor = batchExecutor;
   }
 
   @GET
@@ -51,7 +84,8 @@ public class FolderContentsResource extends AbstractFolderServerResource {
                                          @QueryParam(QP_PUBLICATION_STATUS) Optional<String> publicationStatusParam,
                                          @QueryParam(QP_SORT) Optional<String> sortParam,
                                          @QueryParam(QP_LIMIT) Optional<Integer> limitParam,
-                                         @QueryParam(QP_OFFSET) Optional<Integer> offsetParam) throws
+                                         @QueryParam(QP_OFFSET) Optional<Integer> offsetParam,
+                                         @QueryParam(QP_FIELDS) Optional<String> fieldsParam) throws
       CedarException {
     CedarRequestContext c = buildRequestContext();
     c.must(c.user()).be(LoggedIn);
@@ -74,7 +108,13 @@ public class FolderContentsResource extends AbstractFolderServerResource {
         .offset(offsetParam);
     pagedSortedTypedQuery.validate();
 
-    FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(c);
+    List<String> unknownFields = NodeFieldSelection.findUnknownFields(fieldsParam);
+    if (!unknownFields.isEmpty()) {
+      return unknownFieldsResponse(unknownFields);
+    }
+    NodeFieldSelection fieldSelection = NodeFieldSelection.parse(fieldsParam);
+
+    FolderServiceSession folderSession = BackendSessions.getFolderServiceSession(c);
 
     FolderServerFolder folder = folderSession.findFolderById(id);
     if (folder == null) {
@@ -85,8 +125,7 @@ public class FolderContentsResource extends AbstractFolderServerResource {
           .build();
     }
 
-    PermissionServiceSession permissionServiceSession = CedarDataServices.getPermissionServiceSession(c);
-    boolean hasRead = permissionServiceSession.userHasReadAccessToNode(id);
+    boolean hasRead = readAccessIndex.userHasReadAccessToNode(c, id);
     if (!hasRead) {
       return CedarResponse.forbidden()
           .id(id)
@@ -96,23 +135,296 @@ public class FolderContentsResource extends AbstractFolderServerResource {
     }
 
     UriBuilder builder = uriInfo.getAbsolutePathBuilder();
-    URI absoluteURI = builder
+    builder
         .queryParam(QP_RESOURCE_TYPES, pagedSortedTypedQuery.getNodeTypesAsString())
         .queryParam(QP_VERSION, pagedSortedTypedQuery.getVersionAsString())
         .queryParam(QP_PUBLICATION_STATUS, pagedSortedTypedQuery.getPublicationStatusAsString())
-        .queryParam(QP_SORT, pagedSortedTypedQuery.getSortListAsString())
-        .build();
+        .queryParam(QP_SORT, pagedSortedTypedQuery.getSortListAsString());
+    if (!fieldSelection.isAll()) {
+      builder.queryParam(QP_FIELDS, fieldSelection.getFieldsAsString());
+    }
+    URI absoluteURI = builder.build();
+
+    // The listing does not depend on the caller once the read access is checked, and the URI holds the normalized
+    // query, so identical concurrent listings share one execution
+    String flightKey = "folder-contents|" + absoluteURI + "|" + pagedSortedTypedQuery.getLimit() + "|" +
+        pagedSortedTypedQuery.getOffset();
+    FolderServerNodeListResponse r = singleFlight.execute(flightKey, () -> {
+      List<FolderServerNodeExtract> pathInfo = folderSession.findNodePathExtract(folder);
+      return folderContentsEnvelope(folderSession, folder, absoluteURI.toString(), pathInfo, pagedSortedTypedQuery);
+    });
+
+    // The page is read with one query before the response starts, only its serialization is streamed
+    List<FolderServerNodeExtract> nodes = singleFlight.execute(flightKey + "|nodes",
+        () -> folderSession.findFolderContentsExtract(folder.getId(), pagedSortedTypedQuery.getNodeTypeList(),
+            pagedSortedTypedQuery.getVersion(), pagedSortedTypedQuery.getPublicationStatus(),
+            pagedSortedTypedQuery.getLimit(), pagedSortedTypedQuery.getOffset(), pagedSortedTypedQuery.getSortList()));
+
+    return Response.ok().entity(new ProjectedNodeListResponse(r, fieldSelection, nodes)).build();
+  }
+
+  @POST
+  @Timed
+  @ReadOnly
+  @Path("/contents")
+  public Response findMultipleFolderContents() throws CedarException {
+    CedarRequestContext c = buildRequestContext();
+    c.must(c.user()).be(LoggedIn);
+
+    JsonNode body = requestBodyAsJson(c);
+
+    JsonNode folderIdsNode = body.get("folderIds");
+    if (folderIdsNode == null || !folderIdsNode.isArray() || folderIdsNode.size() == 0) {
+      return CedarResponse.badRequest()
+          .errorKey(CedarErrorKey.MISSING_DATA)
+          .errorMessage("You need to supply the folderIds array!")
+          .build();
+    }
+
+    Set<String> folderIds = new LinkedHashSet<>();
+    for (JsonNode folderIdNode : folderIdsNode) {
+      String folderId = folderIdNode.asText().trim();
+      if (!folderId.isEmpty()) {
+        folderIds.add(folderId);
+      }
+    }
+
+    int maxFolders = folderContentsBatchConfig.getMaxFolders();
+    if (folderIds.size() > maxFolders) {
+      return CedarResponse.badRequest()
+          .errorKey(CedarErrorKey.INVALID_DATA)
+          .errorMessage("You can request the contents of at most " + maxFolders + " folders at once")
+          .parameter("maxFolders", maxFolders)
+          .parameter("requestedFolders", folderIds.size())
+          .build();
+    }
+
+    for (String name : Arrays.asList(QP_LIMIT, QP_OFFSET)) {
+      JsonNode value = body.get(name);
+      if (value != null && !value.isNull() && !isInt(value)) {
+        return CedarResponse.badRequest()
+            .errorKey(CedarErrorKey.INVALID_DATA)
+            .errorMessage("The value of " + name + " must be an integer")
+            .parameter(name, value.asText())
+            .build();
+      }
+    }
+
+    PagedSortedTypedQuery pagedSortedTypedQuery = new PagedSortedTypedQuery(
+        cedarConfig.getFolderRESTAPI().getPagination())
+        .resourceTypes(textValue(body, QP_RESOURCE_TYPES))
+        .version(textValue(body, QP_VERSION))
+        .publicationStatus(textValue(body, QP_PUBLICATION_STATUS))
+        .sort(textValue(body, QP_SORT))
+        .limit(intValue(body, QP_LIMIT))
+        .offset(intValue(body, QP_OFFSET));
+    pagedSortedTypedQuery.validate();
+
+    FolderServiceSession folderSession = BackendSessions.getFolderServiceSession(c);
+
+    MultiFolderContentsResponse r = new MultiFolderContentsResponse();
+    Map<String, FolderServerFolder> folders = new LinkedHashMap<>();
+    for (String folderId : folderIds) {
+      FolderServerFolder folder = folderSession.findFolderById(folderId);
+      if (folder == null) {
+        r.getNotFound().add(folderId);
+      } else {
+        folders.put(folderId, folder);
+      }
+    }
 
-    List<FolderServerNodeExtract> pathInfo = folderSession.findNodePathExtract(folder);
+    // One access check for all the folders, then the listings in parallel slices
+    Map<String, Boolean> readable = readAccessIndex.userHasReadAccessToNodes(c, folders.keySet());
+    List<FolderServerFolder> listed = new ArrayList<>();
+    for (FolderServerFolder folder : folders.values()) {
+      if (readable.get(folder.getId())) {
+        listed.add(folder);
+      } else {
+        r.getForbidden().add(folder.getId());
+      }
+    }
+    Map<String, FolderServerNodeListResponse> results = listFolderContents(c, listed, pagedSortedTypedQuery);
+    for (FolderServerFolder folder : listed) {
+      r.getResults().put(folder.getId(), results.get(folder.getId()));
+    }
+
+    NodeListRequest req = new NodeListRequest();
+    req.setNodeTypes(pagedSortedTypedQuery.getNodeTypeList());
+    req.setVersion(pagedSortedTypedQuery.getVersion());
+    req.setPublicationStatus(pagedSortedTypedQuery.getPublicationStatus());
+    req.setLimit(pagedSortedTypedQuery.getLimit());
+    req.setOffset(pagedSortedTypedQuery.getOffset());
+    req.setSort(pagedSortedTypedQuery.getSortList());
+    r.setRequest(req);
 
-    return findFolderContents(c, folderSession, folder, absoluteURI.toString(), pathInfo, pagedSortedTypedQuery);
+    return Response.ok().entity(r).build();
   }
 
 
-  private Response findFolderContents(CedarRequestContext c, FolderServiceSession folderSession,
-                                      FolderServerFolder folder, String absoluteUrl,
-                                      List<FolderServerNodeExtract> pathInfo,
-                                      PagedSortedTypedQuery pagedSortedTypedQuery) {
+  @GET
+  @Timed
+  @Path("/{id}/tree")
+  public Response findFolderTreeById(@PathParam(PP_ID) String id,
+                                     @QueryParam(QP_DEPTH) Optional<Integer> depthParam,
+                                     @QueryParam(QP_RESOURCE_TYPES) Optional<String> resourceTypes,
+                                     @QueryParam(QP_VERSION) Optional<String> versionParam,
+                                     @QueryParam(QP_PUBLICATION_STATUS) Optional<String> publicationStatusParam,
+                                     @QueryParam(QP_SORT) Optional<String> sortParam,
+                                     @QueryParam(QP_LIMIT) Optional<Integer> limitParam) throws CedarException {
+    CedarRequestContext c = buildRequestContext();
+    c.must(c.user()).be(LoggedIn);
+
+    if (id != null) {
+      id = id.trim();
+    }
+
+    if (id == null || id.length() == 0) {
+      throw new CedarProcessingException("You need to specify id as a request parameter!");
+    }
+
+    int depth = depthParam.orElse(folderTreeConfig.getDefaultDepth());
+    if (!folderTreeBuilder.isValidDepth(depth)) {
+      return CedarResponse.badRequest()
+          .errorKey(CedarErrorKey.INVALID_DATA)
+          .errorMessage("The depth must be between 1 and " + folderTreeConfig.getMaxDepth())
+          .parameter(QP_DEPTH, depth)
+          .build();
+    }
+
+    PagedSortedTypedQuery pagedSortedTypedQuery = new PagedSortedTypedQuery(
+        cedarConfig.getFolderRESTAPI().getPagination())
+        .resourceTypes(resourceTypes)
+        .version(versionParam)
+        .publicationStatus(publicationStatusParam)
+        .sort(sortParam)
+        .limit(limitParam)
+        .offset(Optional.empty());
+    pagedSortedTypedQuery.validate();
+
+    FolderServiceSession folderSession = BackendSessions.getFolderServiceSession(c);
+
+    FolderServerFolder folder = folderSession.findFolderById(id);
+    if (folder == null) {
+      return CedarResponse.notFound()
+          .id(id)
+          .errorKey(CedarErrorKey.FOLDER_NOT_FOUND)
+          .errorMessage("The folder can not be found by id")
+          .build();
+    }
+
+    // Read access is inherited along the folder hierarchy, so the check on the root covers the whole subtree
+    boolean hasRead = readAccessIndex.userHasReadAccessToNode(c, id);
+    if (!hasRead) {
+      return CedarResponse.forbidden()
+          .id(id)
+          .errorKey(CedarErrorKey.NO_READ_ACCESS_TO_FOLDER)
+          .errorMessage("You do not have read access to the folder")
+          .build();
+    }
+
+    List<String> sortList = pagedSortedTypedQuery.getSortList();
+    List<CedarNodeType> nodeTypeList = pagedSortedTypedQuery.getNodeTypeList();
+    ResourceVersionFilter version = pagedSortedTypedQuery.getVersion();
+    ResourcePublicationStatusFilter publicationStatus = pagedSortedTypedQuery.getPublicationStatus();
+
+    FolderTreeResponse r = folderTreeBuilder.build(FolderServerNodeExtract.fromNode(folder), depth,
+        pagedSortedTypedQuery.getLimit(), new FolderTreeBuilder.ContentsSource() {
+          @Override
+          public List<FolderServerNodeExtract> findChildren(String folderId, int limit) {
+            return folderSession.findFolderContentsExtract(folderId, nodeTypeList, version, publicationStatus, limit,
+                0, sortList);
+          }
+
+          @Override
+          public long countChildren(String folderId) {
+            return folderSession.findFolderContentsCount(folderId, nodeTypeList, version, publicationStatus);
+          }
+        });
+
+    NodeListRequest req = new NodeListRequest();
+    req.setNodeTypes(nodeTypeList);
+    req.setVersion(version);
+    req.setPublicationStatus(publicationStatus);
+    req.setLimit(folderTreeBuilder.getChildLimit(pagedSortedTypedQuery.getLimit()));
+    req.setSort(sortList);
+
+    r.setRequest(req);
+    r.setPathInfo(folderSession.findNodePathExtract(folder));
+
+    return Response.ok().entity(r).build();
+  }
+
+  /**
+   * Lists the contents of the folders in at most <code>parallelism</code> slices that run at the same time, each on a
+   * backend session of its own. The last slice runs on the request thread.
+   */
+  private Map<String, FolderServerNodeListResponse> listFolderContents(CedarRequestContext c,
+                                                                      List<FolderServerFolder> folders,
+                                                                      PagedSortedTypedQuery pagedSortedTypedQuery)
+      throws CedarException {
+    // The request scoped UriInfo can only be used on the request thread
+    Map<String, String> urls = new HashMap<>();
+    for (FolderServerFolder folder : folders) {
+      urls.put(folder.getId(), folderContentsUrl(folder.getId(), pagedSortedTypedQuery));
+    }
+    int slices = Math.max(1, Math.min(folderContentsBatchConfig.getParallelism(), folders.size()));
+    List<Callable<Map<String, FolderServerNodeListResponse>>> tasks = new ArrayList<>();
+    for (int i = 0; i < slices; i++) {
+      List<FolderServerFolder> slice = new ArrayList<>();
+      for (int j = i; j < folders.size(); j += slices) {
+        slice.add(folders.get(j));
+      }
+      Callable<Map<String, FolderServerNodeListResponse>> task = () -> {
+        FolderServiceSession folderSession = BackendSessions.openFolderServiceSession(c);
+        Map<String, FolderServerNodeListResponse> sliceResults = new HashMap<>();
+        for (FolderServerFolder folder : slice) {
+          sliceResults.put(folder.getId(), findFolderContents(folderSession, folder, urls.get(folder.getId()),
+              folderSession.findNodePathExtract(folder), pagedSortedTypedQuery));
+        }
+        return sliceResults;
+      };
+      tasks.add(task);
+    }
+    Map<String, FolderServerNodeListResponse> results = new HashMap<>();
+    for (Map<String, FolderServerNodeListResponse> sliceResults : ParallelSlices.run(batchExecutor, tasks,
+        "listing the folder contents")) {
+      results.putAll(sliceResults);
+    }
+    return results;
+  }
+
+  private String folderContentsUrl(String folderId, PagedSortedTypedQuery pagedSortedTypedQuery) {
+    return uriInfo.getBaseUriBuilder()
+        .path("folders")
+        .path(CedarUrlUtil.urlEncode(folderId))
+        .path("contents")
+        .queryParam(QP_RESOURCE_TYPES, pagedSortedTypedQuery.getNodeTypesAsString())
+        .queryParam(QP_VERSION, pagedSortedTypedQuery.getVersionAsString())
+        .queryParam(QP_PUBLICATION_STATUS, pagedSortedTypedQuery.getPublicationStatusAsString())
+        .queryParam(QP_SORT, pagedSortedTypedQuery.getSortListAsString())
+        .build()
+        .toString();
+  }
+
+  private FolderServerNodeListResponse findFolderContents(FolderServiceSession folderSession,
+                                                          FolderServerFolder folder, String absoluteUrl,
+                                                          List<FolderServerNodeExtract> pathInfo,
+                                                          PagedSortedTypedQuery pagedSortedTypedQuery) {
+    FolderServerNodeListResponse r = folderContentsEnvelope(folderSession, folder, absoluteUrl, pathInfo,
+        pagedSortedTypedQuery);
+    r.setResources(folderSession.findFolderContentsExtract(folder.getId(), pagedSortedTypedQuery.getNodeTypeList(),
+        pagedSortedTypedQuery.getVersion(), pagedSortedTypedQuery.getPublicationStatus(),
+        pagedSortedTypedQuery.getLimit(), pagedSortedTypedQuery.getOffset(), pagedSortedTypedQuery.getSortList()));
+    return r;
+  }
+
+  /**
+   * Builds a folder contents response with everything but the nodes of the page.
+   */
+  private FolderServerNodeListResponse folderContentsEnvelope(FolderServiceSession folderSession,
+                                                              FolderServerFolder folder, String absoluteUrl,
+                                                              List<FolderServerNodeExtract> pathInfo,
+                                                              PagedSortedTypedQuery pagedSortedTypedQuery) {
 
     int limit = pagedSortedTypedQuery.getLimit();
     int offset = pagedSortedTypedQuery.getOffset();
@@ -134,22 +446,50 @@ public class FolderContentsResource extends AbstractFolderServerResource {
 
     r.setRequest(req);
 
-    List<FolderServerNodeExtract> resources = folderSession.findFolderContentsExtract(folder.getId(),
-        nodeTypeList, version, publicationStatus, limit, offset, sortList);
-
     long total = folderSession.findFolderContentsCount(folder.getId(), nodeTypeList, version,
         publicationStatus);
 
     r.setTotalCount(total);
     r.setCurrentOffset(offset);
 
-    r.setResources(resources);
+    r.setResources(new ArrayList<>());
 
     r.setPathInfo(pathInfo);
 
     r.setPaging(LinkHeaderUtil.getPagingLinkHeaders(absoluteUrl, total, limit, offset));
 
-    return Response.ok().entity(r).build();
+    return r;
+  }
+
+  private static Optional<String> textValue(JsonNode body, String name) {
+    JsonNode value = body.get(name);
+    if (value == null || value.isNull()) {
+      return Optional.empty();
+    }
+    return Optional.of(value.asText());
+  }
+
+  private static Optional<Integer> intValue(JsonNode body, String name) {
+    JsonNode value = body.get(name);
+    if (value == null || value.isNull()) {
+      return Optional.empty();
+    }
+    return Optional.of(value.isTextual() ? Integer.parseInt(value.asText().trim()) : value.intValue());
+  }
+
+  private static boolean isInt(JsonNode value) {
+    if (value.isIntegralNumber()) {
+      return value.canConvertToInt();
+    }
+    if (value.isTextual()) {
+      try {
+        Integer.parseInt(value.asText().trim());
+        return true;
+      } catch (NumberFormatException e) {
+        return false;
+      }
+    }
+    return false;
   }
 
 }
@@ -0,0 +1,85 @@
+package org.metadatacenter.cedar.workspace.resources;
+
+import com.codahale.metrics.annotation.Timed;
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.SseFeature;
+import org.metadatacenter.cedar.workspace.backend.BackendSessions;
+import org.metadatacenter.cedar.workspace.index.ReadAccessIndex;
+import org.metadatacenter.cedar.workspace.push.FolderEventBroadcaster;
+import org.metadatacenter.config.CedarConfig;
+import org.metadatacenter.error.CedarErrorKey;
+import org.metadatacenter.exception.CedarException;
+import org.metadatacenter.model.folderserver.basic.FolderServerFolder;
+import org.metadatacenter.model.folderserver.extract.FolderServerNodeExtract;
+import org.metadatacenter.rest.context.CedarRequestContext;
+import org.metadatacenter.server.FolderServiceSession;
+import org.metadatacenter.util.http.CedarResponse;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.metadatacenter.constant.CedarPathParameters.PP_ID;
+import static org.metadatacenter.rest.assertion.GenericAssertions.LoggedIn;
+
+@Path("/folders")
+public class FolderEventsResource extends AbstractFolderServerResource {
+
+  private final FolderEventBroadcaster folderEventBroadcaster;
+  private final ReadAccessIndex readAccessIndex;
+
+  public FolderEventsResource(CedarConfig cedarConfig, FolderEventBroadcaster folderEventBroadcaster,
+                              ReadAccessIndex readAccessIndex) {
+    super(cedarConfig);
+    this.folderEventBroadcaster = folderEventBroadcaster;
+    this.readAccessIndex = readAccessIndex;
+  }
+
+  @GET
+  @Timed
+  @Path("/{id}/events")
+  @Produces(SseFeature.SERVER_SENT_EVENTS)
+  public EventOutput subscribeToFolderEvents(@PathParam(PP_ID) String id) throws CedarException {
+    CedarRequestContext c = buildRequestContext();
+    c.must(c.user()).be(LoggedIn);
+
+    FolderServiceSession folderSession = BackendSessions.getFolderServiceSession(c);
+
+    FolderServerFolder folder = folderSession.findFolderById(id);
+    if (folder == null) {
+      throw new WebApplicationException(CedarResponse.notFound()
+          .id(id)
+          .errorKey(CedarErrorKey.FOLDER_NOT_FOUND)
+          .errorMessage("The folder can not be found by id")
+          .build());
+    }
+
+    boolean hasRead = readAccessIndex.userHasReadAccessToNode(c, id);
+    if (!hasRead) {
+      throw new WebApplicationException(CedarResponse.forbidden()
+          .id(id)
+          .errorKey(CedarErrorKey.NO_READ_ACCESS_TO_FOLDER)
+          .errorMessage("You do not have read access to the folder")
+          .build());
+    }
+
+    // The stream is closed when the permissions of the folder or of a folder above it change
+    List<String> ancestorIds = new ArrayList<>();
+    for (FolderServerNodeExtract pathNode : folderSession.findNodePathExtract(folder)) {
+      if (!id.equals(pathNode.getId())) {
+        ancestorIds.add(pathNode.getId());
+      }
+    }
+
+    EventOutput eventOutput = folderEventBroadcaster.subscribe(id, ancestorIds);
+    if (eventOutput == null) {
+      throw new WebApplicationException(Response.status(Response.Status.SERVICE_UNAVAILABLE).build());
+    }
+    return eventOutput;
+  }
+}
@@ -0,0 +1,84 @@
+package org.metadatacenter.cedar.workspace.resources;
+
+import com.codahale.metrics.annotation.Timed;
+import org.metadatacenter.cedar.workspace.backend.BackendSessions;
+import org.metadatacenter.cedar.workspace.index.FolderStatistics;
+import org.metadatacenter.cedar.workspace.index.FolderStatisticsIndex;
+import org.metadatacenter.cedar.workspace.index.ReadAccessIndex;
+import org.metadatacenter.config.CedarConfig;
+import org.metadatacenter.error.CedarErrorKey;
+import org.metadatacenter.exception.CedarException;
+import org.metadatacenter.model.folderserver.basic.FolderServerFolder;
+import org.metadatacenter.rest.context.CedarRequestContext;
+import org.metadatacenter.server.FolderServiceSession;
+import org.metadatacenter.util.http.CedarResponse;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_CBOR;
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_SMILE;
+import static org.metadatacenter.constant.CedarPathParameters.PP_ID;
+import static org.metadatacenter.rest.assertion.GenericAssertions.LoggedIn;
+
+@Path("/folders")
+@Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE, APPLICATION_CBOR})
+public class FolderStatisticsResource extends AbstractFolderServerResource {
+
+  private final FolderStatisticsIndex folderStatisticsIndex;
+  private final ReadAccessIndex readAccessIndex;
+
+  public FolderStatisticsResource(CedarConfig cedarConfig, FolderStatisticsIndex folderStatisticsIndex,
+                                  ReadAccessIndex readAccessIndex) {
+    super(cedarConfig);
+    this.folderStatisticsIndex = folderStatisticsIndex;
+    this.readAccessIndex = readAccessIndex;
+  }
+
+  @GET
+  @Timed
+  @Path("/{id}/stats")
+  public Response getFolderStatistics(@PathParam(PP_ID) String id) throws CedarException {
+    CedarRequestContext c = buildRequestContext();
+    c.must(c.user()).be(LoggedIn);
+
+    FolderServiceSession folderSession = BackendSessions.getFolderServiceSession(c);
+
+    FolderServerFolder folder = folderSession.findFolderById(id);
+    if (folder == null) {
+      return CedarResponse.notFound()
+          .id(id)
+          .errorKey(CedarErrorKey.FOLDER_NOT_FOUND)
+          .errorMessage("The folder can not be found by id")
+          .build();
+    }
+
+    boolean hasRead = readAccessIndex.userHasReadAccessToNode(c, id);
+    if (!hasRead) {
+      return CedarResponse.forbidden()
+          .id(id)
+          .errorKey(CedarErrorKey.NO_READ_ACCESS_TO_FOLDER)
+          .errorMessage("You do not have read access to the folder")
+          .build();
+    }
+
+    // Statistics that are not known yet are computed in the background; the client asks again while pending
+    FolderStatistics statistics = folderStatisticsIndex.getStatistics(id);
+    Map<String, Object> r = new HashMap<>();
+    r.put("id", id);
+    r.put("statistics", statistics);
+    if (statistics == null) {
+      r.put("status", folderStatisticsIndex.isTooLarge(id) ? "too-large" : "pending");
+    } else {
+      r.put("status", "ready");
+    }
+
+    return Response.ok().entity(r).build();
+  }
+}
@@ -3,12 +3,20 @@ package org.metadatacenter.cedar.workspace.resources;
 import com.codahale.metrics.annotation.Timed;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
-import org.metadatacenter.bridge.CedarDataServices;
+import org.metadatacenter.cedar.workspace.backend.BackendSessions;
+import org.metadatacenter.cedar.workspace.event.NodeEvent;
+import org.metadatacenter.cedar.workspace.event.NodeEventBus;
+import org.metadatacenter.cedar.workspace.event.NodeEventType;
+import org.metadatacenter.cedar.workspace.permissions.PermissionDelta;
+import org.metadatacenter.cedar.workspace.permissions.PermissionJob;
+import org.metadatacenter.cedar.workspace.permissions.PermissionJobs;
+import org.metadatacenter.cedar.workspace.permissions.PermissionPropagation;
 import org.metadatacenter.config.CedarConfig;
 import org.metadatacenter.error.CedarErrorKey;
 import org.metadatacenter.error.CedarErrorReasonKey;
 import org.metadatacenter.exception.CedarBackendException;
 import org.metadatacenter.exception.CedarException;
+import org.metadatacenter.model.CedarNodeType;
 import org.metadatacenter.model.FolderOrResource;
 import org.metadatacenter.model.folderserver.basic.FolderServerFolder;
 import org.metadatacenter.model.folderserver.basic.FolderServerNode;
@@ -38,19 +46,29 @@ import java.net.URI;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_CBOR;
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_SMILE;
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceQueryParameters.QP_RECURSIVE;
 import static org.metadatacenter.constant.CedarPathParameters.PP_ID;
 import static org.metadatacenter.rest.assertion.GenericAssertions.LoggedIn;
 import static org.metadatacenter.rest.assertion.GenericAssertions.NonEmpty;
 
 @Path("/folders")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE, APPLICATION_CBOR})
 public class FoldersResource extends AbstractFolderServerResource {
 
   private static final Logger log = LoggerFactory.getLogger(FoldersResource.class);
 
-  public FoldersResource(CedarConfig cedarConfig) {
+  private final NodeEventBus nodeEventBus;
+  private final PermissionPropagation permissionPropagation;
+
+  public FoldersResource(CedarConfig cedarConfig, NodeEventBus nodeEventBus,
+                         PermissionPropagation permissionPropagation) {
     super(cedarConfig);
+    this.nodeEventBus = nodeEventBus;
+    this.permissionPropagation = permissionPropagation;
   }
 
   @POST
@@ -81,7 +99,7 @@ public class FoldersResource extends AbstractFolderServerResource {
           .build();
     }
 
-    FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(c);
+    FolderServiceSession folderSession = BackendSessions.getFolderServiceSession(c);
     FolderServerFolder parentFolder = null;
 
     String pathV = null;
@@ -155,6 +173,11 @@ public class FoldersResource extends AbstractFolderServerResource {
     newFolder = folderSession.createFolderAsChildOfId(brandNewFolder, parentFolder.getId());
 
     if (newFolder != null) {
+      nodeEventBus.publish(NodeEvent.of(NodeEventType.CREATED, newFolder.getId(), CedarNodeType.FOLDER)
+          .parentId(parentFolder.getId())
+          .node(newFolder)
+          .userId(c.getCedarUser().getId()));
+
       UriBuilder builder = uriInfo.getAbsolutePathBuilder();
       URI uri = builder.path(CedarUrlUtil.urlEncode(newFolder.getId())).build();
       return Response.created(uri).entity(newFolder).build();
@@ -178,7 +201,7 @@ public class FoldersResource extends AbstractFolderServerResource {
     c.must(c.user()).be(LoggedIn);
     c.must(c.user()).have(CedarPermission.FOLDER_READ);
 
-    FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(c);
+    FolderServiceSession folderSession = BackendSessions.getFolderServiceSession(c);
 
     FolderServerFolder folder = folderSession.findFolderById(id);
     if (folder == null) {
@@ -207,7 +230,7 @@ public class FoldersResource extends AbstractFolderServerResource {
 
     c.must(c.request().getRequestBody()).be(NonEmpty);
 
-    FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(c);
+    FolderServiceSession folderSession = BackendSessions.getFolderServiceSession(c);
 
     CedarParameter name = c.request().getRequestBody().get("name");
 
@@ -259,6 +282,10 @@ public class FoldersResource extends AbstractFolderServerResource {
       if (updatedFolder == null) {
         return CedarResponse.notFound().build();
       } else {
+        nodeEventBus.publish(NodeEvent.of(NodeEventType.UPDATED, id, CedarNodeType.FOLDER)
+            .parentIdResolver(() -> findParentId(folderSession, folder))
+            .node(updatedFolder)
+            .userId(c.getCedarUser().getId()));
         return Response.ok().entity(updatedFolder).build();
       }
     }
@@ -272,7 +299,7 @@ public class FoldersResource extends AbstractFolderServerResource {
     c.must(c.user()).be(LoggedIn);
     c.must(c.user()).have(CedarPermission.FOLDER_DELETE);
 
-    FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(c);
+    FolderServiceSession folderSession = BackendSessions.getFolderServiceSession(c);
 
     FolderServerFolder folder = folderSession.findFolderById(id);
     if (folder == null) {
@@ -305,8 +332,13 @@ public class FoldersResource extends AbstractFolderServerResource {
             .errorMessage("System folders can not be deleted")
             .build();
       } else {
+        String parentId = findParentId(folderSession, folder);
         boolean deleted = folderSession.deleteFolderById(id);
         if (deleted) {
+          nodeEventBus.publish(NodeEvent.of(NodeEventType.DELETED, id, CedarNodeType.FOLDER)
+              .parentId(parentId)
+              .node(folder)
+              .userId(c.getCedarUser().getId()));
           return CedarResponse.noContent().build();
         } else {
           return CedarResponse.internalServerError()
@@ -322,19 +354,18 @@ public class FoldersResource extends AbstractFolderServerResource {
   @PUT
   @Timed
   @Path("/{id}/permissions")
-  public Response updatePermissions(@PathParam(PP_ID) String folderId) throws CedarException {
+  public Response updatePermissions(@PathParam(PP_ID) String folderId,
+                                    @QueryParam(QP_RECURSIVE) Optional<Boolean> recursiveParam) throws CedarException {
     CedarRequestContext c = buildRequestContext();
     c.must(c.user()).be(LoggedIn);
 
-    c.must(c.request().getRequestBody()).be(NonEmpty);
+    JsonNode permissionUpdateRequest = requestBodyAsJson(c);
 
-
-    FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(c);
-    PermissionServiceSession permissionSession = CedarDataServices.getPermissionServiceSession(c);
+    FolderServiceSession folderSession = BackendSessions.getFolderServiceSession(c);
+    PermissionServiceSession permissionSession = BackendSessions.getPermissionServiceSession(c);
 
     CedarNodePermissionsRequest permissionsRequest = null;
     try {
-      JsonNode permissionUpdateRequest = c.request().getRequestBody().asJson();
       permissionsRequest = JsonMapper.MAPPER.treeToValue(permissionUpdateRequest, CedarNodePermissionsRequest.class);
     } catch (JsonProcessingException e) {
       log.error("Error while reading permission update request", e);
@@ -355,13 +386,50 @@ public class FoldersResource extends AbstractFolderServerResource {
           .errorMessage("User home folder permissions can not be changed")
           .build();
     } else {
-      BackendCallResult backendCallResult = permissionSession.updateNodePermissions(folderId, permissionsRequest,
-          FolderOrResource.FOLDER);
-      if (backendCallResult.isError()) {
-        throw new CedarBackendException(backendCallResult);
+      boolean recursive = recursiveParam.orElse(false);
+      // Nothing is changed unless the job that propagates the change can be queued
+      PermissionJobs.Reservation reservation = null;
+      if (recursive) {
+        reservation = permissionPropagation.reserve();
+        if (reservation == null) {
+          return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+        }
+      }
+      try {
+        // The descendants only get what this change grants or revokes
+        CedarNodePermissionsRequest previousRequest = recursive ?
+            permissionSession.getNodePermissions(folderId).toRequest() : null;
+        BackendCallResult backendCallResult = permissionSession.updateNodePermissions(folderId, permissionsRequest,
+            FolderOrResource.FOLDER);
+        if (backendCallResult.isError()) {
+          throw new CedarBackendException(backendCallResult);
+        }
+        nodeEventBus.publish(NodeEvent.of(NodeEventType.PERMISSIONS_CHANGED, folderId, CedarNodeType.FOLDER)
+            .parentIdResolver(() -> findParentId(folderSession, folder))
+            .node(folder)
+            .userId(c.getCedarUser().getId()));
+        if (recursive) {
+          // The folder is changed right away, its descendants by a job the client can follow
+          PermissionJob job = permissionPropagation.submit(reservation, c.getCedarUser().getId(), folderId,
+              PermissionDelta.between(previousRequest, permissionsRequest));
+          if (job == null) {
+            return CedarResponse.internalServerError()
+                .id(folderId)
+                .errorKey(CedarErrorKey.FOLDER_PERMISSIONS_CAN_NOT_BE_CHANGED)
+                .errorMessage("The folder permissions were changed, but the server is stopping and did not " +
+                    "propagate them to the folder contents")
+                .build();
+          }
+          URI uri = uriInfo.getBaseUriBuilder().path("permission-jobs").path(job.getId()).build();
+          return Response.accepted().location(uri).entity(job).build();
+        }
+        CedarNodePermissions permissions = permissionSession.getNodePermissions(folderId);
+        return Response.ok().entity(permissions).build();
+      } finally {
+        if (reservation != null) {
+          reservation.cancel();
+        }
       }
-      CedarNodePermissions permissions = permissionSession.getNodePermissions(folderId);
-      return Response.ok().entity(permissions).build();
     }
   }
 
@@ -372,7 +440,7 @@ public class FoldersResource extends AbstractFolderServerResource {
     CedarRequestContext c = buildRequestContext();
     c.must(c.user()).be(LoggedIn);
 
-    FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(c);
+    FolderServiceSession folderSession = BackendSessions.getFolderServiceSession(c);
 
     FolderServerFolder folder = folderSession.findFolderById(folderId);
     if (folder == null) {
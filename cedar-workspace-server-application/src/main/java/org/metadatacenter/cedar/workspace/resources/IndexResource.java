@@ -9,8 +9,11 @@ import javax.ws.rs.core.MediaType;
 import java.util.IdentityHashMap;
 import java.util.Map;
 
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_CBOR;
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_SMILE;
+
 @Path("/")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE, APPLICATION_CBOR})
 public class IndexResource {
 
   private static final Map<String, Object> info;
@@ -0,0 +1,103 @@
+package org.metadatacenter.cedar.workspace.resources;
+
+import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.metadatacenter.cedar.workspace.config.InstanceCountConfig;
+import org.metadatacenter.cedar.workspace.index.InstanceCountIndex;
+import org.metadatacenter.cedar.workspace.index.ReadAccessIndex;
+import org.metadatacenter.cedar.workspace.ratelimit.ReadOnly;
+import org.metadatacenter.config.CedarConfig;
+import org.metadatacenter.error.CedarErrorKey;
+import org.metadatacenter.exception.CedarException;
+import org.metadatacenter.rest.context.CedarRequestContext;
+import org.metadatacenter.util.http.CedarResponse;
+
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_CBOR;
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_SMILE;
+import static org.metadatacenter.rest.assertion.GenericAssertions.LoggedIn;
+
+@Path("/instance-counts")
+@Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE, APPLICATION_CBOR})
+public class InstanceCountsResource extends AbstractFolderServerResource {
+
+  private final InstanceCountConfig instanceCountConfig;
+  private final InstanceCountIndex instanceCountIndex;
+  private final ReadAccessIndex readAccessIndex;
+
+  public InstanceCountsResource(CedarConfig cedarConfig, InstanceCountConfig instanceCountConfig,
+                                InstanceCountIndex instanceCountIndex, ReadAccessIndex readAccessIndex) {
+    super(cedarConfig);
+    this.instanceCountConfig = instanceCountConfig;
+    this.instanceCountIndex = instanceCountIndex;
+    this.readAccessIndex = readAccessIndex;
+  }
+
+  @POST
+  @Timed
+  @ReadOnly
+  public Response findInstanceCounts() throws CedarException {
+    CedarRequestContext c = buildRequestContext();
+    c.must(c.user()).be(LoggedIn);
+
+    JsonNode templateIdsNode = requestBodyAsJson(c).get("templateIds");
+    if (templateIdsNode == null || !templateIdsNode.isArray()) {
+      return CedarResponse.badRequest()
+          .errorKey(CedarErrorKey.MISSING_DATA)
+          .errorMessage("You need to supply the templateIds array!")
+          .build();
+    }
+
+    Set<String> templateIds = new LinkedHashSet<>();
+    for (JsonNode templateIdNode : templateIdsNode) {
+      String templateId = templateIdNode.asText().trim();
+      if (!templateId.isEmpty()) {
+        templateIds.add(templateId);
+      }
+    }
+
+    int maxTemplateIds = instanceCountConfig.getMaxTemplateIds();
+    if (templateIds.size() > maxTemplateIds) {
+      return CedarResponse.badRequest()
+          .errorKey(CedarErrorKey.INVALID_DATA)
+          .errorMessage("You can request the instance counts of at most " + maxTemplateIds + " templates at once")
+          .parameter("maxTemplateIds", maxTemplateIds)
+          .parameter("requestedTemplateIds", templateIds.size())
+          .build();
+    }
+
+    // Templates the user cannot read are left out, like unknown ones
+    Set<String> readableTemplateIds = new LinkedHashSet<>();
+    readAccessIndex.userHasReadAccessToNodes(c, templateIds).forEach((id, readable) -> {
+      if (readable) {
+        readableTemplateIds.add(id);
+      }
+    });
+
+    // Counts that are not cached yet are loaded in the background; the client asks again for the pending ones
+    Map<String, Long> counts = instanceCountIndex.getCounts(readableTemplateIds);
+    List<String> pending = new ArrayList<>();
+    for (String templateId : readableTemplateIds) {
+      if (!counts.containsKey(templateId)) {
+        pending.add(templateId);
+      }
+    }
+
+    Map<String, Object> r = new HashMap<>();
+    r.put("counts", counts);
+    r.put("pending", pending);
+
+    return Response.ok().entity(r).build();
+  }
+}
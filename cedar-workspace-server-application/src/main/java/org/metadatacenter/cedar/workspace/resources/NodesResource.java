@@ -1,51 +1,84 @@
 package org.metadatacenter.cedar.workspace.resources;
 
 import com.codahale.metrics.annotation.Timed;
-import org.metadatacenter.bridge.CedarDataServices;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.metadatacenter.cedar.workspace.backend.BackendSessions;
+import org.metadatacenter.cedar.workspace.config.NodeLookupConfig;
+import org.metadatacenter.cedar.workspace.index.ReadAccessIndex;
+import org.metadatacenter.cedar.workspace.model.NodeLookupEntry;
+import org.metadatacenter.cedar.workspace.model.NodeLookupResponse;
+import org.metadatacenter.cedar.workspace.ratelimit.EndpointClass;
+import org.metadatacenter.cedar.workspace.ratelimit.RateLimitClass;
+import org.metadatacenter.cedar.workspace.ratelimit.ReadOnly;
+import org.metadatacenter.cedar.workspace.response.NodeFieldSelection;
+import org.metadatacenter.cedar.workspace.response.ProjectedNodeListResponse;
+import org.metadatacenter.cedar.workspace.util.NodeByIdResolver;
+import org.metadatacenter.cedar.workspace.util.NodeLookup;
 import org.metadatacenter.config.CedarConfig;
+import org.metadatacenter.error.CedarErrorKey;
 import org.metadatacenter.exception.CedarException;
+import org.metadatacenter.model.folderserver.basic.FolderServerNode;
 import org.metadatacenter.model.folderserver.extract.FolderServerNodeExtract;
 import org.metadatacenter.model.request.NodeListQueryType;
 import org.metadatacenter.model.request.NodeListRequest;
 import org.metadatacenter.model.response.FolderServerNodeListResponse;
 import org.metadatacenter.rest.context.CedarRequestContext;
 import org.metadatacenter.server.FolderServiceSession;
+import org.metadatacenter.util.http.CedarResponse;
 import org.metadatacenter.util.http.LinkHeaderUtil;
 import org.metadatacenter.util.http.PagedSortedQuery;
 
-import javax.ws.rs.GET;
-import javax.ws.rs.Path;
-import javax.ws.rs.Produces;
-import javax.ws.rs.QueryParam;
+import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_CBOR;
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_SMILE;
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceQueryParameters.QP_FIELDS;
 import static org.metadatacenter.constant.CedarQueryParameters.*;
 import static org.metadatacenter.rest.assertion.GenericAssertions.LoggedIn;
 
 @Path("/nodes")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE, APPLICATION_CBOR})
 public class NodesResource extends AbstractFolderServerResource {
 
-  public NodesResource(CedarConfig cedarConfig) {
+  private final NodeLookupConfig nodeLookupConfig;
+  private final ReadAccessIndex readAccessIndex;
+
+  public NodesResource(CedarConfig cedarConfig, NodeLookupConfig nodeLookupConfig, ReadAccessIndex readAccessIndex) {
     super(cedarConfig);
+    this.nodeLookupConfig = nodeLookupConfig;
+    this.readAccessIndex = readAccessIndex;
   }
 
   @GET
   @Timed
+  @RateLimitClass(EndpointClass.SEARCH)
   public Response findAllNodes(@QueryParam(QP_SORT) Optional<String> sortParam,
                                @QueryParam(QP_LIMIT) Optional<Integer> limitParam,
-                               @QueryParam(QP_OFFSET) Optional<Integer> offsetParam) throws CedarException {
+                               @QueryParam(QP_OFFSET) Optional<Integer> offsetParam,
+                               @QueryParam(QP_FIELDS) Optional<String> fieldsParam) throws CedarException {
     CedarRequestContext c = buildRequestContext();
 
     c.must(c.user()).be(LoggedIn);
 
-    UriBuilder builder = uriInfo.getAbsolutePathBuilder();
-    URI absoluteURI = builder.queryParam(QP_SORT, sortParam).build();
+    List<String> unknownFields = NodeFieldSelection.findUnknownFields(fieldsParam);
+    if (!unknownFields.isEmpty()) {
+      return unknownFieldsResponse(unknownFields);
+    }
+    NodeFieldSelection fieldSelection = NodeFieldSelection.parse(fieldsParam);
+
+    UriBuilder builder = uriInfo.getAbsolutePathBuilder().queryParam(QP_SORT, sortParam);
+    if (!fieldSelection.isAll()) {
+      builder.queryParam(QP_FIELDS, fieldSelection.getFieldsAsString());
+    }
+    URI absoluteURI = builder.build();
 
     PagedSortedQuery pagedSortedQuery = new PagedSortedQuery(
         cedarConfig.getFolderRESTAPI().getPagination())
@@ -58,10 +91,7 @@ public class NodesResource extends AbstractFolderServerResource {
     int offset = pagedSortedQuery.getOffset();
     List<String> sortList = pagedSortedQuery.getSortList();
 
-    FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(c);
-
-    // Retrieve all resources
-    List<FolderServerNodeExtract> resources = folderSession.findAllNodes(limit, offset, sortList);
+    FolderServiceSession folderSession = BackendSessions.getFolderServiceSession(c);
 
     // Build response
     FolderServerNodeListResponse r = new FolderServerNodeListResponse();
@@ -74,9 +104,58 @@ public class NodesResource extends AbstractFolderServerResource {
     long total = folderSession.findAllNodesCount();
     r.setTotalCount(total);
     r.setCurrentOffset(offset);
-    r.setResources(resources);
+    r.setResources(new ArrayList<>());
     r.setPaging(LinkHeaderUtil.getPagingLinkHeaders(absoluteURI, total, limit, offset));
 
+    // The page is read with one query before the response starts, only its serialization is streamed
+    List<FolderServerNodeExtract> nodes = folderSession.findAllNodes(limit, offset, sortList);
+    return Response.ok().entity(new ProjectedNodeListResponse(r, fieldSelection, nodes)).build();
+  }
+
+  @POST
+  @Timed
+  @ReadOnly
+  @Path("/lookup")
+  public Response lookupNodes() throws CedarException {
+    CedarRequestContext c = buildRequestContext();
+    c.must(c.user()).be(LoggedIn);
+
+    JsonNode idsNode = requestBodyAsJson(c).get("ids");
+    if (idsNode == null || !idsNode.isArray()) {
+      return CedarResponse.badRequest()
+          .errorKey(CedarErrorKey.MISSING_DATA)
+          .errorMessage("You need to supply the ids array!")
+          .build();
+    }
+
+    int maxIds = nodeLookupConfig.getMaxIds();
+    if (idsNode.size() > maxIds) {
+      return CedarResponse.badRequest()
+          .errorKey(CedarErrorKey.INVALID_DATA)
+          .errorMessage("You can look up at most " + maxIds + " ids at once")
+          .parameter("maxIds", maxIds)
+          .parameter("requestedIds", idsNode.size())
+          .build();
+    }
+
+    FolderServiceSession folderSession = BackendSessions.getFolderServiceSession(c);
+
+    List<String> ids = new ArrayList<>();
+    for (JsonNode idNode : idsNode) {
+      ids.add(idNode.asText().trim());
+    }
+
+    // Each distinct id is resolved once; nodes the user cannot read are reported like unknown ids. The response
+    // follows the request order, duplicates included
+    Map<String, FolderServerNode> resolved = NodeLookup.resolve(ids,
+        id -> NodeByIdResolver.findNodeById(folderSession, id),
+        found -> readAccessIndex.userHasReadAccessToNodes(c, found));
+    NodeLookupResponse r = new NodeLookupResponse();
+    for (String id : ids) {
+      FolderServerNode node = resolved.get(id);
+      r.add(new NodeLookupEntry(id, node == null ? null : FolderServerNodeExtract.fromNode(node)));
+    }
+
     return Response.ok().entity(r).build();
   }
 
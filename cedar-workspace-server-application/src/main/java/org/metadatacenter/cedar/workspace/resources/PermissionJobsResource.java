@@ -0,0 +1,51 @@
+package org.metadatacenter.cedar.workspace.resources;
+
+import com.codahale.metrics.annotation.Timed;
+import org.metadatacenter.cedar.workspace.permissions.PermissionJob;
+import org.metadatacenter.cedar.workspace.permissions.PermissionPropagation;
+import org.metadatacenter.config.CedarConfig;
+import org.metadatacenter.exception.CedarException;
+import org.metadatacenter.rest.context.CedarRequestContext;
+import org.metadatacenter.util.http.CedarResponse;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_CBOR;
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_SMILE;
+import static org.metadatacenter.constant.CedarPathParameters.PP_ID;
+import static org.metadatacenter.rest.assertion.GenericAssertions.LoggedIn;
+
+@Path("/permission-jobs")
+@Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE, APPLICATION_CBOR})
+public class PermissionJobsResource extends AbstractFolderServerResource {
+
+  private final PermissionPropagation permissionPropagation;
+
+  public PermissionJobsResource(CedarConfig cedarConfig, PermissionPropagation permissionPropagation) {
+    super(cedarConfig);
+    this.permissionPropagation = permissionPropagation;
+  }
+
+  @GET
+  @Timed
+  @Path("/{id}")
+  public Response getPermissionJob(@PathParam(PP_ID) String id) throws CedarException {
+    CedarRequestContext c = buildRequestContext();
+    c.must(c.user()).be(LoggedIn);
+
+    // Only the user who started a job can follow it
+    PermissionJob job = permissionPropagation.getJob(id);
+    if (job == null || !job.getUserId().equals(c.getCedarUser().getId())) {
+      return CedarResponse.notFound()
+          .id(id)
+          .errorMessage("The permission job can not be found by id")
+          .build();
+    }
+    return Response.ok().entity(job).build();
+  }
+}
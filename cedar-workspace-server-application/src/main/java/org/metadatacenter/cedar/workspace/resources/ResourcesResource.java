@@ -3,7 +3,11 @@ package org.metadatacenter.cedar.workspace.resources;
 import com.codahale.metrics.annotation.Timed;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
-import org.metadatacenter.bridge.CedarDataServices;
+import org.metadatacenter.cedar.workspace.backend.BackendSessions;
+import org.metadatacenter.cedar.workspace.event.NodeEvent;
+import org.metadatacenter.cedar.workspace.event.NodeEventBus;
+import org.metadatacenter.cedar.workspace.event.NodeEventType;
+import org.metadatacenter.cedar.workspace.util.SingleFlight;
 import org.metadatacenter.config.CedarConfig;
 import org.metadatacenter.error.CedarErrorKey;
 import org.metadatacenter.exception.CedarBackendException;
@@ -39,6 +43,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_CBOR;
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_SMILE;
 import static org.metadatacenter.constant.CedarPathParameters.PP_ID;
 import static org.metadatacenter.model.ModelNodeNames.BIBO_STATUS;
 import static org.metadatacenter.model.ModelNodeNames.PAV_VERSION;
@@ -46,13 +52,18 @@ import static org.metadatacenter.rest.assertion.GenericAssertions.LoggedIn;
 import static org.metadatacenter.rest.assertion.GenericAssertions.NonEmpty;
 
 @Path("/resources")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE, APPLICATION_CBOR})
 public class ResourcesResource extends AbstractFolderServerResource {
 
   private static final Logger log = LoggerFactory.getLogger(ResourcesResource.class);
 
-  public ResourcesResource(CedarConfig cedarConfig) {
+  private final NodeEventBus nodeEventBus;
+  private final SingleFlight singleFlight;
+
+  public ResourcesResource(CedarConfig cedarConfig, NodeEventBus nodeEventBus, SingleFlight singleFlight) {
     super(cedarConfig);
+    this.nodeEventBus = nodeEventBus;
+    this.singleFlight = singleFlight;
   }
 
   @POST
@@ -65,7 +76,7 @@ public class ResourcesResource extends AbstractFolderServerResource {
 
     c.must(c.request().getRequestBody()).be(NonEmpty);
 
-    FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(c);
+    FolderServiceSession folderSession = BackendSessions.getFolderServiceSession(c);
 
     CedarParameter parentIdP = c.request().getRequestBody().get("parentId");
     c.must(parentIdP).be(NonEmpty);
@@ -149,6 +160,12 @@ public class ResourcesResource extends AbstractFolderServerResource {
     }
 
     if (newResource != null) {
+      nodeEventBus.publish(NodeEvent.of(NodeEventType.CREATED, id, nodeType)
+          .parentId(parentId)
+          .isBasedOn(isBasedOnString)
+          .node(newResource)
+          .userId(c.getCedarUser().getId()));
+
       UriBuilder builder = uriInfo.getAbsolutePathBuilder();
       URI uri = builder.path(CedarUrlUtil.urlEncode(id)).build();
       return Response.created(uri).entity(newResource).build();
@@ -170,9 +187,18 @@ public class ResourcesResource extends AbstractFolderServerResource {
     CedarRequestContext c = buildRequestContext();
     c.must(c.user()).be(LoggedIn);
 
-    FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(c);
+    FolderServiceSession folderSession = BackendSessions.getFolderServiceSession(c);
 
-    FolderServerResource resource = folderSession.findResourceById(id);
+    // The lookup does not depend on the caller, identical concurrent lookups share one execution
+    FolderServerResource resource = singleFlight.execute("resource|" + id, () -> {
+      FolderServerResource found = folderSession.findResourceById(id);
+      if (found != null) {
+        folderSession.addPathAndParentId(found);
+        List<FolderServerNodeExtract> pathInfo = folderSession.findNodePathExtract(found);
+        found.setPathInfo(pathInfo);
+      }
+      return found;
+    });
     if (resource == null) {
       return CedarResponse.notFound()
           .id(id)
@@ -181,11 +207,6 @@ public class ResourcesResource extends AbstractFolderServerResource {
           .build();
     }
 
-    folderSession.addPathAndParentId(resource);
-
-    List<FolderServerNodeExtract> pathInfo = folderSession.findNodePathExtract(resource);
-    resource.setPathInfo(pathInfo);
-
     return Response.ok().entity(resource).build();
 
   }
@@ -199,7 +220,7 @@ public class ResourcesResource extends AbstractFolderServerResource {
 
     c.must(c.request().getRequestBody()).be(NonEmpty);
 
-    FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(c);
+    FolderServiceSession folderSession = BackendSessions.getFolderServiceSession(c);
 
     CedarParameter name = c.request().getRequestBody().get("name");
     String nameV = null;
@@ -285,6 +306,10 @@ public class ResourcesResource extends AbstractFolderServerResource {
       if (updatedResource == null) {
         return CedarResponse.internalServerError().build();
       } else {
+        nodeEventBus.publish(NodeEvent.of(NodeEventType.UPDATED, id, resource.getType())
+            .parentIdResolver(() -> findParentId(folderSession, resource))
+            .node(updatedResource)
+            .userId(c.getCedarUser().getId()));
         return Response.ok().entity(updatedResource).build();
       }
     }
@@ -297,7 +322,7 @@ public class ResourcesResource extends AbstractFolderServerResource {
     CedarRequestContext c = buildRequestContext();
     c.must(c.user()).be(LoggedIn);
 
-    FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(c);
+    FolderServiceSession folderSession = BackendSessions.getFolderServiceSession(c);
 
     FolderServerResource resource = folderSession.findResourceById(id);
     if (resource == null) {
@@ -312,8 +337,19 @@ public class ResourcesResource extends AbstractFolderServerResource {
         previousVersion = resource.getPreviousVersion();
       }
 
+      String isBasedOn = null;
+      if (resource instanceof FolderServerInstance && ((FolderServerInstance) resource).getIsBasedOn() != null) {
+        isBasedOn = ((FolderServerInstance) resource).getIsBasedOn().getValue();
+      }
+
+      String parentId = findParentId(folderSession, resource);
       boolean deleted = folderSession.deleteResourceById(id, CedarNodeType.ELEMENT);
       if (deleted) {
+        nodeEventBus.publish(NodeEvent.of(NodeEventType.DELETED, id, resource.getType())
+            .parentId(parentId)
+            .isBasedOn(isBasedOn)
+            .node(resource)
+            .userId(c.getCedarUser().getId()));
         if (previousVersion != null) {
           folderSession.setLatestVersion(previousVersion.getValue());
           folderSession.setLatestPublishedVersion(previousVersion.getValue());
@@ -336,11 +372,10 @@ public class ResourcesResource extends AbstractFolderServerResource {
     CedarRequestContext c = buildRequestContext();
     c.must(c.user()).be(LoggedIn);
 
-    c.must(c.request().getRequestBody()).be(NonEmpty);
-    JsonNode permissionUpdateRequest = c.request().getRequestBody().asJson();
+    JsonNode permissionUpdateRequest = requestBodyAsJson(c);
 
-    FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(c);
-    PermissionServiceSession permissionSession = CedarDataServices.getPermissionServiceSession(c);
+    FolderServiceSession folderSession = BackendSessions.getFolderServiceSession(c);
+    PermissionServiceSession permissionSession = BackendSessions.getPermissionServiceSession(c);
 
     CedarNodePermissionsRequest permissionsRequest = null;
     try {
@@ -362,6 +397,10 @@ public class ResourcesResource extends AbstractFolderServerResource {
       if (backendCallResult.isError()) {
         throw new CedarBackendException(backendCallResult);
       }
+      nodeEventBus.publish(NodeEvent.of(NodeEventType.PERMISSIONS_CHANGED, id, resource.getType())
+          .parentIdResolver(() -> findParentId(folderSession, resource))
+          .node(resource)
+          .userId(c.getCedarUser().getId()));
       CedarNodePermissions permissions = permissionSession.getNodePermissions(id);
       return Response.ok().entity(permissions).build();
     }
@@ -374,9 +413,9 @@ public class ResourcesResource extends AbstractFolderServerResource {
     CedarRequestContext c = buildRequestContext();
     c.must(c.user()).be(LoggedIn);
 
-    FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(c);
+    FolderServiceSession folderSession = BackendSessions.getFolderServiceSession(c);
 
-    PermissionServiceSession permissionServiceSession = CedarDataServices.getPermissionServiceSession(c);
+    PermissionServiceSession permissionServiceSession = BackendSessions.getPermissionServiceSession(c);
 
     FolderServerResource resource = folderSession.findResourceById(id);
     if (resource == null) {
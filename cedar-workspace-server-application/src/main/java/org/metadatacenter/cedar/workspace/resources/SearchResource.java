@@ -1,13 +1,21 @@
 package org.metadatacenter.cedar.workspace.resources;
 
 import com.codahale.metrics.annotation.Timed;
-import org.metadatacenter.bridge.CedarDataServices;
+import org.metadatacenter.cedar.workspace.backend.BackendSessions;
+import org.metadatacenter.cedar.workspace.index.ReadAccessIndex;
+import org.metadatacenter.cedar.workspace.ratelimit.EndpointClass;
+import org.metadatacenter.cedar.workspace.ratelimit.RateLimitClass;
+import org.metadatacenter.cedar.workspace.response.NodeFieldSelection;
+import org.metadatacenter.cedar.workspace.response.ProjectedNodeListResponse;
+import org.metadatacenter.cedar.workspace.search.NodeTextIndex;
+import org.metadatacenter.cedar.workspace.search.TextSearchResult;
+import org.metadatacenter.cedar.workspace.util.NodeByIdResolver;
+import org.metadatacenter.cedar.workspace.util.SingleFlight;
 import org.metadatacenter.config.CedarConfig;
 import org.metadatacenter.exception.CedarException;
 import org.metadatacenter.exception.CedarProcessingException;
 import org.metadatacenter.model.CedarNodeType;
-import org.metadatacenter.model.folderserver.basic.FolderServerFolder;
-import org.metadatacenter.model.folderserver.basic.FolderServerResource;
+import org.metadatacenter.model.folderserver.basic.FolderServerNode;
 import org.metadatacenter.model.folderserver.extract.FolderServerNodeExtract;
 import org.metadatacenter.model.request.NodeListQueryType;
 import org.metadatacenter.model.request.NodeListQueryTypeDetector;
@@ -25,26 +33,40 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_CBOR;
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_SMILE;
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceQueryParameters.QP_FIELDS;
 import static org.metadatacenter.constant.CedarQueryParameters.*;
 import static org.metadatacenter.rest.assertion.GenericAssertions.LoggedIn;
 
 @Path("/")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE, APPLICATION_CBOR})
 public class SearchResource extends AbstractFolderServerResource {
 
-  public SearchResource(CedarConfig cedarConfig) {
+  private final SingleFlight singleFlight;
+  private final NodeTextIndex nodeTextIndex;
+  private final ReadAccessIndex readAccessIndex;
+
+  public SearchResource(CedarConfig cedarConfig, SingleFlight singleFlight, NodeTextIndex nodeTextIndex,
+                        ReadAccessIndex readAccessIndex) {
     super(cedarConfig);
+    this.singleFlight = singleFlight;
+    this.nodeTextIndex = nodeTextIndex;
+    this.readAccessIndex = readAccessIndex;
   }
 
   @GET
   @Timed
   @Path("/search")
+  @RateLimitClass(EndpointClass.SEARCH)
   public Response search(@QueryParam(QP_Q) Optional<String> q,
                          @QueryParam(QP_ID) Optional<String> id,
                          @QueryParam(QP_RESOURCE_TYPES) Optional<String> resourceTypes,
@@ -54,7 +76,8 @@ public class SearchResource extends AbstractFolderServerResource {
                          @QueryParam(QP_SORT) Optional<String> sortParam,
                          @QueryParam(QP_LIMIT) Optional<Integer> limitParam,
                          @QueryParam(QP_OFFSET) Optional<Integer> offsetParam,
-                         @QueryParam(QP_SHARING) Optional<String> sharing) throws CedarException {
+                         @QueryParam(QP_SHARING) Optional<String> sharing,
+                         @QueryParam(QP_FIELDS) Optional<String> fieldsParam) throws CedarException {
 
     CedarRequestContext c = buildRequestContext();
     c.must(c.user()).be(LoggedIn);
@@ -72,6 +95,12 @@ public class SearchResource extends AbstractFolderServerResource {
         .offset(offsetParam);
     pagedSearchQuery.validate();
 
+    List<String> unknownFields = NodeFieldSelection.findUnknownFields(fieldsParam);
+    if (!unknownFields.isEmpty()) {
+      return unknownFieldsResponse(unknownFields);
+    }
+    NodeFieldSelection fieldSelection = NodeFieldSelection.parse(fieldsParam);
+
     int limit = pagedSearchQuery.getLimit();
     int offset = pagedSearchQuery.getOffset();
     String idString = pagedSearchQuery.getId();
@@ -98,8 +127,46 @@ public class SearchResource extends AbstractFolderServerResource {
     NodeListQueryType nlqt = NodeListQueryTypeDetector.detect(q, id, isBasedOn, sharing);
     r.setNodeListQueryType(nlqt);
 
-    FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(c);
+    FolderServiceSession folderSession = BackendSessions.getFolderServiceSession(c);
+
+    // Search results depend on the caller, so only identical concurrent searches of the same user are coalesced
+    String flightKey = "search|" + c.getCedarUser().getId() + "|" + nlqt.getValue() + "|" + nodeTypeList + "|" +
+        version + "|" + publicationStatus + "|" + req.getIsBasedOn() + "|" + idString + "|" + q.orElse(null) + "|" +
+        sortList + "|" + limit + "|" + offset;
+    SearchResult result = singleFlight.execute(flightKey, () -> search(c, folderSession, nlqt, q.orElse(null),
+        nodeTypeList, version, publicationStatus, isBasedOn.orElse(null), idString, limit, offset, sortList));
+    List<FolderServerNodeExtract> resources = result.resources;
+    long total = result.total;
+
+    r.setTotalCount(total);
+    r.setCurrentOffset(offset);
+
+    r.setResources(resources);
+
+    CedarURIBuilder builder = new CedarURIBuilder(uriInfo)
+        .queryParam(QP_Q, q)
+        .queryParam(QP_ID, id)
+        .queryParam(QP_RESOURCE_TYPES, resourceTypes)
+        .queryParam(QP_VERSION, versionParam)
+        .queryParam(QP_PUBLICATION_STATUS, publicationStatusParam)
+        .queryParam(QP_IS_BASED_ON, isBasedOn)
+        .queryParam(QP_SORT, sortParam)
+        .queryParam(QP_LIMIT, limitParam)
+        .queryParam(QP_OFFSET, offsetParam)
+        .queryParam(QP_SHARING, sharing)
+        .queryParam(QP_FIELDS, fieldsParam);
+
+    String absoluteUrl = builder.build().toString();
+
+    r.setPaging(LinkHeaderUtil.getPagingLinkHeaders(absoluteUrl, total, limit, offset));
+
+    return Response.ok().entity(new ProjectedNodeListResponse(r, fieldSelection)).build();
+  }
 
+  private SearchResult search(CedarRequestContext c, FolderServiceSession folderSession, NodeListQueryType nlqt,
+                              String q, List<CedarNodeType> nodeTypeList, ResourceVersionFilter version,
+                              ResourcePublicationStatusFilter publicationStatus, String isBasedOn, String idString,
+                              int limit, int offset, List<String> sortList) throws CedarException {
     List<FolderServerNodeExtract> resources = null;
     long total = 0;
 
@@ -107,53 +174,58 @@ public class SearchResource extends AbstractFolderServerResource {
       resources = folderSession.viewSharedWithMe(nodeTypeList, version, publicationStatus, limit, offset, sortList);
       total = folderSession.viewSharedWithMeCount(nodeTypeList, version, publicationStatus);
     } else if (nlqt == NodeListQueryType.VIEW_SHARED_WITH_EVERYBODY) {
-      resources = folderSession.viewSharedWithEverybody(nodeTypeList, version, publicationStatus, limit, offset, sortList);
+      resources = folderSession.viewSharedWithEverybody(nodeTypeList, version, publicationStatus, limit, offset,
+          sortList);
       total = folderSession.viewSharedWithEverybodyCount(nodeTypeList, version, publicationStatus);
     } else if (nlqt == NodeListQueryType.VIEW_ALL) {
       resources = folderSession.viewAll(nodeTypeList, version, publicationStatus, limit, offset, sortList);
       total = folderSession.viewAllCount(nodeTypeList, version, publicationStatus);
     } else if (nlqt == NodeListQueryType.SEARCH_IS_BASED_ON) {
-      resources = folderSession.searchIsBasedOn(nodeTypeList, req.getIsBasedOn(), limit, offset, sortList);
-      total = folderSession.searchIsBasedOnCount(nodeTypeList, req.getIsBasedOn());
+      resources = folderSession.searchIsBasedOn(nodeTypeList, isBasedOn, limit, offset, sortList);
+      // A short first page already holds every match, no need to count them again
+      if (offset == 0 && resources.size() < limit) {
+        total = resources.size();
+      } else {
+        total = folderSession.searchIsBasedOnCount(nodeTypeList, isBasedOn);
+      }
     } else if (nlqt == NodeListQueryType.SEARCH_ID) {
       resources = new ArrayList<>();
-      FolderServerResource resourceById = folderSession.findResourceById(idString);
-      if (resourceById != null) {
-        resources.add(FolderServerNodeExtract.fromNode(resourceById));
-      } else {
-        FolderServerFolder folderById = folderSession.findFolderById(idString);
-        if (folderById != null) {
-          resources.add(FolderServerNodeExtract.fromNode(folderById));
-        }
+      FolderServerNode nodeById = NodeByIdResolver.findNodeById(folderSession, idString);
+      if (nodeById != null) {
+        resources.add(FolderServerNodeExtract.fromNode(nodeById));
       }
       total = resources.size();
+    } else if (q != null && nodeTextIndex != null) {
+      // There is no keyword search in the graph to fall back to while the index is being built
+      if (!nodeTextIndex.isReady()) {
+        throw new WebApplicationException(Response.status(Response.Status.SERVICE_UNAVAILABLE).build());
+      }
+      TextSearchResult hits;
+      try {
+        hits = nodeTextIndex.search(q, nodeTypeList, version, publicationStatus, sortList, limit, offset,
+            nodeIds -> readAccessIndex.userHasReadAccessToNodes(c, nodeIds));
+      } catch (IOException e) {
+        throw new CedarProcessingException("Error while searching the text index");
+      }
+      resources = hits.getNodes();
+      total = hits.getTotal();
     } else {
       throw new CedarProcessingException("Search type not supported by Workspace server")
           .parameter("resolvedSearchType", nlqt.getValue());
     }
 
-    r.setTotalCount(total);
-    r.setCurrentOffset(offset);
-
-    r.setResources(resources);
-
-    CedarURIBuilder builder = new CedarURIBuilder(uriInfo)
-        .queryParam(QP_Q, q)
-        .queryParam(QP_ID, id)
-        .queryParam(QP_RESOURCE_TYPES, resourceTypes)
-        .queryParam(QP_VERSION, versionParam)
-        .queryParam(QP_PUBLICATION_STATUS, publicationStatusParam)
-        .queryParam(QP_IS_BASED_ON, isBasedOn)
-        .queryParam(QP_SORT, sortParam)
-        .queryParam(QP_LIMIT, limitParam)
-        .queryParam(QP_OFFSET, offsetParam)
-        .queryParam(QP_SHARING, sharing);
+    return new SearchResult(resources, total);
+  }
 
-    String absoluteUrl = builder.build().toString();
+  private static class SearchResult {
 
-    r.setPaging(LinkHeaderUtil.getPagingLinkHeaders(absoluteUrl, total, limit, offset));
+    private final List<FolderServerNodeExtract> resources;
+    private final long total;
 
-    return Response.ok().entity(r).build();
+    SearchResult(List<FolderServerNodeExtract> resources, long total) {
+      this.resources = resources;
+      this.total = total;
+    }
   }
 
 }
\ No newline at end of file
@@ -1,7 +1,7 @@
 package org.metadatacenter.cedar.workspace.resources;
 
 import com.codahale.metrics.annotation.Timed;
-import org.metadatacenter.bridge.CedarDataServices;
+import org.metadatacenter.cedar.workspace.backend.BackendSessions;
 import org.metadatacenter.config.CedarConfig;
 import org.metadatacenter.exception.CedarException;
 import org.metadatacenter.model.folderserver.basic.FolderServerUser;
@@ -16,10 +16,12 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.util.List;
 
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_CBOR;
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_SMILE;
 import static org.metadatacenter.rest.assertion.GenericAssertions.LoggedIn;
 
 @Path("/users")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE, APPLICATION_CBOR})
 public class UsersResource extends AbstractFolderServerResource {
 
   public UsersResource(CedarConfig cedarConfig) {
@@ -33,7 +35,7 @@ public class UsersResource extends AbstractFolderServerResource {
 
     c.must(c.user()).be(LoggedIn);
 
-    UserServiceSession userSession = CedarDataServices.getUserServiceSession(c);
+    UserServiceSession userSession = BackendSessions.getUserServiceSession(c);
 
     List<FolderServerUser> users = userSession.findUsers();
 
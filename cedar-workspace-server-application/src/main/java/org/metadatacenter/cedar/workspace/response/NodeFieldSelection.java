@@ -0,0 +1,100 @@
+package org.metadatacenter.cedar.workspace.response;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.introspect.AnnotatedClass;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.jsontype.NamedType;
+import org.metadatacenter.model.folderserver.extract.FolderServerNodeExtract;
+import org.metadatacenter.util.json.JsonMapper;
+
+import java.util.*;
+
+/**
+ * The set of node extract properties requested through the <code>fields</code> query parameter.
+ * The names are the serialized JSON property names. The identifying properties are always kept.
+ */
+public final class NodeFieldSelection {
+
+  private static final Set<String> ALWAYS_INCLUDED = new HashSet<>(Arrays.asList("@id", "nodeType"));
+
+  private static final NodeFieldSelection ALL = new NodeFieldSelection(null);
+
+  private static final Set<String> KNOWN_FIELDS = knownFields(JsonMapper.MAPPER, FolderServerNodeExtract.class);
+
+  private final Set<String> fields;
+
+  private NodeFieldSelection(Set<String> fields) {
+    this.fields = fields;
+  }
+
+  public static NodeFieldSelection all() {
+    return ALL;
+  }
+
+  public static NodeFieldSelection parse(Optional<String> fieldsParam) {
+    if (!fieldsParam.isPresent()) {
+      return ALL;
+    }
+    Set<String> fields = new LinkedHashSet<>(ALWAYS_INCLUDED);
+    boolean any = false;
+    for (String field : fieldsParam.get().split(",")) {
+      String f = field.trim();
+      if (!f.isEmpty()) {
+        fields.add(f);
+        any = true;
+      }
+    }
+    return any ? new NodeFieldSelection(Collections.unmodifiableSet(fields)) : ALL;
+  }
+
+  /**
+   * Returns the requested names that are not properties of any node extract, in the order they were given.
+   */
+  public static List<String> findUnknownFields(Optional<String> fieldsParam) {
+    List<String> unknown = new ArrayList<>();
+    if (fieldsParam.isPresent()) {
+      for (String field : fieldsParam.get().split(",")) {
+        String f = field.trim();
+        if (!f.isEmpty() && !KNOWN_FIELDS.contains(f) && !unknown.contains(f)) {
+          unknown.add(f);
+        }
+      }
+    }
+    return unknown;
+  }
+
+  public boolean isAll() {
+    return fields == null;
+  }
+
+  public Set<String> getFields() {
+    return fields;
+  }
+
+  public String getFieldsAsString() {
+    return isAll() ? null : String.join(",", fields);
+  }
+
+  /**
+   * Collects the serialized property names of a type and of its declared subtypes.
+   */
+  static Set<String> knownFields(ObjectMapper mapper, Class<?> type) {
+    SerializationConfig config = mapper.getSerializationConfig();
+    AnnotatedClass annotatedClass = config.introspectClassAnnotations(type).getClassInfo();
+    Set<Class<?>> types = new LinkedHashSet<>();
+    types.add(type);
+    for (NamedType subtype : mapper.getSubtypeResolver().collectAndResolveSubtypesByClass(config, annotatedClass)) {
+      types.add(subtype.getType());
+    }
+    Set<String> names = new HashSet<>(ALWAYS_INCLUDED);
+    for (Class<?> t : types) {
+      for (BeanPropertyDefinition property : config.introspect(config.constructType(t)).findProperties()) {
+        if (property.couldSerialize()) {
+          names.add(property.getName());
+        }
+      }
+    }
+    return Collections.unmodifiableSet(names);
+  }
+}
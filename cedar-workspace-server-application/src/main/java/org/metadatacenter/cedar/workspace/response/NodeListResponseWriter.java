@@ -0,0 +1,157 @@
+package org.metadatacenter.cedar.workspace.response;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.metadatacenter.cedar.workspace.codec.BinaryMappers;
+import org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType;
+import org.metadatacenter.model.folderserver.extract.FolderServerNodeExtract;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_CBOR;
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_SMILE;
+
+/**
+ * Writes node list responses straight to the entity stream with a single JSON generator. The requested field
+ * selection is applied to every node extract in the response (including the path info) while it is serialized, so
+ * no intermediate tree is built. Smile and CBOR are written with the same filters by the binary mappers.
+ * <p>
+ * Responses with the nodes of their page given separately are written envelope first; the nodes, already read from
+ * the backend, are then written one chunk at a time and the stream is flushed after every chunk, so the client gets
+ * the first nodes while the rest of the page is still being serialized.
+ */
+@Provider
+@Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE, APPLICATION_CBOR})
+public class NodeListResponseWriter implements MessageBodyWriter<ProjectedNodeListResponse> {
+
+  static final String NODE_EXTRACT_FILTER = "nodeExtractFields";
+  private static final String RESOURCES = "resources";
+
+  private final ObjectMapper jsonMapper;
+  private final ObjectMapper smileMapper;
+  private final ObjectMapper cborMapper;
+
+  public NodeListResponseWriter(ObjectMapper baseMapper, BinaryMappers binaryMappers) {
+    this.jsonMapper = withExtractFilter(baseMapper);
+    this.smileMapper = withExtractFilter(binaryMappers.getSmileMapper());
+    this.cborMapper = withExtractFilter(binaryMappers.getCborMapper());
+  }
+
+  private static ObjectMapper withExtractFilter(ObjectMapper mapper) {
+    return mapper.copy().addMixIn(FolderServerNodeExtract.class, NodeExtractFilterMixin.class);
+  }
+
+  @Override
+  public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+    return ProjectedNodeListResponse.class.isAssignableFrom(type);
+  }
+
+  @Override
+  public long getSize(ProjectedNodeListResponse projected, Class<?> type, Type genericType,
+                      Annotation[] annotations, MediaType mediaType) {
+    return -1;
+  }
+
+  @Override
+  public void writeTo(ProjectedNodeListResponse projected, Class<?> type, Type genericType,
+                      Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, Object> httpHeaders,
+                      OutputStream entityStream) throws IOException, WebApplicationException {
+    ObjectMapper mapper = mapperFor(mediaType);
+    ObjectWriter writer = writerFor(mapper, projected.getFieldSelection());
+    JsonGenerator generator = mapper.getFactory().createGenerator(entityStream, JsonEncoding.UTF8);
+    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    try {
+      if (projected.getNodes() == null) {
+        writer.writeValue(generator, projected.getResponse());
+      } else {
+        writeInChunks(mapper, writer.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE), generator, projected);
+      }
+    } finally {
+      generator.close();
+    }
+  }
+
+  private static void writeInChunks(ObjectMapper mapper, ObjectWriter writer, JsonGenerator generator,
+                                    ProjectedNodeListResponse projected) throws IOException {
+    // The envelope is small; it is buffered to keep the property names and order of the response class
+    TokenBuffer buffer = new TokenBuffer(mapper, false);
+    writer.writeValue(buffer, projected.getResponse());
+    JsonNode envelope = mapper.readTree(buffer.asParser());
+
+    generator.writeStartObject();
+    boolean resourcesWritten = false;
+    Iterator<Map.Entry<String, JsonNode>> fields = envelope.fields();
+    while (fields.hasNext()) {
+      Map.Entry<String, JsonNode> field = fields.next();
+      generator.writeFieldName(field.getKey());
+      if (RESOURCES.equals(field.getKey())) {
+        writeResources(writer, generator, projected);
+        resourcesWritten = true;
+      } else {
+        generator.writeTree(field.getValue());
+      }
+    }
+    if (!resourcesWritten) {
+      generator.writeFieldName(RESOURCES);
+      writeResources(writer, generator, projected);
+    }
+    generator.writeEndObject();
+  }
+
+  private static void writeResources(ObjectWriter writer, JsonGenerator generator,
+                                     ProjectedNodeListResponse projected) throws IOException {
+    generator.writeStartArray();
+    int written = 0;
+    for (FolderServerNodeExtract node : projected.getNodes()) {
+      writer.writeValue(generator, node);
+      if (++written % ProjectedNodeListResponse.CHUNK_SIZE == 0) {
+        generator.flush();
+      }
+    }
+    generator.writeEndArray();
+  }
+
+  private ObjectMapper mapperFor(MediaType mediaType) {
+    if (WorkspaceMediaType.APPLICATION_SMILE_TYPE.isCompatible(mediaType) && !mediaType.isWildcardSubtype()) {
+      return smileMapper;
+    }
+    if (WorkspaceMediaType.APPLICATION_CBOR_TYPE.isCompatible(mediaType) && !mediaType.isWildcardSubtype()) {
+      return cborMapper;
+    }
+    return jsonMapper;
+  }
+
+  private static ObjectWriter writerFor(ObjectMapper mapper, NodeFieldSelection fieldSelection) {
+    if (fieldSelection == null || fieldSelection.isAll()) {
+      return mapper.writer(filterProvider(SimpleBeanPropertyFilter.serializeAll()));
+    }
+    return mapper.writer(filterProvider(SimpleBeanPropertyFilter.filterOutAllExcept(fieldSelection.getFields())));
+  }
+
+  private static SimpleFilterProvider filterProvider(SimpleBeanPropertyFilter filter) {
+    return new SimpleFilterProvider().addFilter(NODE_EXTRACT_FILTER, filter);
+  }
+
+  @JsonFilter(NODE_EXTRACT_FILTER)
+  abstract static class NodeExtractFilterMixin {
+  }
+}
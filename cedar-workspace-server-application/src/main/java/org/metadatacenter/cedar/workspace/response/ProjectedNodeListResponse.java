@@ -0,0 +1,43 @@
+package org.metadatacenter.cedar.workspace.response;
+
+import org.metadatacenter.model.folderserver.extract.FolderServerNodeExtract;
+import org.metadatacenter.model.response.FolderServerNodeListResponse;
+
+import java.util.List;
+
+/**
+ * A node list response together with the field selection that should be applied to its node extracts while it is
+ * streamed out by {@link NodeListResponseWriter}. If the nodes of the page are given separately, the resources of the
+ * response are left empty and the nodes are written in chunks of {@link #CHUNK_SIZE}.
+ */
+public class ProjectedNodeListResponse {
+
+  public static final int CHUNK_SIZE = 100;
+
+  private final FolderServerNodeListResponse response;
+  private final NodeFieldSelection fieldSelection;
+  private final List<FolderServerNodeExtract> nodes;
+
+  public ProjectedNodeListResponse(FolderServerNodeListResponse response, NodeFieldSelection fieldSelection) {
+    this(response, fieldSelection, null);
+  }
+
+  public ProjectedNodeListResponse(FolderServerNodeListResponse response, NodeFieldSelection fieldSelection,
+                                   List<FolderServerNodeExtract> nodes) {
+    this.response = response;
+    this.fieldSelection = fieldSelection;
+    this.nodes = nodes;
+  }
+
+  public FolderServerNodeListResponse getResponse() {
+    return response;
+  }
+
+  public NodeFieldSelection getFieldSelection() {
+    return fieldSelection;
+  }
+
+  public List<FolderServerNodeExtract> getNodes() {
+    return nodes;
+  }
+}
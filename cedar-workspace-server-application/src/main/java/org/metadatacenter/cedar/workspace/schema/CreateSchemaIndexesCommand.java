@@ -0,0 +1,34 @@
+package org.metadatacenter.cedar.workspace.schema;
+
+import io.dropwizard.cli.ConfiguredCommand;
+import io.dropwizard.setup.Bootstrap;
+import net.sourceforge.argparse4j.inf.Namespace;
+import org.metadatacenter.cedar.workspace.WorkspaceServerConfiguration;
+import org.metadatacenter.cedar.workspace.util.GraphDriver;
+
+import java.util.List;
+
+/**
+ * Creates the required indexes that are missing from the graph: <code>create-schema-indexes config.yml</code>.
+ */
+public class CreateSchemaIndexesCommand extends ConfiguredCommand<WorkspaceServerConfiguration> {
+
+  public CreateSchemaIndexesCommand() {
+    super("create-schema-indexes", "Creates the missing indexes the workspace server relies on");
+  }
+
+  @Override
+  protected void run(Bootstrap<WorkspaceServerConfiguration> bootstrap, Namespace namespace,
+                     WorkspaceServerConfiguration configuration) throws Exception {
+    GraphDriver graphDriver = new GraphDriver();
+    try {
+      List<SchemaIndexState> failed = new SchemaIndexManager(configuration.getSchemaIndexes(), graphDriver)
+          .createMissingIndexes();
+      if (!failed.isEmpty()) {
+        throw new IllegalStateException(failed.size() + " indexes could not be created");
+      }
+    } finally {
+      graphDriver.stop();
+    }
+  }
+}
@@ -0,0 +1,216 @@
+package org.metadatacenter.cedar.workspace.schema;
+
+import org.metadatacenter.cedar.workspace.config.SchemaIndexConfig;
+import org.metadatacenter.cedar.workspace.util.GraphDriver;
+import org.metadatacenter.cedar.workspace.util.Neo4jDrivers;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.driver.v1.StatementResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Checks that the indexes and uniqueness constraints the lookups of this server rely on exist in the graph. Missing
+ * ones are reported, created, or make the startup fail, depending on the mode; by default they are only reported, and
+ * created with the <code>create-schema-indexes</code> command. The check talks to Neo4j directly,
+ * over the graph driver of the server. The states reported to the health check and the admin connector are cached for a short while, so that
+ * polling them does not put load on the graph.
+ */
+public class SchemaIndexManager {
+
+  /**
+   * Reads and creates the indexes of the graph.
+   */
+  interface SchemaSource {
+
+    /**
+     * Returns the state of every index of the graph, by label and properties.
+     */
+    Map<String, String> readIndexes();
+
+    void run(String statement);
+  }
+
+  private static final Logger log = LoggerFactory.getLogger(SchemaIndexManager.class);
+
+  private static final Pattern INDEX_DESCRIPTION = Pattern.compile("INDEX ON :`?([^`(]+)`?\\((.*)\\)");
+
+  private final SchemaIndexConfig config;
+  private final SchemaSource source;
+  private final LongSupplier clock;
+  private List<SchemaIndexState> cachedStates;
+  private long cachedAt;
+
+  public SchemaIndexManager(SchemaIndexConfig config, GraphDriver graphDriver) {
+    this(config, new BoltSchemaSource(graphDriver), System::currentTimeMillis);
+  }
+
+  SchemaIndexManager(SchemaIndexConfig config, SchemaSource source, LongSupplier clock) {
+    this.config = config;
+    this.source = source;
+    this.clock = clock;
+  }
+
+  public boolean isEnabled() {
+    return !SchemaIndexConfig.MODE_OFF.equals(config.getMode());
+  }
+
+  /**
+   * Tells whether missing indexes are only reported, in which case they do not make the server unhealthy.
+   */
+  public boolean isVerifyOnly() {
+    return SchemaIndexConfig.MODE_VERIFY.equals(config.getMode());
+  }
+
+  /**
+   * Runs the startup step. Throws IllegalStateException in strict mode if a required index is missing.
+   */
+  public void ensureIndexes() {
+    boolean strict = SchemaIndexConfig.MODE_STRICT.equals(config.getMode());
+    List<SchemaIndexState> states;
+    try {
+      states = readStates();
+    } catch (RuntimeException e) {
+      if (strict) {
+        throw new IllegalStateException("Unable to read the indexes of the graph", e);
+      }
+      log.error("Unable to read the indexes of the graph", e);
+      return;
+    }
+    List<SchemaIndexState> missing = states.stream().filter(SchemaIndexState::isMissing)
+        .collect(Collectors.toList());
+    for (SchemaIndexState state : states) {
+      if (!state.isMissing() && !state.isOnline()) {
+        log.warn("Index on :" + state.getLabel() + state.getProperties() + " is " + state.getState());
+      }
+    }
+    if (missing.isEmpty()) {
+      log.info("All " + states.size() + " required indexes are present");
+      return;
+    }
+    if (strict) {
+      throw new IllegalStateException("Required indexes are missing: " + describe(missing));
+    } else if (SchemaIndexConfig.MODE_CREATE.equals(config.getMode())) {
+      create(missing);
+    } else {
+      log.warn("Required indexes are missing: " + describe(missing) + "; run create-schema-indexes to create them");
+    }
+  }
+
+  /**
+   * Creates the required indexes that are missing, whatever the mode, and returns those that could not be created.
+   */
+  public List<SchemaIndexState> createMissingIndexes() {
+    List<SchemaIndexState> missing = readStates().stream().filter(SchemaIndexState::isMissing)
+        .collect(Collectors.toList());
+    if (missing.isEmpty()) {
+      log.info("All " + config.getRequired().size() + " required indexes are present");
+    }
+    return create(missing);
+  }
+
+  /**
+   * Returns the state of every required index, as read from the graph at most the state cache TTL ago.
+   */
+  public synchronized List<SchemaIndexState> getStates() {
+    long now = clock.getAsLong();
+    if (cachedStates == null || now - cachedAt >= config.getStateCacheTtl().toMilliseconds()) {
+      cachedStates = readStates();
+      cachedAt = now;
+    }
+    return cachedStates;
+  }
+
+  private List<SchemaIndexState> create(List<SchemaIndexState> missing) {
+    List<SchemaIndexState> failed = new ArrayList<>();
+    for (SchemaIndexState state : missing) {
+      log.info("Creating index on :" + state.getLabel() + state.getProperties());
+      try {
+        source.run(createStatement(state));
+      } catch (RuntimeException e) {
+        log.error("Error while creating index on :" + state.getLabel() + state.getProperties(), e);
+        failed.add(state);
+      }
+    }
+    synchronized (this) {
+      cachedStates = null;
+    }
+    return failed;
+  }
+
+  private List<SchemaIndexState> readStates() {
+    Map<String, String> existing = source.readIndexes();
+    List<SchemaIndexState> states = new ArrayList<>();
+    for (SchemaIndexConfig.IndexDefinition definition : config.getRequired()) {
+      String state = existing.get(key(definition.getLabel(), definition.getProperties()));
+      states.add(new SchemaIndexState(definition.getLabel(), definition.getProperties(), definition.isUnique(),
+          state != null ? state : SchemaIndexState.MISSING));
+    }
+    return states;
+  }
+
+  static String createStatement(SchemaIndexState state) {
+    if (state.isUnique()) {
+      return "CREATE CONSTRAINT ON (n:" + Neo4jDrivers.quote(state.getLabel()) + ") ASSERT n." +
+          Neo4jDrivers.quote(state.getProperties().get(0)) + " IS UNIQUE";
+    }
+    return "CREATE INDEX ON :" + Neo4jDrivers.quote(state.getLabel()) + "(" +
+        state.getProperties().stream().map(Neo4jDrivers::quote).collect(Collectors.joining(", ")) + ")";
+  }
+
+  static List<String> parseProperties(String properties) {
+    return Arrays.stream(properties.split(","))
+        .map(p -> p.trim().replace("`", ""))
+        .collect(Collectors.toList());
+  }
+
+  static String key(String label, List<String> properties) {
+    return label + properties;
+  }
+
+  private static String describe(List<SchemaIndexState> states) {
+    return states.stream().map(s -> ":" + s.getLabel() + s.getProperties()).collect(Collectors.joining(", "));
+  }
+
+  private static class BoltSchemaSource implements SchemaSource {
+
+    private final GraphDriver graphDriver;
+
+    BoltSchemaSource(GraphDriver graphDriver) {
+      this.graphDriver = graphDriver;
+    }
+
+    @Override
+    public Map<String, String> readIndexes() {
+      Map<String, String> existing = new HashMap<>();
+      try (Session session = graphDriver.session()) {
+        StatementResult result = session.run("CALL db.indexes()");
+        while (result.hasNext()) {
+          Record record = result.next();
+          Matcher matcher = INDEX_DESCRIPTION.matcher(record.get("description").asString());
+          if (matcher.find()) {
+            existing.put(key(matcher.group(1), parseProperties(matcher.group(2))), record.get("state").asString());
+          }
+        }
+      }
+      return existing;
+    }
+
+    @Override
+    public void run(String statement) {
+      try (Session session = graphDriver.session()) {
+        session.run(statement).consume();
+      }
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package org.metadatacenter.cedar.workspace.schema;
+
+import org.metadatacenter.util.json.JsonMapper;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reports the state of the required indexes on the admin connector.
+ */
+public class SchemaIndexServlet extends HttpServlet {
+
+  private final SchemaIndexManager manager;
+
+  public SchemaIndexServlet(SchemaIndexManager manager) {
+    this.manager = manager;
+  }
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    Map<String, Object> r = new LinkedHashMap<>();
+    try {
+      List<SchemaIndexState> states = manager.getStates();
+      r.put("indexes", states);
+      r.put("missing", states.stream().filter(SchemaIndexState::isMissing).count());
+    } catch (RuntimeException e) {
+      resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+      r.put("errorMessage", e.getMessage());
+    }
+    resp.setContentType("application/json");
+    resp.setCharacterEncoding("UTF-8");
+    resp.setHeader("Cache-Control", "must-revalidate,no-cache,no-store");
+    JsonMapper.MAPPER.writeValue(resp.getOutputStream(), r);
+  }
+}
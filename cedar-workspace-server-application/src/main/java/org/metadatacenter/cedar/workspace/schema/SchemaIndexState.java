@@ -0,0 +1,51 @@
+package org.metadatacenter.cedar.workspace.schema;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public class SchemaIndexState {
+
+  public static final String MISSING = "MISSING";
+  public static final String ONLINE = "ONLINE";
+
+  private final String label;
+  private final List<String> properties;
+  private final boolean unique;
+  private final String state;
+
+  SchemaIndexState(String label, List<String> properties, boolean unique, String state) {
+    this.label = label;
+    this.properties = properties;
+    this.unique = unique;
+    this.state = state;
+  }
+
+  @JsonProperty("label")
+  public String getLabel() {
+    return label;
+  }
+
+  @JsonProperty("properties")
+  public List<String> getProperties() {
+    return properties;
+  }
+
+  @JsonProperty("unique")
+  public boolean isUnique() {
+    return unique;
+  }
+
+  @JsonProperty("state")
+  public String getState() {
+    return state;
+  }
+
+  public boolean isMissing() {
+    return MISSING.equals(state);
+  }
+
+  public boolean isOnline() {
+    return ONLINE.equals(state);
+  }
+}
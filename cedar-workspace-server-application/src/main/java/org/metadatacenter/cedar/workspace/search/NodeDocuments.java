@@ -0,0 +1,108 @@
+package org.metadatacenter.cedar.workspace.search;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.util.BytesRef;
+import org.metadatacenter.model.CedarNodeType;
+import org.metadatacenter.model.folderserver.basic.FolderServerNode;
+import org.metadatacenter.model.folderserver.extract.FolderServerNodeExtract;
+import org.metadatacenter.util.json.JsonMapper;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Maps nodes to the Lucene documents of the text index. The searched text fields are analyzed; the filter fields are
+ * indexed as single terms, and the sort fields as doc values. The extract of the node is stored with the document, so
+ * that a page of hits is returned without going back to the graph.
+ */
+final class NodeDocuments {
+
+  static final String ID = "id";
+  static final String TYPE = "type";
+  static final String NAME = "name";
+  static final String DESCRIPTION = "description";
+  static final String IDENTIFIER = "identifier";
+  static final String STATUS = "status";
+  static final String FOLDER = "folder";
+  static final String LATEST_VERSION = "latestVersion";
+  static final String LATEST_DRAFT_VERSION = "latestDraftVersion";
+  static final String LATEST_PUBLISHED_VERSION = "latestPublishedVersion";
+  static final String NAME_SORT = "nameSort";
+  static final String CREATED_ON_SORT = "createdOnTS";
+  static final String LAST_UPDATED_ON_SORT = "lastUpdatedOnTS";
+  static final String EXTRACT = "extract";
+
+  static final String TRUE = "true";
+
+  private NodeDocuments() {
+  }
+
+  static Document toDocument(FolderServerNode node) throws IOException {
+    JsonNode json = JsonMapper.MAPPER.valueToTree(node);
+    String name = text(json, "schema:name");
+
+    Document document = new Document();
+    document.add(new StringField(ID, node.getId(), Field.Store.YES));
+    document.add(new StringField(TYPE, node.getType().getValue(), Field.Store.NO));
+    document.add(new TextField(NAME, name, Field.Store.NO));
+    document.add(new TextField(DESCRIPTION, text(json, "schema:description"), Field.Store.NO));
+    document.add(new TextField(IDENTIFIER, text(json, "schema:identifier"), Field.Store.NO));
+    document.add(new StringField(STATUS, text(json, "bibo:status"), Field.Store.NO));
+    flag(document, FOLDER, node.getType() == CedarNodeType.FOLDER);
+    flag(document, LATEST_VERSION, json.path("isLatestVersion").asBoolean());
+    flag(document, LATEST_DRAFT_VERSION, json.path("isLatestDraftVersion").asBoolean());
+    flag(document, LATEST_PUBLISHED_VERSION, json.path("isLatestPublishedVersion").asBoolean());
+    document.add(new SortedDocValuesField(NAME_SORT, new BytesRef(name.toLowerCase(Locale.ROOT))));
+    document.add(new NumericDocValuesField(CREATED_ON_SORT, json.path("pav:createdOnTS").asLong()));
+    document.add(new NumericDocValuesField(LAST_UPDATED_ON_SORT, json.path("pav:lastUpdatedOnTS").asLong()));
+    document.add(new StoredField(EXTRACT,
+        JsonMapper.MAPPER.writeValueAsString(FolderServerNodeExtract.fromNode(node))));
+    return document;
+  }
+
+  /**
+   * Returns the stored extract of a node, or null for documents indexed before extracts were stored.
+   */
+  static FolderServerNodeExtract toExtract(Document document) throws IOException {
+    String extract = document.get(EXTRACT);
+    return extract != null ? JsonMapper.MAPPER.readValue(extract, FolderServerNodeExtract.class) : null;
+  }
+
+  /**
+   * Maps a CEDAR sort key, optionally prefixed with '-' for descending order, to a sort field. Returns null for keys
+   * that are not indexed.
+   */
+  static SortField sortField(String sortKey) {
+    boolean reverse = sortKey.startsWith("-");
+    String key = reverse ? sortKey.substring(1) : sortKey;
+    switch (key) {
+      case "name":
+        return new SortField(NAME_SORT, SortField.Type.STRING, reverse);
+      case "createdOnTS":
+        return new SortField(CREATED_ON_SORT, SortField.Type.LONG, reverse);
+      case "lastUpdatedOnTS":
+        return new SortField(LAST_UPDATED_ON_SORT, SortField.Type.LONG, reverse);
+      default:
+        return null;
+    }
+  }
+
+  private static void flag(Document document, String field, boolean value) {
+    if (value) {
+      document.add(new StringField(field, TRUE, Field.Store.NO));
+    }
+  }
+
+  private static String text(JsonNode json, String field) {
+    JsonNode value = json.get(field);
+    return value == null || value.isNull() ? "" : value.asText();
+  }
+}
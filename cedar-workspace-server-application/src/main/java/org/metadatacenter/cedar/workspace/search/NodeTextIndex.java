@@ -0,0 +1,454 @@
+package org.metadatacenter.cedar.workspace.search;
+
+import io.dropwizard.lifecycle.Managed;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Bits;
+import org.metadatacenter.bridge.CedarDataServices;
+import org.metadatacenter.cedar.workspace.backend.BackendSessions;
+import org.metadatacenter.cedar.workspace.config.TextSearchConfig;
+import org.metadatacenter.cedar.workspace.event.NodeEvent;
+import org.metadatacenter.cedar.workspace.event.NodeEventListener;
+import org.metadatacenter.cedar.workspace.invalidation.InvalidationListener;
+import org.metadatacenter.cedar.workspace.util.NodeByIdResolver;
+import org.metadatacenter.cedar.workspace.util.NodeScan;
+import org.metadatacenter.config.CedarConfig;
+import org.metadatacenter.exception.CedarException;
+import org.metadatacenter.model.BiboStatus;
+import org.metadatacenter.model.CedarNodeType;
+import org.metadatacenter.model.folderserver.basic.FolderServerNode;
+import org.metadatacenter.model.folderserver.basic.FolderServerResource;
+import org.metadatacenter.model.folderserver.extract.FolderServerNodeExtract;
+import org.metadatacenter.rest.context.CedarRequestContext;
+import org.metadatacenter.rest.context.CedarRequestContextFactory;
+import org.metadatacenter.server.FolderServiceSession;
+import org.metadatacenter.server.security.model.user.ResourcePublicationStatusFilter;
+import org.metadatacenter.server.security.model.user.ResourceVersionFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Embedded full-text index of the name, description and identifier of the nodes, used for the <code>q</code>
+ * searches. The index is kept in a directory across restarts, and built from the graph when it is empty (or on
+ * demand). It is kept current from the node events of this server, and re-reads the nodes touched on other
+ * instances. Searches see the changes after the next refresh, within the configured refresh interval.
+ * <p>
+ * A rebuild reads the graph through the shared {@link NodeScan}, updates the documents in place, so searches go on meanwhile, then drops the
+ * documents of the nodes it did not find. A resync of the invalidation bus does not rebuild the index: a node whose
+ * change was lost is corrected at its next change, or by the next rebuild.
+ * <p>
+ * The read access of the hits is checked in batches, in rank order, until the requested page is full. The total of a
+ * search that stops before the last hit is extrapolated from the share of readable hits among those checked.
+ */
+public class NodeTextIndex implements NodeEventListener, InvalidationListener, Managed {
+
+  private static final Logger log = LoggerFactory.getLogger(NodeTextIndex.class);
+
+  private static final int READ_CHECK_BATCH = 500;
+  private static final int MIN_READ_CHECK_BATCH = 50;
+  private static final Map<String, Float> SEARCHED_FIELDS = new HashMap<>();
+
+  static {
+    SEARCHED_FIELDS.put(NodeDocuments.NAME, 3f);
+    SEARCHED_FIELDS.put(NodeDocuments.IDENTIFIER, 2f);
+    SEARCHED_FIELDS.put(NodeDocuments.DESCRIPTION, 1f);
+  }
+
+  /**
+   * Tells which of the given nodes the caller can read.
+   */
+  public interface ReadFilter {
+    Map<String, Boolean> readable(Collection<String> nodeIds) throws CedarException;
+  }
+
+  /**
+   * Reads again the nodes touched on other instances.
+   */
+  interface NodeSource {
+
+    FolderServerNode findNodeById(String id) throws CedarException;
+  }
+
+  private final TextSearchConfig config;
+  private final NodeScan nodeScan;
+  private final NodeSource nodeSource;
+  private final Analyzer analyzer = new StandardAnalyzer();
+  private final Set<String> touchedDuringRebuild = ConcurrentHashMap.newKeySet();
+  private final Lock rebuildLock = new ReentrantLock();
+  private Directory directory;
+  private IndexWriter writer;
+  private SearcherManager searcherManager;
+  private ScheduledExecutorService executor;
+  private volatile boolean ready;
+  private volatile boolean rebuilding;
+
+  public NodeTextIndex(CedarConfig cedarConfig, TextSearchConfig config, NodeScan nodeScan) {
+    this(config, nodeScan, new BackendNodeSource(cedarConfig));
+  }
+
+  NodeTextIndex(TextSearchConfig config, NodeScan nodeScan, NodeSource nodeSource) {
+    this.config = config;
+    this.nodeScan = nodeScan;
+    this.nodeSource = nodeSource;
+  }
+
+  @Override
+  public void start() throws IOException {
+    directory = config.getDirectory() != null ? FSDirectory.open(Paths.get(config.getDirectory())) :
+        new RAMDirectory();
+    writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+        .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+    searcherManager = new SearcherManager(writer, null);
+    executor = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "text-index");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long interval = config.getRefreshInterval().toMilliseconds();
+    executor.scheduleWithFixedDelay(this::refresh, interval, interval, TimeUnit.MILLISECONDS);
+    if (config.isRebuildOnStartup() || writer.numDocs() == 0) {
+      executor.execute(this::rebuildQuietly);
+    } else {
+      ready = true;
+    }
+  }
+
+  @Override
+  public void stop() throws IOException {
+    executor.shutdownNow();
+    searcherManager.close();
+    writer.close();
+    directory.close();
+  }
+
+  public boolean isReady() {
+    return ready;
+  }
+
+  public boolean isRebuilding() {
+    return rebuilding;
+  }
+
+  /**
+   * Replaces the contents of the index with all the nodes of the graph, a page at a time. Nodes changed while the
+   * rebuild runs are read again at its end.
+   */
+  public void rebuild() throws CedarException, IOException {
+    rebuildLock.lock();
+    try {
+      rebuilding = true;
+      touchedDuringRebuild.clear();
+      try {
+        long start = System.currentTimeMillis();
+        Set<String> found = new HashSet<>();
+        nodeScan.scan(page -> {
+          for (FolderServerNode node : page) {
+            writer.updateDocument(new Term(NodeDocuments.ID, node.getId()), NodeDocuments.toDocument(node));
+            found.add(node.getId());
+          }
+        });
+        for (String id : indexedIds()) {
+          if (!found.contains(id) && !touchedDuringRebuild.contains(id)) {
+            writer.deleteDocuments(new Term(NodeDocuments.ID, id));
+          }
+        }
+        reindex(touchedDuringRebuild);
+        writer.commit();
+        searcherManager.maybeRefresh();
+        ready = true;
+        log.info("Text index rebuilt with " + found.size() + " nodes in " + (System.currentTimeMillis() - start) +
+            " ms");
+      } finally {
+        rebuilding = false;
+      }
+    } finally {
+      rebuildLock.unlock();
+    }
+  }
+
+  /**
+   * Runs a text search. Returns the extracts of the requested page of readable matches, most relevant first unless
+   * a sort is given, along with the number of readable matches. The number is exact when every match among the first
+   * maxHits had to be checked to fill the page, and estimated otherwise.
+   */
+  public TextSearchResult search(String q, List<CedarNodeType> nodeTypes, ResourceVersionFilter version,
+                                 ResourcePublicationStatusFilter publicationStatus, List<String> sortList,
+                                 int limit, int offset, ReadFilter readFilter) throws CedarException, IOException {
+    Query query = buildQuery(q, nodeTypes, version, publicationStatus);
+    Sort sort = buildSort(sortList);
+    List<Document> page = new ArrayList<>();
+    long readableCount = 0;
+    int checked = 0;
+    long totalHits;
+    IndexSearcher searcher = searcherManager.acquire();
+    try {
+      TopDocs topDocs = sort != null ? searcher.search(query, config.getMaxHits(), sort) :
+          searcher.search(query, config.getMaxHits());
+      ScoreDoc[] hits = topDocs.scoreDocs;
+      totalHits = topDocs.totalHits;
+      int batchSize = Math.min(READ_CHECK_BATCH, Math.max(MIN_READ_CHECK_BATCH, 2 * (offset + limit)));
+      while (checked < hits.length && page.size() < limit) {
+        Map<String, Document> batch = new LinkedHashMap<>();
+        for (int i = checked; i < Math.min(hits.length, checked + batchSize); i++) {
+          Document document = searcher.doc(hits[i].doc);
+          batch.put(document.get(NodeDocuments.ID), document);
+        }
+        checked += batch.size();
+        Map<String, Boolean> readable = readFilter.readable(batch.keySet());
+        for (Map.Entry<String, Document> entry : batch.entrySet()) {
+          if (Boolean.TRUE.equals(readable.get(entry.getKey()))) {
+            if (readableCount >= offset && page.size() < limit) {
+              page.add(entry.getValue());
+            }
+            readableCount++;
+          }
+        }
+        batchSize = READ_CHECK_BATCH;
+      }
+    } finally {
+      searcherManager.release(searcher);
+    }
+
+    long total = readableCount;
+    if (checked > 0 && checked < totalHits) {
+      // Some matches were not checked, assume they are readable in the same proportion as the checked ones
+      total = Math.max(readableCount + 1, Math.round((double) readableCount * totalHits / checked));
+    }
+    List<FolderServerNodeExtract> nodes = new ArrayList<>();
+    for (Document document : page) {
+      FolderServerNodeExtract extract = NodeDocuments.toExtract(document);
+      if (extract == null) {
+        FolderServerNode node = nodeSource.findNodeById(document.get(NodeDocuments.ID));
+        extract = node != null ? FolderServerNodeExtract.fromNode(node) : null;
+      }
+      if (extract != null) {
+        nodes.add(extract);
+      }
+    }
+    return new TextSearchResult(nodes, total);
+  }
+
+  @Override
+  public void onNodeEvent(NodeEvent event) {
+    if (rebuilding) {
+      touchedDuringRebuild.add(event.getId());
+    }
+    try {
+      switch (event.getType()) {
+        case CREATED:
+        case UPDATED:
+        case MOVED:
+        case PUBLISHED:
+          FolderServerNode node = event.getNode();
+          if (node == null) {
+            reindex(Arrays.asList(event.getId()));
+          } else {
+            writer.updateDocument(new Term(NodeDocuments.ID, node.getId()), NodeDocuments.toDocument(node));
+          }
+          // Publishing and new versions change the latest-version flags of the previous version
+          if (node instanceof FolderServerResource && ((FolderServerResource) node).getPreviousVersion() != null) {
+            reindex(Arrays.asList(((FolderServerResource) node).getPreviousVersion().getValue()));
+          }
+          break;
+        case DELETED:
+          writer.deleteDocuments(new Term(NodeDocuments.ID, event.getId()));
+          break;
+        default:
+          break;
+      }
+    } catch (IOException | CedarException | RuntimeException e) {
+      log.error("Error while updating the text index for " + event.getId(), e);
+    }
+  }
+
+  @Override
+  public void onInvalidation(Collection<String> nodeIds) {
+    Set<String> ids = new LinkedHashSet<>(nodeIds);
+    if (rebuilding) {
+      touchedDuringRebuild.addAll(ids);
+    }
+    executor.execute(() -> {
+      try {
+        reindex(ids);
+      } catch (IOException | CedarException | RuntimeException e) {
+        log.error("Error while updating the text index for " + ids, e);
+      }
+    });
+  }
+
+  @Override
+  public void onResync() {
+    log.warn("Changes made on other instances were lost, the text index may be stale until the next rebuild");
+  }
+
+  private void reindex(Collection<String> nodeIds) throws CedarException, IOException {
+    for (String id : new ArrayList<>(nodeIds)) {
+      FolderServerNode node = nodeSource.findNodeById(id);
+      if (node == null) {
+        writer.deleteDocuments(new Term(NodeDocuments.ID, id));
+      } else {
+        writer.updateDocument(new Term(NodeDocuments.ID, id), NodeDocuments.toDocument(node));
+      }
+    }
+  }
+
+  private Set<String> indexedIds() throws IOException {
+    Set<String> ids = new HashSet<>();
+    searcherManager.maybeRefreshBlocking();
+    IndexSearcher searcher = searcherManager.acquire();
+    try {
+      for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+        LeafReader reader = leaf.reader();
+        Bits liveDocs = reader.getLiveDocs();
+        for (int doc = 0; doc < reader.maxDoc(); doc++) {
+          if (liveDocs == null || liveDocs.get(doc)) {
+            ids.add(reader.document(doc, Collections.singleton(NodeDocuments.ID)).get(NodeDocuments.ID));
+          }
+        }
+      }
+    } finally {
+      searcherManager.release(searcher);
+    }
+    return ids;
+  }
+
+  private Query buildQuery(String q, List<CedarNodeType> nodeTypes, ResourceVersionFilter version,
+                           ResourcePublicationStatusFilter publicationStatus) {
+    SimpleQueryParser parser = new SimpleQueryParser(analyzer, SEARCHED_FIELDS);
+    parser.setDefaultOperator(BooleanClause.Occur.MUST);
+    BooleanQuery.Builder query = new BooleanQuery.Builder()
+        .add(parser.parse(q), BooleanClause.Occur.MUST);
+
+    if (nodeTypes != null && !nodeTypes.isEmpty()) {
+      BooleanQuery.Builder types = new BooleanQuery.Builder();
+      for (CedarNodeType nodeType : nodeTypes) {
+        types.add(new TermQuery(new Term(NodeDocuments.TYPE, nodeType.getValue())), BooleanClause.Occur.SHOULD);
+      }
+      query.add(types.build(), BooleanClause.Occur.FILTER);
+    }
+    // Folders are not versioned, the version and status filters only apply to resources
+    if (version == ResourceVersionFilter.LATEST) {
+      query.add(folderOr(NodeDocuments.LATEST_VERSION), BooleanClause.Occur.FILTER);
+    } else if (version == ResourceVersionFilter.LATEST_BY_STATUS) {
+      query.add(folderOr(NodeDocuments.LATEST_DRAFT_VERSION, NodeDocuments.LATEST_PUBLISHED_VERSION),
+          BooleanClause.Occur.FILTER);
+    }
+    if (publicationStatus == ResourcePublicationStatusFilter.DRAFT) {
+      query.add(folderOrStatus(BiboStatus.DRAFT), BooleanClause.Occur.FILTER);
+    } else if (publicationStatus == ResourcePublicationStatusFilter.PUBLISHED) {
+      query.add(folderOrStatus(BiboStatus.PUBLISHED), BooleanClause.Occur.FILTER);
+    }
+    return query.build();
+  }
+
+  private static Query folderOr(String... flags) {
+    BooleanQuery.Builder query = new BooleanQuery.Builder()
+        .add(new TermQuery(new Term(NodeDocuments.FOLDER, NodeDocuments.TRUE)), BooleanClause.Occur.SHOULD);
+    for (String flag : flags) {
+      query.add(new TermQuery(new Term(flag, NodeDocuments.TRUE)), BooleanClause.Occur.SHOULD);
+    }
+    return query.build();
+  }
+
+  private static Query folderOrStatus(BiboStatus status) {
+    return new BooleanQuery.Builder()
+        .add(new TermQuery(new Term(NodeDocuments.FOLDER, NodeDocuments.TRUE)), BooleanClause.Occur.SHOULD)
+        .add(new TermQuery(new Term(NodeDocuments.STATUS, status.getValue())), BooleanClause.Occur.SHOULD)
+        .build();
+  }
+
+  private static Sort buildSort(List<String> sortList) {
+    List<SortField> sortFields = new ArrayList<>();
+    if (sortList != null) {
+      for (String sortKey : sortList) {
+        SortField sortField = NodeDocuments.sortField(sortKey);
+        if (sortField != null) {
+          sortFields.add(sortField);
+        }
+      }
+    }
+    if (sortFields.isEmpty()) {
+      return null;
+    }
+    sortFields.add(SortField.FIELD_SCORE);
+    return new Sort(sortFields.toArray(new SortField[0]));
+  }
+
+  void refresh() {
+    try {
+      searcherManager.maybeRefresh();
+    } catch (IOException | RuntimeException e) {
+      log.error("Error while refreshing the text index", e);
+    }
+  }
+
+  private void rebuildQuietly() {
+    try {
+      rebuild();
+    } catch (CedarException | IOException | RuntimeException e) {
+      log.error("Error while rebuilding the text index", e);
+    }
+  }
+
+  private static class BackendNodeSource implements NodeSource {
+
+    private final CedarConfig cedarConfig;
+    private volatile CedarRequestContext adminContext;
+
+    BackendNodeSource(CedarConfig cedarConfig) {
+      this.cedarConfig = cedarConfig;
+    }
+
+    @Override
+    public FolderServerNode findNodeById(String id) throws CedarException {
+      return NodeByIdResolver.findNodeById(getFolderSession(), id);
+    }
+
+    private FolderServiceSession getFolderSession() {
+      if (adminContext == null) {
+        adminContext = CedarRequestContextFactory.fromAdminUser(cedarConfig, CedarDataServices.getUserService());
+      }
+      return BackendSessions.openFolderServiceSession(adminContext);
+    }
+  }
+}
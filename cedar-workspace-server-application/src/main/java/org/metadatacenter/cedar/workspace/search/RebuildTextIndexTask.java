@@ -0,0 +1,29 @@
+package org.metadatacenter.cedar.workspace.search;
+
+import com.google.common.collect.ImmutableMultimap;
+import io.dropwizard.servlets.tasks.Task;
+
+import java.io.PrintWriter;
+
+/**
+ * Admin task that rebuilds the text index from the graph: <code>POST /tasks/rebuild-text-index</code>.
+ */
+public class RebuildTextIndexTask extends Task {
+
+  private final NodeTextIndex nodeTextIndex;
+
+  public RebuildTextIndexTask(NodeTextIndex nodeTextIndex) {
+    super("rebuild-text-index");
+    this.nodeTextIndex = nodeTextIndex;
+  }
+
+  @Override
+  public void execute(ImmutableMultimap<String, String> parameters, PrintWriter output) throws Exception {
+    if (nodeTextIndex.isRebuilding()) {
+      output.println("A rebuild is already running");
+      return;
+    }
+    nodeTextIndex.rebuild();
+    output.println("Text index rebuilt");
+  }
+}
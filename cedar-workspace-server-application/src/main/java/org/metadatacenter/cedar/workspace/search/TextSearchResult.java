@@ -0,0 +1,24 @@
+package org.metadatacenter.cedar.workspace.search;
+
+import org.metadatacenter.model.folderserver.extract.FolderServerNodeExtract;
+
+import java.util.List;
+
+public class TextSearchResult {
+
+  private final List<FolderServerNodeExtract> nodes;
+  private final long total;
+
+  TextSearchResult(List<FolderServerNodeExtract> nodes, long total) {
+    this.nodes = nodes;
+    this.total = total;
+  }
+
+  public List<FolderServerNodeExtract> getNodes() {
+    return nodes;
+  }
+
+  public long getTotal() {
+    return total;
+  }
+}
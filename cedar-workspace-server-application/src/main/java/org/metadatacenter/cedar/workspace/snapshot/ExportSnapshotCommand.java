@@ -0,0 +1,41 @@
+package org.metadatacenter.cedar.workspace.snapshot;
+
+import io.dropwizard.cli.ConfiguredCommand;
+import io.dropwizard.setup.Bootstrap;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+import org.metadatacenter.cedar.workspace.WorkspaceServerConfiguration;
+import org.metadatacenter.cedar.workspace.util.GraphDriver;
+
+import java.nio.file.Paths;
+
+/**
+ * Writes the workspace graph to a snapshot file: <code>export-snapshot config.yml workspace.snapshot</code>.
+ */
+public class ExportSnapshotCommand extends ConfiguredCommand<WorkspaceServerConfiguration> {
+
+  static final String SNAPSHOT = "snapshot";
+
+  public ExportSnapshotCommand() {
+    super("export-snapshot", "Exports the workspace graph to a snapshot file");
+  }
+
+  @Override
+  public void configure(Subparser subparser) {
+    super.configure(subparser);
+    subparser.addArgument(SNAPSHOT).required(true).help("snapshot file to write");
+  }
+
+  @Override
+  protected void run(Bootstrap<WorkspaceServerConfiguration> bootstrap, Namespace namespace,
+                     WorkspaceServerConfiguration configuration) throws Exception {
+    GraphDriver graphDriver = new GraphDriver();
+    try {
+      GraphSnapshotStore store = new GraphSnapshotStore(configuration.getSnapshot(),
+          configuration.getSchemaIndexes(), graphDriver);
+      store.exportGraph(Paths.get(namespace.getString(SNAPSHOT)));
+    } finally {
+      graphDriver.stop();
+    }
+  }
+}
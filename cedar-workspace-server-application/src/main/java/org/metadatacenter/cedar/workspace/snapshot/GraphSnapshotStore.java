@@ -0,0 +1,180 @@
+package org.metadatacenter.cedar.workspace.snapshot;
+
+import org.metadatacenter.cedar.workspace.config.SchemaIndexConfig;
+import org.metadatacenter.cedar.workspace.config.SnapshotConfig;
+import org.metadatacenter.cedar.workspace.core.snapshot.GraphSnapshot;
+import org.metadatacenter.cedar.workspace.core.snapshot.SnapshotFile;
+import org.metadatacenter.cedar.workspace.util.GraphDriver;
+import org.metadatacenter.cedar.workspace.util.Neo4jDrivers;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.driver.v1.StatementResult;
+import org.neo4j.driver.v1.Value;
+import org.neo4j.driver.v1.Values;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Copies the workspace graph to and from a snapshot file: every node with an <code>@id</code> (folders,
+ * resources, users and groups) with its labels and properties, and every relationship between such nodes, which
+ * covers the hierarchy, the version links and the permissions. Relationship properties are not kept. Both ways
+ * stream the graph a block of the file at a time.
+ * <p>
+ * Nodes are merged on their <code>@id</code> under a label that has a unique <code>@id</code> constraint in the
+ * schema index configuration, so that each write is an index lookup, and all writes are sent in batches of UNWIND
+ * statements. An import refuses a graph that already holds folders or resources, since the snapshot would be mixed
+ * into them; a forced import updates the nodes it finds instead of duplicating them.
+ */
+public class GraphSnapshotStore {
+
+  private static final Logger log = LoggerFactory.getLogger(GraphSnapshotStore.class);
+
+  private static final String ID = "@id";
+  private static final String FS_NODE = "FSNode";
+
+  private final SnapshotConfig config;
+  private final GraphDriver graphDriver;
+  private final List<String> keyLabels;
+
+  public GraphSnapshotStore(SnapshotConfig config, SchemaIndexConfig schemaIndexConfig, GraphDriver graphDriver) {
+    this.config = config;
+    this.graphDriver = graphDriver;
+    this.keyLabels = schemaIndexConfig.getRequired().stream()
+        .filter(d -> d.isUnique() && Collections.singletonList(ID).equals(d.getProperties()))
+        .map(SchemaIndexConfig.IndexDefinition::getLabel)
+        .collect(Collectors.toList());
+  }
+
+  public void exportGraph(Path path) throws IOException {
+    String id = Neo4jDrivers.quote(ID);
+    try (Session session = graphDriver.session();
+         SnapshotFile.Writer writer = new SnapshotFile.Writer(path, config.getBlockSize())) {
+      StatementResult nodes = session.run("MATCH (n) WHERE n." + id + " IS NOT NULL " +
+          "RETURN n." + id + " AS id, labels(n) AS labels, properties(n) AS properties");
+      while (nodes.hasNext()) {
+        Record record = nodes.next();
+        Map<String, Object> properties = new LinkedHashMap<>(record.get("properties").asMap());
+        properties.remove(ID);
+        writer.addNode(record.get("id").asString(), record.get("labels").asList(Value::asString), properties);
+      }
+      StatementResult relationships = session.run("MATCH (a)-[r]->(b) WHERE a." + id + " IS NOT NULL AND b." + id +
+          " IS NOT NULL RETURN type(r) AS type, a." + id + " AS start, labels(a) AS startLabels, b." + id +
+          " AS end, labels(b) AS endLabels");
+      while (relationships.hasNext()) {
+        Record record = relationships.next();
+        writer.addRelationship(record.get("type").asString(), record.get("start").asString(),
+            record.get("startLabels").asList(Value::asString), record.get("end").asString(),
+            record.get("endLabels").asList(Value::asString));
+      }
+      log.info("Exported " + writer.getNodeCount() + " nodes and " + writer.getRelationshipCount() +
+          " relationships");
+    }
+  }
+
+  /**
+   * Loads the snapshot into the graph. Throws IllegalStateException, before writing anything, if the graph already
+   * holds folders or resources, unless forced.
+   */
+  public void importGraph(Path path, boolean force) throws IOException {
+    long start = System.currentTimeMillis();
+    long[] counts = new long[2];
+    try (Session session = graphDriver.session()) {
+      long existing = session.run("MATCH (n:" + Neo4jDrivers.quote(FS_NODE) + ") RETURN count(n) AS count")
+          .single().get("count").asLong();
+      if (existing > 0) {
+        if (!force) {
+          throw new IllegalStateException("The graph already holds " + existing + " folders and resources; use " +
+              "--force to import the snapshot into it anyway");
+        }
+        log.warn("Importing into a graph that already holds " + existing + " folders and resources");
+      }
+      SnapshotFile.read(path, new SnapshotFile.BlockHandler() {
+        @Override
+        public void nodes(List<GraphSnapshot.Node> nodes) {
+          Map<String, List<Map<String, Object>>> rows = new LinkedHashMap<>();
+          for (GraphSnapshot.Node node : nodes) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", node.getId());
+            row.put("properties", node.getProperties());
+            rows.computeIfAbsent(nodeStatement(keyLabelOf(node.getLabels()), node.getLabels()),
+                s -> new ArrayList<>()).add(row);
+          }
+          runBatches(session, rows);
+          counts[0] += nodes.size();
+          log.info("Imported " + counts[0] + " nodes");
+        }
+
+        @Override
+        public void relationships(List<GraphSnapshot.Relationship> relationships) {
+          Map<String, List<Map<String, Object>>> rows = new LinkedHashMap<>();
+          for (GraphSnapshot.Relationship relationship : relationships) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("start", relationship.getStartId());
+            row.put("end", relationship.getEndId());
+            String statement = relationshipStatement(relationship.getType(),
+                keyLabelOf(relationship.getStartLabels()), keyLabelOf(relationship.getEndLabels()));
+            rows.computeIfAbsent(statement, s -> new ArrayList<>()).add(row);
+          }
+          runBatches(session, rows);
+          counts[1] += relationships.size();
+          log.info("Imported " + counts[1] + " relationships");
+        }
+      });
+    }
+    log.info("Imported " + counts[0] + " nodes and " + counts[1] + " relationships in " +
+        (System.currentTimeMillis() - start) + " ms");
+  }
+
+  static String nodeStatement(String keyLabel, List<String> labels) {
+    StringBuilder statement = new StringBuilder("UNWIND $rows AS row MERGE (n")
+        .append(labelClause(keyLabel))
+        .append(" {").append(Neo4jDrivers.quote(ID)).append(": row.id}) SET n += row.properties");
+    List<String> otherLabels = labels.stream().filter(l -> !l.equals(keyLabel)).collect(Collectors.toList());
+    if (!otherLabels.isEmpty()) {
+      statement.append(" SET n");
+      for (String label : otherLabels) {
+        statement.append(':').append(Neo4jDrivers.quote(label));
+      }
+    }
+    return statement.toString();
+  }
+
+  static String relationshipStatement(String type, String startKeyLabel, String endKeyLabel) {
+    return "UNWIND $rows AS row MATCH (a" + labelClause(startKeyLabel) + " {" + Neo4jDrivers.quote(ID) +
+        ": row.start}) MATCH (b" + labelClause(endKeyLabel) + " {" + Neo4jDrivers.quote(ID) +
+        ": row.end}) MERGE (a)-[:" + Neo4jDrivers.quote(type) + "]->(b)";
+  }
+
+  private String keyLabelOf(List<String> labels) {
+    for (String keyLabel : keyLabels) {
+      if (labels.contains(keyLabel)) {
+        return keyLabel;
+      }
+    }
+    return labels.isEmpty() ? null : labels.get(0);
+  }
+
+  private static String labelClause(String label) {
+    return label == null ? "" : ":" + Neo4jDrivers.quote(label);
+  }
+
+  private void runBatches(Session session, Map<String, List<Map<String, Object>>> rowsByStatement) {
+    for (Map.Entry<String, List<Map<String, Object>>> entry : rowsByStatement.entrySet()) {
+      List<Map<String, Object>> rows = entry.getValue();
+      for (int from = 0; from < rows.size(); from += config.getBatchSize()) {
+        List<Map<String, Object>> batch = rows.subList(from, Math.min(rows.size(), from + config.getBatchSize()));
+        session.run(entry.getKey(), Values.parameters("rows", batch)).consume();
+      }
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package org.metadatacenter.cedar.workspace.snapshot;
+
+import io.dropwizard.cli.ConfiguredCommand;
+import io.dropwizard.setup.Bootstrap;
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+import org.metadatacenter.cedar.workspace.WorkspaceServerConfiguration;
+import org.metadatacenter.cedar.workspace.schema.SchemaIndexManager;
+import org.metadatacenter.cedar.workspace.util.GraphDriver;
+
+import java.nio.file.Paths;
+
+/**
+ * Loads a snapshot file into the graph: <code>import-snapshot config.yml workspace.snapshot</code>. Meant for a
+ * fresh backend, before the server is started on it: a graph that already holds folders or resources is refused,
+ * unless <code>--force</code> is given. The schema indexes are checked (and created, depending on their
+ * mode) first, so that the batched writes can find the nodes by id.
+ */
+public class ImportSnapshotCommand extends ConfiguredCommand<WorkspaceServerConfiguration> {
+
+  private static final String FORCE = "force";
+
+  public ImportSnapshotCommand() {
+    super("import-snapshot", "Imports a snapshot file into the workspace graph");
+  }
+
+  @Override
+  public void configure(Subparser subparser) {
+    super.configure(subparser);
+    subparser.addArgument(ExportSnapshotCommand.SNAPSHOT).required(true).help("snapshot file to read");
+    subparser.addArgument("--" + FORCE).action(Arguments.storeTrue())
+        .help("import even if the graph already holds folders or resources");
+  }
+
+  @Override
+  protected void run(Bootstrap<WorkspaceServerConfiguration> bootstrap, Namespace namespace,
+                     WorkspaceServerConfiguration configuration) throws Exception {
+    GraphDriver graphDriver = new GraphDriver();
+    try {
+      SchemaIndexManager schemaIndexManager = new SchemaIndexManager(configuration.getSchemaIndexes(), graphDriver);
+      if (schemaIndexManager.isEnabled()) {
+        schemaIndexManager.ensureIndexes();
+      }
+      GraphSnapshotStore store = new GraphSnapshotStore(configuration.getSnapshot(),
+          configuration.getSchemaIndexes(), graphDriver);
+      store.importGraph(Paths.get(namespace.getString(ExportSnapshotCommand.SNAPSHOT)), namespace.getBoolean(FORCE));
+    } finally {
+      graphDriver.stop();
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package org.metadatacenter.cedar.workspace.util;
+
+import org.metadatacenter.cedar.workspace.config.FolderTreeConfig;
+import org.metadatacenter.cedar.workspace.model.FolderTreeNode;
+import org.metadatacenter.cedar.workspace.model.FolderTreeResponse;
+import org.metadatacenter.exception.CedarException;
+import org.metadatacenter.model.CedarNodeType;
+import org.metadatacenter.model.folderserver.extract.FolderServerNodeExtract;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the tree below a folder breadth first, with one listing per expanded folder. The tree is bounded by its
+ * depth, by the number of children listed per folder and by its total number of nodes; a folder whose children were
+ * cut by one of the bounds is marked truncated, and so is the tree.
+ */
+public class FolderTreeBuilder {
+
+  /**
+   * Lists the children of the folders of the tree, with the type, version and publication status filters of the
+   * request applied.
+   */
+  public interface ContentsSource {
+
+    List<FolderServerNodeExtract> findChildren(String folderId, int limit) throws CedarException;
+
+    long countChildren(String folderId) throws CedarException;
+  }
+
+  private final FolderTreeConfig config;
+
+  public FolderTreeBuilder(FolderTreeConfig config) {
+    this.config = config;
+  }
+
+  public boolean isValidDepth(int depth) {
+    return depth >= 1 && depth <= config.getMaxDepth();
+  }
+
+  /**
+   * Returns the number of children listed per folder for the requested page size.
+   */
+  public int getChildLimit(int limit) {
+    return Math.min(limit, config.getMaxChildrenPerFolder());
+  }
+
+  /**
+   * Returns the tree, its depth, node count and truncation flag set, below the given root.
+   */
+  public FolderTreeResponse build(FolderServerNodeExtract rootFolder, int depth, int limit, ContentsSource source)
+      throws CedarException {
+    int childLimit = getChildLimit(limit);
+    FolderTreeNode root = new FolderTreeNode(rootFolder);
+    long nodeCount = 0;
+    boolean truncated = false;
+
+    List<FolderTreeNode> level = new ArrayList<>();
+    level.add(root);
+    for (int d = 0; d < depth && !level.isEmpty(); d++) {
+      List<FolderTreeNode> nextLevel = new ArrayList<>();
+      for (FolderTreeNode parent : level) {
+        if (nodeCount >= config.getMaxNodes()) {
+          parent.setTruncated(true);
+          truncated = true;
+          continue;
+        }
+        String parentId = parent.getNode().getId();
+        List<FolderServerNodeExtract> children = source.findChildren(parentId, childLimit);
+        long totalChildCount = children.size();
+        if (children.size() >= childLimit) {
+          totalChildCount = source.countChildren(parentId);
+        }
+        parent.setTotalChildCount(totalChildCount);
+        int added = 0;
+        for (FolderServerNodeExtract child : children) {
+          if (nodeCount >= config.getMaxNodes()) {
+            break;
+          }
+          FolderTreeNode childNode = new FolderTreeNode(child);
+          parent.addChild(childNode);
+          nodeCount++;
+          added++;
+          if (child.getType() == CedarNodeType.FOLDER) {
+            nextLevel.add(childNode);
+          }
+        }
+        if (added < totalChildCount) {
+          parent.setTruncated(true);
+          truncated = true;
+        }
+      }
+      level = nextLevel;
+    }
+
+    FolderTreeResponse r = new FolderTreeResponse();
+    r.setDepth(depth);
+    r.setNodeCount(nodeCount);
+    r.setTruncated(truncated);
+    r.setRoot(root);
+    return r;
+  }
+}
@@ -0,0 +1,32 @@
+package org.metadatacenter.cedar.workspace.util;
+
+import io.dropwizard.lifecycle.Managed;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.Session;
+
+/**
+ * The one Bolt driver of the server, shared by everything that reads or writes the graph outside of the CEDAR
+ * sessions. The driver keeps its own pool of connections; it is opened when the server starts up, so that an
+ * unreachable graph is reported there, and closed when the server stops.
+ */
+public class GraphDriver implements Managed {
+
+  private final Driver driver;
+
+  public GraphDriver() {
+    this.driver = Neo4jDrivers.open();
+  }
+
+  public Session session() {
+    return driver.session();
+  }
+
+  @Override
+  public void start() {
+  }
+
+  @Override
+  public void stop() {
+    driver.close();
+  }
+}
@@ -0,0 +1,31 @@
+package org.metadatacenter.cedar.workspace.util;
+
+import org.metadatacenter.config.environment.CedarEnvironmentVariable;
+import org.neo4j.driver.v1.AuthTokens;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+
+/**
+ * Opens Bolt connections to the graph with the connection settings of the CEDAR environment, for the maintenance
+ * work that is done outside of the CEDAR sessions.
+ */
+public final class Neo4jDrivers {
+
+  private Neo4jDrivers() {
+  }
+
+  public static Driver open() {
+    String uri = "bolt://" + System.getenv(CedarEnvironmentVariable.CEDAR_NEO4J_HOST.getName()) + ":" +
+        System.getenv(CedarEnvironmentVariable.CEDAR_NEO4J_BOLT_PORT.getName());
+    return GraphDatabase.driver(uri, AuthTokens.basic(
+        System.getenv(CedarEnvironmentVariable.CEDAR_NEO4J_USER_NAME.getName()),
+        System.getenv(CedarEnvironmentVariable.CEDAR_NEO4J_USER_PASSWORD.getName())));
+  }
+
+  /**
+   * Quotes a label, relationship type or property name for use in a Cypher statement.
+   */
+  public static String quote(String name) {
+    return "`" + name.replace("`", "``") + "`";
+  }
+}
@@ -0,0 +1,30 @@
+package org.metadatacenter.cedar.workspace.util;
+
+import org.metadatacenter.model.folderserver.basic.FolderServerNode;
+import org.metadatacenter.server.FolderServiceSession;
+
+/**
+ * Resolves a node id to a folder or a resource. Folder ids contain a <code>/folders/</code> path segment, so the
+ * matching lookup is tried first and the other one is only needed when the id is not found.
+ */
+public final class NodeByIdResolver {
+
+  private static final String FOLDER_ID_SEGMENT = "/folders/";
+
+  private NodeByIdResolver() {
+  }
+
+  public static boolean looksLikeFolderId(String id) {
+    return id != null && id.contains(FOLDER_ID_SEGMENT);
+  }
+
+  public static FolderServerNode findNodeById(FolderServiceSession folderSession, String id) {
+    if (looksLikeFolderId(id)) {
+      FolderServerNode folder = folderSession.findFolderById(id);
+      return folder != null ? folder : folderSession.findResourceById(id);
+    } else {
+      FolderServerNode resource = folderSession.findResourceById(id);
+      return resource != null ? resource : folderSession.findFolderById(id);
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package org.metadatacenter.cedar.workspace.util;
+
+import org.metadatacenter.exception.CedarException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves a list of node ids for the current user: each distinct id is looked up once, and the read access to all
+ * the nodes found is checked in one call. Nodes the user cannot read are reported like unknown ids, as
+ * <code>null</code>, so that a lookup does not reveal which ids exist.
+ */
+public final class NodeLookup {
+
+  public interface Resolver<T> {
+    T resolve(String id) throws CedarException;
+  }
+
+  public interface AccessCheck {
+    Map<String, Boolean> canRead(Collection<String> ids) throws CedarException;
+  }
+
+  private NodeLookup() {
+  }
+
+  public static <T> Map<String, T> resolve(Collection<String> ids, Resolver<T> resolver, AccessCheck accessCheck)
+      throws CedarException {
+    Map<String, T> resolved = new LinkedHashMap<>();
+    List<String> found = new ArrayList<>();
+    for (String id : ids) {
+      if (!resolved.containsKey(id)) {
+        T node = id.isEmpty() ? null : resolver.resolve(id);
+        resolved.put(id, node);
+        if (node != null) {
+          found.add(id);
+        }
+      }
+    }
+    if (!found.isEmpty()) {
+      Map<String, Boolean> readable = accessCheck.canRead(found);
+      for (String id : found) {
+        if (!Boolean.TRUE.equals(readable.get(id))) {
+          resolved.put(id, null);
+        }
+      }
+    }
+    return resolved;
+  }
+}
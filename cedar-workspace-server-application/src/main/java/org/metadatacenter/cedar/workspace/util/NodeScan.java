@@ -0,0 +1,238 @@
+package org.metadatacenter.cedar.workspace.util;
+
+import io.dropwizard.lifecycle.Managed;
+import org.metadatacenter.bridge.CedarDataServices;
+import org.metadatacenter.cedar.workspace.backend.BackendSessions;
+import org.metadatacenter.cedar.workspace.config.NodeScanConfig;
+import org.metadatacenter.cedar.workspace.event.NodeEvent;
+import org.metadatacenter.cedar.workspace.event.NodeEventListener;
+import org.metadatacenter.cedar.workspace.invalidation.InvalidationListener;
+import org.metadatacenter.config.CedarConfig;
+import org.metadatacenter.exception.CedarException;
+import org.metadatacenter.exception.CedarProcessingException;
+import org.metadatacenter.model.folderserver.basic.FolderServerNode;
+import org.metadatacenter.model.folderserver.extract.FolderServerNodeExtract;
+import org.metadatacenter.rest.context.CedarRequestContext;
+import org.metadatacenter.rest.context.CedarRequestContextFactory;
+import org.metadatacenter.server.FolderServiceSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Pages through all the nodes of the graph for the indexes that are built from them. The readers that ask for a scan
+ * before it starts share it, so the graph is read once for all of them; the scans asked for before the server starts
+ * run together once it has started. A node deleted while a scan runs moves the next ones back by one: the scan steps
+ * back by the number of nodes touched since it started, reading some twice but skipping none. A reader that fails
+ * leaves the scan; a page that can not be read fails the scan for every reader.
+ */
+public class NodeScan implements NodeEventListener, InvalidationListener, Managed {
+
+  /**
+   * Reads the pages of the scan.
+   */
+  public interface PageSource {
+
+    /**
+     * Returns a page of all the nodes, oldest first. A node that is gone by the time it is read is null, so only the
+     * last page is short.
+     */
+    List<FolderServerNode> findNodes(int limit, int offset) throws CedarException;
+  }
+
+  /**
+   * Takes the pages of a scan, in order, on the scan thread.
+   */
+  public interface Reader {
+
+    void read(List<FolderServerNode> page) throws CedarException, IOException;
+  }
+
+  private static final Logger log = LoggerFactory.getLogger(NodeScan.class);
+
+  private final int pageSize;
+  private final PageSource pageSource;
+  private final Map<Reader, CompletableFuture<Void>> waiting = new LinkedHashMap<>();
+  private final Set<String> touchedDuringScan = ConcurrentHashMap.newKeySet();
+  private ExecutorService executor;
+  private volatile boolean scanning;
+
+  public NodeScan(CedarConfig cedarConfig, NodeScanConfig config) {
+    this(config.getPageSize(), new BackendPageSource(cedarConfig));
+  }
+
+  public NodeScan(int pageSize, PageSource pageSource) {
+    this.pageSize = pageSize;
+    this.pageSource = pageSource;
+  }
+
+  @Override
+  public synchronized void start() {
+    executor = Executors.newSingleThreadExecutor(r -> {
+      Thread thread = new Thread(r, "node-scan");
+      thread.setDaemon(true);
+      return thread;
+    });
+    if (!waiting.isEmpty()) {
+      executor.execute(this::scan);
+    }
+  }
+
+  @Override
+  public synchronized void stop() {
+    executor.shutdownNow();
+    for (CompletableFuture<Void> done : waiting.values()) {
+      done.completeExceptionally(new IllegalStateException("The server is stopping"));
+    }
+    waiting.clear();
+  }
+
+  /**
+   * Hands all the nodes of the graph to the reader, sharing the next scan, and returns once it has read them.
+   */
+  public void scan(Reader reader) throws CedarException, IOException {
+    CompletableFuture<Void> done = new CompletableFuture<>();
+    synchronized (this) {
+      boolean idle = waiting.isEmpty();
+      waiting.put(reader, done);
+      if (idle && executor != null) {
+        try {
+          executor.execute(this::scan);
+        } catch (RejectedExecutionException e) {
+          waiting.remove(reader);
+          throw new IllegalStateException("The server is stopping");
+        }
+      }
+    }
+    try {
+      done.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CedarProcessingException("Interrupted while scanning the nodes");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof CedarException) {
+        throw (CedarException) cause;
+      } else if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new CedarProcessingException("Error while scanning the nodes");
+    }
+  }
+
+  synchronized int getWaitingReaders() {
+    return waiting.size();
+  }
+
+  @Override
+  public void onNodeEvent(NodeEvent event) {
+    if (scanning) {
+      touchedDuringScan.add(event.getId());
+    }
+  }
+
+  @Override
+  public void onInvalidation(Collection<String> nodeIds) {
+    if (scanning) {
+      touchedDuringScan.addAll(nodeIds);
+    }
+  }
+
+  @Override
+  public void onResync() {
+  }
+
+  private void scan() {
+    Map<Reader, CompletableFuture<Void>> readers;
+    synchronized (this) {
+      readers = new LinkedHashMap<>(waiting);
+      waiting.clear();
+    }
+    if (readers.isEmpty()) {
+      return;
+    }
+    touchedDuringScan.clear();
+    scanning = true;
+    try {
+      long start = System.currentTimeMillis();
+      int count = readers.size();
+      int position = 0;
+      List<FolderServerNode> listed;
+      do {
+        if (Thread.currentThread().isInterrupted()) {
+          throw new IllegalStateException("The server is stopping");
+        }
+        listed = pageSource.findNodes(pageSize, Math.max(0, position - touchedDuringScan.size()));
+        List<FolderServerNode> page = listed.stream().filter(Objects::nonNull).collect(Collectors.toList());
+        Iterator<Map.Entry<Reader, CompletableFuture<Void>>> it = readers.entrySet().iterator();
+        while (it.hasNext()) {
+          Map.Entry<Reader, CompletableFuture<Void>> reader = it.next();
+          try {
+            reader.getKey().read(page);
+          } catch (CedarException | IOException | RuntimeException e) {
+            reader.getValue().completeExceptionally(e);
+            it.remove();
+          }
+        }
+        position += pageSize;
+      } while (listed.size() >= pageSize && !readers.isEmpty());
+      log.info("Scanned the nodes for " + count + " readers in " + (System.currentTimeMillis() - start) + " ms");
+      for (CompletableFuture<Void> done : readers.values()) {
+        done.complete(null);
+      }
+    } catch (CedarException | RuntimeException e) {
+      for (CompletableFuture<Void> done : readers.values()) {
+        done.completeExceptionally(e);
+      }
+    } finally {
+      scanning = false;
+    }
+  }
+
+  private static class BackendPageSource implements PageSource {
+
+    private static final List<String> CREATED_FIRST = Collections.singletonList("createdOnTS");
+
+    private final CedarConfig cedarConfig;
+    private volatile CedarRequestContext adminContext;
+
+    BackendPageSource(CedarConfig cedarConfig) {
+      this.cedarConfig = cedarConfig;
+    }
+
+    @Override
+    public List<FolderServerNode> findNodes(int limit, int offset) throws CedarException {
+      if (adminContext == null) {
+        adminContext = CedarRequestContextFactory.fromAdminUser(cedarConfig, CedarDataServices.getUserService());
+      }
+      // The paged listing returns extracts, the indexes need the full nodes
+      FolderServiceSession folderSession = BackendSessions.openFolderServiceSession(adminContext);
+      List<FolderServerNode> nodes = new ArrayList<>();
+      for (FolderServerNodeExtract extract : folderSession.findAllNodes(limit, offset, CREATED_FIRST)) {
+        nodes.add(NodeByIdResolver.findNodeById(folderSession, extract.getId()));
+      }
+      return nodes;
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package org.metadatacenter.cedar.workspace.util;
+
+import org.metadatacenter.exception.CedarException;
+import org.metadatacenter.exception.CedarProcessingException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the slices of a batch at the same time: every slice but the last on the executor, the last one on the calling
+ * thread. Once one slice fails, the others are cancelled, so they do not hold their backend sessions for a response
+ * that will not be sent.
+ */
+public final class ParallelSlices {
+
+  private ParallelSlices() {
+  }
+
+  /**
+   * Returns the results of the slices, in their order, or throws the failure of the first slice that failed.
+   */
+  public static <T> List<T> run(ExecutorService executor, List<Callable<T>> slices, String description)
+      throws CedarException {
+    List<Future<T>> futures = new ArrayList<>();
+    boolean done = false;
+    try {
+      for (int i = 0; i < slices.size() - 1; i++) {
+        futures.add(executor.submit(slices.get(i)));
+      }
+      if (!slices.isEmpty()) {
+        futures.add(CompletableFuture.completedFuture(call(slices.get(slices.size() - 1), description)));
+      }
+      List<T> results = new ArrayList<>();
+      for (Future<T> future : futures) {
+        results.add(await(future, description));
+      }
+      done = true;
+      return results;
+    } finally {
+      if (!done) {
+        for (Future<T> future : futures) {
+          future.cancel(true);
+        }
+      }
+    }
+  }
+
+  private static <T> T call(Callable<T> slice, String description) throws CedarException {
+    try {
+      return slice.call();
+    } catch (CedarException | RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new CedarProcessingException("Error while " + description);
+    }
+  }
+
+  private static <T> T await(Future<T> future, String description) throws CedarException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CedarProcessingException("Interrupted while " + description);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof CedarException) {
+        throw (CedarException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new CedarProcessingException("Error while " + description);
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package org.metadatacenter.cedar.workspace.util;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import org.metadatacenter.exception.CedarException;
+import org.metadatacenter.exception.CedarProcessingException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coalesces identical concurrent reads: while a call for a key is running, callers with the same key wait for it
+ * and get its result (or its exception) instead of running the call again. Nothing is kept once the call is over.
+ * <p>
+ * The key must identify everything the result depends on, including the permission context of the caller. The
+ * result is shared between the callers, so it must not be modified afterwards.
+ */
+public class SingleFlight {
+
+  private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+  private final Meter executed;
+  private final Meter coalesced;
+
+  public SingleFlight(MetricRegistry metrics) {
+    this.executed = metrics.meter(MetricRegistry.name(SingleFlight.class, "executed"));
+    this.coalesced = metrics.meter(MetricRegistry.name(SingleFlight.class, "coalesced"));
+  }
+
+  public interface Call<T> {
+    T call() throws CedarException;
+  }
+
+  @SuppressWarnings("unchecked")
+  public <T> T execute(String key, Call<T> call) throws CedarException {
+    CompletableFuture<Object> flight = new CompletableFuture<>();
+    CompletableFuture<Object> existing = inFlight.putIfAbsent(key, flight);
+    if (existing != null) {
+      coalesced.mark();
+      return (T) await(existing);
+    }
+    executed.mark();
+    try {
+      T result = call.call();
+      flight.complete(result);
+      return result;
+    } catch (Throwable t) {
+      flight.completeExceptionally(t);
+      throw t;
+    } finally {
+      inFlight.remove(key, flight);
+    }
+  }
+
+  public int getInFlightCount() {
+    return inFlight.size();
+  }
+
+  private static Object await(CompletableFuture<Object> flight) throws CedarException {
+    try {
+      return flight.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CedarProcessingException("Interrupted while waiting for a coalesced read");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof CedarException) {
+        throw (CedarException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new CedarProcessingException("Error in coalesced read");
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package org.metadatacenter.cedar.workspace.warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Issues HTTP requests against the local application connector, as the admin user, so that warmup traffic goes
+ * through the same filters, resource matching and response writers as client traffic.
+ */
+public class WarmupClient {
+
+  private static final int TIMEOUT_MILLIS = 30000;
+
+  private final String baseUrl;
+  private final String authorization;
+  private final ObjectMapper mapper;
+  private final byte[] buffer = new byte[8192];
+
+  public WarmupClient(String baseUrl, String apiKey, ObjectMapper mapper) {
+    this.baseUrl = baseUrl;
+    this.authorization = "apiKey " + apiKey;
+    this.mapper = mapper;
+  }
+
+  public int get(String path, String accept) throws IOException {
+    HttpURLConnection connection = open(path, "GET", accept);
+    return consume(connection);
+  }
+
+  public int post(String path, Object body, String accept) throws IOException {
+    HttpURLConnection connection = open(path, "POST", accept);
+    connection.setDoOutput(true);
+    connection.setRequestProperty("Content-Type", "application/json");
+    try (OutputStream out = connection.getOutputStream()) {
+      mapper.writeValue(out, body);
+    }
+    return consume(connection);
+  }
+
+  private HttpURLConnection open(String path, String method, String accept) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+    connection.setRequestMethod(method);
+    connection.setConnectTimeout(TIMEOUT_MILLIS);
+    connection.setReadTimeout(TIMEOUT_MILLIS);
+    connection.setRequestProperty("Accept", accept);
+    connection.setRequestProperty("Authorization", authorization);
+    return connection;
+  }
+
+  private int consume(HttpURLConnection connection) throws IOException {
+    int status = connection.getResponseCode();
+    InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+    if (in != null) {
+      try {
+        while (in.read(buffer) != -1) {
+          // drain the body so the connection can be reused
+        }
+      } finally {
+        in.close();
+      }
+    }
+    return status;
+  }
+
+  public static String encode(String id) {
+    try {
+      return URLEncoder.encode(id, StandardCharsets.UTF_8.name());
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
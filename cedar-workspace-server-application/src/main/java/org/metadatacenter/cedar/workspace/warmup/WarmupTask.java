@@ -0,0 +1,12 @@
+package org.metadatacenter.cedar.workspace.warmup;
+
+import java.io.IOException;
+
+/**
+ * A unit of work executed repeatedly during the warmup phase, before the server reports itself ready.
+ */
+public interface WarmupTask {
+
+  void run(WarmupClient client) throws IOException;
+
+}
@@ -0,0 +1,174 @@
+package org.metadatacenter.cedar.workspace.warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.lifecycle.ServerLifecycleListener;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.metadatacenter.cedar.workspace.config.WarmupConfig;
+import org.metadatacenter.config.CedarConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_CBOR;
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_SMILE;
+
+/**
+ * Sends requests for the main read paths to the local application connector once the server has started, so that
+ * resource matching, the request filters, the backend lookups and the response writers are all exercised before the
+ * server takes traffic. The response formats are rotated between iterations. Caches can add their own
+ * {@link WarmupTask}s to be pre-filled in the same phase. The server is reported ready when the warmup finishes, or
+ * when the configured time limit expires.
+ */
+public class WorkspaceWarmup implements Managed, ServerLifecycleListener {
+
+  private static final Logger log = LoggerFactory.getLogger(WorkspaceWarmup.class);
+
+  private static final String APPLICATION_CONNECTOR = "application";
+  private static final String[] ACCEPT = {MediaType.APPLICATION_JSON, APPLICATION_SMILE, APPLICATION_CBOR};
+
+  private final CedarConfig cedarConfig;
+  private final WarmupConfig warmupConfig;
+  private final ObjectMapper mapper;
+  private final String contextPath;
+  private final Map<String, WarmupTask> tasks = new LinkedHashMap<>();
+
+  private volatile boolean finished;
+  private volatile long startedAt;
+  private volatile String accept = MediaType.APPLICATION_JSON;
+  private Thread thread;
+
+  public WorkspaceWarmup(CedarConfig cedarConfig, WarmupConfig warmupConfig, ObjectMapper mapper,
+                         String contextPath) {
+    this.cedarConfig = cedarConfig;
+    this.warmupConfig = warmupConfig;
+    this.mapper = mapper;
+    this.contextPath = contextPath == null || "/".equals(contextPath) ? "" : contextPath;
+    addTask("folders", this::warmupFolders);
+    addTask("folderContents", this::warmupFolderContents);
+    addTask("resources", this::warmupResources);
+  }
+
+  public void addTask(String name, WarmupTask task) {
+    tasks.put(name, task);
+  }
+
+  /**
+   * The media type the tasks should ask for in the current iteration.
+   */
+  public String getAccept() {
+    return accept;
+  }
+
+  @Override
+  public void start() {
+    if (!warmupConfig.isEnabled()) {
+      finished = true;
+    }
+  }
+
+  @Override
+  public void serverStarted(Server server) {
+    startedAt = System.currentTimeMillis();
+    if (finished) {
+      return;
+    }
+    int port = getApplicationPort(server);
+    if (port <= 0) {
+      log.warn("No application connector found, skipping the warmup");
+      finished = true;
+      return;
+    }
+    WarmupClient client = new WarmupClient("http://localhost:" + port + contextPath,
+        cedarConfig.getAdminUserConfig().getApiKey(), mapper);
+    thread = new Thread(() -> runWarmup(client), "workspace-warmup");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  @Override
+  public void stop() {
+    if (thread != null) {
+      thread.interrupt();
+    }
+  }
+
+  public boolean isFinished() {
+    return finished;
+  }
+
+  public boolean isTimeLimitExpired() {
+    return startedAt > 0 && System.currentTimeMillis() - startedAt > warmupConfig.getTimeLimit().toMilliseconds();
+  }
+
+  public boolean isReady() {
+    return finished || isTimeLimitExpired();
+  }
+
+  private void runWarmup(WarmupClient client) {
+    try {
+      for (int i = 0; i < warmupConfig.getIterations() && !isTimeLimitExpired(); i++) {
+        accept = ACCEPT[i % ACCEPT.length];
+        for (Map.Entry<String, WarmupTask> task : tasks.entrySet()) {
+          if (Thread.currentThread().isInterrupted()) {
+            return;
+          }
+          try {
+            task.getValue().run(client);
+          } catch (Exception e) {
+            log.warn("Warmup task '" + task.getKey() + "' failed", e);
+          }
+        }
+      }
+      log.info("Warmup finished in " + (System.currentTimeMillis() - startedAt) + "ms");
+    } catch (Exception e) {
+      log.error("Warmup aborted", e);
+    } finally {
+      finished = true;
+    }
+  }
+
+  private void warmupFolders(WarmupClient client) throws IOException {
+    for (String id : warmupConfig.getFolderIds()) {
+      check(client.get("/folders/" + WarmupClient.encode(id), accept), "/folders/{id}");
+    }
+  }
+
+  private void warmupFolderContents(WarmupClient client) throws IOException {
+    for (String id : warmupConfig.getFolderIds()) {
+      check(client.get("/folders/" + WarmupClient.encode(id) + "/contents", accept), "/folders/{id}/contents");
+    }
+    if (!warmupConfig.getFolderIds().isEmpty()) {
+      check(client.post("/folders/contents", Collections.singletonMap("folderIds", warmupConfig.getFolderIds()),
+          accept), "/folders/contents");
+    }
+  }
+
+  private void warmupResources(WarmupClient client) throws IOException {
+    for (String id : warmupConfig.getResourceIds()) {
+      check(client.get("/resources/" + WarmupClient.encode(id), accept), "/resources/{id}");
+    }
+  }
+
+  private static void check(int status, String endpoint) {
+    if (status >= 400) {
+      log.warn("Warmup request to " + endpoint + " returned " + status);
+    }
+  }
+
+  private static int getApplicationPort(Server server) {
+    for (Connector connector : server.getConnectors()) {
+      if (APPLICATION_CONNECTOR.equals(connector.getName()) && connector instanceof ServerConnector) {
+        return ((ServerConnector) connector).getLocalPort();
+      }
+    }
+    return -1;
+  }
+}
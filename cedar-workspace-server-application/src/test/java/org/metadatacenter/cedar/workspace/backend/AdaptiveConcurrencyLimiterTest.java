@@ -0,0 +1,112 @@
+package org.metadatacenter.cedar.workspace.backend;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.metadatacenter.cedar.workspace.config.BackendLimiterConfig;
+import org.metadatacenter.exception.CedarProcessingException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+  private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+  private static final long SLOW = TimeUnit.SECONDS.toNanos(1);
+
+  private AdaptiveConcurrencyLimiter limiter;
+
+  @Before
+  public void setUp() {
+    // Limit 20 between 4 and 200, tolerance 2, backoff 0.9
+    limiter = new AdaptiveConcurrencyLimiter(new BackendLimiterConfig());
+  }
+
+  @Test
+  public void failedCallsLowerTheLimit() throws InterruptedException {
+    Assert.assertTrue(limiter.acquire());
+    limiter.release(FAST, true);
+    Assert.assertEquals(18, limiter.getLimit());
+
+    for (int i = 0; i < 100; i++) {
+      Assert.assertTrue(limiter.acquire());
+      limiter.release(FAST, true);
+    }
+    Assert.assertEquals(4, limiter.getLimit());
+    Assert.assertEquals(0, limiter.getInFlight());
+  }
+
+  @Test
+  public void fastCallsRaiseTheLimitOnlyWhenItIsInUse() throws InterruptedException {
+    for (int i = 0; i < 100; i++) {
+      Assert.assertTrue(limiter.acquire());
+      limiter.release(FAST, false);
+    }
+    Assert.assertEquals(20, limiter.getLimit());
+
+    runFullRounds(10, FAST);
+    Assert.assertTrue(limiter.getLimit() > 20);
+  }
+
+  @Test
+  public void latencyAboveTheBaselineLowersTheLimit() throws InterruptedException {
+    runFullRounds(10, FAST);
+    int raised = limiter.getLimit();
+
+    // Twice the baseline is within the tolerance
+    runFullRounds(2, 2 * FAST);
+    Assert.assertTrue(limiter.getLimit() >= raised);
+    int tolerated = limiter.getLimit();
+
+    runFullRounds(1, SLOW);
+    Assert.assertTrue(limiter.getLimit() < tolerated);
+    Assert.assertTrue(limiter.getShortLatency() > limiter.getLongLatency());
+  }
+
+  @Test
+  public void onlyBackendFailuresLowerTheLimit() throws Exception {
+    Callable failingRequest = proxy(() -> {
+      throw new CedarProcessingException("Node not found");
+    });
+    Callable failingBackend = proxy(() -> {
+      throw new UncheckedIOException(new IOException("Connection reset"));
+    });
+
+    try {
+      failingRequest.call();
+      Assert.fail();
+    } catch (CedarProcessingException e) {
+      Assert.assertEquals(20, limiter.getLimit());
+    }
+    try {
+      failingBackend.call();
+      Assert.fail();
+    } catch (UncheckedIOException e) {
+      Assert.assertEquals(18, limiter.getLimit());
+    }
+    Assert.assertEquals(0, limiter.getInFlight());
+  }
+
+  private void runFullRounds(int rounds, long latency) throws InterruptedException {
+    for (int round = 0; round < rounds; round++) {
+      int limit = limiter.getLimit();
+      for (int i = 0; i < limit; i++) {
+        Assert.assertTrue(limiter.acquire());
+      }
+      for (int i = 0; i < limit; i++) {
+        limiter.release(latency, false);
+      }
+    }
+  }
+
+  private Callable proxy(Callable target) {
+    return (Callable) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Callable.class},
+        new BackendSessionHandler(target, "user", limiter, null));
+  }
+
+  public interface Callable {
+    Object call() throws Exception;
+  }
+}
@@ -0,0 +1,54 @@
+package org.metadatacenter.cedar.workspace.backend;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class RequestEndpointFilterTest {
+
+  private final RequestEndpointFilter filter = new RequestEndpointFilter();
+
+  @Test
+  public void theEndpointIsKnownForTheWholeRequest() throws Exception {
+    AtomicReference<String> endpoint = new AtomicReference<>();
+
+    filter.doFilter(request("GET", "/folders/f1/contents", "limit=10"), null,
+        (req, res) -> endpoint.set(RequestEndpointFilter.currentEndpoint()));
+
+    Assert.assertEquals("GET /folders/f1/contents?limit=10", endpoint.get());
+    Assert.assertNull(RequestEndpointFilter.currentEndpoint());
+  }
+
+  @Test
+  public void theEndpointIsClearedWhenTheRequestFails() throws Exception {
+    try {
+      filter.doFilter(request("PUT", "/folders/f1", null), null, (req, res) -> {
+        throw new IOException("Connection reset");
+      });
+      Assert.fail("The failure should reach the caller");
+    } catch (IOException | ServletException e) {
+      Assert.assertNull(RequestEndpointFilter.currentEndpoint());
+    }
+  }
+
+  private static HttpServletRequest request(String method, String uri, String query) {
+    return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(),
+        new Class<?>[]{HttpServletRequest.class}, (proxy, m, args) -> {
+          switch (m.getName()) {
+            case "getMethod":
+              return method;
+            case "getRequestURI":
+              return uri;
+            case "getQueryString":
+              return query;
+            default:
+              return null;
+          }
+        });
+  }
+}
@@ -0,0 +1,115 @@
+package org.metadatacenter.cedar.workspace.backend;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.metadatacenter.cedar.workspace.config.SessionScopeConfig;
+import org.metadatacenter.rest.context.CedarRequestContext;
+import org.metadatacenter.util.json.JsonMapper;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RequestSessionScopeTest {
+
+  private MetricRegistry metrics;
+  private RequestSessionScope scope;
+
+  @Before
+  public void setUp() throws Exception {
+    SessionScopeConfig config = JsonMapper.MAPPER.readValue("{\"leakThreshold\":\"0 milliseconds\"}",
+        SessionScopeConfig.class);
+    metrics = new MetricRegistry();
+    scope = new RequestSessionScope(config, metrics);
+  }
+
+  @After
+  public void tearDown() {
+    scope.closeScope();
+  }
+
+  @Test
+  public void sessionsOfTheRequestContextAreOpenedOnce() {
+    CedarRequestContext c = context();
+    AtomicInteger opened = new AtomicInteger();
+    scope.openScope();
+    SessionBundle bundle = scope.bundleFor(c);
+    Assert.assertSame(bundle, scope.bundleFor(c));
+    Object first = bundle.get(Object.class, () -> opened.incrementAndGet());
+    Assert.assertSame(first, bundle.get(Object.class, () -> opened.incrementAndGet()));
+    Assert.assertEquals(1, opened.get());
+    Assert.assertEquals(1, scope.getActive());
+    Assert.assertEquals(1, metrics.meter(MetricRegistry.name(RequestSessionScope.class, "opened")).getCount());
+    Assert.assertEquals(1, metrics.meter(MetricRegistry.name(RequestSessionScope.class, "reused")).getCount());
+
+    Assert.assertNull(scope.bundleFor(context()));
+
+    scope.closeScope();
+    Assert.assertEquals(0, scope.getActive());
+  }
+
+  @Test
+  public void sessionsOutsideOfRequestsAreNotBundled() {
+    Assert.assertNull(scope.bundleFor(context()));
+    Assert.assertEquals(0, scope.getActive());
+  }
+
+  @Test
+  public void concurrentRequestsGetTheirOwnBundles() throws InterruptedException {
+    scope.openScope();
+    SessionBundle held = scope.bundleFor(context());
+
+    CountDownLatch bundleOpened = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(1);
+    SessionBundle[] other = new SessionBundle[1];
+    Thread thread = new Thread(() -> {
+      scope.openScope();
+      try {
+        other[0] = scope.bundleFor(context());
+        bundleOpened.countDown();
+        done.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        scope.closeScope();
+      }
+    });
+    thread.start();
+    Assert.assertTrue(bundleOpened.await(5, TimeUnit.SECONDS));
+    Assert.assertNotNull(other[0]);
+    Assert.assertNotSame(held, other[0]);
+    Assert.assertEquals(2, scope.getActive());
+
+    done.countDown();
+    thread.join();
+    Assert.assertEquals(1, scope.getActive());
+  }
+
+  @Test
+  public void bundlesHeldTooLongAreReportedAsLeaked() throws InterruptedException {
+    scope.openScope();
+    SessionBundle bundle = scope.bundleFor(context());
+    Thread.sleep(1);
+    scope.detectLeaks();
+    Assert.assertTrue(bundle.isLeaked());
+    Assert.assertEquals(1, metrics.counter(MetricRegistry.name(RequestSessionScope.class, "leaked")).getCount());
+    scope.detectLeaks();
+    Assert.assertEquals(1, metrics.counter(MetricRegistry.name(RequestSessionScope.class, "leaked")).getCount());
+  }
+
+  private static CedarRequestContext context() {
+    return (CedarRequestContext) Proxy.newProxyInstance(CedarRequestContext.class.getClassLoader(),
+        new Class<?>[]{CedarRequestContext.class}, (proxy, method, args) -> {
+          if ("equals".equals(method.getName())) {
+            return proxy == args[0];
+          } else if ("hashCode".equals(method.getName())) {
+            return System.identityHashCode(proxy);
+          }
+          return null;
+        });
+  }
+}
@@ -0,0 +1,51 @@
+package org.metadatacenter.cedar.workspace.backend;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.metadatacenter.cedar.workspace.config.SlowCallConfig;
+import org.metadatacenter.util.json.JsonMapper;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class SlowCallRecorderTest {
+
+  private static final long SLOW = TimeUnit.SECONDS.toNanos(1);
+
+  private SlowCallRecorder recorder;
+  private Method method;
+
+  @Before
+  public void setUp() throws Exception {
+    // 500 ms threshold, nothing sampled, room for two calls
+    SlowCallConfig config = JsonMapper.MAPPER.readValue("{\"sampleRate\":0,\"capacity\":2}", SlowCallConfig.class);
+    recorder = new SlowCallRecorder(config, new MetricRegistry());
+    method = CharSequence.class.getMethod("subSequence", int.class, int.class);
+  }
+
+  @Test
+  public void keepsOnlyTheMostRecentSlowCalls() {
+    recorder.record("user", method, new Object[]{0, 1}, TimeUnit.MILLISECONDS.toNanos(10), false);
+    Assert.assertTrue(recorder.getCalls().isEmpty());
+
+    recorder.record("user-1", method, new Object[]{0, 1}, SLOW, false);
+    recorder.record("user-2", method, new Object[]{0, 2}, SLOW, true);
+    recorder.record("user-3", method, new Object[]{0, 3}, SLOW, false);
+
+    List<SlowCall> calls = recorder.getCalls();
+    Assert.assertEquals(2, calls.size());
+    Assert.assertEquals("user-3", calls.get(0).getUserId());
+    Assert.assertEquals("user-2", calls.get(1).getUserId());
+    Assert.assertTrue(calls.get(1).isFailed());
+    Assert.assertEquals("CharSequence.subSequence", calls.get(0).getCall());
+    Assert.assertEquals("3", calls.get(0).getParameters().get(1));
+    Assert.assertEquals(1_000_000, calls.get(0).getDurationMicros());
+    Assert.assertFalse(calls.get(0).isSampled());
+
+    recorder.clear();
+    Assert.assertTrue(recorder.getCalls().isEmpty());
+  }
+}
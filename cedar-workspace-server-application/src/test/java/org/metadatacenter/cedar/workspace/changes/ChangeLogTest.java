@@ -0,0 +1,110 @@
+package org.metadatacenter.cedar.workspace.changes;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+import org.metadatacenter.cedar.workspace.event.NodeEvent;
+import org.metadatacenter.cedar.workspace.event.NodeEventType;
+import org.metadatacenter.cedar.workspace.invalidation.InvalidationBus;
+import org.metadatacenter.cedar.workspace.invalidation.LoopbackInvalidationTransport;
+import org.metadatacenter.cedar.workspace.invalidation.RemoteChange;
+import org.metadatacenter.model.CedarNodeType;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ChangeLogTest {
+
+  private static final long ONE_HOUR = 3600 * 1000L;
+  private static final long SETTLE = 1000L;
+
+  private final AtomicLong clock = new AtomicLong(1000000L);
+
+  private ChangeLog newChangeLog(String instanceId, int capacity) {
+    return new ChangeLog(instanceId, capacity, ONE_HOUR, SETTLE, clock::get);
+  }
+
+  private RemoteChange created(String id) {
+    long time = clock.incrementAndGet();
+    return new RemoteChange(NodeEventType.CREATED.getValue(), id, CedarNodeType.INSTANCE.getValue(), "folder",
+        null, null, time, time);
+  }
+
+  @Test
+  public void readsChangesAfterCursor() {
+    ChangeLog changeLog = newChangeLog("a", 10);
+    String start = changeLog.read(null, 10).getNextCursor();
+    changeLog.append("a", created("a"));
+    changeLog.append("a", created("b"));
+    changeLog.append("a", created("c"));
+
+    Assert.assertTrue(changeLog.read(start, 2).getEntries().isEmpty());
+    clock.addAndGet(SETTLE);
+
+    ChangeLog.Changes first = changeLog.read(start, 2);
+    Assert.assertEquals(2, first.getEntries().size());
+    Assert.assertEquals("a", first.getEntries().get(0).getId());
+    Assert.assertTrue(first.hasMore());
+    Assert.assertFalse(first.isResyncRequired());
+
+    ChangeLog.Changes second = changeLog.read(first.getNextCursor(), 2);
+    Assert.assertEquals(1, second.getEntries().size());
+    Assert.assertEquals("c", second.getEntries().get(0).getId());
+    Assert.assertFalse(second.hasMore());
+
+    Assert.assertTrue(changeLog.read(second.getNextCursor(), 2).getEntries().isEmpty());
+  }
+
+  @Test
+  public void continuesCursorsOfOtherInstances() throws Exception {
+    LoopbackInvalidationTransport transport = new LoopbackInvalidationTransport();
+    ChangeLog firstLog = newChangeLog("first", 10);
+    ChangeLog secondLog = newChangeLog("second", 10);
+    InvalidationBus firstBus = new InvalidationBus("first", transport, 0, 16, 3, new MetricRegistry());
+    InvalidationBus secondBus = new InvalidationBus("second", transport, 0, 16, 3, new MetricRegistry());
+    firstBus.register(firstLog);
+    secondBus.register(secondLog);
+    firstBus.start();
+    secondBus.start();
+    String start = firstLog.read(null, 10).getNextCursor();
+
+    NodeEvent onFirst = NodeEvent.of(NodeEventType.CREATED, "a", CedarNodeType.INSTANCE).parentId("folder");
+    firstLog.onNodeEvent(onFirst);
+    firstBus.onNodeEvent(onFirst);
+    NodeEvent onSecond = NodeEvent.of(NodeEventType.DELETED, "b", CedarNodeType.FIELD).parentId("folder");
+    secondLog.onNodeEvent(onSecond);
+    secondBus.onNodeEvent(onSecond);
+    clock.set(Math.max(onFirst.getTimestamp(), onSecond.getTimestamp()) + SETTLE);
+
+    ChangeLog.Changes fromFirst = firstLog.read(start, 1);
+    Assert.assertEquals(1, fromFirst.getEntries().size());
+    ChangeLog.Changes fromSecond = secondLog.read(fromFirst.getNextCursor(), 1);
+    Assert.assertFalse(fromSecond.isResyncRequired());
+    Assert.assertEquals(1, fromSecond.getEntries().size());
+    Assert.assertNotEquals(fromFirst.getEntries().get(0).getId(), fromSecond.getEntries().get(0).getId());
+    Assert.assertEquals(firstLog.read(start, 10).getNextCursor(), secondLog.read(start, 10).getNextCursor());
+  }
+
+  @Test
+  public void requiresResyncWhenEntriesWereDropped() {
+    ChangeLog changeLog = newChangeLog("a", 2);
+    String start = changeLog.read(null, 10).getNextCursor();
+    changeLog.append("a", created("a"));
+    changeLog.append("a", created("b"));
+    changeLog.append("a", created("c"));
+    clock.addAndGet(SETTLE);
+
+    ChangeLog.Changes changes = changeLog.read(start, 10);
+    Assert.assertTrue(changes.isResyncRequired());
+    Assert.assertEquals(changeLog.getCurrentCursor(), changes.getNextCursor());
+    Assert.assertFalse(changeLog.read(changes.getNextCursor(), 10).isResyncRequired());
+  }
+
+  @Test
+  public void requiresResyncForCursorBeforeStartOrUnreadable() {
+    ChangeLog changeLog = newChangeLog("a", 10);
+    changeLog.append("a", created("a"));
+    Assert.assertTrue(changeLog.read(Long.toString(clock.get() - ONE_HOUR, 36), 10).isResyncRequired());
+    Assert.assertTrue(changeLog.read("not a cursor", 10).isResyncRequired());
+    Assert.assertTrue(changeLog.read("1.a", 10).isResyncRequired());
+  }
+}
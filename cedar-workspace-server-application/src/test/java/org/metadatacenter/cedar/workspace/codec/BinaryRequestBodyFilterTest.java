@@ -0,0 +1,101 @@
+package org.metadatacenter.cedar.workspace.codec;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.Assert;
+import org.junit.Test;
+import org.metadatacenter.util.json.JsonMapper;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.metadatacenter.cedar.workspace.constant.WorkspaceMediaType.APPLICATION_SMILE;
+
+public class BinaryRequestBodyFilterTest {
+
+  private final BinaryMappers binaryMappers = new BinaryMappers();
+
+  @Test
+  public void binaryBodiesAreDecodedOnceIntoTheTree() throws Exception {
+    JsonNode body = JsonMapper.MAPPER.readTree("{\"ids\":[\"a\",\"b\"]}");
+    HttpServletRequest request = request(APPLICATION_SMILE, binaryMappers.getSmileMapper().writeValueAsBytes(body));
+    AtomicReference<ServletRequest> passed = new AtomicReference<>();
+
+    new BinaryRequestBodyFilter(binaryMappers).doFilter(request, null, (req, res) -> passed.set(req));
+
+    Assert.assertEquals(body, BinaryRequestBodyFilter.decodedBody(passed.get()));
+    Assert.assertEquals("application/json", passed.get().getContentType());
+    Assert.assertEquals(body, JsonMapper.MAPPER.readTree(passed.get().getInputStream()));
+  }
+
+  @Test
+  public void jsonBodiesAreLeftAlone() throws Exception {
+    HttpServletRequest request = request("application/json", "{}".getBytes());
+    AtomicReference<ServletRequest> passed = new AtomicReference<>();
+
+    new BinaryRequestBodyFilter(binaryMappers).doFilter(request, null, (req, res) -> passed.set(req));
+
+    Assert.assertSame(request, passed.get());
+    Assert.assertNull(BinaryRequestBodyFilter.decodedBody(passed.get()));
+  }
+
+  @Test
+  public void readListenersAreToldTheBodyIsThere() throws IOException {
+    BinaryRequestBodyFilter.ByteArrayServletInputStream in =
+        new BinaryRequestBodyFilter.ByteArrayServletInputStream(new byte[]{1, 2});
+    List<String> calls = new ArrayList<>();
+    in.setReadListener(new ReadListener() {
+      @Override
+      public void onDataAvailable() throws IOException {
+        calls.add("data");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+          out.write(b);
+        }
+        Assert.assertEquals(2, out.size());
+      }
+
+      @Override
+      public void onAllDataRead() {
+        calls.add("done");
+      }
+
+      @Override
+      public void onError(Throwable t) {
+        calls.add("error");
+      }
+    });
+    Assert.assertEquals(Arrays.asList("data", "done"), calls);
+    Assert.assertTrue(in.isFinished());
+  }
+
+  private static HttpServletRequest request(String contentType, byte[] body) {
+    Map<String, Object> attributes = new HashMap<>();
+    return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(),
+        new Class<?>[]{HttpServletRequest.class}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getContentType":
+              return contentType;
+            case "getInputStream":
+              return new BinaryRequestBodyFilter.ByteArrayServletInputStream(body);
+            case "getAttribute":
+              return attributes.get((String) args[0]);
+            case "setAttribute":
+              attributes.put((String) args[0], args[1]);
+              return null;
+            default:
+              return null;
+          }
+        });
+  }
+}
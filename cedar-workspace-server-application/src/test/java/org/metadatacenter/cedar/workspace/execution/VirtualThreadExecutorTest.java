@@ -0,0 +1,91 @@
+package org.metadatacenter.cedar.workspace.execution;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.metadatacenter.cedar.workspace.backend.RequestEndpointFilter;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class VirtualThreadExecutorTest {
+
+  private final ExecutorService virtualThreads = Executors.newCachedThreadPool(r -> new Thread(r, "virtual"));
+
+  @After
+  public void tearDown() {
+    virtualThreads.shutdownNow();
+  }
+
+  @Test
+  public void tasksRunOnTheVirtualThreadsWithTheEndpointOfTheRequest() throws Exception {
+    VirtualThreadExecutor executor = new VirtualThreadExecutor(virtualThreads, 10, null);
+    AtomicReference<String> thread = new AtomicReference<>();
+    AtomicReference<String> endpoint = new AtomicReference<>();
+    CountDownLatch done = new CountDownLatch(1);
+
+    RequestEndpointFilter.runWithEndpoint("GET /folders/f1/contents", () -> executor.execute(() -> {
+      thread.set(Thread.currentThread().getName());
+      endpoint.set(RequestEndpointFilter.currentEndpoint());
+      done.countDown();
+    }));
+
+    Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+    Assert.assertEquals("virtual", thread.get());
+    Assert.assertEquals("GET /folders/f1/contents", endpoint.get());
+    awaitNoneInFlight(executor);
+  }
+
+  @Test
+  public void tasksPastMaxInFlightRunOnTheCallingThread() throws Exception {
+    VirtualThreadExecutor executor = new VirtualThreadExecutor(virtualThreads, 1, null);
+    CountDownLatch release = new CountDownLatch(1);
+    executor.execute(() -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    Assert.assertEquals(1, executor.getInFlight());
+
+    AtomicReference<Thread> thread = new AtomicReference<>();
+    executor.execute(() -> thread.set(Thread.currentThread()));
+    Assert.assertSame(Thread.currentThread(), thread.get());
+
+    release.countDown();
+    awaitNoneInFlight(executor);
+  }
+
+  @Test
+  public void failedTasksLeaveNothingInFlight() throws Exception {
+    VirtualThreadExecutor executor = new VirtualThreadExecutor(virtualThreads, 10, null);
+    executor.execute(() -> {
+      throw new IllegalStateException("Backend unavailable");
+    });
+    awaitNoneInFlight(executor);
+  }
+
+  @Test
+  public void tasksRunOnTheCallingThreadOnceShutDown() {
+    VirtualThreadExecutor executor = new VirtualThreadExecutor(virtualThreads, 10, null);
+    executor.shutdown();
+    AtomicReference<Thread> thread = new AtomicReference<>();
+
+    executor.execute(() -> thread.set(Thread.currentThread()));
+
+    Assert.assertSame(Thread.currentThread(), thread.get());
+    Assert.assertEquals(0, executor.getInFlight());
+  }
+
+  private static void awaitNoneInFlight(VirtualThreadExecutor executor) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (executor.getInFlight() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(0, executor.getInFlight());
+  }
+}
@@ -0,0 +1,72 @@
+package org.metadatacenter.cedar.workspace.execution;
+
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.SseFeature;
+import org.glassfish.jersey.server.model.Resource;
+import org.glassfish.jersey.server.model.ResourceMethod;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+
+public class VirtualThreadResourcesTest {
+
+  @Test
+  public void resourceMethodsBecomeManagedAsync() {
+    Resource resource = VirtualThreadResources.managedAsync(Resource.from(SampleResource.class));
+
+    Assert.assertTrue(method(resource, "list").isManagedAsyncDeclared());
+    Assert.assertTrue(method(child(resource, "{id}"), "get").isManagedAsyncDeclared());
+  }
+
+  @Test
+  public void eventStreamsAndSuspendedMethodsAreLeftAlone() {
+    Resource resource = VirtualThreadResources.managedAsync(Resource.from(SampleResource.class));
+
+    Assert.assertFalse(method(child(resource, "events"), "events").isManagedAsyncDeclared());
+    Assert.assertFalse(method(child(resource, "suspended"), "suspended").isManagedAsyncDeclared());
+  }
+
+  private static Resource child(Resource resource, String path) {
+    return resource.getChildResources().stream().filter(child -> child.getPath().equals(path)).findFirst().get();
+  }
+
+  private static ResourceMethod method(Resource resource, String name) {
+    return resource.getResourceMethods().stream()
+        .filter(method -> method.getInvocable().getHandlingMethod().getName().equals(name)).findFirst().get();
+  }
+
+  @Path("/sample")
+  @Produces(MediaType.APPLICATION_JSON)
+  public static class SampleResource {
+
+    @GET
+    public String list() {
+      return "[]";
+    }
+
+    @GET
+    @Path("{id}")
+    public String get() {
+      return "{}";
+    }
+
+    @GET
+    @Path("events")
+    @Produces(SseFeature.SERVER_SENT_EVENTS)
+    public EventOutput events() {
+      return new EventOutput();
+    }
+
+    @GET
+    @Path("suspended")
+    public void suspended(@Suspended AsyncResponse response) {
+      response.resume("{}");
+    }
+  }
+}
@@ -0,0 +1,187 @@
+package org.metadatacenter.cedar.workspace.index;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.metadatacenter.cedar.workspace.config.FolderStatisticsConfig;
+import org.metadatacenter.cedar.workspace.event.NodeEvent;
+import org.metadatacenter.cedar.workspace.event.NodeEventType;
+import org.metadatacenter.cedar.workspace.invalidation.RemoteChange;
+import org.metadatacenter.model.CedarNodeType;
+import org.metadatacenter.util.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class FolderStatisticsIndexTest {
+
+  private final Map<String, List<FolderStatisticsIndex.Child>> tree = new HashMap<>();
+  private FolderStatisticsIndex index;
+
+  @After
+  public void tearDown() {
+    index.stop();
+  }
+
+  @Test
+  public void statisticsArePendingUntilTheWalkFinishes() throws Exception {
+    buildTree();
+    index = start("{}", (folderId, limit, offset) -> page(folderId, limit, offset));
+
+    Assert.assertNull(index.getStatistics("root"));
+    FolderStatistics root = awaitStatistics("root");
+    Assert.assertEquals(1, root.getDescendantFolderCount());
+    Assert.assertEquals(2, root.getDescendantResourceCount());
+    // The walk of the root cached its subfolders too
+    Assert.assertEquals(1, index.getStatistics("a").getDescendantResourceCount());
+  }
+
+  @Test
+  public void eventsUpdateTheFolderAndItsAncestors() throws Exception {
+    buildTree();
+    index = start("{}", (folderId, limit, offset) -> page(folderId, limit, offset));
+    index.getStatistics("root");
+    awaitStatistics("root");
+
+    index.onNodeEvent(NodeEvent.of(NodeEventType.CREATED, "i2", CedarNodeType.INSTANCE).parentId("a"));
+    Assert.assertEquals(2, index.getStatistics("a").getDescendantResourceCount());
+    Assert.assertEquals(3, index.getStatistics("root").getDescendantResourceCount());
+
+    index.onNodeEvent(NodeEvent.of(NodeEventType.CREATED, "b", CedarNodeType.FOLDER).parentId("a"));
+    Assert.assertEquals(1, index.getStatistics("a").getDescendantFolderCount());
+    Assert.assertEquals(2, index.getStatistics("root").getDescendantFolderCount());
+
+    index.onNodeEvent(NodeEvent.of(NodeEventType.DELETED, "r1", CedarNodeType.TEMPLATE).parentId("root"));
+    Assert.assertEquals(2, index.getStatistics("root").getDescendantResourceCount());
+  }
+
+  @Test
+  public void invalidationDropsTheFolderAndItsAncestors() throws Exception {
+    buildTree();
+    index = start("{}", (folderId, limit, offset) -> page(folderId, limit, offset));
+    index.getStatistics("root");
+    awaitStatistics("root");
+
+    index.onInvalidation(Collections.singletonList("a"));
+    Assert.assertNull(index.getStatistics("a"));
+    Assert.assertNull(index.getStatistics("root"));
+    Assert.assertEquals(2, awaitStatistics("root").getDescendantResourceCount());
+  }
+
+  @Test
+  public void remoteChangesUpdateTheFolderAndItsAncestors() throws Exception {
+    buildTree();
+    index = start("{}", (folderId, limit, offset) -> page(folderId, limit, offset));
+    index.getStatistics("root");
+    awaitStatistics("root");
+
+    index.onRemoteChange("other", new RemoteChange(NodeEventType.CREATED.getValue(), "i2",
+        CedarNodeType.INSTANCE.getValue(), "a", null, "u1", System.currentTimeMillis(), 1));
+    Assert.assertEquals(2, index.getStatistics("a").getDescendantResourceCount());
+    Assert.assertEquals(3, index.getStatistics("root").getDescendantResourceCount());
+
+    // Without the parent, the count can not be placed
+    index.onRemoteChange("other", new RemoteChange(NodeEventType.CREATED.getValue(), "b",
+        CedarNodeType.FOLDER.getValue(), null, null, "u1", System.currentTimeMillis(), 2));
+    Assert.assertNotNull(index.getStatistics("root"));
+    index.onRemoteChange("other", new RemoteChange(NodeEventType.DELETED.getValue(), "i1",
+        CedarNodeType.INSTANCE.getValue(), null, "a", "u1", System.currentTimeMillis(), 3));
+    Assert.assertNull(index.getStatistics("a"));
+    Assert.assertNull(index.getStatistics("root"));
+  }
+
+  @Test
+  public void walksGoOnInPassesPastTheNodeLimit() throws Exception {
+    buildTree();
+    index = start("{\"maxWalkNodes\":2}", (folderId, limit, offset) -> page(folderId, limit, offset));
+
+    Assert.assertNull(index.getStatistics("root"));
+    // The first pass walks "a", the second one adds it up with the rest of the root
+    FolderStatistics root = awaitStatistics("root");
+    Assert.assertEquals(1, root.getDescendantFolderCount());
+    Assert.assertEquals(2, root.getDescendantResourceCount());
+    Assert.assertFalse(index.isTooLarge("root"));
+  }
+
+  @Test
+  public void foldersAreTooLargeWhenAPassCachesNothing() throws Exception {
+    buildTree();
+    index = start("{\"maxWalkNodes\":1}", (folderId, limit, offset) -> page(folderId, limit, offset));
+
+    Assert.assertNull(index.getStatistics("root"));
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!index.isTooLarge("root") && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertTrue(index.isTooLarge("root"));
+    Assert.assertNull(index.getStatistics("root"));
+  }
+
+  @Test
+  public void changesDuringAWalkDropOnlyTheTouchedChain() throws Exception {
+    buildTree();
+    tree.put("c", new ArrayList<>());
+    tree.get("root").add(new FolderStatisticsIndex.Child("c", CedarNodeType.FOLDER, 3L));
+    CountDownLatch walkingC = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    index = start("{}", (folderId, limit, offset) -> {
+      if ("c".equals(folderId)) {
+        walkingC.countDown();
+        release.await();
+      }
+      return page(folderId, limit, offset);
+    });
+
+    index.getStatistics("root");
+    Assert.assertTrue(walkingC.await(5, TimeUnit.SECONDS));
+    index.onNodeEvent(NodeEvent.of(NodeEventType.CREATED, "i3", CedarNodeType.INSTANCE).parentId("c"));
+    release.countDown();
+
+    // "a" was not touched and is cached, "c" and its ancestor "root" are walked again
+    FolderStatistics a = awaitStatistics("a");
+    Assert.assertEquals(1, a.getDescendantResourceCount());
+    tree.get("c").add(new FolderStatisticsIndex.Child("i3", CedarNodeType.INSTANCE, 4L));
+    Assert.assertEquals(3, awaitStatistics("root").getDescendantResourceCount());
+  }
+
+  private void buildTree() {
+    tree.put("root", new ArrayList<>(Arrays.asList(
+        new FolderStatisticsIndex.Child("a", CedarNodeType.FOLDER, 1L),
+        new FolderStatisticsIndex.Child("r1", CedarNodeType.TEMPLATE, 2L))));
+    tree.put("a", new ArrayList<>(Collections.singletonList(
+        new FolderStatisticsIndex.Child("i1", CedarNodeType.INSTANCE, 1L))));
+  }
+
+  private List<FolderStatisticsIndex.Child> page(String folderId, int limit, int offset) {
+    List<FolderStatisticsIndex.Child> children = tree.getOrDefault(folderId, Collections.emptyList());
+    return new ArrayList<>(children.subList(Math.min(offset, children.size()),
+        Math.min(offset + limit, children.size())));
+  }
+
+  private static FolderStatisticsIndex start(String config, FolderStatisticsIndex.ContentsSource source)
+      throws Exception {
+    FolderStatisticsIndex index = new FolderStatisticsIndex(JsonMapper.MAPPER.readValue(config,
+        FolderStatisticsConfig.class), source);
+    index.start();
+    return index;
+  }
+
+  private FolderStatistics awaitStatistics(String folderId) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (System.currentTimeMillis() < deadline) {
+      FolderStatistics statistics = index.getStatistics(folderId);
+      if (statistics != null) {
+        return statistics;
+      }
+      Thread.sleep(10);
+    }
+    Assert.fail("The statistics of " + folderId + " were not computed");
+    return null;
+  }
+}
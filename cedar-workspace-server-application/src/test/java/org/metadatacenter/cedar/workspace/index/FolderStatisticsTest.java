@@ -0,0 +1,44 @@
+package org.metadatacenter.cedar.workspace.index;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.metadatacenter.model.CedarNodeType;
+
+public class FolderStatisticsTest {
+
+  @Test
+  public void countsResourcesByType() {
+    FolderStatistics s = FolderStatistics.EMPTY
+        .plusResources(CedarNodeType.INSTANCE, 1)
+        .plusResources(CedarNodeType.INSTANCE, 1)
+        .plusResources(CedarNodeType.ELEMENT, 1)
+        .plusFolders(2);
+    Assert.assertEquals(2, s.getDescendantFolderCount());
+    Assert.assertEquals(3, s.getDescendantResourceCount());
+    Assert.assertEquals(Long.valueOf(2), s.getDescendantResourceCounts().get(CedarNodeType.INSTANCE));
+    Assert.assertEquals(0, FolderStatistics.EMPTY.getDescendantResourceCount());
+  }
+
+  @Test
+  public void movingSubtreeKeepsTotals() {
+    FolderStatistics subtree = FolderStatistics.EMPTY.plusResources(CedarNodeType.INSTANCE, 3).plusFolders(1)
+        .touchedAt(200L);
+    FolderStatistics parent = FolderStatistics.EMPTY.plusResources(CedarNodeType.INSTANCE, 1).touchedAt(100L)
+        .plus(subtree, 1).plusFolders(1);
+    Assert.assertEquals(2, parent.getDescendantFolderCount());
+    Assert.assertEquals(4, parent.getDescendantResourceCount());
+    Assert.assertEquals(Long.valueOf(200), parent.getLastUpdatedOnTS());
+
+    FolderStatistics afterMove = parent.plus(subtree, -1).plusFolders(-1);
+    Assert.assertEquals(0, afterMove.getDescendantFolderCount());
+    Assert.assertEquals(1, afterMove.getDescendantResourceCount());
+  }
+
+  @Test
+  public void countsNeverGoNegative() {
+    FolderStatistics s = FolderStatistics.EMPTY.plusResources(CedarNodeType.INSTANCE, -1).plusFolders(-1);
+    Assert.assertEquals(0, s.getDescendantFolderCount());
+    Assert.assertEquals(0, s.getDescendantResourceCount());
+    Assert.assertTrue(s.getDescendantResourceCounts().isEmpty());
+  }
+}
@@ -0,0 +1,116 @@
+package org.metadatacenter.cedar.workspace.index;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.metadatacenter.cedar.workspace.config.InstanceCountConfig;
+import org.metadatacenter.cedar.workspace.event.NodeEvent;
+import org.metadatacenter.cedar.workspace.event.NodeEventType;
+import org.metadatacenter.model.CedarNodeType;
+import org.metadatacenter.util.json.JsonMapper;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class InstanceCountIndexTest {
+
+  private InstanceCountIndex index;
+
+  @After
+  public void tearDown() {
+    index.stop();
+  }
+
+  @Test
+  public void missingCountsAreLoadedInTheBackground() throws Exception {
+    AtomicInteger loads = new AtomicInteger();
+    index = start(templateId -> {
+      loads.incrementAndGet();
+      return 5;
+    });
+
+    Assert.assertTrue(index.getCounts(Collections.singletonList("t")).isEmpty());
+    Assert.assertEquals(Long.valueOf(5), awaitCount("t"));
+    Assert.assertEquals(1, loads.get());
+  }
+
+  @Test
+  public void eventsUpdateCachedCounts() throws Exception {
+    index = start(templateId -> 5);
+    index.getCounts(Collections.singletonList("t"));
+    awaitCount("t");
+
+    index.onNodeEvent(NodeEvent.of(NodeEventType.CREATED, "i1", CedarNodeType.INSTANCE).isBasedOn("t"));
+    index.onNodeEvent(NodeEvent.of(NodeEventType.CREATED, "i2", CedarNodeType.INSTANCE).isBasedOn("t"));
+    index.onNodeEvent(NodeEvent.of(NodeEventType.DELETED, "i1", CedarNodeType.INSTANCE).isBasedOn("t"));
+    Assert.assertEquals(Long.valueOf(6), index.getCounts(Collections.singletonList("t")).get("t"));
+
+    index.onInvalidation(Collections.singletonList("t"));
+    Assert.assertTrue(index.getCounts(Collections.singletonList("t")).isEmpty());
+  }
+
+  @Test
+  public void loadsOverlappingAChangeOfTheirTemplateAreNotCached() throws Exception {
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger loads = new AtomicInteger();
+    index = start(templateId -> {
+      if (loads.incrementAndGet() == 1 && "t".equals(templateId)) {
+        loading.countDown();
+        release.await();
+      }
+      return 5;
+    });
+
+    index.getCounts(Collections.singletonList("t"));
+    Assert.assertTrue(loading.await(5, TimeUnit.SECONDS));
+    // A change of another template does not affect this load
+    index.onNodeEvent(NodeEvent.of(NodeEventType.CREATED, "i0", CedarNodeType.INSTANCE).isBasedOn("other"));
+    index.onNodeEvent(NodeEvent.of(NodeEventType.CREATED, "i1", CedarNodeType.INSTANCE).isBasedOn("t"));
+    release.countDown();
+
+    // The stale load is dropped and the next request loads the count again
+    Assert.assertEquals(Long.valueOf(5), awaitCount("t"));
+    Assert.assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void theLeastRecentlyUsedCountMakesRoomOnceFull() throws Exception {
+    index = start("{\"loaderThreads\":1,\"maxCachedTemplates\":2}", templateId -> 5);
+    awaitCount("t1");
+    awaitCount("t2");
+    index.getCounts(Collections.singletonList("t1"));
+
+    Assert.assertEquals(Long.valueOf(5), awaitCount("t3"));
+    Assert.assertEquals(2, index.getCachedCount());
+    Assert.assertTrue(index.getCounts(Collections.singletonList("t1")).containsKey("t1"));
+    Assert.assertFalse(index.getCounts(Collections.singletonList("t2")).containsKey("t2"));
+  }
+
+  private static InstanceCountIndex start(InstanceCountIndex.CountLoader loader) throws Exception {
+    return start("{\"loaderThreads\":1}", loader);
+  }
+
+  private static InstanceCountIndex start(String config, InstanceCountIndex.CountLoader loader) throws Exception {
+    InstanceCountIndex index = new InstanceCountIndex(JsonMapper.MAPPER.readValue(config, InstanceCountConfig.class),
+        loader);
+    index.start();
+    return index;
+  }
+
+  private Long awaitCount(String templateId) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (System.currentTimeMillis() < deadline) {
+      Map<String, Long> counts = index.getCounts(Collections.singletonList(templateId));
+      if (counts.containsKey(templateId)) {
+        return counts.get(templateId);
+      }
+      Thread.sleep(10);
+    }
+    Assert.fail("The count of " + templateId + " was not loaded");
+    return null;
+  }
+}
@@ -0,0 +1,112 @@
+package org.metadatacenter.cedar.workspace.index;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.metadatacenter.cedar.workspace.config.AutocompleteConfig;
+import org.metadatacenter.cedar.workspace.core.autocomplete.NamePrefixIndex;
+import org.metadatacenter.cedar.workspace.util.NodeScan;
+import org.metadatacenter.exception.CedarProcessingException;
+import org.metadatacenter.model.folderserver.basic.FolderServerFolder;
+import org.metadatacenter.model.folderserver.basic.FolderServerNode;
+import org.metadatacenter.util.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+public class NodeNameIndexTest {
+
+  private final Map<String, FolderServerNode> nodes = new LinkedHashMap<>();
+  private final AtomicInteger failedLoads = new AtomicInteger();
+  private final List<Integer> checkedBatches = new ArrayList<>();
+  private NodeScan nodeScan;
+  private NodeNameIndex index;
+
+  @After
+  public void tearDown() {
+    nodeScan.stop();
+    index.stop();
+  }
+
+  @Test
+  public void failedLoadsAreRetried() throws Exception {
+    add("f1", "Heart studies");
+    failedLoads.set(2);
+    start("{\"loadRetryInterval\":\"10 milliseconds\"}");
+    Assert.assertEquals(0, failedLoads.get());
+    Assert.assertEquals(1, index.getIndex().size());
+  }
+
+  @Test
+  public void checksMoreCandidatesUntilTheLimitIsFilled() throws Exception {
+    for (int i = 0; i < 100; i++) {
+      add("f" + i, "Heart study " + i);
+    }
+    start("{\"maxCandidates\":10,\"maxChecked\":30}");
+    // The folders were updated at the same time, so they come in id order: f0, f1, f10 to f19, f2, f20 to f29, f3...
+    Assert.assertEquals(Arrays.asList("f0", "f1", "f2"), ids(index.find("heart", 3, this::readableBelowFive)));
+    Assert.assertEquals(Arrays.asList(10, 20), checkedBatches);
+
+    // No more than maxChecked candidates are checked, even when the limit is not filled
+    checkedBatches.clear();
+    Assert.assertEquals(Arrays.asList("f0", "f1", "f2", "f3"), ids(index.find("heart", 5, this::readableBelowFive)));
+    Assert.assertEquals(Arrays.asList(10, 20), checkedBatches);
+  }
+
+  @Test
+  public void stopsCheckingWhenTheCandidatesRunOut() throws Exception {
+    for (int i = 0; i < 15; i++) {
+      add("f" + i, "Heart study " + i);
+    }
+    start("{\"maxCandidates\":10,\"maxChecked\":1000}");
+    Assert.assertEquals(Arrays.asList("f0", "f1", "f2", "f3", "f4"),
+        ids(index.find("heart", 5, this::readableBelowFive)));
+    Assert.assertEquals(Arrays.asList(10, 5), checkedBatches);
+  }
+
+  private Map<String, Boolean> readableBelowFive(Collection<String> ids) {
+    checkedBatches.add(ids.size());
+    Map<String, Boolean> readable = new HashMap<>();
+    for (String id : ids) {
+      readable.put(id, Integer.parseInt(id.substring(1)) < 5);
+    }
+    return readable;
+  }
+
+  private static List<String> ids(List<NamePrefixIndex.Entry> entries) {
+    return entries.stream().map(NamePrefixIndex.Entry::getId).collect(Collectors.toList());
+  }
+
+  private void start(String config) throws Exception {
+    nodeScan = new NodeScan(10, (limit, offset) -> {
+      if (failedLoads.get() > 0) {
+        failedLoads.decrementAndGet();
+        throw new CedarProcessingException("Graph unavailable");
+      }
+      return nodes.values().stream().skip(offset).limit(limit).collect(Collectors.toList());
+    });
+    index = new NodeNameIndex(JsonMapper.MAPPER.readValue(config, AutocompleteConfig.class), nodeScan, nodes::get);
+    index.start();
+    nodeScan.start();
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!index.isReady() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertTrue(index.isReady());
+  }
+
+  private void add(String id, String name) {
+    FolderServerFolder folder = new FolderServerFolder();
+    folder.setId(id);
+    folder.setName(name);
+    folder.setDescription("");
+    nodes.put(id, folder);
+  }
+}
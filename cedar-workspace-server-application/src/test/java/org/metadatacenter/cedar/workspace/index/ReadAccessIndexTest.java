@@ -0,0 +1,214 @@
+package org.metadatacenter.cedar.workspace.index;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.metadatacenter.cedar.workspace.config.ReadAccessConfig;
+import org.metadatacenter.cedar.workspace.event.NodeEvent;
+import org.metadatacenter.cedar.workspace.event.NodeEventType;
+import org.metadatacenter.model.CedarNodeType;
+import org.metadatacenter.util.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ReadAccessIndexTest {
+
+  private FakeAccessLoader loader;
+  private AtomicLong now;
+  private List<String> delegated;
+  private ReadAccessIndex index;
+
+  @Before
+  public void setUp() throws Exception {
+    // root > shared > template, root > private
+    loader = new FakeAccessLoader();
+    loader.add("root", null, Collections.singletonList("admin"), Collections.emptyList());
+    loader.add("shared", "root", Collections.singletonList("alice"), Collections.singletonList("team"));
+    loader.add("template", "shared", Collections.singletonList("bob"), Collections.emptyList());
+    loader.add("private", "root", Collections.singletonList("bob"), Collections.emptyList());
+    loader.groups.put("carol", Collections.singletonList("team"));
+    now = new AtomicLong(1000);
+    delegated = new ArrayList<>();
+    index = new ReadAccessIndex(JsonMapper.MAPPER.readValue("{\"ttl\":\"1 minute\",\"loadBatchSize\":2}",
+        ReadAccessConfig.class), loader, now::get, new MetricRegistry());
+  }
+
+  @Test
+  public void coldNodesAreLoadedInBatches() throws Exception {
+    Assert.assertEquals(Arrays.asList(true, false, true), check("bob", "template", "shared", "private"));
+    // Two batches of paths, and the grants of the nodes along them
+    Assert.assertEquals(2, loader.pathLoads);
+    Assert.assertEquals(Arrays.asList(Arrays.asList("root", "shared", "template"),
+        Collections.singletonList("private")), loader.grantLoads);
+
+    Assert.assertEquals(Arrays.asList(false, true), check("alice", "private", "template"));
+    Assert.assertEquals(2, loader.pathLoads);
+    Assert.assertTrue(delegated.isEmpty());
+  }
+
+  @Test
+  public void groupGrantsAreDecidedWithTheGroupsOfTheUser() throws Exception {
+    Assert.assertEquals(Arrays.asList(true, false), check("carol", "template", "private"));
+    Assert.assertTrue(delegated.isEmpty());
+
+    loader.failGroups = true;
+    Assert.assertEquals(Arrays.asList(false, false), check("dave", "template", "private"));
+    // Without the groups of the user, a node under a group grant is checked by the graph
+    Assert.assertEquals(Collections.singletonList("template"), delegated);
+  }
+
+  @Test
+  public void eventsKeepTheIndexCurrent() throws Exception {
+    check("bob", "template", "private");
+    int pathLoads = loader.pathLoads;
+
+    index.onNodeEvent(NodeEvent.of(NodeEventType.CREATED, "report", CedarNodeType.INSTANCE)
+        .parentId("private").userId("carol"));
+    Assert.assertEquals(Arrays.asList(true, true), check("carol", "report", "shared"));
+    Assert.assertEquals(Arrays.asList(true), check("bob", "report"));
+
+    loader.add("template", "private", Collections.singletonList("bob"), Collections.emptyList());
+    index.onNodeEvent(NodeEvent.of(NodeEventType.MOVED, "template", CedarNodeType.TEMPLATE).parentId("private"));
+    Assert.assertEquals(Arrays.asList(false), check("alice", "template"));
+    Assert.assertEquals(pathLoads, loader.pathLoads);
+
+    loader.add("private", "root", Arrays.asList("bob", "alice"), Collections.emptyList());
+    index.onNodeEvent(NodeEvent.of(NodeEventType.PERMISSIONS_CHANGED, "private", CedarNodeType.FOLDER));
+    Assert.assertEquals(Arrays.asList(true), check("alice", "template"));
+    Assert.assertEquals(pathLoads + 1, loader.pathLoads);
+
+    index.onInvalidation(Collections.singletonList("template"));
+    loader.remove("template");
+    index.onNodeEvent(NodeEvent.of(NodeEventType.DELETED, "report", CedarNodeType.INSTANCE));
+    Assert.assertEquals(Arrays.asList(false, false), check("bob", "template", "report"));
+    Assert.assertEquals(Arrays.asList("template", "report"), delegated);
+  }
+
+  @Test
+  public void loadedGrantsExpire() throws Exception {
+    check("bob", "template");
+    loader.add("template", "shared", Collections.singletonList("carol"), Collections.emptyList());
+    now.addAndGet(30000);
+    index.sweep();
+    Assert.assertEquals(Arrays.asList(true), check("bob", "template"));
+
+    now.addAndGet(30000);
+    index.sweep();
+    Assert.assertEquals(Arrays.asList(false), check("bob", "template"));
+    Assert.assertTrue(delegated.isEmpty());
+  }
+
+  @Test
+  public void onlyPathsChangedDuringALoadAreDropped() throws Exception {
+    loader.duringLoad = () -> {
+      index.onNodeEvent(NodeEvent.of(NodeEventType.PERMISSIONS_CHANGED, "shared", CedarNodeType.FOLDER));
+      loader.duringLoad = null;
+    };
+    Assert.assertEquals(Arrays.asList(true, true), check("bob", "template", "private"));
+    int pathLoads = loader.pathLoads;
+
+    // The path of private did not go through shared and was kept
+    Assert.assertEquals(Arrays.asList(true), check("bob", "private"));
+    Assert.assertEquals(pathLoads, loader.pathLoads);
+    Assert.assertEquals(Arrays.asList(true), check("bob", "template"));
+    Assert.assertEquals(pathLoads + 1, loader.pathLoads);
+    // The first check of template was answered by the graph
+    Assert.assertEquals(Collections.singletonList("template"), delegated);
+  }
+
+  @Test
+  public void withoutALoaderEveryCheckIsAnsweredByTheGraph() throws Exception {
+    index = new ReadAccessIndex(new ReadAccessConfig(), null, now::get, new MetricRegistry());
+    Assert.assertFalse(index.isEnabled());
+
+    Assert.assertEquals(Arrays.asList(true, false), check("bob", "template", "shared"));
+    Assert.assertEquals(Arrays.asList("template", "shared"), delegated);
+    Assert.assertEquals(0, loader.pathLoads);
+  }
+
+  private List<Boolean> check(String userId, String... nodeIds) throws Exception {
+    return new ArrayList<>(index.check(userId, Arrays.asList(nodeIds), nodeId -> {
+      delegated.add(nodeId);
+      return loader.canRead(userId, nodeId);
+    }).values());
+  }
+
+  private static class FakeAccessLoader implements ReadAccessIndex.AccessLoader {
+
+    final Map<String, String> parents = new HashMap<>();
+    final Map<String, ReadAccessIndex.Grants> grants = new HashMap<>();
+    final Map<String, List<String>> users = new HashMap<>();
+    final Map<String, List<String>> groups = new HashMap<>();
+    final List<List<String>> grantLoads = new ArrayList<>();
+    int pathLoads;
+    boolean failGroups;
+    Runnable duringLoad;
+
+    void add(String nodeId, String parentId, List<String> userIds, List<String> groupIds) {
+      parents.put(nodeId, parentId);
+      grants.put(nodeId, new ReadAccessIndex.Grants(userIds, groupIds));
+      users.put(nodeId, userIds);
+    }
+
+    void remove(String nodeId) {
+      parents.remove(nodeId);
+      grants.remove(nodeId);
+      users.remove(nodeId);
+    }
+
+    boolean canRead(String userId, String nodeId) {
+      for (String id = nodeId; id != null; id = parents.get(id)) {
+        if (users.containsKey(id) && users.get(id).contains(userId)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public Map<String, List<String>> loadPaths(Collection<String> nodeIds) {
+      pathLoads++;
+      Map<String, List<String>> paths = new LinkedHashMap<>();
+      for (String nodeId : nodeIds) {
+        if (parents.containsKey(nodeId)) {
+          List<String> path = new ArrayList<>();
+          for (String id = nodeId; id != null; id = parents.get(id)) {
+            path.add(0, id);
+          }
+          paths.put(nodeId, path);
+        }
+      }
+      if (duringLoad != null) {
+        duringLoad.run();
+      }
+      return paths;
+    }
+
+    @Override
+    public Map<String, ReadAccessIndex.Grants> loadGrants(Collection<String> nodeIds) {
+      grantLoads.add(new ArrayList<>(nodeIds));
+      Map<String, ReadAccessIndex.Grants> result = new HashMap<>();
+      for (String nodeId : nodeIds) {
+        result.put(nodeId, grants.get(nodeId));
+      }
+      return result;
+    }
+
+    @Override
+    public List<String> loadGroups(String userId) {
+      if (failGroups) {
+        throw new IllegalStateException("Graph unavailable");
+      }
+      return groups.getOrDefault(userId, Collections.emptyList());
+    }
+  }
+}
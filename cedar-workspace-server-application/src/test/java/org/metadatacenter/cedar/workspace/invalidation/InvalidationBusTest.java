@@ -0,0 +1,254 @@
+package org.metadatacenter.cedar.workspace.invalidation;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+import org.metadatacenter.cedar.workspace.event.NodeEvent;
+import org.metadatacenter.cedar.workspace.event.NodeEventType;
+import org.metadatacenter.model.CedarNodeType;
+import org.metadatacenter.util.json.JsonMapper;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class InvalidationBusTest {
+
+  @Test
+  public void deliversWritesToOtherInstancesOnly() throws Exception {
+    LoopbackInvalidationTransport transport = new LoopbackInvalidationTransport();
+    InvalidationBus first = new InvalidationBus("first", transport, 0, 16, 3, new MetricRegistry());
+    MetricRegistry secondMetrics = new MetricRegistry();
+    InvalidationBus second = new InvalidationBus("second", transport, 0, 16, 3, secondMetrics);
+    List<String> firstInvalidated = new ArrayList<>();
+    List<String> secondInvalidated = new ArrayList<>();
+    first.register(firstInvalidated::addAll);
+    second.register(secondInvalidated::addAll);
+    first.start();
+    second.start();
+
+    first.onNodeEvent(NodeEvent.of(NodeEventType.MOVED, "node", CedarNodeType.INSTANCE)
+        .parentId("to")
+        .previousParentId("from")
+        .isBasedOn("template"));
+
+    Assert.assertTrue(firstInvalidated.isEmpty());
+    Assert.assertEquals(Arrays.asList("node", "to", "from", "template"), secondInvalidated);
+    Assert.assertEquals(1, secondMetrics.getHistograms().get(MetricRegistry.name(InvalidationBus.class, "lag"))
+        .getCount());
+  }
+
+  @Test
+  public void ignoresItsOwnMessages() throws Exception {
+    LoopbackInvalidationTransport transport = new LoopbackInvalidationTransport();
+    MetricRegistry metrics = new MetricRegistry();
+    InvalidationBus bus = new InvalidationBus("only", transport, 0, 16, 3, metrics);
+    RecordingListener listener = new RecordingListener();
+    bus.register(listener);
+    bus.start();
+
+    bus.publish(Collections.singletonList("a"));
+    bus.heartbeat();
+    bus.publish(Collections.singletonList("b"));
+
+    Assert.assertTrue(listener.invalidated.isEmpty());
+    Assert.assertEquals(0, listener.resyncs);
+    Assert.assertEquals(2, metrics.counter(MetricRegistry.name(InvalidationBus.class, "sent")).getCount());
+    Assert.assertEquals(0, metrics.counter(MetricRegistry.name(InvalidationBus.class, "received")).getCount());
+  }
+
+  @Test
+  public void replaysAMessageThatWasLost() throws Exception {
+    DroppingTransport transport = new DroppingTransport();
+    InvalidationBus first = new InvalidationBus("first", transport, 0, 16, 3, new MetricRegistry());
+    MetricRegistry secondMetrics = new MetricRegistry();
+    InvalidationBus second = new InvalidationBus("second", transport, 0, 16, 3, secondMetrics);
+    RecordingListener listener = new RecordingListener();
+    second.register(listener);
+    first.start();
+    second.start();
+
+    first.publish(Collections.singletonList("a"));
+    first.heartbeat();
+
+    transport.drop(2, 1);
+    first.publish(Collections.singletonList("b"));
+    first.heartbeat();
+    Assert.assertEquals(Arrays.asList("a", "b"), listener.invalidated);
+
+    first.publish(Collections.singletonList("c"));
+    first.heartbeat();
+    Assert.assertEquals(Arrays.asList("a", "b", "c"), listener.invalidated);
+    Assert.assertEquals(0, listener.resyncs);
+    Assert.assertEquals(1, secondMetrics.counter(MetricRegistry.name(InvalidationBus.class, "gaps")).getCount());
+  }
+
+  @Test
+  public void deliversALateMessageOnce() throws Exception {
+    LoopbackInvalidationTransport transport = new LoopbackInvalidationTransport();
+    InvalidationBus second = new InvalidationBus("second", transport, 0, 16, 3, new MetricRegistry());
+    RecordingListener listener = new RecordingListener();
+    second.register(listener);
+    second.start();
+
+    second.receive(message(1, "a", 1));
+    second.receive(message(3, "c", 1));
+    second.receive(message(2, "b", 1));
+    second.receive(message(2, "b", 1));
+
+    Assert.assertEquals(Arrays.asList("a", "c", "b"), listener.invalidated);
+    Assert.assertEquals(0, listener.resyncs);
+  }
+
+  @Test
+  public void resyncsWhenALostMessageIsNoLongerKept() throws Exception {
+    DroppingTransport transport = new DroppingTransport();
+    InvalidationBus first = new InvalidationBus("first", transport, 0, 1, 3, new MetricRegistry());
+    InvalidationBus second = new InvalidationBus("second", transport, 0, 16, 3, new MetricRegistry());
+    RecordingListener listener = new RecordingListener();
+    second.register(listener);
+    first.start();
+    second.start();
+
+    first.publish(Collections.singletonList("a"));
+    transport.drop(2, 1);
+    first.publish(Collections.singletonList("b"));
+    first.publish(Collections.singletonList("c"));
+
+    Assert.assertEquals(Arrays.asList("a", "c"), listener.invalidated);
+    Assert.assertEquals(1, listener.resyncs);
+    first.heartbeat();
+    second.heartbeat();
+    Assert.assertEquals(1, listener.resyncs);
+  }
+
+  @Test
+  public void resyncsWhenTheReplayNeverArrives() throws Exception {
+    DroppingTransport transport = new DroppingTransport();
+    InvalidationBus first = new InvalidationBus("first", transport, 0, 16, 3, new MetricRegistry());
+    InvalidationBus second = new InvalidationBus("second", transport, 0, 16, 3, new MetricRegistry());
+    RecordingListener listener = new RecordingListener();
+    second.register(listener);
+    first.start();
+    second.start();
+
+    first.publish(Collections.singletonList("a"));
+    transport.drop(2, Integer.MAX_VALUE);
+    first.publish(Collections.singletonList("b"));
+    first.heartbeat();
+    for (int i = 0; i < 3; i++) {
+      second.heartbeat();
+    }
+    Assert.assertEquals(0, listener.resyncs);
+
+    second.heartbeat();
+    Assert.assertEquals(1, listener.resyncs);
+    second.heartbeat();
+    Assert.assertEquals(1, listener.resyncs);
+  }
+
+  @Test
+  public void skipsDatagramsThatAreNotSignedWithTheSharedSecret() throws Exception {
+    UdpInvalidationTransport transport = new UdpInvalidationTransport(0,
+        Collections.singletonList("127.0.0.1:9145"), "secret");
+    BlockingQueue<InvalidationMessage> received = new LinkedBlockingQueue<>();
+    transport.start(received::add);
+    List<String> peers = Collections.singletonList("127.0.0.1:" + transport.getLocalPort());
+    UdpInvalidationTransport forger = new UdpInvalidationTransport(0, peers, "guess");
+    UdpInvalidationTransport peer = new UdpInvalidationTransport(0, peers, "secret");
+    forger.start(message -> {
+    });
+    peer.start(message -> {
+    });
+    try (DatagramSocket sender = new DatagramSocket()) {
+      byte[] garbage = "not json".getBytes(StandardCharsets.UTF_8);
+      sender.send(new DatagramPacket(garbage, garbage.length, InetAddress.getByName("127.0.0.1"),
+          transport.getLocalPort()));
+      byte[] unsigned = JsonMapper.MAPPER.writeValueAsBytes(message(1, "unsigned", 1));
+      sender.send(new DatagramPacket(unsigned, unsigned.length, InetAddress.getByName("127.0.0.1"),
+          transport.getLocalPort()));
+      forger.send(message(1, "forged", 1));
+      peer.send(message(1, "a", 1));
+
+      InvalidationMessage first = received.poll(5, TimeUnit.SECONDS);
+      Assert.assertNotNull(first);
+      Assert.assertEquals(Collections.singletonList("a"), first.getNodeIds());
+      Assert.assertTrue(received.isEmpty());
+    } finally {
+      peer.stop();
+      forger.stop();
+      transport.stop();
+    }
+  }
+
+  @Test
+  public void skipsDatagramsFromOtherHostsThanThePeers() throws Exception {
+    UdpInvalidationTransport transport = new UdpInvalidationTransport(0,
+        Collections.singletonList("192.0.2.1:9145"), "secret");
+    BlockingQueue<InvalidationMessage> received = new LinkedBlockingQueue<>();
+    transport.start(received::add);
+    UdpInvalidationTransport stranger = new UdpInvalidationTransport(0,
+        Collections.singletonList("127.0.0.1:" + transport.getLocalPort()), "secret");
+    stranger.start(message -> {
+    });
+    try {
+      stranger.send(message(1, "a", 1));
+
+      Assert.assertNull(received.poll(500, TimeUnit.MILLISECONDS));
+    } finally {
+      stranger.stop();
+      transport.stop();
+    }
+  }
+
+  private static InvalidationMessage message(long sequence, String nodeId, long replayableFrom) {
+    return new InvalidationMessage("other", 1L, sequence, Collections.singletonList(nodeId), 1L, null,
+        replayableFrom, null);
+  }
+
+  private static class DroppingTransport extends LoopbackInvalidationTransport {
+
+    private long droppedSequence;
+    private int drops;
+
+    // Drops the next times the message with this number is sent, replays included
+    void drop(long sequence, int times) {
+      droppedSequence = sequence;
+      drops = times;
+    }
+
+    @Override
+    public void send(InvalidationMessage message) {
+      if (drops > 0 && !message.isHeartbeat() && message.getSequence() == droppedSequence) {
+        drops--;
+        return;
+      }
+      super.send(message);
+    }
+  }
+
+  private static class RecordingListener implements InvalidationListener {
+
+    private final List<String> invalidated = new ArrayList<>();
+    private int resyncs;
+
+    @Override
+    public void onInvalidation(Collection<String> nodeIds) {
+      invalidated.addAll(nodeIds);
+    }
+
+    @Override
+    public void onResync() {
+      resyncs++;
+    }
+  }
+}
@@ -0,0 +1,235 @@
+package org.metadatacenter.cedar.workspace.permissions;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.metadatacenter.cedar.workspace.config.PermissionJobsConfig;
+import org.metadatacenter.util.json.JsonMapper;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PermissionJobsTest {
+
+  private final FakeJobStore store = new FakeJobStore();
+  private final AtomicLong now = new AtomicLong(1000000);
+  private PermissionJobsConfig config;
+  private PermissionJobs jobs;
+
+  @Before
+  public void setUp() throws Exception {
+    config = JsonMapper.MAPPER.readValue("{\"maxRunningJobs\":1,\"maxQueuedJobs\":1,\"retention\":\"1 hour\"," +
+        "\"staleAfter\":\"1 minute\"}", PermissionJobsConfig.class);
+    jobs = new PermissionJobs(config, store, now::get);
+    jobs.start();
+  }
+
+  @After
+  public void tearDown() {
+    jobs.stop();
+  }
+
+  @Test
+  public void progressIsReportedUntilTheJobCompletes() throws InterruptedException {
+    CountDownLatch batchDone = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    PermissionJob job = jobs.submit("folder", "user", j -> {
+      j.batchDone(3, 2, 1);
+      batchDone.countDown();
+      release.await();
+    });
+    Assert.assertTrue(batchDone.await(5, TimeUnit.SECONDS));
+    Assert.assertSame(job, jobs.get(job.getId()));
+    Assert.assertEquals(PermissionJob.State.RUNNING, job.getState());
+    Assert.assertEquals(3, job.getUpdated());
+    Assert.assertEquals(2, job.getSkipped());
+    Assert.assertEquals(1, job.getFailed());
+
+    release.countDown();
+    awaitFinished(job);
+    Assert.assertEquals(PermissionJob.State.COMPLETED, job.getState());
+    Assert.assertEquals(1, job.getBatches());
+  }
+
+  @Test
+  public void failuresEndTheJob() throws InterruptedException {
+    PermissionJob job = jobs.submit("folder", "user", j -> {
+      throw new IllegalStateException("backend gone");
+    });
+    awaitFinished(job);
+    Assert.assertEquals(PermissionJob.State.FAILED, job.getState());
+    Assert.assertEquals("backend gone", job.getErrorMessage());
+  }
+
+  @Test
+  public void jobsBeyondTheQueueAreRejected() throws InterruptedException {
+    CountDownLatch release = new CountDownLatch(1);
+    PermissionJob running = jobs.submit("folder", "user", j -> release.await());
+    PermissionJob queued = jobs.submit("folder", "user", j -> {
+    });
+    Assert.assertNotNull(running);
+    Assert.assertNotNull(queued);
+    Assert.assertNull(jobs.submit("folder", "user", j -> {
+    }));
+    release.countDown();
+    awaitFinished(queued);
+  }
+
+  @Test
+  public void reservedPlacesAreHeldUntilUsedOrCancelled() throws InterruptedException {
+    PermissionJobs.Reservation first = jobs.reserve();
+    PermissionJobs.Reservation second = jobs.reserve();
+    Assert.assertNotNull(first);
+    Assert.assertNotNull(second);
+    Assert.assertNull(jobs.reserve());
+    Assert.assertNull(jobs.submit("folder", "user", j -> {
+    }));
+
+    second.cancel();
+    second.cancel();
+    PermissionJobs.Reservation third = jobs.reserve();
+    Assert.assertNotNull(third);
+    Assert.assertNull(jobs.reserve());
+
+    PermissionJob job = jobs.submit(first, "folder", "user", j -> {
+    });
+    // A used reservation is not given back by cancel, only when its job finishes
+    first.cancel();
+    awaitFinished(job);
+    Assert.assertNotNull(awaitReservation());
+    Assert.assertNull(jobs.reserve());
+    third.cancel();
+  }
+
+  @Test
+  public void otherServersReportTheJobFromTheStore() throws Exception {
+    CountDownLatch batchDone = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    PermissionJob job = jobs.submit("folder", "user", j -> {
+      j.batchDone(5, 0, 1);
+      batchDone.countDown();
+      release.await();
+    });
+    PermissionJobs otherServer = new PermissionJobs(config, store, now::get);
+    otherServer.start();
+    try {
+      awaitState(otherServer, job.getId(), PermissionJob.State.RUNNING);
+      Assert.assertTrue(batchDone.await(5, TimeUnit.SECONDS));
+      jobs.saveRunning();
+      Assert.assertEquals(5, otherServer.get(job.getId()).getUpdated());
+
+      release.countDown();
+      awaitFinished(job);
+      PermissionJob stored = awaitState(otherServer, job.getId(), PermissionJob.State.COMPLETED);
+      Assert.assertEquals("folder", stored.getFolderId());
+      Assert.assertEquals("user", stored.getUserId());
+      Assert.assertEquals(1, stored.getFailed());
+      Assert.assertNull(otherServer.get("unknown"));
+    } finally {
+      otherServer.stop();
+    }
+  }
+
+  @Test
+  public void jobsThatLostTheirServerAreReportedAsFailed() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    PermissionJob job = jobs.submit("folder", "user", j -> release.await());
+    PermissionJobs restarted = new PermissionJobs(config, store, now::get);
+    restarted.start();
+    try {
+      awaitState(restarted, job.getId(), PermissionJob.State.RUNNING);
+      now.addAndGet(30000);
+      Assert.assertEquals(PermissionJob.State.RUNNING, restarted.get(job.getId()).getState());
+
+      // No save for longer than staleAfter
+      now.addAndGet(40000);
+      PermissionJob stale = restarted.get(job.getId());
+      Assert.assertEquals(PermissionJob.State.FAILED, stale.getState());
+      Assert.assertNotNull(stale.getErrorMessage());
+    } finally {
+      release.countDown();
+      restarted.stop();
+    }
+  }
+
+  @Test
+  public void expiredJobsAreDeletedFromTheStore() throws Exception {
+    PermissionJob job = jobs.submit("folder", "user", j -> {
+    });
+    awaitFinished(job);
+    awaitState(jobs, job.getId(), PermissionJob.State.COMPLETED);
+    jobs.saveRunning();
+    Assert.assertEquals(1, store.size());
+
+    now.addAndGet(TimeUnit.HOURS.toMillis(2));
+    jobs.saveRunning();
+    Assert.assertEquals(0, store.size());
+    Assert.assertNull(jobs.get(job.getId()));
+  }
+
+  private PermissionJob awaitState(PermissionJobs server, String jobId, PermissionJob.State state)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (System.currentTimeMillis() < deadline) {
+      PermissionJob job = server.get(jobId);
+      if (job != null && job.getState() == state && store.isSaved(jobId, state)) {
+        return job;
+      }
+      Thread.sleep(10);
+    }
+    Assert.fail("Job " + jobId + " did not reach " + state);
+    return null;
+  }
+
+  private static void awaitFinished(PermissionJob job) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!job.isFinished() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertTrue(job.isFinished());
+  }
+
+  private PermissionJobs.Reservation awaitReservation() throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    PermissionJobs.Reservation reservation = jobs.reserve();
+    while (reservation == null && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+      reservation = jobs.reserve();
+    }
+    return reservation;
+  }
+
+  private static class FakeJobStore implements PermissionJobs.JobStore {
+
+    private final Map<String, Map<String, Object>> jobs = new HashMap<>();
+
+    @Override
+    public synchronized void save(PermissionJob job) {
+      jobs.put(job.getId(), job.toProperties());
+    }
+
+    @Override
+    public synchronized PermissionJob load(String jobId) {
+      Map<String, Object> properties = jobs.get(jobId);
+      return properties != null ? PermissionJob.fromProperties(properties) : null;
+    }
+
+    @Override
+    public synchronized void deleteSavedBefore(long time) {
+      jobs.values().removeIf(properties -> (Long) properties.get("savedOn") < time);
+    }
+
+    synchronized boolean isSaved(String jobId, PermissionJob.State state) {
+      Map<String, Object> properties = jobs.get(jobId);
+      return properties != null && state.name().equals(properties.get("state"));
+    }
+
+    synchronized int size() {
+      return jobs.size();
+    }
+  }
+}
@@ -0,0 +1,227 @@
+package org.metadatacenter.cedar.workspace.permissions;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.metadatacenter.cedar.workspace.event.NodeEvent;
+import org.metadatacenter.cedar.workspace.event.NodeEventBus;
+import org.metadatacenter.cedar.workspace.event.NodeEventType;
+import org.metadatacenter.exception.CedarProcessingException;
+import org.metadatacenter.model.BiboStatus;
+import org.metadatacenter.model.CedarNodeType;
+import org.metadatacenter.model.FolderOrResource;
+import org.metadatacenter.model.ResourceVersion;
+import org.metadatacenter.model.WorkspaceObjectBuilder;
+import org.metadatacenter.model.folderserver.basic.FolderServerFolder;
+import org.metadatacenter.model.folderserver.basic.FolderServerNode;
+import org.metadatacenter.model.folderserver.extract.FolderServerNodeExtract;
+import org.metadatacenter.server.security.model.auth.CedarNodePermissionsRequest;
+import org.metadatacenter.server.security.model.auth.NodePermission;
+import org.metadatacenter.server.security.model.auth.NodePermissionUser;
+import org.metadatacenter.server.security.model.auth.NodePermissionUserPermissionPair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class PermissionPropagationTest {
+
+  private final FakeBackend backend = new FakeBackend();
+  private final List<NodeEvent> events = new ArrayList<>();
+  private PermissionPropagation propagation;
+
+  @Before
+  public void setUp() {
+    // root > project > t1..t5, root > home > h1, root > t0, root > broken
+    backend.add("root", folder("project"));
+    for (int i = 1; i <= 5; i++) {
+      backend.add("project", template("t" + i));
+    }
+    backend.add("root", folder("home"));
+    backend.add("home", template("h1"));
+    backend.add("root", template("t0"));
+    backend.add("root", template("broken"));
+    backend.homes.add("home");
+    backend.failedUpdates.add("t0");
+    backend.brokenNodes.add("broken");
+    // t5 already has the change
+    backend.permissions.put("t5", permissions("owner-t5", "bob", NodePermission.READ, "dave", NodePermission.READ));
+
+    NodeEventBus nodeEventBus = new NodeEventBus();
+    nodeEventBus.register(events::add);
+    propagation = new PermissionPropagation(null, null, null, nodeEventBus);
+  }
+
+  @Test
+  public void onlyTheDeltaIsApplied() {
+    propagate(2);
+
+    CedarNodePermissionsRequest t1 = backend.permissions.get("t1");
+    Assert.assertEquals("owner-t1", t1.getOwner().getId());
+    Assert.assertEquals(ids("bob", "dave"), users(t1));
+    Assert.assertEquals(NodePermission.READ, permissionOf(t1, "bob"));
+    Assert.assertEquals(NodePermission.READ, permissionOf(t1, "dave"));
+    Assert.assertEquals("owner-project", backend.permissions.get("project").getOwner().getId());
+  }
+
+  @Test
+  public void theSubtreeIsWalkedPageByPage() {
+    PermissionJob job = propagate(2);
+
+    // root has 4 children, project 5, and the home folder is not listed
+    Assert.assertEquals(Arrays.asList("root@0", "root@2", "root@4", "project@0", "project@2", "project@4"),
+        backend.listings);
+    Assert.assertEquals(6, job.getBatches());
+    Assert.assertFalse(backend.updated.contains("h1"));
+    Assert.assertFalse(backend.updated.contains("home"));
+    // home and t5 are skipped, t0 is refused and broken throws
+    Assert.assertEquals(5, job.getUpdated());
+    Assert.assertEquals(2, job.getSkipped());
+    Assert.assertEquals(2, job.getFailed());
+  }
+
+  @Test
+  public void nodesThatCanNotBeChangedAreCountedAndTheJobGoesOn() {
+    backend.brokenListings.add("project");
+    PermissionJob job = propagate(10);
+
+    // project is updated and home is skipped, t0 is refused, broken throws and the contents of project are lost
+    Assert.assertEquals(1, job.getUpdated());
+    Assert.assertEquals(1, job.getSkipped());
+    Assert.assertEquals(3, job.getFailed());
+  }
+
+  @Test
+  public void updatedNodesArePublished() {
+    propagate(10);
+
+    Map<String, String> parents = new HashMap<>();
+    for (NodeEvent event : events) {
+      Assert.assertEquals(NodeEventType.PERMISSIONS_CHANGED, event.getType());
+      Assert.assertEquals("alice", event.getUserId());
+      parents.put(event.getId(), event.getKnownParentId());
+    }
+    Assert.assertEquals(ids("project", "t1", "t2", "t3", "t4"), parents.keySet());
+    Assert.assertEquals("root", parents.get("project"));
+    Assert.assertEquals("project", parents.get("t1"));
+  }
+
+  private PermissionJob propagate(int limit) {
+    CedarNodePermissionsRequest before = permissions("alice", "carol", NodePermission.WRITE, "dave",
+        NodePermission.READ);
+    CedarNodePermissionsRequest after = permissions("alice", "bob", NodePermission.READ, "dave",
+        NodePermission.READ);
+    PermissionJob job = new PermissionJob("job", "root", "alice", 0);
+    propagation.propagate(backend, limit, "alice", "root", PermissionDelta.between(before, after), job);
+    return job;
+  }
+
+  private static Set<String> ids(String... ids) {
+    return new HashSet<>(Arrays.asList(ids));
+  }
+
+  private static Set<String> users(CedarNodePermissionsRequest permissions) {
+    return permissions.getUserPermissions().stream().map(pair -> pair.getUser().getId()).collect(Collectors.toSet());
+  }
+
+  private static NodePermission permissionOf(CedarNodePermissionsRequest permissions, String userId) {
+    return permissions.getUserPermissions().stream().filter(pair -> pair.getUser().getId().equals(userId))
+        .findFirst().get().getPermission();
+  }
+
+  private static CedarNodePermissionsRequest permissions(String ownerId, Object... userPermissions) {
+    CedarNodePermissionsRequest permissions = new CedarNodePermissionsRequest();
+    permissions.setOwner(user(ownerId));
+    List<NodePermissionUserPermissionPair> pairs = new ArrayList<>();
+    for (int i = 0; i < userPermissions.length; i += 2) {
+      NodePermissionUserPermissionPair pair = new NodePermissionUserPermissionPair();
+      pair.setUser(user((String) userPermissions[i]));
+      pair.setPermission((NodePermission) userPermissions[i + 1]);
+      pairs.add(pair);
+    }
+    permissions.setUserPermissions(pairs);
+    permissions.setGroupPermissions(new ArrayList<>());
+    return permissions;
+  }
+
+  private static NodePermissionUser user(String id) {
+    NodePermissionUser user = new NodePermissionUser();
+    user.setId(id);
+    return user;
+  }
+
+  private static FolderServerFolder folder(String id) {
+    FolderServerFolder folder = new FolderServerFolder();
+    folder.setId(id);
+    folder.setName(id);
+    folder.setDescription("");
+    return folder;
+  }
+
+  private static FolderServerNode template(String id) {
+    return WorkspaceObjectBuilder.forNodeType(CedarNodeType.TEMPLATE, id, id, "", null,
+        ResourceVersion.forValue("0.0.1"), BiboStatus.DRAFT);
+  }
+
+  private static class FakeBackend implements PermissionPropagation.Backend {
+
+    final Map<String, List<FolderServerNodeExtract>> contents = new LinkedHashMap<>();
+    final Map<String, CedarNodePermissionsRequest> permissions = new HashMap<>();
+    final Set<String> homes = new HashSet<>();
+    final Set<String> failedUpdates = new HashSet<>();
+    final Set<String> brokenNodes = new HashSet<>();
+    final Set<String> brokenListings = new HashSet<>();
+    final List<String> listings = new ArrayList<>();
+    final List<String> updated = new ArrayList<>();
+
+    void add(String parentId, FolderServerNode node) {
+      contents.computeIfAbsent(parentId, id -> new ArrayList<>()).add(FolderServerNodeExtract.fromNode(node));
+      // Every node starts with the grants the folder had before the change
+      permissions.put(node.getId(), PermissionPropagationTest.permissions("owner-" + node.getId(), "carol",
+          NodePermission.WRITE, "dave", NodePermission.READ));
+    }
+
+    @Override
+    public List<FolderServerNodeExtract> findFolderContents(String folderId, int limit, int offset)
+        throws CedarProcessingException {
+      if (brokenListings.contains(folderId)) {
+        throw new CedarProcessingException("Backend unavailable");
+      }
+      listings.add(folderId + "@" + offset);
+      List<FolderServerNodeExtract> children = contents.getOrDefault(folderId, Collections.emptyList());
+      return new ArrayList<>(children.subList(Math.min(offset, children.size()),
+          Math.min(offset + limit, children.size())));
+    }
+
+    @Override
+    public boolean isUserHome(String folderId) {
+      return homes.contains(folderId);
+    }
+
+    @Override
+    public CedarNodePermissionsRequest getNodePermissions(String nodeId) throws CedarProcessingException {
+      if (brokenNodes.contains(nodeId)) {
+        throw new CedarProcessingException("Backend unavailable");
+      }
+      return permissions.get(nodeId);
+    }
+
+    @Override
+    public boolean updateNodePermissions(String nodeId, CedarNodePermissionsRequest nodePermissions,
+                                         FolderOrResource type) {
+      if (failedUpdates.contains(nodeId)) {
+        return false;
+      }
+      updated.add(nodeId);
+      permissions.put(nodeId, nodePermissions);
+      return true;
+    }
+  }
+}
@@ -0,0 +1,192 @@
+package org.metadatacenter.cedar.workspace.push;
+
+import org.glassfish.jersey.media.sse.OutboundEvent;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.metadatacenter.cedar.workspace.config.FolderEventsConfig;
+import org.metadatacenter.cedar.workspace.event.NodeEvent;
+import org.metadatacenter.cedar.workspace.event.NodeEventType;
+import org.metadatacenter.cedar.workspace.invalidation.RemoteChange;
+import org.metadatacenter.model.CedarNodeType;
+import org.metadatacenter.util.json.JsonMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+public class FolderEventBroadcasterTest {
+
+  private FolderEventBroadcaster broadcaster;
+
+  @After
+  public void tearDown() {
+    broadcaster.stop();
+  }
+
+  @Test
+  public void eventsGoToTheSubscribersOfTheirFolders() throws Exception {
+    broadcaster = start(2, (id, nodeType) -> null);
+    RecordingSink first = new RecordingSink();
+    RecordingSink second = new RecordingSink();
+    RecordingSink other = new RecordingSink();
+    broadcaster.subscribe("f", Collections.emptySet(), first);
+    broadcaster.subscribe("f", Collections.emptySet(), second);
+    broadcaster.subscribe("g", Collections.emptySet(), other);
+
+    broadcaster.onNodeEvent(NodeEvent.of(NodeEventType.CREATED, "r", CedarNodeType.INSTANCE).parentId("f"));
+    broadcaster.onNodeEvent(NodeEvent.of(NodeEventType.PUBLISHED, "r", CedarNodeType.INSTANCE).parentId("f"));
+
+    await(() -> first.names().size() == 1 && second.names().size() == 1);
+    Assert.assertEquals(Collections.singletonList("created"), first.names());
+    Assert.assertEquals(Collections.singletonList("created"), second.names());
+    Assert.assertTrue(other.names().isEmpty());
+  }
+
+  @Test
+  public void slowSubscribersGetAResyncWhenTheirQueueOverflows() throws Exception {
+    broadcaster = start(2, (id, nodeType) -> null);
+    CountDownLatch writing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    RecordingSink sink = new RecordingSink() {
+      @Override
+      public void write(OutboundEvent event) throws IOException {
+        writing.countDown();
+        try {
+          release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+        super.write(event);
+      }
+    };
+    broadcaster.subscribe("f", Collections.emptySet(), sink);
+
+    broadcaster.onNodeEvent(NodeEvent.of(NodeEventType.CREATED, "a", CedarNodeType.INSTANCE).parentId("f"));
+    Assert.assertTrue(writing.await(5, TimeUnit.SECONDS));
+    for (String id : Arrays.asList("b", "c", "d", "e")) {
+      broadcaster.onNodeEvent(NodeEvent.of(NodeEventType.CREATED, id, CedarNodeType.INSTANCE).parentId("f"));
+    }
+    release.countDown();
+    await(() -> sink.names().size() == 2);
+    Assert.assertEquals(Arrays.asList("created", "resync"), sink.names());
+
+    broadcaster.onNodeEvent(NodeEvent.of(NodeEventType.CREATED, "f", CedarNodeType.INSTANCE).parentId("f"));
+    await(() -> sink.names().size() == 3);
+    Assert.assertEquals(Arrays.asList("created", "resync", "created"), sink.names());
+  }
+
+  @Test
+  public void closedStreamsAreUnsubscribed() throws Exception {
+    broadcaster = start(2, (id, nodeType) -> null);
+    RecordingSink failing = new RecordingSink() {
+      @Override
+      public void write(OutboundEvent event) throws IOException {
+        throw new IOException("gone");
+      }
+    };
+    broadcaster.subscribe("f", Collections.emptySet(), failing);
+    broadcaster.subscribe("f", Collections.emptySet(), new RecordingSink());
+    Assert.assertEquals(2, broadcaster.getSubscriberCount());
+
+    broadcaster.onNodeEvent(NodeEvent.of(NodeEventType.DELETED, "a", CedarNodeType.INSTANCE).parentId("f"));
+
+    await(() -> broadcaster.getSubscriberCount() == 1);
+    Assert.assertTrue(failing.isClosed());
+  }
+
+  @Test
+  public void remoteChangesArePushedWithTheirParentLookedUp() throws Exception {
+    List<String> lookups = Collections.synchronizedList(new ArrayList<>());
+    broadcaster = start(2, (id, nodeType) -> {
+      lookups.add(id);
+      return "f";
+    });
+    RecordingSink sink = new RecordingSink();
+    broadcaster.subscribe("f", Collections.emptySet(), sink);
+
+    broadcaster.onRemoteChange("other", new RemoteChange(NodeEventType.CREATED.getValue(), "a",
+        CedarNodeType.INSTANCE.getValue(), "f", null, null, 1L, 1L));
+    broadcaster.onRemoteChange("other", new RemoteChange(NodeEventType.UPDATED.getValue(), "b",
+        CedarNodeType.INSTANCE.getValue(), null, null, null, 2L, 2L));
+
+    await(() -> sink.names().size() == 2);
+    Assert.assertEquals(Arrays.asList("created", "updated"), sink.names());
+    Assert.assertEquals(Collections.singletonList("b"), lookups);
+  }
+
+  @Test
+  public void permissionChangesCloseTheStreamsOfTheFolderAndTheFoldersBelow() throws Exception {
+    broadcaster = start(2, (id, nodeType) -> null);
+    RecordingSink folder = new RecordingSink();
+    RecordingSink below = new RecordingSink();
+    RecordingSink other = new RecordingSink();
+    broadcaster.subscribe("f", Collections.singleton("root"), folder);
+    broadcaster.subscribe("g", Arrays.asList("root", "f"), below);
+    broadcaster.subscribe("h", Collections.singleton("root"), other);
+
+    broadcaster.onNodeEvent(NodeEvent.of(NodeEventType.PERMISSIONS_CHANGED, "f", CedarNodeType.FOLDER));
+
+    Assert.assertTrue(folder.isClosed());
+    Assert.assertTrue(below.isClosed());
+    Assert.assertFalse(other.isClosed());
+    Assert.assertEquals(1, broadcaster.getSubscriberCount());
+
+    broadcaster.onRemoteChange("other", new RemoteChange(NodeEventType.PERMISSIONS_CHANGED.getValue(), "root",
+        CedarNodeType.FOLDER.getValue(), null, null, null, 3L, 3L));
+    Assert.assertTrue(other.isClosed());
+    Assert.assertEquals(0, broadcaster.getSubscriberCount());
+  }
+
+  private static FolderEventBroadcaster start(int maxQueuedEvents, FolderEventBroadcaster.ParentLookup lookup)
+      throws IOException {
+    FolderEventsConfig config = JsonMapper.MAPPER.readValue("{\"maxQueuedEventsPerSubscriber\": " +
+        maxQueuedEvents + "}", FolderEventsConfig.class);
+    FolderEventBroadcaster broadcaster = new FolderEventBroadcaster(config, lookup);
+    broadcaster.start();
+    return broadcaster;
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (System.currentTimeMillis() < deadline) {
+      if (condition.getAsBoolean()) {
+        return;
+      }
+      Thread.sleep(10);
+    }
+    Assert.fail("The events were not delivered");
+  }
+
+  private static class RecordingSink implements FolderEventSubscriber.Sink {
+
+    private final List<String> names = Collections.synchronizedList(new ArrayList<>());
+    private volatile boolean closed;
+
+    @Override
+    public void write(OutboundEvent event) throws IOException {
+      names.add(event.getName());
+    }
+
+    @Override
+    public boolean isClosed() {
+      return closed;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+
+    List<String> names() {
+      synchronized (names) {
+        return new ArrayList<>(names);
+      }
+    }
+  }
+}
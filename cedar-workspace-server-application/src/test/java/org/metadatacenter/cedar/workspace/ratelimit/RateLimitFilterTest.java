@@ -0,0 +1,125 @@
+package org.metadatacenter.cedar.workspace.ratelimit;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.metadatacenter.cedar.workspace.config.RateLimitConfig;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class RateLimitFilterTest {
+
+  private RateLimiter rateLimiter;
+
+  @Before
+  public void setUp() {
+    // 20 permits per second, burst of 40, 8 in flight, for every request: POST without a resource method is a write
+    RateLimitConfig config = new RateLimitConfig();
+    config.getEndpoints().put(EndpointClass.WRITE.getValue(), new RateLimitConfig.EndpointLimitConfig());
+    rateLimiter = new RateLimiter(config, new MetricRegistry());
+  }
+
+  @Test
+  public void apiKeyRequestsAreNotLimited() {
+    RateLimitFilter filter = new RateLimitFilter(rateLimiter, true);
+    for (int i = 0; i < 100; i++) {
+      FakeRequest request = new FakeRequest("apiKey 1234");
+      filter.filter(request.context);
+      Assert.assertNull(request.aborted.get());
+    }
+    Assert.assertEquals(0, rateLimiter.getTrackedUsers());
+
+    FakeRequest limited = new FakeRequest("apiKey 1234");
+    new RateLimitFilter(rateLimiter, false).filter(limited.context);
+    Assert.assertEquals(1, rateLimiter.getTrackedUsers());
+  }
+
+  @Test
+  public void permitsAreHeldUntilTheBodyIsWritten() throws Exception {
+    RateLimitFilter filter = new RateLimitFilter(rateLimiter, true);
+    FakeRequest streaming = null;
+    for (int i = 0; i < 8; i++) {
+      streaming = new FakeRequest("Bearer token");
+      filter.filter(streaming.context);
+      filter.filter(streaming.context, response(true));
+    }
+    FakeRequest rejected = new FakeRequest("Bearer token");
+    filter.filter(rejected.context);
+    Assert.assertEquals(429, rejected.aborted.get().getStatus());
+
+    filter.aroundWriteTo(streaming.writerContext());
+    FakeRequest admitted = new FakeRequest("Bearer token");
+    filter.filter(admitted.context);
+    Assert.assertNull(admitted.aborted.get());
+  }
+
+  @Test
+  public void permitsOfResponsesWithoutABodyAreReleasedByTheResponseFilter() {
+    RateLimitFilter filter = new RateLimitFilter(rateLimiter, true);
+    for (int i = 0; i < 20; i++) {
+      FakeRequest request = new FakeRequest("Bearer token");
+      filter.filter(request.context);
+      Assert.assertNull(request.aborted.get());
+      filter.filter(request.context, response(false));
+    }
+  }
+
+  private static ContainerResponseContext response(boolean hasEntity) {
+    return (ContainerResponseContext) Proxy.newProxyInstance(ContainerResponseContext.class.getClassLoader(),
+        new Class<?>[]{ContainerResponseContext.class}, (proxy, method, args) ->
+            "hasEntity".equals(method.getName()) ? hasEntity : null);
+  }
+
+  private static class FakeRequest {
+
+    final Map<String, Object> properties = new HashMap<>();
+    final AtomicReference<Response> aborted = new AtomicReference<>();
+    final ContainerRequestContext context;
+
+    FakeRequest(String authorization) {
+      context = (ContainerRequestContext) Proxy.newProxyInstance(ContainerRequestContext.class.getClassLoader(),
+          new Class<?>[]{ContainerRequestContext.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+              case "getMethod":
+                return "POST";
+              case "getHeaderString":
+                return HttpHeaders.AUTHORIZATION.equals(args[0]) ? authorization : null;
+              case "abortWith":
+                aborted.set((Response) args[0]);
+                return null;
+              default:
+                return properties(method.getName(), args);
+            }
+          });
+    }
+
+    WriterInterceptorContext writerContext() {
+      return (WriterInterceptorContext) Proxy.newProxyInstance(WriterInterceptorContext.class.getClassLoader(),
+          new Class<?>[]{WriterInterceptorContext.class}, (proxy, method, args) -> properties(method.getName(), args));
+    }
+
+    private Object properties(String methodName, Object[] args) {
+      switch (methodName) {
+        case "getProperty":
+          return properties.get(args[0]);
+        case "setProperty":
+          properties.put((String) args[0], args[1]);
+          return null;
+        case "removeProperty":
+          properties.remove(args[0]);
+          return null;
+        default:
+          return null;
+      }
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package org.metadatacenter.cedar.workspace.ratelimit;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.metadatacenter.cedar.workspace.config.RateLimitConfig;
+import org.metadatacenter.util.json.JsonMapper;
+
+public class RateLimiterTest {
+
+  private static final long SECOND = 1_000_000_000L;
+
+  private RateLimiter rateLimiter;
+
+  @Before
+  public void setUp() {
+    // 20 permits per second, burst of 40, 8 in flight
+    RateLimitConfig config = new RateLimitConfig();
+    config.getEndpoints().put(EndpointClass.SEARCH.getValue(), new RateLimitConfig.EndpointLimitConfig());
+    rateLimiter = new RateLimiter(config, new MetricRegistry());
+  }
+
+  @Test
+  public void unconfiguredEndpointClassesAreNotLimited() {
+    Assert.assertNull(rateLimiter.acquire("user", EndpointClass.READ, 0));
+  }
+
+  @Test
+  public void rejectsOverBurstUntilRefilled() {
+    for (int i = 0; i < 40; i++) {
+      RateLimiter.Admission admission = rateLimiter.acquire("user", EndpointClass.SEARCH, 0);
+      Assert.assertTrue(admission.isAdmitted());
+      rateLimiter.release(admission);
+    }
+    RateLimiter.Admission rejected = rateLimiter.acquire("user", EndpointClass.SEARCH, 0);
+    Assert.assertFalse(rejected.isAdmitted());
+    Assert.assertEquals(1, rejected.getRetryAfterSeconds());
+
+    Assert.assertTrue(rateLimiter.acquire("other-user", EndpointClass.SEARCH, 0).isAdmitted());
+    Assert.assertTrue(rateLimiter.acquire("user", EndpointClass.SEARCH, SECOND / 10).isAdmitted());
+  }
+
+  @Test
+  public void limitsRequestsInFlight() {
+    RateLimiter.Admission first = null;
+    for (int i = 0; i < 8; i++) {
+      RateLimiter.Admission admission = rateLimiter.acquire("user", EndpointClass.SEARCH, 0);
+      Assert.assertTrue(admission.isAdmitted());
+      if (first == null) {
+        first = admission;
+      }
+    }
+    Assert.assertFalse(rateLimiter.acquire("user", EndpointClass.SEARCH, 0).isAdmitted());
+    rateLimiter.release(first);
+    Assert.assertTrue(rateLimiter.acquire("user", EndpointClass.SEARCH, 0).isAdmitted());
+  }
+
+  @Test
+  public void forgetsTheLeastRecentlySeenUsers() throws Exception {
+    RateLimitConfig config = JsonMapper.MAPPER.readValue("{\"maxTrackedUsers\": 2}", RateLimitConfig.class);
+    config.getEndpoints().put(EndpointClass.SEARCH.getValue(), new RateLimitConfig.EndpointLimitConfig());
+    RateLimiter limiter = new RateLimiter(config, new MetricRegistry());
+    for (int i = 0; i < 40; i++) {
+      limiter.release(limiter.acquire("busy", EndpointClass.SEARCH, 0));
+    }
+    limiter.release(limiter.acquire("idle", EndpointClass.SEARCH, 0));
+    Assert.assertFalse(limiter.acquire("busy", EndpointClass.SEARCH, 0).isAdmitted());
+
+    limiter.acquire("new", EndpointClass.SEARCH, 0);
+
+    Assert.assertEquals(2, limiter.getTrackedUsers());
+    Assert.assertFalse(limiter.acquire("busy", EndpointClass.SEARCH, 0).isAdmitted());
+  }
+
+  @Test
+  public void usersWithRequestsInFlightAreNotForgotten() throws Exception {
+    RateLimitConfig config = JsonMapper.MAPPER.readValue("{\"maxTrackedUsers\": 2}", RateLimitConfig.class);
+    config.getEndpoints().put(EndpointClass.SEARCH.getValue(), new RateLimitConfig.EndpointLimitConfig());
+    RateLimiter limiter = new RateLimiter(config, new MetricRegistry());
+    for (int i = 0; i < 8; i++) {
+      Assert.assertTrue(limiter.acquire("streaming", EndpointClass.SEARCH, 0).isAdmitted());
+    }
+
+    limiter.release(limiter.acquire("second", EndpointClass.SEARCH, 0));
+    limiter.release(limiter.acquire("third", EndpointClass.SEARCH, 0));
+
+    Assert.assertEquals(2, limiter.getTrackedUsers());
+    Assert.assertFalse(limiter.acquire("streaming", EndpointClass.SEARCH, 0).isAdmitted());
+  }
+
+  @Test
+  public void classifiesRequestsByResourceMethod() throws Exception {
+    Assert.assertEquals(EndpointClass.READ, EndpointClass.of("GET", Endpoints.class.getMethod("get")));
+    Assert.assertEquals(EndpointClass.WRITE, EndpointClass.of("POST", Endpoints.class.getMethod("post")));
+    Assert.assertEquals(EndpointClass.READ, EndpointClass.of("POST", Endpoints.class.getMethod("lookup")));
+    Assert.assertEquals(EndpointClass.SEARCH, EndpointClass.of("GET", Endpoints.class.getMethod("search")));
+    Assert.assertEquals(EndpointClass.WRITE, EndpointClass.of("DELETE", null));
+  }
+
+  public static class Endpoints {
+
+    public void get() {
+    }
+
+    public void post() {
+    }
+
+    @ReadOnly
+    public void lookup() {
+    }
+
+    @RateLimitClass(EndpointClass.SEARCH)
+    public void search() {
+    }
+  }
+}
@@ -0,0 +1,23 @@
+package org.metadatacenter.cedar.workspace.response;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+public class NodeFieldSelectionTest {
+
+  @Test
+  public void unknownFieldsAreReportedOnce() {
+    Assert.assertEquals(Arrays.asList("bogus", "other"),
+        NodeFieldSelection.findUnknownFields(Optional.of("@id, bogus,nodeType,bogus,other")));
+  }
+
+  @Test
+  public void knownFieldsPass() {
+    Assert.assertEquals(Collections.emptyList(), NodeFieldSelection.findUnknownFields(Optional.of("@id,nodeType")));
+    Assert.assertEquals(Collections.emptyList(), NodeFieldSelection.findUnknownFields(Optional.empty()));
+  }
+}
@@ -0,0 +1,50 @@
+package org.metadatacenter.cedar.workspace.response;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.Assert;
+import org.junit.Test;
+import org.metadatacenter.cedar.workspace.codec.BinaryMappers;
+import org.metadatacenter.model.response.FolderServerNodeListResponse;
+import org.metadatacenter.util.json.JsonMapper;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+
+public class NodeListResponseWriterTest {
+
+  @Test
+  public void theNodesOfThePageAreWrittenInPlaceOfTheResources() throws Exception {
+    FolderServerNodeListResponse response = new FolderServerNodeListResponse();
+    response.setResources(new ArrayList<>());
+    response.setTotalCount(270);
+
+    JsonNode written = write(new ProjectedNodeListResponse(response, NodeFieldSelection.all(),
+        Collections.nCopies(270, null)));
+
+    Assert.assertEquals(270, written.get("resources").size());
+    Assert.assertEquals(270, written.get("totalCount").asLong());
+  }
+
+  @Test
+  public void responsesWithoutSeparateNodesAreWrittenAsTheyAre() throws Exception {
+    FolderServerNodeListResponse response = new FolderServerNodeListResponse();
+    response.setResources(new ArrayList<>(Collections.nCopies(3, null)));
+    response.setTotalCount(3);
+
+    JsonNode written = write(new ProjectedNodeListResponse(response, NodeFieldSelection.all()));
+
+    Assert.assertEquals(3, written.get("resources").size());
+    Assert.assertEquals(3, written.get("totalCount").asLong());
+  }
+
+  private static JsonNode write(ProjectedNodeListResponse projected) throws Exception {
+    NodeListResponseWriter writer = new NodeListResponseWriter(JsonMapper.MAPPER, new BinaryMappers());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writer.writeTo(projected, ProjectedNodeListResponse.class, ProjectedNodeListResponse.class, null,
+        MediaType.APPLICATION_JSON_TYPE, new MultivaluedHashMap<>(), out);
+    return JsonMapper.MAPPER.readTree(out.toByteArray());
+  }
+}
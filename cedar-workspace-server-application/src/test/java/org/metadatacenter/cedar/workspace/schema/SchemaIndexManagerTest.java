@@ -0,0 +1,115 @@
+package org.metadatacenter.cedar.workspace.schema;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.metadatacenter.cedar.workspace.config.SchemaIndexConfig;
+import org.metadatacenter.cedar.workspace.health.SchemaIndexHealthCheck;
+import org.metadatacenter.util.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SchemaIndexManagerTest {
+
+  @Test
+  public void createStatementsQuoteNames() {
+    Assert.assertEquals("CREATE CONSTRAINT ON (n:`FSNode`) ASSERT n.`@id` IS UNIQUE",
+        SchemaIndexManager.createStatement(new SchemaIndexState("FSNode", Collections.singletonList("@id"), true,
+            SchemaIndexState.MISSING)));
+    Assert.assertEquals("CREATE INDEX ON :`FSNode`(`schema:name`, `pav:createdOnTS`)",
+        SchemaIndexManager.createStatement(new SchemaIndexState("FSNode",
+            Arrays.asList("schema:name", "pav:createdOnTS"), false, SchemaIndexState.MISSING)));
+  }
+
+  @Test
+  public void parsesPropertiesOfIndexDescriptions() {
+    Assert.assertEquals(Arrays.asList("@id", "schema:name"), SchemaIndexManager.parseProperties("`@id`, schema:name"));
+  }
+
+  @Test
+  public void cachesStatesUntilTheTtlExpires() throws Exception {
+    FakeSchemaSource source = new FakeSchemaSource();
+    AtomicLong now = new AtomicLong(1000);
+    SchemaIndexManager manager = new SchemaIndexManager(config("create"), source, now::get);
+    Assert.assertEquals(SchemaIndexState.MISSING, manager.getStates().get(0).getState());
+    source.indexes.put(SchemaIndexManager.key("FSNode", Collections.singletonList("@id")), "ONLINE");
+    now.addAndGet(29000);
+    Assert.assertEquals(SchemaIndexState.MISSING, manager.getStates().get(0).getState());
+    Assert.assertEquals(1, source.reads);
+    now.addAndGet(1000);
+    Assert.assertEquals(SchemaIndexState.ONLINE, manager.getStates().get(0).getState());
+    Assert.assertEquals(2, source.reads);
+  }
+
+  @Test
+  public void createsMissingIndexesAndDropsTheCachedStates() throws Exception {
+    FakeSchemaSource source = new FakeSchemaSource();
+    SchemaIndexManager manager = new SchemaIndexManager(config("create"), source, () -> 0);
+    manager.getStates();
+    manager.ensureIndexes();
+    Assert.assertEquals(Collections.singletonList("CREATE CONSTRAINT ON (n:`FSNode`) ASSERT n.`@id` IS UNIQUE"),
+        source.statements);
+    Assert.assertEquals(SchemaIndexState.ONLINE, manager.getStates().get(0).getState());
+  }
+
+  @Test
+  public void verifyModeLeavesTheCreationToTheCommand() throws Exception {
+    FakeSchemaSource source = new FakeSchemaSource();
+    // Verify is the default mode
+    SchemaIndexManager manager = new SchemaIndexManager(JsonMapper.MAPPER.readValue("{\"required\":" +
+        "[{\"label\":\"FSNode\",\"properties\":[\"@id\"],\"unique\":true}]}", SchemaIndexConfig.class), source,
+        () -> 0);
+    manager.ensureIndexes();
+    Assert.assertTrue(source.statements.isEmpty());
+
+    Assert.assertTrue(manager.createMissingIndexes().isEmpty());
+    Assert.assertEquals(1, source.statements.size());
+    Assert.assertEquals(SchemaIndexState.ONLINE, manager.getStates().get(0).getState());
+  }
+
+  @Test
+  public void missingIndexesKeepTheServerHealthyInVerifyMode() throws Exception {
+    SchemaIndexManager verify = new SchemaIndexManager(config("verify"), new FakeSchemaSource(), () -> 0);
+    verify.ensureIndexes();
+    SchemaIndexHealthCheck.Result result = new SchemaIndexHealthCheck(verify).execute();
+    Assert.assertTrue(result.isHealthy());
+    Assert.assertTrue(result.getMessage().contains("MISSING"));
+    SchemaIndexManager create = new SchemaIndexManager(config("create"), new FakeSchemaSource() {
+      @Override
+      public void run(String statement) {
+        throw new IllegalStateException("No write access");
+      }
+    }, () -> 0);
+    create.ensureIndexes();
+    Assert.assertFalse(new SchemaIndexHealthCheck(create).execute().isHealthy());
+  }
+
+  private static SchemaIndexConfig config(String mode) throws Exception {
+    return JsonMapper.MAPPER.readValue("{\"mode\":\"" + mode + "\",\"required\":" +
+        "[{\"label\":\"FSNode\",\"properties\":[\"@id\"],\"unique\":true}]}", SchemaIndexConfig.class);
+  }
+
+  private static class FakeSchemaSource implements SchemaIndexManager.SchemaSource {
+
+    final Map<String, String> indexes = new HashMap<>();
+    final List<String> statements = new ArrayList<>();
+    int reads;
+
+    @Override
+    public Map<String, String> readIndexes() {
+      reads++;
+      return new HashMap<>(indexes);
+    }
+
+    @Override
+    public void run(String statement) {
+      statements.add(statement);
+      indexes.put(SchemaIndexManager.key("FSNode", Collections.singletonList("@id")), SchemaIndexState.ONLINE);
+    }
+  }
+}
@@ -0,0 +1,25 @@
+package org.metadatacenter.cedar.workspace.search;
+
+import org.apache.lucene.search.SortField;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NodeDocumentsTest {
+
+  @Test
+  public void mapsSortKeys() {
+    SortField name = NodeDocuments.sortField("name");
+    Assert.assertEquals(NodeDocuments.NAME_SORT, name.getField());
+    Assert.assertFalse(name.getReverse());
+
+    SortField updated = NodeDocuments.sortField("-lastUpdatedOnTS");
+    Assert.assertEquals(NodeDocuments.LAST_UPDATED_ON_SORT, updated.getField());
+    Assert.assertEquals(SortField.Type.LONG, updated.getType());
+    Assert.assertTrue(updated.getReverse());
+  }
+
+  @Test
+  public void ignoresUnknownSortKeys() {
+    Assert.assertNull(NodeDocuments.sortField("-unknown"));
+  }
+}
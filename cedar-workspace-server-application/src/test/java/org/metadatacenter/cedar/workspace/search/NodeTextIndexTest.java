@@ -0,0 +1,180 @@
+package org.metadatacenter.cedar.workspace.search;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.metadatacenter.cedar.workspace.config.TextSearchConfig;
+import org.metadatacenter.cedar.workspace.event.NodeEvent;
+import org.metadatacenter.cedar.workspace.event.NodeEventType;
+import org.metadatacenter.cedar.workspace.util.NodeScan;
+import org.metadatacenter.model.BiboStatus;
+import org.metadatacenter.model.CedarNodeType;
+import org.metadatacenter.model.ResourceVersion;
+import org.metadatacenter.model.WorkspaceObjectBuilder;
+import org.metadatacenter.model.folderserver.basic.FolderServerFolder;
+import org.metadatacenter.model.folderserver.basic.FolderServerNode;
+import org.metadatacenter.model.folderserver.basic.FolderServerResource;
+import org.metadatacenter.model.folderserver.extract.FolderServerNodeExtract;
+import org.metadatacenter.server.security.model.user.ResourceVersionFilter;
+import org.metadatacenter.util.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class NodeTextIndexTest {
+
+  private static final NodeTextIndex.ReadFilter ALL = readableExcept(null);
+
+  private final Map<String, FolderServerNode> nodes = new LinkedHashMap<>();
+  private final List<Integer> checkedBatches = new ArrayList<>();
+  private NodeScan nodeScan;
+  private NodeTextIndex index;
+
+  @Before
+  public void setUp() throws Exception {
+    add(template("t1", "Heart rate study", true));
+    add(template("t2", "Heart rate study", false));
+    add(template("t3", "Blood pressure", true));
+    add(folder("f1", "Heart studies"));
+    nodeScan = new NodeScan(3,
+        (limit, offset) -> nodes.values().stream().skip(offset).limit(limit).collect(Collectors.toList()));
+    index = new NodeTextIndex(JsonMapper.MAPPER.readValue("{\"refreshInterval\":\"1 hour\"}", TextSearchConfig.class),
+        nodeScan, nodes::get);
+    index.start();
+    nodeScan.start();
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!index.isReady() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertTrue(index.isReady());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    nodeScan.stop();
+    index.stop();
+  }
+
+  @Test
+  public void searchesTheNodesOfTheGraph() throws Exception {
+    TextSearchResult result = search("heart", null, null, 10, 0, ALL);
+    Assert.assertEquals(3, result.getTotal());
+    Assert.assertEquals(ids("t1", "t2", "f1"), ids(result));
+    Assert.assertEquals(ids("t3"), ids(search("pressure", null, null, 10, 0, ALL)));
+  }
+
+  @Test
+  public void appliesTheTypeAndVersionFilters() throws Exception {
+    Assert.assertEquals(ids("f1"),
+        ids(search("heart", Collections.singletonList(CedarNodeType.FOLDER), null, 10, 0, ALL)));
+    // Folders are not versioned, so they pass the version filter
+    Assert.assertEquals(ids("t1", "f1"),
+        ids(search("heart", null, ResourceVersionFilter.LATEST, 10, 0, ALL)));
+  }
+
+  @Test
+  public void eventsUpdateTheIndex() throws Exception {
+    FolderServerResource renamed = template("t3", "Heart pressure", true);
+    index.onNodeEvent(NodeEvent.of(NodeEventType.UPDATED, "t3", CedarNodeType.TEMPLATE).node(renamed));
+    index.onNodeEvent(NodeEvent.of(NodeEventType.DELETED, "t2", CedarNodeType.TEMPLATE));
+    index.refresh();
+    Assert.assertEquals(ids("t1", "t3", "f1"), ids(search("heart", null, null, 10, 0, ALL)));
+    Assert.assertEquals(0, search("blood", null, null, 10, 0, ALL).getTotal());
+
+    // Nodes changed on other instances are read again from the graph
+    add(template("t4", "Heart surgery", true));
+    index.onInvalidation(Collections.singletonList("t4"));
+    long deadline = System.currentTimeMillis() + 5000;
+    while (search("surgery", null, null, 10, 0, ALL).getTotal() == 0 &&
+        System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+      index.refresh();
+    }
+    Assert.assertEquals(1, search("surgery", null, null, 10, 0, ALL).getTotal());
+  }
+
+  @Test
+  public void aRebuildDropsTheNodesThatAreGone() throws Exception {
+    nodes.remove("t2");
+    add(template("t4", "Heart surgery", true));
+    index.rebuild();
+    Assert.assertEquals(ids("t1", "f1", "t4"), ids(search("heart", null, null, 10, 0, ALL)));
+    Assert.assertEquals(ids("t3"), ids(search("pressure", null, null, 10, 0, ALL)));
+  }
+
+  @Test
+  public void pagesThroughTheReadableMatches() throws Exception {
+    TextSearchResult result = search("heart", null, null, 1, 1, readableExcept("t1"));
+    Assert.assertEquals(2, result.getTotal());
+    Assert.assertEquals(1, result.getNodes().size());
+    Assert.assertNotEquals("t1", result.getNodes().get(0).getId());
+  }
+
+  @Test
+  public void stopsCheckingOnceThePageIsFull() throws Exception {
+    for (int i = 0; i < 200; i++) {
+      add(template("s" + i, "Sleep study " + i, true));
+    }
+    index.rebuild();
+    // Every other match is readable
+    TextSearchResult result = search("sleep", null, null, 10, 0,
+        ids -> ids.stream().collect(Collectors.toMap(id -> id, id -> Integer.parseInt(id.substring(1)) % 2 == 0)));
+    Assert.assertEquals(10, result.getNodes().size());
+    Assert.assertEquals(Collections.singletonList(50), checkedBatches);
+    Assert.assertEquals(100, result.getTotal());
+  }
+
+  private TextSearchResult search(String q, List<CedarNodeType> nodeTypes, ResourceVersionFilter version, int limit,
+                                  int offset, NodeTextIndex.ReadFilter readFilter) throws Exception {
+    return index.search(q, nodeTypes, version, null, null, limit, offset, ids -> {
+      checkedBatches.add(ids.size());
+      return readFilter.readable(ids);
+    });
+  }
+
+  private static NodeTextIndex.ReadFilter readableExcept(String hiddenId) {
+    return ids -> {
+      Map<String, Boolean> readable = new HashMap<>();
+      for (String id : ids) {
+        readable.put(id, !id.equals(hiddenId));
+      }
+      return readable;
+    };
+  }
+
+  private static Set<String> ids(TextSearchResult result) {
+    return result.getNodes().stream().map(FolderServerNodeExtract::getId).collect(Collectors.toSet());
+  }
+
+  private static Set<String> ids(String... ids) {
+    return new HashSet<>(Arrays.asList(ids));
+  }
+
+  private void add(FolderServerNode node) {
+    nodes.put(node.getId(), node);
+  }
+
+  private static FolderServerResource template(String id, String name, boolean latest) {
+    FolderServerResource template = WorkspaceObjectBuilder.forNodeType(CedarNodeType.TEMPLATE, id, name, "", null,
+        ResourceVersion.forValue("0.0.1"), BiboStatus.DRAFT);
+    template.setLatestVersion(latest);
+    return template;
+  }
+
+  private static FolderServerFolder folder(String id, String name) {
+    FolderServerFolder folder = new FolderServerFolder();
+    folder.setId(id);
+    folder.setName(name);
+    folder.setDescription("");
+    return folder;
+  }
+}
@@ -0,0 +1,26 @@
+package org.metadatacenter.cedar.workspace.snapshot;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class GraphSnapshotStoreTest {
+
+  @Test
+  public void nodesAreMergedOnTheirKeyLabel() {
+    Assert.assertEquals("UNWIND $rows AS row MERGE (n:`FSNode` {`@id`: row.id}) SET n += row.properties " +
+            "SET n:`Folder`",
+        GraphSnapshotStore.nodeStatement("FSNode", Arrays.asList("FSNode", "Folder")));
+    Assert.assertEquals("UNWIND $rows AS row MERGE (n:`User` {`@id`: row.id}) SET n += row.properties",
+        GraphSnapshotStore.nodeStatement("User", Collections.singletonList("User")));
+  }
+
+  @Test
+  public void relationshipsMatchBothEndsByKeyLabel() {
+    Assert.assertEquals("UNWIND $rows AS row MATCH (a:`User` {`@id`: row.start}) " +
+            "MATCH (b:`FSNode` {`@id`: row.end}) MERGE (a)-[:`OWNS`]->(b)",
+        GraphSnapshotStore.relationshipStatement("OWNS", "User", "FSNode"));
+  }
+}
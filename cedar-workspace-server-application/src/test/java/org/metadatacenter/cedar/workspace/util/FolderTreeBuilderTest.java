@@ -0,0 +1,120 @@
+package org.metadatacenter.cedar.workspace.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.metadatacenter.cedar.workspace.config.FolderTreeConfig;
+import org.metadatacenter.cedar.workspace.model.FolderTreeNode;
+import org.metadatacenter.cedar.workspace.model.FolderTreeResponse;
+import org.metadatacenter.model.BiboStatus;
+import org.metadatacenter.model.CedarNodeType;
+import org.metadatacenter.model.ResourceVersion;
+import org.metadatacenter.model.WorkspaceObjectBuilder;
+import org.metadatacenter.model.folderserver.basic.FolderServerFolder;
+import org.metadatacenter.model.folderserver.extract.FolderServerNodeExtract;
+import org.metadatacenter.util.json.JsonMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class FolderTreeBuilderTest {
+
+  // root holds the folders a and b and the template t1; a holds the folder c, c holds the folder d
+  private final Map<String, List<FolderServerNodeExtract>> contents = new HashMap<>();
+  private final List<String> listed = new ArrayList<>();
+  private final List<String> counted = new ArrayList<>();
+
+  private final FolderTreeBuilder.ContentsSource source = new FolderTreeBuilder.ContentsSource() {
+    @Override
+    public List<FolderServerNodeExtract> findChildren(String folderId, int limit) {
+      listed.add(folderId);
+      return contents.getOrDefault(folderId, Collections.emptyList()).stream().limit(limit)
+          .collect(Collectors.toList());
+    }
+
+    @Override
+    public long countChildren(String folderId) {
+      counted.add(folderId);
+      return contents.getOrDefault(folderId, Collections.emptyList()).size();
+    }
+  };
+
+  public FolderTreeBuilderTest() {
+    contents.put("root", Arrays.asList(folder("a"), folder("b"), template("t1")));
+    contents.put("a", Collections.singletonList(folder("c")));
+    contents.put("c", Collections.singletonList(folder("d")));
+  }
+
+  @Test
+  public void depthsOutsideTheConfiguredBoundsAreRejected() throws Exception {
+    FolderTreeBuilder builder = builder("{\"maxDepth\": 3}");
+
+    Assert.assertFalse(builder.isValidDepth(0));
+    Assert.assertTrue(builder.isValidDepth(1));
+    Assert.assertTrue(builder.isValidDepth(3));
+    Assert.assertFalse(builder.isValidDepth(4));
+  }
+
+  @Test
+  public void foldersBelowTheDepthAreNotExpanded() throws Exception {
+    FolderTreeResponse tree = builder("{}").build(folder("root"), 2, 100, source);
+
+    Assert.assertEquals(Arrays.asList("root", "a", "b"), listed);
+    Assert.assertEquals(4, tree.getNodeCount());
+    Assert.assertFalse(tree.isTruncated());
+    FolderTreeNode c = child(child(tree.getRoot(), "a"), "c");
+    Assert.assertNull(c.getChildren());
+    Assert.assertNull(c.getTotalChildCount());
+    Assert.assertFalse(c.isTruncated());
+  }
+
+  @Test
+  public void foldersWithMoreChildrenThanTheLimitAreTruncated() throws Exception {
+    FolderTreeResponse tree = builder("{\"maxChildrenPerFolder\": 2}").build(folder("root"), 1, 100, source);
+
+    FolderTreeNode root = tree.getRoot();
+    Assert.assertEquals(2, root.getChildren().size());
+    Assert.assertEquals(Long.valueOf(3), root.getTotalChildCount());
+    Assert.assertTrue(root.isTruncated());
+    Assert.assertTrue(tree.isTruncated());
+    Assert.assertEquals(Collections.singletonList("root"), counted);
+  }
+
+  @Test
+  public void theNodeCapTruncatesTheFoldersThatAreLeft() throws Exception {
+    FolderTreeResponse tree = builder("{\"maxNodes\": 3}").build(folder("root"), 3, 100, source);
+
+    Assert.assertEquals(3, tree.getNodeCount());
+    Assert.assertTrue(tree.isTruncated());
+    Assert.assertFalse(tree.getRoot().isTruncated());
+    Assert.assertTrue(child(tree.getRoot(), "a").isTruncated());
+    Assert.assertTrue(child(tree.getRoot(), "b").isTruncated());
+    Assert.assertEquals(Collections.singletonList("root"), listed);
+  }
+
+  private static FolderTreeBuilder builder(String config) throws IOException {
+    return new FolderTreeBuilder(JsonMapper.MAPPER.readValue(config, FolderTreeConfig.class));
+  }
+
+  private static FolderTreeNode child(FolderTreeNode parent, String id) {
+    return parent.getChildren().stream().filter(child -> child.getNode().getId().equals(id)).findFirst().get();
+  }
+
+  private static FolderServerNodeExtract folder(String id) {
+    FolderServerFolder folder = new FolderServerFolder();
+    folder.setId(id);
+    folder.setName(id);
+    folder.setDescription("");
+    return FolderServerNodeExtract.fromNode(folder);
+  }
+
+  private static FolderServerNodeExtract template(String id) {
+    return FolderServerNodeExtract.fromNode(WorkspaceObjectBuilder.forNodeType(CedarNodeType.TEMPLATE, id, id, "",
+        null, ResourceVersion.forValue("0.0.1"), BiboStatus.DRAFT));
+  }
+}
@@ -0,0 +1,63 @@
+package org.metadatacenter.cedar.workspace.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class NodeLookupTest {
+
+  @Test
+  public void unreadableNodesAreReportedLikeUnknownIds() throws Exception {
+    Map<String, String> nodes = new HashMap<>();
+    nodes.put("readable", "Readable node");
+    nodes.put("private", "Private node");
+    List<Collection<String>> checked = new ArrayList<>();
+
+    Map<String, String> resolved = NodeLookup.resolve(Arrays.asList("readable", "private", "unknown"), nodes::get,
+        ids -> {
+          checked.add(new ArrayList<>(ids));
+          Map<String, Boolean> access = new HashMap<>();
+          ids.forEach(id -> access.put(id, "readable".equals(id)));
+          return access;
+        });
+
+    Assert.assertEquals("Readable node", resolved.get("readable"));
+    Assert.assertTrue(resolved.containsKey("private"));
+    Assert.assertNull(resolved.get("private"));
+    Assert.assertTrue(resolved.containsKey("unknown"));
+    Assert.assertNull(resolved.get("unknown"));
+    Assert.assertEquals(1, checked.size());
+    Assert.assertEquals(Arrays.asList("readable", "private"), checked.get(0));
+  }
+
+  @Test
+  public void eachDistinctIdIsResolvedOnce() throws Exception {
+    List<String> lookedUp = new ArrayList<>();
+    Map<String, String> resolved = NodeLookup.resolve(Arrays.asList("a", "a", "", "b"), id -> {
+      lookedUp.add(id);
+      return id.toUpperCase();
+    }, ids -> {
+      Map<String, Boolean> access = new HashMap<>();
+      ids.forEach(id -> access.put(id, true));
+      return access;
+    });
+
+    Assert.assertEquals(Arrays.asList("a", "b"), lookedUp);
+    Assert.assertEquals(Arrays.asList("a", "", "b"), new ArrayList<>(resolved.keySet()));
+    Assert.assertNull(resolved.get(""));
+  }
+
+  @Test
+  public void noAccessCheckWithoutNodes() throws Exception {
+    Map<String, String> resolved = NodeLookup.resolve(Arrays.asList("x", "y"), id -> null, ids -> {
+      throw new AssertionError("No access check expected");
+    });
+    Assert.assertEquals(2, resolved.size());
+  }
+}
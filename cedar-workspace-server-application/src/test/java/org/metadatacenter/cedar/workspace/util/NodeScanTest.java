@@ -0,0 +1,132 @@
+package org.metadatacenter.cedar.workspace.util;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.metadatacenter.cedar.workspace.event.NodeEvent;
+import org.metadatacenter.cedar.workspace.event.NodeEventType;
+import org.metadatacenter.exception.CedarProcessingException;
+import org.metadatacenter.model.CedarNodeType;
+import org.metadatacenter.model.folderserver.basic.FolderServerFolder;
+import org.metadatacenter.model.folderserver.basic.FolderServerNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+public class NodeScanTest {
+
+  private final List<FolderServerNode> nodes = new CopyOnWriteArrayList<>();
+  private final AtomicInteger pageReads = new AtomicInteger();
+  private final ExecutorService readers = Executors.newCachedThreadPool();
+  private NodeScan nodeScan;
+
+  @Before
+  public void setUp() {
+    for (int i = 0; i < 7; i++) {
+      FolderServerFolder folder = new FolderServerFolder();
+      folder.setId("f" + i);
+      nodes.add(folder);
+    }
+    nodeScan = new NodeScan(3, (limit, offset) -> {
+      pageReads.incrementAndGet();
+      return nodes.stream().skip(offset).limit(limit).collect(Collectors.toList());
+    });
+  }
+
+  @After
+  public void tearDown() {
+    nodeScan.stop();
+    readers.shutdownNow();
+  }
+
+  @Test
+  public void readersThatAskBeforeTheStartShareOneScan() throws Exception {
+    Future<Set<String>> first = scan(page -> {
+    });
+    Future<Set<String>> second = scan(page -> {
+    });
+    awaitWaitingReaders(2);
+    nodeScan.start();
+
+    Assert.assertEquals(7, first.get(5, TimeUnit.SECONDS).size());
+    Assert.assertEquals(7, second.get(5, TimeUnit.SECONDS).size());
+    Assert.assertEquals(3, pageReads.get());
+  }
+
+  @Test
+  public void nodesDeletedDuringTheScanDoNotHideTheNextOnes() throws Exception {
+    nodeScan.start();
+    Future<Set<String>> seen = scan(page -> {
+      if (page.get(0).getId().equals("f0")) {
+        nodes.remove(1);
+        nodeScan.onNodeEvent(NodeEvent.of(NodeEventType.DELETED, "f1", CedarNodeType.FOLDER));
+      }
+    });
+
+    Set<String> ids = seen.get(5, TimeUnit.SECONDS);
+    for (int i = 2; i < 7; i++) {
+      Assert.assertTrue("f" + i, ids.contains("f" + i));
+    }
+  }
+
+  @Test
+  public void nodesGoneBeforeTheyAreReadDoNotEndTheScan() throws Exception {
+    nodes.set(1, null);
+    nodeScan.start();
+
+    Set<String> ids = scan(page -> {
+    }).get(5, TimeUnit.SECONDS);
+
+    Assert.assertEquals(6, ids.size());
+    Assert.assertTrue(ids.contains("f6"));
+  }
+
+  @Test
+  public void aFailingReaderLeavesTheScan() throws Exception {
+    Future<Set<String>> failing = scan(page -> {
+      throw new CedarProcessingException("Index unavailable");
+    });
+    Future<Set<String>> other = scan(page -> {
+    });
+    awaitWaitingReaders(2);
+    nodeScan.start();
+
+    try {
+      failing.get(5, TimeUnit.SECONDS);
+      Assert.fail("The failure should reach the reader");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof CedarProcessingException);
+    }
+    Assert.assertEquals(7, other.get(5, TimeUnit.SECONDS).size());
+  }
+
+  private Future<Set<String>> scan(NodeScan.Reader reader) {
+    return readers.submit(() -> {
+      Set<String> ids = ConcurrentHashMap.newKeySet();
+      nodeScan.scan(page -> {
+        reader.read(new ArrayList<>(page));
+        page.forEach(node -> ids.add(node.getId()));
+      });
+      return ids;
+    });
+  }
+
+  private void awaitWaitingReaders(int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (nodeScan.getWaitingReaders() < count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(count, nodeScan.getWaitingReaders());
+  }
+}
@@ -0,0 +1,91 @@
+package org.metadatacenter.cedar.workspace.util;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.metadatacenter.exception.CedarException;
+import org.metadatacenter.exception.CedarProcessingException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class ParallelSlicesTest {
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void theResultsKeepTheOrderOfTheSlices() throws Exception {
+    List<Callable<String>> slices = Arrays.asList(() -> "a", () -> "b", () -> "c");
+
+    List<String> results = ParallelSlices.run(executor, slices, "listing the folder contents");
+
+    Assert.assertEquals(Arrays.asList("a", "b", "c"), results);
+  }
+
+  @Test
+  public void aFailingSliceOnTheCallingThreadCancelsTheOthers() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch interrupted = new CountDownLatch(1);
+    Callable<String> blocking = () -> {
+      started.countDown();
+      try {
+        Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+      } catch (InterruptedException e) {
+        interrupted.countDown();
+      }
+      return "slow";
+    };
+    Callable<String> failing = () -> {
+      started.await(5, TimeUnit.SECONDS);
+      throw new CedarProcessingException("Backend unavailable");
+    };
+    List<Callable<String>> slices = Arrays.asList(blocking, failing);
+
+    try {
+      ParallelSlices.run(executor, slices, "listing the folder contents");
+      Assert.fail("The failure of the slice should reach the caller");
+    } catch (CedarException e) {
+      Assert.assertEquals("Backend unavailable", e.getMessage());
+    }
+    Assert.assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void aFailingSliceOnTheExecutorCancelsTheSlicesAfterIt() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch interrupted = new CountDownLatch(1);
+    Callable<String> failing = () -> {
+      started.await(5, TimeUnit.SECONDS);
+      throw new IllegalStateException("Session closed");
+    };
+    Callable<String> blocking = () -> {
+      started.countDown();
+      try {
+        Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+      } catch (InterruptedException e) {
+        interrupted.countDown();
+      }
+      return "slow";
+    };
+    Callable<String> last = () -> "last";
+    List<Callable<String>> slices = Arrays.asList(failing, blocking, last);
+
+    try {
+      ParallelSlices.run(executor, slices, "listing the folder contents");
+      Assert.fail("The failure of the slice should reach the caller");
+    } catch (IllegalStateException e) {
+      Assert.assertEquals("Session closed", e.getMessage());
+    }
+    Assert.assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+  }
+}
@@ -0,0 +1,68 @@
+package org.metadatacenter.cedar.workspace.util;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+import org.metadatacenter.exception.CedarProcessingException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SingleFlightTest {
+
+  @Test
+  public void concurrentCallsWithTheSameKeyShareOneExecution() throws Exception {
+    MetricRegistry metrics = new MetricRegistry();
+    SingleFlight singleFlight = new SingleFlight(metrics);
+    Meter coalesced = metrics.meter(MetricRegistry.name(SingleFlight.class, "coalesced"));
+    AtomicInteger executions = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<String> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+        executions.incrementAndGet();
+        started.countDown();
+        release.await();
+        return "result";
+      }));
+      Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+      Future<String> follower = executor.submit(() -> singleFlight.execute("key", () -> {
+        executions.incrementAndGet();
+        return "other";
+      }));
+      long deadline = System.currentTimeMillis() + 5000;
+      while (coalesced.getCount() == 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(5);
+      }
+      release.countDown();
+
+      Assert.assertEquals("result", leader.get(5, TimeUnit.SECONDS));
+      Assert.assertEquals("result", follower.get(5, TimeUnit.SECONDS));
+      Assert.assertEquals(1, executions.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void nothingIsKeptAfterTheCall() throws Exception {
+    SingleFlight singleFlight = new SingleFlight(new MetricRegistry());
+    Assert.assertEquals("first", singleFlight.execute("key", () -> "first"));
+    Assert.assertEquals("second", singleFlight.execute("key", () -> "second"));
+    Assert.assertEquals(0, singleFlight.getInFlightCount());
+  }
+
+  @Test(expected = CedarProcessingException.class)
+  public void exceptionsArePropagated() throws Exception {
+    SingleFlight singleFlight = new SingleFlight(new MetricRegistry());
+    singleFlight.execute("key", () -> {
+      throw new CedarProcessingException("failed");
+    });
+  }
+}
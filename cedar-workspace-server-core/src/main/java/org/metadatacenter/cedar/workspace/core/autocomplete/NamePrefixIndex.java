@@ -0,0 +1,210 @@
+package org.metadatacenter.cedar.workspace.core.autocomplete;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory prefix index over node names. A name is lower-cased and split into words, and every suffix of it that
+ * starts at a word boundary is kept in a sorted map, so "Clinical Trial Form" is found by "cli", "tri" and "trial f".
+ * A prefix lookup is a range scan of the map; the matches are returned most recently updated first. A prefix so
+ * common that its range is too long to scan is answered by walking the nodes from the most recently updated one
+ * instead, which quickly finds enough matches since most names match.
+ * <p>
+ * Unlike an FST, the sorted map can be updated in place when a node is created, renamed or deleted.
+ */
+public class NamePrefixIndex {
+
+  private static final char KEY_SEPARATOR = '\u0000';
+
+  private static final Comparator<Entry> RECENT_FIRST = Comparator.comparingLong(Entry::getLastUpdatedOnTS)
+      .reversed().thenComparing(Entry::getId);
+
+  public static class Entry {
+
+    private final String id;
+    private final String name;
+    private final String type;
+    private final long lastUpdatedOnTS;
+
+    public Entry(String id, String name, String type, long lastUpdatedOnTS) {
+      this.id = id;
+      this.name = name;
+      this.type = type;
+      this.lastUpdatedOnTS = lastUpdatedOnTS;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public String getType() {
+      return type;
+    }
+
+    public long getLastUpdatedOnTS() {
+      return lastUpdatedOnTS;
+    }
+  }
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<String, Entry> entries = new HashMap<>();
+  private final NavigableMap<String, Entry> keys = new TreeMap<>();
+  private final TreeSet<Entry> byRecency = new TreeSet<>(RECENT_FIRST);
+
+  /**
+   * Adds a node, or replaces the name, type and update time of a node already in the index.
+   */
+  public void put(String id, String name, String type, long lastUpdatedOnTS) {
+    Entry entry = new Entry(id, name, type, lastUpdatedOnTS);
+    lock.writeLock().lock();
+    try {
+      removeKeys(entries.put(id, entry));
+      for (String key : keysOf(entry)) {
+        keys.put(key, entry);
+      }
+      byRecency.add(entry);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void remove(String id) {
+    lock.writeLock().lock();
+    try {
+      removeKeys(entries.remove(id));
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void clear() {
+    lock.writeLock().lock();
+    try {
+      entries.clear();
+      keys.clear();
+      byRecency.clear();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return entries.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns a copy of the ids of the nodes in the index.
+   */
+  public Set<String> getIds() {
+    lock.readLock().lock();
+    try {
+      return new HashSet<>(entries.keySet());
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Finds the maxResults most recently updated nodes with a name, or a word of the name, starting with the prefix,
+   * most recent first. When the prefix has more than maxScanned keys, the nodes are walked in recency order instead
+   * of scanning its keys.
+   */
+  public List<Entry> find(String prefix, int maxResults, int maxScanned) {
+    String normalized = normalize(prefix);
+    if (normalized.isEmpty() || maxResults < 1) {
+      return Collections.emptyList();
+    }
+    lock.readLock().lock();
+    try {
+      PriorityQueue<Entry> top = new PriorityQueue<>(maxResults + 1, RECENT_FIRST.reversed());
+      Set<String> seen = new HashSet<>();
+      int scanned = 0;
+      for (Entry entry : keys.subMap(normalized, true, normalized + Character.MAX_VALUE, false).values()) {
+        if (scanned++ >= maxScanned) {
+          return findByRecency(normalized, maxResults);
+        }
+        if (seen.add(entry.getId())) {
+          top.add(entry);
+          if (top.size() > maxResults) {
+            top.poll();
+          }
+        }
+      }
+      List<Entry> result = new ArrayList<>(top);
+      result.sort(RECENT_FIRST);
+      return result;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private List<Entry> findByRecency(String normalized, int maxResults) {
+    List<Entry> result = new ArrayList<>();
+    for (Entry entry : byRecency) {
+      if (matches(entry, normalized)) {
+        result.add(entry);
+        if (result.size() >= maxResults) {
+          break;
+        }
+      }
+    }
+    return result;
+  }
+
+  private static boolean matches(Entry entry, String normalized) {
+    String name = normalize(entry.getName());
+    for (int i = name.indexOf(normalized); i >= 0; i = name.indexOf(normalized, i + 1)) {
+      if ((i == 0 || !Character.isLetterOrDigit(name.charAt(i - 1))) && Character.isLetterOrDigit(name.charAt(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  static String normalize(String text) {
+    return text == null ? "" : text.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+  }
+
+  private static List<String> keysOf(Entry entry) {
+    List<String> keys = new ArrayList<>();
+    String name = normalize(entry.getName());
+    for (int i = 0; i < name.length(); i++) {
+      boolean wordStart = i == 0 || !Character.isLetterOrDigit(name.charAt(i - 1));
+      if (wordStart && Character.isLetterOrDigit(name.charAt(i))) {
+        keys.add(name.substring(i) + KEY_SEPARATOR + entry.getId());
+      }
+    }
+    return keys;
+  }
+
+  private void removeKeys(Entry entry) {
+    if (entry != null) {
+      for (String key : keysOf(entry)) {
+        keys.remove(key);
+      }
+      byRecency.remove(entry);
+    }
+  }
+}
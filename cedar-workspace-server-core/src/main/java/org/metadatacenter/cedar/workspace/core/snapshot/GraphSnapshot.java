@@ -0,0 +1,99 @@
+package org.metadatacenter.cedar.workspace.core.snapshot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The nodes of a workspace graph, identified by their <code>@id</code>, with their labels and properties, and the
+ * relationships between them. The labels of both ends travel with a relationship, so that it can be written without
+ * looking its nodes up.
+ */
+public class GraphSnapshot {
+
+  public static class Node {
+
+    private final String id;
+    private final List<String> labels;
+    private final Map<String, Object> properties;
+
+    public Node(String id, List<String> labels, Map<String, Object> properties) {
+      this.id = id;
+      this.labels = labels;
+      this.properties = properties;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public List<String> getLabels() {
+      return labels;
+    }
+
+    public Map<String, Object> getProperties() {
+      return properties;
+    }
+  }
+
+  public static class Relationship {
+
+    private final String type;
+    private final String startId;
+    private final List<String> startLabels;
+    private final String endId;
+    private final List<String> endLabels;
+
+    public Relationship(String type, String startId, List<String> startLabels, String endId,
+                        List<String> endLabels) {
+      this.type = type;
+      this.startId = startId;
+      this.startLabels = startLabels;
+      this.endId = endId;
+      this.endLabels = endLabels;
+    }
+
+    public String getType() {
+      return type;
+    }
+
+    public String getStartId() {
+      return startId;
+    }
+
+    public List<String> getStartLabels() {
+      return startLabels;
+    }
+
+    public String getEndId() {
+      return endId;
+    }
+
+    public List<String> getEndLabels() {
+      return endLabels;
+    }
+  }
+
+  private final List<Node> nodes = new ArrayList<>();
+  private final List<Relationship> relationships = new ArrayList<>();
+
+  public void addNode(String id, List<String> labels, Map<String, Object> properties) {
+    nodes.add(new Node(id, new ArrayList<>(labels), new LinkedHashMap<>(properties)));
+  }
+
+  public void addRelationship(String type, String startId, List<String> startLabels, String endId,
+                              List<String> endLabels) {
+    relationships.add(new Relationship(type, startId, new ArrayList<>(startLabels), endId,
+        new ArrayList<>(endLabels)));
+  }
+
+  public List<Node> getNodes() {
+    return Collections.unmodifiableList(nodes);
+  }
+
+  public List<Relationship> getRelationships() {
+    return Collections.unmodifiableList(relationships);
+  }
+}
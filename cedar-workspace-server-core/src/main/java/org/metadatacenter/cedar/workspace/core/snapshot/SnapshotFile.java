@@ -0,0 +1,591 @@
+package org.metadatacenter.cedar.workspace.core.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads and writes workspace graphs in a compact columnar binary format, one block at a time, so that neither side
+ * holds more than a block in memory:
+ * <ul>
+ * <li>a header with a magic number and the format version;</li>
+ * <li>blocks of nodes, then blocks of relationships, each with its kind and length, and an end marker;</li>
+ * <li>in each block, a table of its distinct strings, which everything else in the block refers to by index;</li>
+ * <li>in a node block, a column of ids, a column of label sets, and one column per property key, with a presence
+ * bitmap followed by the values of the nodes that have the property;</li>
+ * <li>in a relationship block, columns of types, start and end ids, and start and end label sets.</li>
+ * </ul>
+ * Counts and indexes are unsigned varints, and long values are zigzag varints of the difference to the previous value
+ * of their column, which keeps timestamps small. A property whose values are of several types in a block gets a mixed
+ * column, where each value is tagged with its type, and lists may hold any of the scalar types. Blocks are read
+ * through a memory mapping of their own, so only a block is limited to 2 GB.
+ */
+public final class SnapshotFile {
+
+  /**
+   * Receives the nodes and relationships of a snapshot file, a block at a time, all the nodes first.
+   */
+  public interface BlockHandler {
+
+    void nodes(List<GraphSnapshot.Node> nodes);
+
+    void relationships(List<GraphSnapshot.Relationship> relationships);
+  }
+
+  static final int MAGIC = 0x43575347;
+  static final int VERSION = 2;
+
+  private static final byte END = 0;
+  private static final byte NODES = 1;
+  private static final byte RELATIONSHIPS = 2;
+
+  private static final byte STRING = 1;
+  private static final byte LONG = 2;
+  private static final byte DOUBLE = 3;
+  private static final byte BOOLEAN = 4;
+  private static final byte STRING_LIST = 5;
+  private static final byte LIST = 6;
+  private static final byte MIXED = 7;
+
+  private SnapshotFile() {
+  }
+
+  /**
+   * Writes a snapshot file block by block. All the nodes must be added before the relationships.
+   */
+  public static class Writer implements Closeable {
+
+    private final DataOutputStream out;
+    private final int blockSize;
+    private final List<GraphSnapshot.Node> nodes = new ArrayList<>();
+    private final List<GraphSnapshot.Relationship> relationships = new ArrayList<>();
+    private long nodeCount;
+    private long relationshipCount;
+
+    public Writer(Path path, int blockSize) throws IOException {
+      this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+      this.blockSize = blockSize;
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+    }
+
+    public void addNode(String id, List<String> labels, Map<String, Object> properties) throws IOException {
+      if (relationshipCount > 0) {
+        throw new IllegalStateException("All the nodes must be added before the relationships");
+      }
+      nodes.add(new GraphSnapshot.Node(id, labels, properties));
+      nodeCount++;
+      if (nodes.size() >= blockSize) {
+        flushNodes();
+      }
+    }
+
+    public void addRelationship(String type, String startId, List<String> startLabels, String endId,
+                                List<String> endLabels) throws IOException {
+      flushNodes();
+      relationships.add(new GraphSnapshot.Relationship(type, startId, startLabels, endId, endLabels));
+      relationshipCount++;
+      if (relationships.size() >= blockSize) {
+        flushRelationships();
+      }
+    }
+
+    public long getNodeCount() {
+      return nodeCount;
+    }
+
+    public long getRelationshipCount() {
+      return relationshipCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        flushNodes();
+        flushRelationships();
+        writeBlock(END, new byte[0]);
+      } finally {
+        out.close();
+      }
+    }
+
+    private void flushNodes() throws IOException {
+      if (!nodes.isEmpty()) {
+        writeBlock(NODES, nodeBlock(nodes));
+        nodes.clear();
+      }
+    }
+
+    private void flushRelationships() throws IOException {
+      if (!relationships.isEmpty()) {
+        writeBlock(RELATIONSHIPS, relationshipBlock(relationships));
+        relationships.clear();
+      }
+    }
+
+    private void writeBlock(byte kind, byte[] block) throws IOException {
+      out.writeByte(kind);
+      out.writeInt(block.length);
+      out.write(block);
+    }
+  }
+
+  /**
+   * Writes a snapshot that is already in memory, such as a test fixture.
+   */
+  public static void write(GraphSnapshot snapshot, Path path, int blockSize) throws IOException {
+    try (Writer writer = new Writer(path, blockSize)) {
+      for (GraphSnapshot.Node node : snapshot.getNodes()) {
+        writer.addNode(node.getId(), node.getLabels(), node.getProperties());
+      }
+      for (GraphSnapshot.Relationship relationship : snapshot.getRelationships()) {
+        writer.addRelationship(relationship.getType(), relationship.getStartId(), relationship.getStartLabels(),
+            relationship.getEndId(), relationship.getEndLabels());
+      }
+    }
+  }
+
+  /**
+   * Reads a whole snapshot file into memory. Large files should be read with a {@link BlockHandler} instead.
+   */
+  public static GraphSnapshot read(Path path) throws IOException {
+    GraphSnapshot snapshot = new GraphSnapshot();
+    read(path, new BlockHandler() {
+      @Override
+      public void nodes(List<GraphSnapshot.Node> nodes) {
+        for (GraphSnapshot.Node node : nodes) {
+          snapshot.addNode(node.getId(), node.getLabels(), node.getProperties());
+        }
+      }
+
+      @Override
+      public void relationships(List<GraphSnapshot.Relationship> relationships) {
+        for (GraphSnapshot.Relationship relationship : relationships) {
+          snapshot.addRelationship(relationship.getType(), relationship.getStartId(), relationship.getStartLabels(),
+              relationship.getEndId(), relationship.getEndLabels());
+        }
+      }
+    });
+    return snapshot;
+  }
+
+  public static void read(Path path, BlockHandler handler) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer header = readFully(channel, 0, 8, path);
+      if (header.getInt() != MAGIC) {
+        throw new IOException("Not a workspace snapshot: " + path);
+      }
+      int version = header.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported snapshot version " + version + ": " + path);
+      }
+      long position = 8;
+      while (true) {
+        ByteBuffer blockHeader = readFully(channel, position, 5, path);
+        byte kind = blockHeader.get();
+        int length = blockHeader.getInt();
+        position += 5;
+        if (kind == END) {
+          return;
+        }
+        if (position + length > channel.size()) {
+          throw new IOException("Truncated snapshot file: " + path);
+        }
+        ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        position += length;
+        if (kind == NODES) {
+          handler.nodes(readNodeBlock(in));
+        } else if (kind == RELATIONSHIPS) {
+          handler.relationships(readRelationshipBlock(in));
+        } else {
+          throw new IOException("Unknown block kind " + kind + ": " + path);
+        }
+      }
+    }
+  }
+
+  private static byte[] nodeBlock(List<GraphSnapshot.Node> nodes) throws IOException {
+    Map<String, Integer> strings = new LinkedHashMap<>();
+    ByteArrayOutputStream columns = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(columns);
+
+    writeVarint(out, nodes.size());
+    List<List<String>> labels = new ArrayList<>(nodes.size());
+    for (GraphSnapshot.Node node : nodes) {
+      writeVarint(out, intern(strings, node.getId()));
+      labels.add(node.getLabels());
+    }
+    writeLabelSets(out, strings, labels);
+
+    Set<String> keys = new LinkedHashSet<>();
+    for (GraphSnapshot.Node node : nodes) {
+      keys.addAll(node.getProperties().keySet());
+    }
+    writeVarint(out, keys.size());
+    for (String key : keys) {
+      writeColumn(out, strings, key, nodes);
+    }
+    out.flush();
+    return withStrings(strings, columns);
+  }
+
+  private static byte[] relationshipBlock(List<GraphSnapshot.Relationship> relationships) throws IOException {
+    Map<String, Integer> strings = new LinkedHashMap<>();
+    ByteArrayOutputStream columns = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(columns);
+
+    writeVarint(out, relationships.size());
+    List<List<String>> startLabels = new ArrayList<>(relationships.size());
+    List<List<String>> endLabels = new ArrayList<>(relationships.size());
+    for (GraphSnapshot.Relationship relationship : relationships) {
+      writeVarint(out, intern(strings, relationship.getType()));
+      startLabels.add(relationship.getStartLabels());
+      endLabels.add(relationship.getEndLabels());
+    }
+    for (GraphSnapshot.Relationship relationship : relationships) {
+      writeVarint(out, intern(strings, relationship.getStartId()));
+    }
+    for (GraphSnapshot.Relationship relationship : relationships) {
+      writeVarint(out, intern(strings, relationship.getEndId()));
+    }
+    writeLabelSets(out, strings, startLabels);
+    writeLabelSets(out, strings, endLabels);
+    out.flush();
+    return withStrings(strings, columns);
+  }
+
+  private static byte[] withStrings(Map<String, Integer> strings, ByteArrayOutputStream columns) throws IOException {
+    ByteArrayOutputStream block = new ByteArrayOutputStream(columns.size() + 16 * strings.size());
+    DataOutputStream out = new DataOutputStream(block);
+    writeVarint(out, strings.size());
+    for (String string : strings.keySet()) {
+      byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+      writeVarint(out, bytes.length);
+      out.write(bytes);
+    }
+    columns.writeTo(out);
+    out.flush();
+    return block.toByteArray();
+  }
+
+  private static List<GraphSnapshot.Node> readNodeBlock(ByteBuffer in) throws IOException {
+    String[] strings = readStrings(in);
+    int nodeCount = readInt(in);
+    String[] ids = new String[nodeCount];
+    for (int i = 0; i < nodeCount; i++) {
+      ids[i] = strings[readInt(in)];
+    }
+    List<List<String>> labels = readLabelSets(in, strings, nodeCount);
+
+    List<Map<String, Object>> properties = new ArrayList<>(nodeCount);
+    for (int i = 0; i < nodeCount; i++) {
+      properties.add(new LinkedHashMap<>());
+    }
+    int columnCount = readInt(in);
+    for (int c = 0; c < columnCount; c++) {
+      readColumn(in, strings, properties);
+    }
+
+    List<GraphSnapshot.Node> nodes = new ArrayList<>(nodeCount);
+    for (int i = 0; i < nodeCount; i++) {
+      nodes.add(new GraphSnapshot.Node(ids[i], labels.get(i), properties.get(i)));
+    }
+    return nodes;
+  }
+
+  private static List<GraphSnapshot.Relationship> readRelationshipBlock(ByteBuffer in) {
+    String[] strings = readStrings(in);
+    int relationshipCount = readInt(in);
+    String[] types = new String[relationshipCount];
+    String[] starts = new String[relationshipCount];
+    String[] ends = new String[relationshipCount];
+    for (int i = 0; i < relationshipCount; i++) {
+      types[i] = strings[readInt(in)];
+    }
+    for (int i = 0; i < relationshipCount; i++) {
+      starts[i] = strings[readInt(in)];
+    }
+    for (int i = 0; i < relationshipCount; i++) {
+      ends[i] = strings[readInt(in)];
+    }
+    List<List<String>> startLabels = readLabelSets(in, strings, relationshipCount);
+    List<List<String>> endLabels = readLabelSets(in, strings, relationshipCount);
+
+    List<GraphSnapshot.Relationship> relationships = new ArrayList<>(relationshipCount);
+    for (int i = 0; i < relationshipCount; i++) {
+      relationships.add(new GraphSnapshot.Relationship(types[i], starts[i], startLabels.get(i), ends[i],
+          endLabels.get(i)));
+    }
+    return relationships;
+  }
+
+  private static String[] readStrings(ByteBuffer in) {
+    String[] strings = new String[readInt(in)];
+    byte[] buffer = new byte[256];
+    for (int i = 0; i < strings.length; i++) {
+      int length = readInt(in);
+      if (length > buffer.length) {
+        buffer = new byte[Math.max(length, buffer.length * 2)];
+      }
+      in.get(buffer, 0, length);
+      strings[i] = new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+    return strings;
+  }
+
+  private static void writeLabelSets(DataOutputStream out, Map<String, Integer> strings, List<List<String>> labels)
+      throws IOException {
+    Map<List<String>, Integer> labelSets = new LinkedHashMap<>();
+    for (List<String> labelSet : labels) {
+      labelSets.putIfAbsent(labelSet, labelSets.size());
+    }
+    writeVarint(out, labelSets.size());
+    for (List<String> labelSet : labelSets.keySet()) {
+      writeVarint(out, labelSet.size());
+      for (String label : labelSet) {
+        writeVarint(out, intern(strings, label));
+      }
+    }
+    for (List<String> labelSet : labels) {
+      writeVarint(out, labelSets.get(labelSet));
+    }
+  }
+
+  private static List<List<String>> readLabelSets(ByteBuffer in, String[] strings, int count) {
+    List<List<String>> labelSets = new ArrayList<>();
+    int labelSetCount = readInt(in);
+    for (int i = 0; i < labelSetCount; i++) {
+      List<String> labels = new ArrayList<>();
+      int labelCount = readInt(in);
+      for (int j = 0; j < labelCount; j++) {
+        labels.add(strings[readInt(in)]);
+      }
+      labelSets.add(labels);
+    }
+    List<List<String>> labels = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      labels.add(labelSets.get(readInt(in)));
+    }
+    return labels;
+  }
+
+  private static void writeColumn(DataOutputStream out, Map<String, Integer> strings, String key,
+                                  List<GraphSnapshot.Node> nodes) throws IOException {
+    byte type = 0;
+    byte[] presence = new byte[(nodes.size() + 7) / 8];
+    List<Object> values = new ArrayList<>();
+    for (int i = 0; i < nodes.size(); i++) {
+      Object value = nodes.get(i).getProperties().get(key);
+      if (value == null) {
+        continue;
+      }
+      byte valueType = typeOf(key, value);
+      if (type == 0) {
+        type = valueType;
+      } else if (type != valueType) {
+        type = MIXED;
+      }
+      presence[i / 8] |= 1 << (i % 8);
+      values.add(value);
+    }
+
+    writeVarint(out, intern(strings, key));
+    out.writeByte(type);
+    out.write(presence);
+    long previous = 0;
+    for (Object value : values) {
+      if (type == LONG) {
+        long current = ((Number) value).longValue();
+        writeZigzag(out, current - previous);
+        previous = current;
+      } else if (type == MIXED) {
+        byte valueType = typeOf(key, value);
+        out.writeByte(valueType);
+        writeValue(out, strings, key, valueType, value);
+      } else {
+        writeValue(out, strings, key, type, value);
+      }
+    }
+  }
+
+  private static void readColumn(ByteBuffer in, String[] strings, List<Map<String, Object>> properties)
+      throws IOException {
+    String key = strings[readInt(in)];
+    byte type = in.get();
+    byte[] presence = new byte[(properties.size() + 7) / 8];
+    in.get(presence);
+    long previous = 0;
+    for (int i = 0; i < properties.size(); i++) {
+      if ((presence[i / 8] & (1 << (i % 8))) == 0) {
+        continue;
+      }
+      Object value;
+      if (type == LONG) {
+        previous += readZigzag(in);
+        value = previous;
+      } else if (type == MIXED) {
+        value = readValue(in, strings, key, in.get());
+      } else {
+        value = readValue(in, strings, key, type);
+      }
+      properties.get(i).put(key, value);
+    }
+  }
+
+  private static void writeValue(DataOutputStream out, Map<String, Integer> strings, String key, byte type,
+                                 Object value) throws IOException {
+    switch (type) {
+      case STRING:
+        writeVarint(out, intern(strings, (String) value));
+        break;
+      case LONG:
+        writeZigzag(out, ((Number) value).longValue());
+        break;
+      case DOUBLE:
+        out.writeDouble(((Number) value).doubleValue());
+        break;
+      case BOOLEAN:
+        out.writeBoolean((Boolean) value);
+        break;
+      case STRING_LIST:
+        List<?> elements = (List<?>) value;
+        writeVarint(out, elements.size());
+        for (Object element : elements) {
+          writeVarint(out, intern(strings, (String) element));
+        }
+        break;
+      default:
+        List<?> list = (List<?>) value;
+        writeVarint(out, list.size());
+        for (Object element : list) {
+          byte elementType = typeOf(key, element);
+          out.writeByte(elementType);
+          writeValue(out, strings, key, elementType, element);
+        }
+        break;
+    }
+  }
+
+  private static Object readValue(ByteBuffer in, String[] strings, String key, byte type) throws IOException {
+    switch (type) {
+      case STRING:
+        return strings[readInt(in)];
+      case LONG:
+        return readZigzag(in);
+      case DOUBLE:
+        return in.getDouble();
+      case BOOLEAN:
+        return in.get() != 0;
+      case STRING_LIST:
+        int stringCount = readInt(in);
+        List<String> stringList = new ArrayList<>(stringCount);
+        for (int i = 0; i < stringCount; i++) {
+          stringList.add(strings[readInt(in)]);
+        }
+        return stringList;
+      case LIST:
+        int size = readInt(in);
+        List<Object> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+          list.add(readValue(in, strings, key, in.get()));
+        }
+        return list;
+      default:
+        throw new IOException("Unknown value type " + type + " for property " + key);
+    }
+  }
+
+  private static byte typeOf(String key, Object value) {
+    if (value instanceof String) {
+      return STRING;
+    } else if (value instanceof Long || value instanceof Integer || value instanceof Short ||
+        value instanceof Byte) {
+      return LONG;
+    } else if (value instanceof Double || value instanceof Float) {
+      return DOUBLE;
+    } else if (value instanceof Boolean) {
+      return BOOLEAN;
+    } else if (value instanceof List) {
+      List<?> list = (List<?>) value;
+      if (!list.isEmpty() && list.stream().allMatch(e -> e instanceof String)) {
+        return STRING_LIST;
+      }
+      for (Object element : list) {
+        if (element == null || element instanceof List) {
+          throw new IllegalArgumentException("Unsupported list value of property " + key + ": " + list);
+        }
+        typeOf(key, element);
+      }
+      return LIST;
+    }
+    throw new IllegalArgumentException("Unsupported value of property " + key + ": " + value.getClass().getName());
+  }
+
+  private static int intern(Map<String, Integer> strings, String string) {
+    Integer index = strings.get(string);
+    if (index == null) {
+      index = strings.size();
+      strings.put(string, index);
+    }
+    return index;
+  }
+
+  private static ByteBuffer readFully(FileChannel channel, long position, int length, Path path)
+      throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("Truncated snapshot file: " + path);
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  private static void writeZigzag(DataOutputStream out, long value) throws IOException {
+    writeVarint(out, (value << 1) ^ (value >> 63));
+  }
+
+  private static long readZigzag(ByteBuffer in) {
+    long zigzag = readVarint(in);
+    return (zigzag >>> 1) ^ -(zigzag & 1);
+  }
+
+  private static void writeVarint(DataOutputStream out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  private static long readVarint(ByteBuffer in) {
+    long value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = in.get();
+      value |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+
+  private static int readInt(ByteBuffer in) {
+    return (int) readVarint(in);
+  }
+}
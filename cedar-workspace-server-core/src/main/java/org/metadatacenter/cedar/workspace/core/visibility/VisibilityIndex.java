@@ -0,0 +1,294 @@
+package org.metadatacenter.cedar.workspace.core.visibility;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory read visibility of the nodes of the workspace. Every node id is given an int ordinal, and for every
+ * user and group the index keeps a compressed bitmap of the ordinals of the nodes it has been granted access to
+ * directly (as owner, reader or writer). Grants are inherited down the folder tree, so a node is readable if it or
+ * any of its ancestors is in the union of the bitmaps of the user and its groups.
+ * <p>
+ * The index only knows what it has been told. A check that needs a node whose grants or parent are not known
+ * answers {@link Access#NOT_LOADED}, and a check made without the full list of groups of the user answers
+ * {@link Access#UNRESOLVED_GROUPS} when a group grant could make the difference. The ordinal of a forgotten node is
+ * reused once no other node points at it as its parent.
+ */
+public class VisibilityIndex {
+
+  public enum Access {
+    READABLE,
+    NOT_READABLE,
+    UNRESOLVED_GROUPS,
+    NOT_LOADED
+  }
+
+  private static final int ROOT = -1;
+  private static final int UNKNOWN_PARENT = -2;
+  private static final int MAX_DEPTH = 1000;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<String, Integer> ordinals = new HashMap<>();
+  private int[] parents = new int[1024];
+  private int[] childCounts = new int[1024];
+  private String[] ids = new String[1024];
+  private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+  private int nextOrdinal;
+  private final RoaringBitmap loaded = new RoaringBitmap();
+  private final RoaringBitmap groupGranted = new RoaringBitmap();
+  private final Map<String, RoaringBitmap> userGrants = new HashMap<>();
+  private final Map<String, RoaringBitmap> groupGrants = new HashMap<>();
+
+  public VisibilityIndex() {
+    Arrays.fill(parents, UNKNOWN_PARENT);
+  }
+
+  /**
+   * Replaces the direct grants of a node. The owner counts as one of the users.
+   */
+  public void setGrants(String nodeId, Collection<String> userIds, Collection<String> groupIds) {
+    lock.writeLock().lock();
+    try {
+      int ordinal = ordinalOf(nodeId);
+      clearGrants(ordinal);
+      for (String userId : userIds) {
+        userGrants.computeIfAbsent(userId, id -> new RoaringBitmap()).add(ordinal);
+      }
+      for (String groupId : groupIds) {
+        groupGrants.computeIfAbsent(groupId, id -> new RoaringBitmap()).add(ordinal);
+      }
+      if (!groupIds.isEmpty()) {
+        groupGranted.add(ordinal);
+      }
+      loaded.add(ordinal);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Records the parent folder of a node. A null parent marks the root folder.
+   */
+  public void setParent(String nodeId, String parentId) {
+    lock.writeLock().lock();
+    try {
+      int ordinal = ordinalOf(nodeId);
+      int parent = parentId == null ? ROOT : ordinalOf(parentId);
+      if (parent >= 0) {
+        childCounts[parent]++;
+      }
+      detachFromParent(ordinal);
+      parents[ordinal] = parent;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Drops everything known about a node. Its descendants keep pointing at it, and are not loaded until it is.
+   */
+  public void forget(String nodeId) {
+    lock.writeLock().lock();
+    try {
+      Integer ordinal = ordinals.get(nodeId);
+      if (ordinal != null) {
+        clearGrants(ordinal);
+        loaded.remove(ordinal);
+        detachFromParent(ordinal);
+        parents[ordinal] = UNKNOWN_PARENT;
+        releaseIfUnused(ordinal);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void clear() {
+    lock.writeLock().lock();
+    try {
+      ordinals.clear();
+      Arrays.fill(parents, UNKNOWN_PARENT);
+      Arrays.fill(childCounts, 0);
+      Arrays.fill(ids, null);
+      freeOrdinals.clear();
+      nextOrdinal = 0;
+      loaded.clear();
+      groupGranted.clear();
+      userGrants.clear();
+      groupGrants.clear();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public boolean isLoaded(String nodeId) {
+    lock.readLock().lock();
+    try {
+      Integer ordinal = ordinals.get(nodeId);
+      return ordinal != null && loaded.contains(ordinal) && parents[ordinal] != UNKNOWN_PARENT;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Checks whether a user can read a node. If groupsComplete is false, groupIds may be a subset of the groups of
+   * the user.
+   */
+  public Access canRead(String userId, Collection<String> groupIds, boolean groupsComplete, String nodeId) {
+    return canRead(userId, groupIds, groupsComplete, Collections.singletonList(nodeId)).get(nodeId);
+  }
+
+  /**
+   * Checks several nodes at once, combining the bitmaps of the user and its groups only once.
+   */
+  public Map<String, Access> canRead(String userId, Collection<String> groupIds, boolean groupsComplete,
+                                     Collection<String> nodeIds) {
+    Map<String, Access> access = new LinkedHashMap<>();
+    lock.readLock().lock();
+    try {
+      RoaringBitmap granted = grantedTo(userId, groupIds);
+      for (String nodeId : nodeIds) {
+        access.put(nodeId, evaluate(granted, groupsComplete, nodeId));
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    return access;
+  }
+
+  public int getNodeCount() {
+    lock.readLock().lock();
+    try {
+      return ordinals.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public long getSizeInBytes() {
+    lock.readLock().lock();
+    try {
+      long size = loaded.getLongSizeInBytes() + groupGranted.getLongSizeInBytes() + 8L * parents.length;
+      for (RoaringBitmap bitmap : userGrants.values()) {
+        size += bitmap.getLongSizeInBytes();
+      }
+      for (RoaringBitmap bitmap : groupGrants.values()) {
+        size += bitmap.getLongSizeInBytes();
+      }
+      return size;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private Access evaluate(RoaringBitmap granted, boolean groupsComplete, String nodeId) {
+    Integer start = ordinals.get(nodeId);
+    if (start == null) {
+      return Access.NOT_LOADED;
+    }
+    boolean complete = true;
+    boolean unresolved = false;
+    int ordinal = start;
+    for (int depth = 0; depth < MAX_DEPTH; depth++) {
+      if (granted.contains(ordinal)) {
+        return Access.READABLE;
+      }
+      if (!loaded.contains(ordinal)) {
+        complete = false;
+      } else if (!groupsComplete && groupGranted.contains(ordinal)) {
+        unresolved = true;
+      }
+      int parent = parents[ordinal];
+      if (parent == ROOT) {
+        if (!complete) {
+          return Access.NOT_LOADED;
+        }
+        return unresolved ? Access.UNRESOLVED_GROUPS : Access.NOT_READABLE;
+      } else if (parent == UNKNOWN_PARENT) {
+        return Access.NOT_LOADED;
+      }
+      ordinal = parent;
+    }
+    return Access.NOT_LOADED;
+  }
+
+  private RoaringBitmap grantedTo(String userId, Collection<String> groupIds) {
+    List<RoaringBitmap> bitmaps = new ArrayList<>();
+    RoaringBitmap userBitmap = userGrants.get(userId);
+    if (userBitmap != null) {
+      bitmaps.add(userBitmap);
+    }
+    for (String groupId : groupIds) {
+      RoaringBitmap groupBitmap = groupGrants.get(groupId);
+      if (groupBitmap != null) {
+        bitmaps.add(groupBitmap);
+      }
+    }
+    return RoaringBitmap.or(bitmaps.iterator());
+  }
+
+  private void clearGrants(int ordinal) {
+    if (!loaded.contains(ordinal)) {
+      return;
+    }
+    for (RoaringBitmap bitmap : userGrants.values()) {
+      bitmap.remove(ordinal);
+    }
+    for (RoaringBitmap bitmap : groupGrants.values()) {
+      bitmap.remove(ordinal);
+    }
+    groupGranted.remove(ordinal);
+    userGrants.values().removeIf(RoaringBitmap::isEmpty);
+    groupGrants.values().removeIf(RoaringBitmap::isEmpty);
+  }
+
+  private void detachFromParent(int ordinal) {
+    int parent = parents[ordinal];
+    if (parent >= 0) {
+      childCounts[parent]--;
+      releaseIfUnused(parent);
+    }
+  }
+
+  /**
+   * Gives the ordinal of a node back once nothing is known about the node and no other node points at it.
+   */
+  private void releaseIfUnused(int ordinal) {
+    if (childCounts[ordinal] == 0 && parents[ordinal] == UNKNOWN_PARENT && !loaded.contains(ordinal)) {
+      ordinals.remove(ids[ordinal]);
+      ids[ordinal] = null;
+      freeOrdinals.push(ordinal);
+    }
+  }
+
+  private int ordinalOf(String nodeId) {
+    Integer ordinal = ordinals.get(nodeId);
+    if (ordinal != null) {
+      return ordinal;
+    }
+    int next = freeOrdinals.isEmpty() ? nextOrdinal++ : freeOrdinals.pop();
+    ordinals.put(nodeId, next);
+    if (next >= parents.length) {
+      int oldLength = parents.length;
+      parents = Arrays.copyOf(parents, oldLength * 2);
+      Arrays.fill(parents, oldLength, parents.length, UNKNOWN_PARENT);
+      childCounts = Arrays.copyOf(childCounts, parents.length);
+      ids = Arrays.copyOf(ids, parents.length);
+    }
+    ids[next] = nodeId;
+    return next;
+  }
+}
@@ -0,0 +1,69 @@
+package org.metadatacenter.cedar.workspace.core.autocomplete;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class NamePrefixIndexTest {
+
+  private NamePrefixIndex index;
+
+  @Before
+  public void setUp() {
+    index = new NamePrefixIndex();
+    index.put("form", "Clinical Trial Form", "template", 100L);
+    index.put("trials", "Trials", "folder", 300L);
+    index.put("study", "Study  design", "element", 200L);
+  }
+
+  @Test
+  public void matchesWordPrefixesMostRecentFirst() {
+    Assert.assertEquals(ids("trials", "form"), find("TRI"));
+    Assert.assertEquals(ids("form"), find("clinical t"));
+    Assert.assertEquals(ids("study"), find("study d"));
+    Assert.assertEquals(ids(), find("rial"));
+    Assert.assertEquals(ids(), find(" "));
+  }
+
+  @Test
+  public void renamesAndRemovalsReplaceTheKeys() {
+    index.put("form", "Intake Form", "template", 400L);
+    Assert.assertEquals(ids("trials"), find("tri"));
+    Assert.assertEquals(ids("form"), find("intake"));
+
+    index.remove("form");
+    Assert.assertEquals(ids(), find("form"));
+    Assert.assertEquals(2, index.size());
+  }
+
+  @Test
+  public void limitsTheResults() {
+    Assert.assertEquals(ids("trials"), index.find("tri", 1, 100).stream().map(NamePrefixIndex.Entry::getId)
+        .collect(Collectors.toList()));
+  }
+
+  private List<String> find(String prefix) {
+    return index.find(prefix, 10, 100).stream().map(NamePrefixIndex.Entry::getId).collect(Collectors.toList());
+  }
+
+  private static List<String> ids(String... ids) {
+    return Arrays.asList(ids);
+  }
+
+  @Test
+  public void ranksCommonPrefixesByRecencyAcrossAllMatches() {
+    for (int i = 0; i < 100; i++) {
+      index.put("a" + i, "aaa " + i, "template", 1000L + i);
+    }
+    index.put("zz", "Zz trial", "template", 2000L);
+    // Few keys are scanned, the matches are found by walking the nodes from the most recent one
+    Assert.assertEquals(ids("a99", "a98"), index.find("a", 2, 10).stream().map(NamePrefixIndex.Entry::getId)
+        .collect(Collectors.toList()));
+    Assert.assertEquals(ids("zz", "trials", "form"), index.find("tri", 10, 2).stream()
+        .map(NamePrefixIndex.Entry::getId).collect(Collectors.toList()));
+  }
+}
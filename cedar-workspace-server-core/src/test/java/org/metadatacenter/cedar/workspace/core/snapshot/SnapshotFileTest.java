@@ -0,0 +1,152 @@
+package org.metadatacenter.cedar.workspace.core.snapshot;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SnapshotFileTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void roundTripsNodesAndRelationships() throws IOException {
+    Map<String, Object> folder = new LinkedHashMap<>();
+    folder.put("schema:name", "Studies");
+    folder.put("pav:createdOnTS", 1500000000L);
+    folder.put("isRoot", false);
+    Map<String, Object> template = new LinkedHashMap<>();
+    template.put("schema:name", "Form");
+    template.put("pav:createdOnTS", 1400000000);
+    template.put("score", -0.5);
+    template.put("tags", Arrays.asList("a", "b"));
+
+    GraphSnapshot snapshot = new GraphSnapshot();
+    snapshot.addNode("f1", Arrays.asList("FSNode", "Folder"), folder);
+    snapshot.addNode("t1", Arrays.asList("FSNode", "Resource"), template);
+    snapshot.addNode("u1", Collections.singletonList("User"), new HashMap<>());
+    snapshot.addRelationship("CONTAINS", "f1", Arrays.asList("FSNode", "Folder"), "t1",
+        Arrays.asList("FSNode", "Resource"));
+    snapshot.addRelationship("OWNS", "u1", Collections.singletonList("User"), "t1",
+        Arrays.asList("FSNode", "Resource"));
+
+    Path path = temporaryFolder.newFile().toPath();
+    SnapshotFile.write(snapshot, path, 1000);
+    GraphSnapshot read = SnapshotFile.read(path);
+
+    Assert.assertEquals(3, read.getNodes().size());
+    GraphSnapshot.Node readTemplate = read.getNodes().get(1);
+    Assert.assertEquals("t1", readTemplate.getId());
+    Assert.assertEquals(Arrays.asList("FSNode", "Resource"), readTemplate.getLabels());
+    Assert.assertEquals("Form", readTemplate.getProperties().get("schema:name"));
+    Assert.assertEquals(1400000000L, readTemplate.getProperties().get("pav:createdOnTS"));
+    Assert.assertEquals(-0.5, readTemplate.getProperties().get("score"));
+    Assert.assertEquals(Arrays.asList("a", "b"), readTemplate.getProperties().get("tags"));
+    Assert.assertFalse(readTemplate.getProperties().containsKey("isRoot"));
+    Assert.assertEquals(false, read.getNodes().get(0).getProperties().get("isRoot"));
+    Assert.assertTrue(read.getNodes().get(2).getProperties().isEmpty());
+
+    Assert.assertEquals(2, read.getRelationships().size());
+    GraphSnapshot.Relationship owns = read.getRelationships().get(1);
+    Assert.assertEquals("OWNS", owns.getType());
+    Assert.assertEquals("u1", owns.getStartId());
+    Assert.assertEquals(Collections.singletonList("User"), owns.getStartLabels());
+    Assert.assertEquals("t1", owns.getEndId());
+    Assert.assertEquals(Arrays.asList("FSNode", "Resource"), owns.getEndLabels());
+  }
+
+  @Test
+  public void keepsPropertiesOfSeveralTypesAndListsOfAnyType() throws IOException {
+    GraphSnapshot snapshot = new GraphSnapshot();
+    snapshot.addNode("n1", Collections.singletonList("FSNode"), Collections.singletonMap("version", "0.0.1"));
+    snapshot.addNode("n2", Collections.singletonList("FSNode"), Collections.singletonMap("version", 2L));
+    snapshot.addNode("n3", Collections.singletonList("FSNode"), Collections.singletonMap("version",
+        Arrays.asList(1L, 2L)));
+    snapshot.addNode("n4", Collections.singletonList("FSNode"), Collections.singletonMap("version",
+        Arrays.asList(true, 1.5, "x")));
+
+    Path path = temporaryFolder.newFile().toPath();
+    SnapshotFile.write(snapshot, path, 1000);
+    GraphSnapshot read = SnapshotFile.read(path);
+
+    Assert.assertEquals("0.0.1", read.getNodes().get(0).getProperties().get("version"));
+    Assert.assertEquals(2L, read.getNodes().get(1).getProperties().get("version"));
+    Assert.assertEquals(Arrays.asList(1L, 2L), read.getNodes().get(2).getProperties().get("version"));
+    Assert.assertEquals(Arrays.asList(true, 1.5, "x"), read.getNodes().get(3).getProperties().get("version"));
+  }
+
+  @Test
+  public void streamsTheGraphBlockByBlock() throws IOException {
+    Path path = temporaryFolder.newFile().toPath();
+    try (SnapshotFile.Writer writer = new SnapshotFile.Writer(path, 2)) {
+      for (int i = 0; i < 5; i++) {
+        writer.addNode("n" + i, Collections.singletonList("FSNode"), Collections.singletonMap("pav:createdOnTS",
+            1500000000L + i));
+      }
+      for (int i = 1; i < 5; i++) {
+        writer.addRelationship("CONTAINS", "n0", Collections.singletonList("FSNode"), "n" + i,
+            Collections.singletonList("FSNode"));
+      }
+    }
+
+    List<Integer> nodeBlocks = new ArrayList<>();
+    List<Integer> relationshipBlocks = new ArrayList<>();
+    List<Object> createdOn = new ArrayList<>();
+    SnapshotFile.read(path, new SnapshotFile.BlockHandler() {
+      @Override
+      public void nodes(List<GraphSnapshot.Node> nodes) {
+        Assert.assertTrue(relationshipBlocks.isEmpty());
+        nodeBlocks.add(nodes.size());
+        nodes.forEach(node -> createdOn.add(node.getProperties().get("pav:createdOnTS")));
+      }
+
+      @Override
+      public void relationships(List<GraphSnapshot.Relationship> relationships) {
+        relationshipBlocks.add(relationships.size());
+      }
+    });
+    Assert.assertEquals(Arrays.asList(2, 2, 1), nodeBlocks);
+    Assert.assertEquals(Arrays.asList(2, 2), relationshipBlocks);
+    Assert.assertEquals(Arrays.asList(1500000000L, 1500000001L, 1500000002L, 1500000003L, 1500000004L), createdOn);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void nodesComeBeforeRelationships() throws IOException {
+    try (SnapshotFile.Writer writer = new SnapshotFile.Writer(temporaryFolder.newFile().toPath(), 10)) {
+      writer.addNode("n1", Collections.singletonList("FSNode"), Collections.emptyMap());
+      writer.addRelationship("CONTAINS", "n1", Collections.singletonList("FSNode"), "n1",
+          Collections.singletonList("FSNode"));
+      writer.addNode("n2", Collections.singletonList("FSNode"), Collections.emptyMap());
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsTruncatedFiles() throws IOException {
+    Path path = temporaryFolder.newFile().toPath();
+    try (SnapshotFile.Writer writer = new SnapshotFile.Writer(path, 10)) {
+      writer.addNode("n1", Collections.singletonList("FSNode"), Collections.emptyMap());
+    }
+    byte[] bytes = Files.readAllBytes(path);
+    Files.write(path, Arrays.copyOf(bytes, bytes.length - 5));
+    SnapshotFile.read(path);
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsOtherFiles() throws IOException {
+    Path path = temporaryFolder.newFile().toPath();
+    Files.write(path, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+    SnapshotFile.read(path);
+  }
+}
@@ -0,0 +1,89 @@
+package org.metadatacenter.cedar.workspace.core.visibility;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.metadatacenter.cedar.workspace.core.visibility.VisibilityIndex.Access;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class VisibilityIndexTest {
+
+  private static final List<String> NONE = Collections.emptyList();
+
+  private VisibilityIndex index;
+
+  @Before
+  public void setUp() {
+    // root > shared > template, root > private
+    index = new VisibilityIndex();
+    index.setParent("root", null);
+    index.setGrants("root", Collections.singletonList("admin"), NONE);
+    index.setParent("shared", "root");
+    index.setGrants("shared", Collections.singletonList("alice"), Collections.singletonList("team"));
+    index.setParent("template", "shared");
+    index.setGrants("template", Collections.singletonList("bob"), NONE);
+    index.setParent("private", "root");
+    index.setGrants("private", Collections.singletonList("bob"), NONE);
+  }
+
+  @Test
+  public void grantsAreInheritedDownTheTree() {
+    Assert.assertEquals(Access.READABLE, index.canRead("alice", NONE, true, "template"));
+    Assert.assertEquals(Access.READABLE, index.canRead("carol", Collections.singletonList("team"), true,
+        "template"));
+    Assert.assertEquals(Access.READABLE, index.canRead("bob", NONE, true, "template"));
+    Assert.assertEquals(Access.NOT_READABLE, index.canRead("alice", NONE, true, "private"));
+    Assert.assertEquals(Access.NOT_READABLE, index.canRead("bob", NONE, true, "shared"));
+  }
+
+  @Test
+  public void unknownGroupsAndNodesAreReported() {
+    Assert.assertEquals(Access.UNRESOLVED_GROUPS, index.canRead("carol", NONE, false, "template"));
+    Assert.assertEquals(Access.NOT_READABLE, index.canRead("carol", NONE, false, "private"));
+    Assert.assertEquals(Access.NOT_LOADED, index.canRead("alice", NONE, true, "unknown"));
+
+    index.setParent("orphan", "elsewhere");
+    index.setGrants("orphan", NONE, NONE);
+    Assert.assertEquals(Access.NOT_LOADED, index.canRead("alice", NONE, true, "orphan"));
+    Assert.assertFalse(index.isLoaded("elsewhere"));
+  }
+
+  @Test
+  public void grantsAndMovesAreAppliedIncrementally() {
+    index.setGrants("shared", Collections.singletonList("alice"), NONE);
+    Assert.assertEquals(Access.NOT_READABLE, index.canRead("carol", Collections.singletonList("team"), true,
+        "template"));
+
+    index.setParent("template", "private");
+    Assert.assertEquals(Access.NOT_READABLE, index.canRead("alice", NONE, true, "template"));
+    Assert.assertEquals(Access.READABLE, index.canRead("bob", NONE, true, "template"));
+
+    index.forget("private");
+    Assert.assertEquals(Access.NOT_LOADED, index.canRead("alice", NONE, true, "template"));
+    Assert.assertEquals(Access.READABLE, index.canRead("bob", NONE, true, "template"));
+    Assert.assertEquals(Arrays.asList(Access.NOT_LOADED, Access.READABLE),
+        Arrays.asList(index.canRead("admin", NONE, true, Arrays.asList("private", "shared")).values().toArray()));
+  }
+
+  @Test
+  public void ordinalsOfForgottenNodesAreReused() {
+    Assert.assertEquals(4, index.getNodeCount());
+    // A forgotten folder keeps its ordinal while a child still points at it
+    index.forget("shared");
+    Assert.assertEquals(4, index.getNodeCount());
+    index.forget("template");
+    Assert.assertEquals(2, index.getNodeCount());
+
+    index.setParent("other", "unknown");
+    Assert.assertEquals(4, index.getNodeCount());
+    index.setParent("other", "private");
+    Assert.assertEquals(3, index.getNodeCount());
+    index.setGrants("other", Collections.singletonList("carol"), NONE);
+    Assert.assertEquals(Access.READABLE, index.canRead("carol", NONE, true, "other"));
+    Assert.assertEquals(Access.NOT_LOADED, index.canRead("alice", NONE, true, "template"));
+    Assert.assertEquals(Access.NOT_READABLE, index.canRead("carol", NONE, true, "private"));
+  }
+}
@@ -0,0 +1,89 @@
+package org.metadatacenter.cedar.workspace.loadtest;
+
+/**
+ * Log-linear latency histogram in microseconds with 64 sub-buckets per power of two, which keeps the relative error
+ * of reported percentiles under 2%. Not thread-safe: each virtual user records into its own histogram and the
+ * histograms are merged when the run is over.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 6;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final long[] counts = new long[BUCKETS];
+  private long totalCount;
+  private long max;
+  private long sum;
+
+  public void record(long micros) {
+    long v = Math.max(0, micros);
+    counts[index(v)]++;
+    totalCount++;
+    sum += v;
+    if (v > max) {
+      max = v;
+    }
+  }
+
+  public void merge(LatencyHistogram other) {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] += other.counts[i];
+    }
+    totalCount += other.totalCount;
+    sum += other.sum;
+    max = Math.max(max, other.max);
+  }
+
+  public long getTotalCount() {
+    return totalCount;
+  }
+
+  public long getMax() {
+    return max;
+  }
+
+  public double getMean() {
+    return totalCount == 0 ? 0 : (double) sum / totalCount;
+  }
+
+  /**
+   * Returns the highest value that is equivalent to the value at the given percentile (0-100).
+   */
+  public long getValueAtPercentile(double percentile) {
+    if (totalCount == 0) {
+      return 0;
+    }
+    long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+    long cumulative = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      cumulative += counts[i];
+      if (cumulative >= target) {
+        return Math.min(max, highestEquivalentValue(i));
+      }
+    }
+    return max;
+  }
+
+  static int index(long v) {
+    if (v < SUB_BUCKETS) {
+      return (int) v;
+    }
+    int magnitude = 63 - Long.numberOfLeadingZeros(v);
+    int subBucket = (int) ((v >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+    return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  static long lowestEquivalentValue(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int magnitude = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    int subBucket = index % SUB_BUCKETS;
+    return (1L << magnitude) | ((long) subBucket << (magnitude - SUB_BUCKET_BITS));
+  }
+
+  static long highestEquivalentValue(int index) {
+    return index + 1 < BUCKETS ? lowestEquivalentValue(index + 1) - 1 : Long.MAX_VALUE;
+  }
+}
@@ -0,0 +1,217 @@
+package org.metadatacenter.cedar.workspace.loadtest;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class LoadTestConfig {
+
+  @JsonProperty
+  private String baseUrl = "http://localhost:9008";
+
+  @JsonProperty
+  private String apiKey;
+
+  @JsonProperty
+  private String bootConfig;
+
+  @JsonProperty
+  private String fixture;
+
+  @JsonProperty
+  private int virtualUsers = 32;
+
+  @JsonProperty
+  private int warmupSeconds = 30;
+
+  @JsonProperty
+  private int durationSeconds = 120;
+
+  @JsonProperty
+  private int thinkTimeMillis = 0;
+
+  @JsonProperty
+  private int timeoutMillis = 30000;
+
+  @JsonProperty
+  private Map<String, Integer> mix = new LinkedHashMap<>();
+
+  @JsonProperty
+  private List<String> folderIds = new ArrayList<>();
+
+  @JsonProperty
+  private List<String> resourceIds = new ArrayList<>();
+
+  @JsonProperty
+  private List<String> searchQueries = new ArrayList<>();
+
+  @JsonProperty
+  private List<MoveTarget> moves = new ArrayList<>();
+
+  @JsonProperty
+  private List<PublishTarget> publishes = new ArrayList<>();
+
+  @JsonProperty
+  private String output;
+
+  public String getBaseUrl() {
+    return baseUrl;
+  }
+
+  public String getApiKey() {
+    return apiKey;
+  }
+
+  public String getBootConfig() {
+    return bootConfig;
+  }
+
+  public String getFixture() {
+    return fixture;
+  }
+
+  public int getVirtualUsers() {
+    return virtualUsers;
+  }
+
+  public int getWarmupSeconds() {
+    return warmupSeconds;
+  }
+
+  public int getDurationSeconds() {
+    return durationSeconds;
+  }
+
+  public int getThinkTimeMillis() {
+    return thinkTimeMillis;
+  }
+
+  public int getTimeoutMillis() {
+    return timeoutMillis;
+  }
+
+  public Map<String, Integer> getMix() {
+    return mix;
+  }
+
+  public List<String> getFolderIds() {
+    return folderIds;
+  }
+
+  public List<String> getResourceIds() {
+    return resourceIds;
+  }
+
+  public List<String> getSearchQueries() {
+    return searchQueries;
+  }
+
+  public List<MoveTarget> getMoves() {
+    return moves;
+  }
+
+  public List<PublishTarget> getPublishes() {
+    return publishes;
+  }
+
+  public String getOutput() {
+    return output;
+  }
+
+  /**
+   * Checks that every operation with a positive weight in the mix has targets to pick from.
+   */
+  public void validate() {
+    List<String> problems = new ArrayList<>();
+    for (Operation operation : new WorkloadMix(mix).getOperations()) {
+      switch (operation) {
+        case CONTENTS:
+          requireTargets(problems, operation, "folderIds", folderIds);
+          break;
+        case SEARCH:
+          requireTargets(problems, operation, "searchQueries", searchQueries);
+          break;
+        case RESOURCE_READ:
+          requireTargets(problems, operation, "resourceIds", resourceIds);
+          break;
+        case MOVE:
+          requireTargets(problems, operation, "moves", moves);
+          for (MoveTarget move : moves) {
+            if (move.getFolderIds().isEmpty()) {
+              problems.add("The move of '" + move.getSourceId() + "' has no folderIds");
+            }
+          }
+          break;
+        case PUBLISH:
+          requireTargets(problems, operation, "publishes", publishes);
+          break;
+        default:
+          break;
+      }
+    }
+    if (!problems.isEmpty()) {
+      throw new IllegalArgumentException("Invalid load test configuration: " + String.join("; ", problems));
+    }
+  }
+
+  private static void requireTargets(List<String> problems, Operation operation, String field, List<?> targets) {
+    if (targets.isEmpty()) {
+      problems.add("'" + operation.getValue() + "' has a weight in the mix but " + field + " is empty");
+    }
+  }
+
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  public static class MoveTarget {
+
+    @JsonProperty
+    private String sourceId;
+
+    @JsonProperty
+    private String nodeType;
+
+    @JsonProperty
+    private List<String> folderIds = new ArrayList<>();
+
+    public String getSourceId() {
+      return sourceId;
+    }
+
+    public String getNodeType() {
+      return nodeType;
+    }
+
+    public List<String> getFolderIds() {
+      return folderIds;
+    }
+  }
+
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  public static class PublishTarget {
+
+    @JsonProperty
+    private String id;
+
+    @JsonProperty
+    private String nodeType;
+
+    @JsonProperty
+    private String version;
+
+    public String getId() {
+      return id;
+    }
+
+    public String getNodeType() {
+      return nodeType;
+    }
+
+    public String getVersion() {
+      return version;
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package org.metadatacenter.cedar.workspace.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Machine-readable summary of a run. Latencies are reported in microseconds, throughput in operations per second.
+ */
+public class LoadTestReport {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+  private final ObjectNode root = MAPPER.createObjectNode();
+
+  public LoadTestReport(LoadTestConfig config, Instant startedAt, double measuredSeconds,
+                        Map<Operation, OperationStats> stats) {
+    root.put("build", System.getProperty("cedar.build", "unknown"));
+    root.put("startedAt", startedAt.toString());
+    root.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+    root.put("virtualUsers", config.getVirtualUsers());
+    root.put("measuredSeconds", measuredSeconds);
+
+    OperationStats total = new OperationStats();
+    ObjectNode operations = root.putObject("operations");
+    for (Map.Entry<Operation, OperationStats> entry : stats.entrySet()) {
+      if (entry.getValue().getHistogram().getTotalCount() > 0) {
+        operations.set(entry.getKey().getValue(), summarize(entry.getValue(), measuredSeconds));
+        total.merge(entry.getValue());
+      }
+    }
+    root.set("total", summarize(total, measuredSeconds));
+  }
+
+  private static ObjectNode summarize(OperationStats stats, double measuredSeconds) {
+    LatencyHistogram h = stats.getHistogram();
+    ObjectNode node = MAPPER.createObjectNode();
+    node.put("count", h.getTotalCount());
+    node.put("errors", stats.getErrors());
+    node.put("throughput", measuredSeconds > 0 ? h.getTotalCount() / measuredSeconds : 0);
+    ObjectNode latency = node.putObject("latencyMicros");
+    latency.put("mean", h.getMean());
+    latency.put("p50", h.getValueAtPercentile(50));
+    latency.put("p90", h.getValueAtPercentile(90));
+    latency.put("p99", h.getValueAtPercentile(99));
+    latency.put("p999", h.getValueAtPercentile(99.9));
+    latency.put("max", h.getMax());
+    return node;
+  }
+
+  public String toJson() throws IOException {
+    return MAPPER.writeValueAsString(root);
+  }
+
+  public void writeTo(File file) throws IOException {
+    MAPPER.writeValue(file, root);
+  }
+}
@@ -0,0 +1,109 @@
+package org.metadatacenter.cedar.workspace.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.metadatacenter.cedar.workspace.WorkspaceServerApplication;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives a workspace server with a configurable mix of operations from many concurrent virtual users and writes a
+ * JSON report with latency percentiles and throughput.
+ * <p>
+ * Usage: <code>LoadTestRunner &lt;loadtest.json&gt;</code>. When <code>bootConfig</code> is set, the server is
+ * started in this JVM with that Dropwizard configuration before the run; point its backend environment variables at
+ * a disposable local graph database. A <code>fixture</code> snapshot file is imported into it first.
+ */
+public class LoadTestRunner {
+
+  private static final Logger log = LoggerFactory.getLogger(LoadTestRunner.class);
+
+  private static final long SERVER_WAIT_MILLIS = TimeUnit.MINUTES.toMillis(3);
+
+  public static void main(String[] args) throws Exception {
+    if (args.length != 1) {
+      System.err.println("Usage: LoadTestRunner <loadtest.json>");
+      System.exit(2);
+    }
+    LoadTestConfig config = new ObjectMapper().readValue(new File(args[0]), LoadTestConfig.class);
+    config.validate();
+
+    if (config.getBootConfig() != null) {
+      if (config.getFixture() != null) {
+        new WorkspaceServerApplication().run("import-snapshot", config.getBootConfig(), config.getFixture());
+      }
+      new WorkspaceServerApplication().run("server", config.getBootConfig());
+    }
+    waitForServer(config);
+
+    LoadTestReport report = run(config);
+    if (config.getOutput() != null) {
+      report.writeTo(new File(config.getOutput()));
+    }
+    System.out.println(report.toJson());
+    System.exit(0);
+  }
+
+  public static LoadTestReport run(LoadTestConfig config) throws InterruptedException {
+    WorkloadMix mix = new WorkloadMix(config.getMix());
+    Instant startedAt = Instant.now();
+    long now = System.nanoTime();
+    long measureFrom = now + TimeUnit.SECONDS.toNanos(config.getWarmupSeconds());
+    long stopAt = measureFrom + TimeUnit.SECONDS.toNanos(config.getDurationSeconds());
+
+    List<VirtualUser> users = new ArrayList<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < config.getVirtualUsers(); i++) {
+      VirtualUser user = new VirtualUser(config, mix, measureFrom, stopAt);
+      Thread thread = new Thread(user, "virtual-user-" + i);
+      users.add(user);
+      threads.add(thread);
+    }
+    log.info("Starting " + users.size() + " virtual users, warmup " + config.getWarmupSeconds() + "s, measuring "
+        + config.getDurationSeconds() + "s");
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    Map<Operation, OperationStats> merged = new EnumMap<>(Operation.class);
+    for (Operation operation : Operation.values()) {
+      merged.put(operation, new OperationStats());
+    }
+    for (VirtualUser user : users) {
+      for (Map.Entry<Operation, OperationStats> entry : user.getStats().entrySet()) {
+        merged.get(entry.getKey()).merge(entry.getValue());
+      }
+    }
+    return new LoadTestReport(config, startedAt, config.getDurationSeconds(), merged);
+  }
+
+  private static void waitForServer(LoadTestConfig config) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + SERVER_WAIT_MILLIS;
+    while (System.currentTimeMillis() < deadline) {
+      try {
+        HttpURLConnection connection = (HttpURLConnection) new URL(config.getBaseUrl() + "/").openConnection();
+        connection.setConnectTimeout(1000);
+        if (connection.getResponseCode() < 500) {
+          return;
+        }
+      } catch (IOException e) {
+        // not up yet
+      }
+      Thread.sleep(500);
+    }
+    throw new IllegalStateException("The server at " + config.getBaseUrl() + " did not come up");
+  }
+}
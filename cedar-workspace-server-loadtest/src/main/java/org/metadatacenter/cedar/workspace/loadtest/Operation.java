@@ -0,0 +1,29 @@
+package org.metadatacenter.cedar.workspace.loadtest;
+
+public enum Operation {
+
+  CONTENTS("contents"),
+  SEARCH("search"),
+  RESOURCE_READ("resource-read"),
+  MOVE("move"),
+  PUBLISH("publish");
+
+  private final String value;
+
+  Operation(String value) {
+    this.value = value;
+  }
+
+  public String getValue() {
+    return value;
+  }
+
+  public static Operation forValue(String value) {
+    for (Operation operation : values()) {
+      if (operation.value.equals(value)) {
+        return operation;
+      }
+    }
+    throw new IllegalArgumentException("Unknown operation: " + value);
+  }
+}
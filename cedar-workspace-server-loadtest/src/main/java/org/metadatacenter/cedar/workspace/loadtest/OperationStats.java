@@ -0,0 +1,29 @@
+package org.metadatacenter.cedar.workspace.loadtest;
+
+public class OperationStats {
+
+  private final LatencyHistogram histogram = new LatencyHistogram();
+  private long errors;
+
+  public void recordSuccess(long micros) {
+    histogram.record(micros);
+  }
+
+  public void recordError(long micros) {
+    histogram.record(micros);
+    errors++;
+  }
+
+  public void merge(OperationStats other) {
+    histogram.merge(other.histogram);
+    errors += other.errors;
+  }
+
+  public LatencyHistogram getHistogram() {
+    return histogram;
+  }
+
+  public long getErrors() {
+    return errors;
+  }
+}
@@ -0,0 +1,161 @@
+package org.metadatacenter.cedar.workspace.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A single simulated client. It issues operations picked from the workload mix back to back (with an optional think
+ * time) until the end of the run, and records the latencies observed after the warmup period.
+ */
+public class VirtualUser implements Runnable {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final LoadTestConfig config;
+  private final WorkloadMix mix;
+  private final long measureFromNanos;
+  private final long stopAtNanos;
+  private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+  private final byte[] buffer = new byte[8192];
+  private int moveCounter;
+
+  public VirtualUser(LoadTestConfig config, WorkloadMix mix, long measureFromNanos, long stopAtNanos) {
+    this.config = config;
+    this.mix = mix;
+    this.measureFromNanos = measureFromNanos;
+    this.stopAtNanos = stopAtNanos;
+    for (Operation operation : Operation.values()) {
+      stats.put(operation, new OperationStats());
+    }
+  }
+
+  public Map<Operation, OperationStats> getStats() {
+    return stats;
+  }
+
+  @Override
+  public void run() {
+    while (System.nanoTime() < stopAtNanos && !Thread.currentThread().isInterrupted()) {
+      Operation operation = mix.next();
+      long start = System.nanoTime();
+      boolean ok;
+      try {
+        ok = execute(operation);
+      } catch (Exception e) {
+        // one failing operation is counted as an error, it must not end the virtual user
+        ok = false;
+      }
+      long end = System.nanoTime();
+      if (start >= measureFromNanos && end < stopAtNanos) {
+        long micros = (end - start) / 1000;
+        if (ok) {
+          stats.get(operation).recordSuccess(micros);
+        } else {
+          stats.get(operation).recordError(micros);
+        }
+      }
+      if (config.getThinkTimeMillis() > 0) {
+        try {
+          Thread.sleep(config.getThinkTimeMillis());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+
+  private boolean execute(Operation operation) throws IOException {
+    switch (operation) {
+      case CONTENTS:
+        return get("/folders/" + encode(pick(config.getFolderIds())) + "/contents");
+      case SEARCH:
+        return get("/search?" + pick(config.getSearchQueries()));
+      case RESOURCE_READ:
+        return get("/resources/" + encode(pick(config.getResourceIds())));
+      case MOVE:
+        LoadTestConfig.MoveTarget move = pick(config.getMoves());
+        List<String> folderIds = move.getFolderIds();
+        ObjectNode moveBody = MAPPER.createObjectNode();
+        moveBody.put("sourceId", move.getSourceId());
+        moveBody.put("nodeType", move.getNodeType());
+        moveBody.put("folderId", folderIds.get(moveCounter++ % folderIds.size()));
+        return post("/command/move-node-to-folder", moveBody);
+      case PUBLISH:
+        LoadTestConfig.PublishTarget publish = pick(config.getPublishes());
+        ObjectNode publishBody = MAPPER.createObjectNode();
+        publishBody.put("id", publish.getId());
+        publishBody.put("nodeType", publish.getNodeType());
+        publishBody.put("version", publish.getVersion());
+        return post("/command/publish-resource", publishBody);
+      default:
+        throw new IllegalStateException("Unhandled operation: " + operation);
+    }
+  }
+
+  private boolean get(String path) throws IOException {
+    HttpURLConnection connection = open(path, "GET");
+    return consume(connection);
+  }
+
+  private boolean post(String path, ObjectNode body) throws IOException {
+    HttpURLConnection connection = open(path, "POST");
+    connection.setDoOutput(true);
+    connection.setRequestProperty("Content-Type", "application/json");
+    try (OutputStream out = connection.getOutputStream()) {
+      MAPPER.writeValue(out, body);
+    }
+    return consume(connection);
+  }
+
+  private HttpURLConnection open(String path, String method) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(config.getBaseUrl() + path).openConnection();
+    connection.setRequestMethod(method);
+    connection.setConnectTimeout(config.getTimeoutMillis());
+    connection.setReadTimeout(config.getTimeoutMillis());
+    connection.setRequestProperty("Accept", "application/json");
+    if (config.getApiKey() != null) {
+      connection.setRequestProperty("Authorization", "apiKey " + config.getApiKey());
+    }
+    return connection;
+  }
+
+  private boolean consume(HttpURLConnection connection) throws IOException {
+    int status = connection.getResponseCode();
+    InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+    if (in != null) {
+      try {
+        while (in.read(buffer) != -1) {
+          // drain the body so the connection can be reused
+        }
+      } finally {
+        in.close();
+      }
+    }
+    return status < 400;
+  }
+
+  private static <T> T pick(List<T> values) {
+    return values.get(ThreadLocalRandom.current().nextInt(values.size()));
+  }
+
+  private static String encode(String id) {
+    try {
+      return URLEncoder.encode(id, StandardCharsets.UTF_8.name());
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
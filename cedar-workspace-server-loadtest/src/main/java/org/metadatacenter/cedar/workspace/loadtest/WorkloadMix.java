@@ -0,0 +1,48 @@
+package org.metadatacenter.cedar.workspace.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks the next operation of a virtual user according to the configured weights.
+ */
+public class WorkloadMix {
+
+  private final List<Operation> operations = new ArrayList<>();
+  private final int[] cumulativeWeights;
+  private final int totalWeight;
+
+  public WorkloadMix(Map<String, Integer> weights) {
+    List<Integer> cumulative = new ArrayList<>();
+    int total = 0;
+    for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+      int weight = entry.getValue() == null ? 0 : entry.getValue();
+      if (weight > 0) {
+        total += weight;
+        operations.add(Operation.forValue(entry.getKey()));
+        cumulative.add(total);
+      }
+    }
+    if (total == 0) {
+      throw new IllegalArgumentException("The workload mix must contain at least one operation with a weight");
+    }
+    this.totalWeight = total;
+    this.cumulativeWeights = cumulative.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  public Operation next() {
+    int r = ThreadLocalRandom.current().nextInt(totalWeight);
+    for (int i = 0; i < cumulativeWeights.length; i++) {
+      if (r < cumulativeWeights[i]) {
+        return operations.get(i);
+      }
+    }
+    return operations.get(operations.size() - 1);
+  }
+
+  public List<Operation> getOperations() {
+    return operations;
+  }
+}